@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads the input files of the performance test CMD application for the benchmarks, i.e. the key fragments from
+ * the fragment file (SMILES in the first column, one header line) and the molecules from the molecule file
+ * (name;SMILES;fragment;frequency;fragment;frequency;..., one header line).
+ * The files are looked up in the directory given by the system property
+ * {@value #DATA_DIRECTORY_PROPERTY}, which defaults to the PerformanceTestCMDApplication folder of the project.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class BenchmarkData {
+    //<editor-fold desc="Package-private static final class variables" defaultstate="collapsed">
+    /**
+     * System property to set the directory of the input files
+     */
+    static final String DATA_DIRECTORY_PROPERTY = "fragmentfingerprints.benchmark.dataDirectory";
+    /**
+     * Default directory of the input files, relative to the project directory
+     */
+    static final String DEFAULT_DATA_DIRECTORY = "PerformanceTestCMDApplication";
+    /**
+     * Name of the file with the key fragments
+     */
+    static final String FRAGMENTS_FILE_NAME = "Fragments_File_PerformanceTest_13000.csv";
+    /**
+     * Name of the file with the molecules and their fragments
+     */
+    static final String MOLECULES_FILE_NAME = "MoleculeFragments_File_PerformanceTest_13000.csv";
+    /**
+     * Separator of the columns in both files
+     */
+    static final String SEPARATOR = ";";
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Private constructor, the class only has static methods.
+     */
+    private BenchmarkData() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private static methods" defaultstate="collapsed">
+    /**
+     * Reads the first key fragments from the fragment file.
+     *
+     * @param aMaximumNumberOfFragments maximum number of fragments to read.
+     * @return list of fragment SMILES
+     * @throws IOException is thrown if the file can not be read.
+     */
+    static List<String> readFragments(int aMaximumNumberOfFragments) throws IOException {
+        List<String> tmpFragmentList = new ArrayList<>(aMaximumNumberOfFragments);
+        try (BufferedReader tmpReader = Files.newBufferedReader(BenchmarkData.getFile(BenchmarkData.FRAGMENTS_FILE_NAME), StandardCharsets.UTF_8)) {
+            // skip header line
+            String tmpLine = tmpReader.readLine();
+            while ((tmpLine = tmpReader.readLine()) != null && tmpFragmentList.size() < aMaximumNumberOfFragments) {
+                tmpFragmentList.add(tmpLine.split(BenchmarkData.SEPARATOR, 2)[0]);
+            }
+        }
+        return tmpFragmentList;
+    }
+    //
+    /**
+     * Reads the molecule file, every line is returned as array of its columns.
+     *
+     * @param aMaximumNumberOfMolecules maximum number of molecules to read.
+     * @return list of molecule rows
+     * @throws IOException is thrown if the file can not be read.
+     */
+    static List<String[]> readMoleculeRows(int aMaximumNumberOfMolecules) throws IOException {
+        List<String[]> tmpRowList = new ArrayList<>(Math.min(aMaximumNumberOfMolecules, 20000));
+        try (BufferedReader tmpReader = Files.newBufferedReader(BenchmarkData.getFile(BenchmarkData.MOLECULES_FILE_NAME), StandardCharsets.UTF_8)) {
+            // skip header line
+            String tmpLine = tmpReader.readLine();
+            while ((tmpLine = tmpReader.readLine()) != null && tmpRowList.size() < aMaximumNumberOfMolecules) {
+                tmpRowList.add(tmpLine.split(BenchmarkData.SEPARATOR));
+            }
+        }
+        return tmpRowList;
+    }
+    //
+    /**
+     * Creates the fragment-to-frequency map of a molecule row, limited to the given number of fragments.
+     *
+     * @param aRow molecule row split into columns.
+     * @param aMaximumNumberOfFragments maximum number of (different) fragments to take from the row.
+     * @return map of fragment SMILES to their frequencies
+     */
+    static HashMap<String, Integer> toFragmentMap(String[] aRow, int aMaximumNumberOfFragments) {
+        HashMap<String, Integer> tmpFragmentMap = new HashMap<>(aMaximumNumberOfFragments * 2);
+        for (int i = 2; i + 1 < aRow.length && tmpFragmentMap.size() < aMaximumNumberOfFragments; i += 2) {
+            tmpFragmentMap.put(aRow[i], Integer.valueOf(aRow[i + 1].trim()));
+        }
+        return tmpFragmentMap;
+    }
+    //
+    /**
+     * Creates the fragment list of a molecule row in which every fragment occurs as often as its frequency,
+     * limited to the given number of different fragments.
+     *
+     * @param aRow molecule row split into columns.
+     * @param aMaximumNumberOfFragments maximum number of different fragments to take from the row.
+     * @return list of fragment SMILES
+     */
+    static List<String> toFragmentList(String[] aRow, int aMaximumNumberOfFragments) {
+        List<String> tmpFragmentList = new ArrayList<>(aMaximumNumberOfFragments * 2);
+        for (int i = 2, tmpCount = 0; i + 1 < aRow.length && tmpCount < aMaximumNumberOfFragments; i += 2, tmpCount++) {
+            for (int j = Integer.parseInt(aRow[i + 1].trim()); j > 0; j--) {
+                tmpFragmentList.add(aRow[i]);
+            }
+        }
+        return tmpFragmentList;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Returns the path of the given input file.
+     *
+     * @param aFileName name of the file in the data directory.
+     * @return Path
+     */
+    private static Path getFile(String aFileName) {
+        return Paths.get(System.getProperty(BenchmarkData.DATA_DIRECTORY_PROPERTY, BenchmarkData.DEFAULT_DATA_DIRECTORY), aFileName);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,201 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.benchmark;
+
+import de.unijena.cheminf.fragment.fingerprint.FragmentFingerprinter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the fragment-based paths of the FragmentFingerprinter, i.e. the calculation of bit and count
+ * fingerprints and arrays from fragment lists and fragment-to-frequency maps. The key fragments and the molecules
+ * are taken from the 13,000 molecule data set of the performance test CMD application. Every benchmark invocation
+ * processes the next molecule of the data set, so the results are averaged over the whole data set.
+ * Run with "gradlew jmh", optionally restricted via "-PjmhIncludes=&lt;regex&gt;".
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class FragmentFingerprinterBenchmark {
+    //<editor-fold desc="Parameters" defaultstate="collapsed">
+    /**
+     * Number of key fragments the fingerprinter is initialised with, 3988 is the complete fragment file
+     */
+    @Param({"500", "1000", "3988"})
+    public int fragmentSetSize;
+    /**
+     * Maximum number of different fragments taken per molecule
+     */
+    @Param({"5", "10", "20"})
+    public int fragmentsPerMolecule;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Fingerprinter under test
+     */
+    private FragmentFingerprinter fingerprinter;
+    /**
+     * Fragment-to-frequency maps of the molecules
+     */
+    private HashMap<String, Integer>[] fragmentMapArray;
+    /**
+     * Fragment lists of the molecules, fragments occur as often as their frequency
+     */
+    private List<String>[] fragmentListArray;
+    /**
+     * Reused destination array of the fill benchmarks
+     */
+    private int[] destinationArray;
+    /**
+     * Index of the molecule processed by the next invocation
+     */
+    private int moleculeIndex;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Setup" defaultstate="collapsed">
+    /**
+     * Reads the input files and creates the fingerprinter.
+     *
+     * @throws IOException is thrown if the input files can not be read.
+     */
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        List<String> tmpFragmentList = BenchmarkData.readFragments(this.fragmentSetSize);
+        this.fingerprinter = new FragmentFingerprinter(tmpFragmentList);
+        List<String[]> tmpRowList = BenchmarkData.readMoleculeRows(Integer.MAX_VALUE);
+        this.fragmentMapArray = (HashMap<String, Integer>[]) new HashMap<?, ?>[tmpRowList.size()];
+        this.fragmentListArray = (List<String>[]) new List<?>[tmpRowList.size()];
+        for (int i = 0; i < tmpRowList.size(); i++) {
+            this.fragmentMapArray[i] = BenchmarkData.toFragmentMap(tmpRowList.get(i), this.fragmentsPerMolecule);
+            this.fragmentListArray[i] = BenchmarkData.toFragmentList(tmpRowList.get(i), this.fragmentsPerMolecule);
+        }
+        this.destinationArray = new int[this.fingerprinter.getSize()];
+        this.moleculeIndex = 0;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Benchmarks" defaultstate="collapsed">
+    /**
+     * Benchmarks getBitFingerprint(List).
+     *
+     * @return bit fingerprint
+     */
+    @Benchmark
+    public IBitFingerprint bitFingerprintFromList() {
+        return this.fingerprinter.getBitFingerprint(this.fragmentListArray[this.nextMoleculeIndex()]);
+    }
+    //
+    /**
+     * Benchmarks getCountFingerprint(Map).
+     *
+     * @return count fingerprint
+     */
+    @Benchmark
+    public ICountFingerprint countFingerprintFromMap() {
+        return this.fingerprinter.getCountFingerprint(this.fragmentMapArray[this.nextMoleculeIndex()]);
+    }
+    //
+    /**
+     * Benchmarks getCountFingerprint(List).
+     *
+     * @return count fingerprint
+     */
+    @Benchmark
+    public ICountFingerprint countFingerprintFromList() {
+        return this.fingerprinter.getCountFingerprint(this.fragmentListArray[this.nextMoleculeIndex()]);
+    }
+    //
+    /**
+     * Benchmarks getBitArray(List).
+     *
+     * @return bit array
+     */
+    @Benchmark
+    public int[] bitArrayFromList() {
+        return this.fingerprinter.getBitArray(this.fragmentListArray[this.nextMoleculeIndex()]);
+    }
+    //
+    /**
+     * Benchmarks getCountArray(Map).
+     *
+     * @return count array
+     */
+    @Benchmark
+    public int[] countArrayFromMap() {
+        return this.fingerprinter.getCountArray(this.fragmentMapArray[this.nextMoleculeIndex()]);
+    }
+    //
+    /**
+     * Benchmarks fillCountArray(Map, int[], int) with a reused destination array.
+     *
+     * @return destination array
+     */
+    @Benchmark
+    public int[] fillCountArrayFromMap() {
+        this.fingerprinter.fillCountArray(this.fragmentMapArray[this.nextMoleculeIndex()], this.destinationArray, 0);
+        return this.destinationArray;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Returns the index of the molecule to process and advances to the next one.
+     *
+     * @return molecule index
+     */
+    private int nextMoleculeIndex() {
+        int tmpIndex = this.moleculeIndex;
+        this.moleculeIndex = tmpIndex + 1 == this.fragmentMapArray.length ? 0 : tmpIndex + 1;
+        return tmpIndex;
+    }
+    //</editor-fold>
+}
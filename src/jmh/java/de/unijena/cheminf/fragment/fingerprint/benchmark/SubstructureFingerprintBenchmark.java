@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.benchmark;
+
+import de.unijena.cheminf.fragment.fingerprint.FragmentFingerprinter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the substructure-based paths of the FragmentFingerprinter, i.e. the calculation of bit and
+ * count fingerprints of IAtomContainer objects by SMARTS matching of the key fragments. Key fragments and molecules
+ * are taken from the 13,000 molecule data set of the performance test CMD application; since substructure matching
+ * is orders of magnitude slower than the fragment-based paths, only the first molecules of the data set are used.
+ * Every benchmark invocation processes the next molecule.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@State(Scope.Thread)
+public class SubstructureFingerprintBenchmark {
+    //<editor-fold desc="Parameters" defaultstate="collapsed">
+    /**
+     * Number of key fragments the fingerprinter is initialised with
+     */
+    @Param({"100", "500"})
+    public int fragmentSetSize;
+    /**
+     * Number of molecules taken from the data set
+     */
+    @Param({"200"})
+    public int numberOfMolecules;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Fingerprinter under test
+     */
+    private FragmentFingerprinter fingerprinter;
+    /**
+     * Parsed molecules
+     */
+    private IAtomContainer[] moleculeArray;
+    /**
+     * Index of the molecule processed by the next invocation
+     */
+    private int moleculeIndex;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Setup" defaultstate="collapsed">
+    /**
+     * Reads the input files, parses the molecule SMILES and creates the fingerprinter. Molecules whose SMILES can
+     * not be parsed are skipped.
+     *
+     * @throws IOException is thrown if the input files can not be read.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.fingerprinter = new FragmentFingerprinter(BenchmarkData.readFragments(this.fragmentSetSize));
+        SmilesParser tmpSmilesParser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        List<IAtomContainer> tmpMoleculeList = new ArrayList<>(this.numberOfMolecules);
+        for (String[] tmpRow : BenchmarkData.readMoleculeRows(this.numberOfMolecules)) {
+            try {
+                tmpMoleculeList.add(tmpSmilesParser.parseSmiles(tmpRow[1]));
+            } catch (CDKException anException) {
+                // skip molecule
+            }
+        }
+        this.moleculeArray = tmpMoleculeList.toArray(new IAtomContainer[0]);
+        this.moleculeIndex = 0;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Benchmarks" defaultstate="collapsed">
+    /**
+     * Benchmarks getBitFingerprint(IAtomContainer).
+     *
+     * @return bit fingerprint
+     * @throws CDKException if the fingerprint can not be calculated
+     */
+    @Benchmark
+    public IBitFingerprint bitFingerprintFromAtomContainer() throws CDKException {
+        return this.fingerprinter.getBitFingerprint(this.moleculeArray[this.nextMoleculeIndex()]);
+    }
+    //
+    /**
+     * Benchmarks getCountFingerprint(IAtomContainer).
+     *
+     * @return count fingerprint
+     * @throws CDKException if the fingerprint can not be calculated
+     */
+    @Benchmark
+    public ICountFingerprint countFingerprintFromAtomContainer() throws CDKException {
+        return this.fingerprinter.getCountFingerprint(this.moleculeArray[this.nextMoleculeIndex()]);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Returns the index of the molecule to process and advances to the next one.
+     *
+     * @return molecule index
+     */
+    private int nextMoleculeIndex() {
+        int tmpIndex = this.moleculeIndex;
+        this.moleculeIndex = tmpIndex + 1 == this.moleculeArray.length ? 0 : tmpIndex + 1;
+        return tmpIndex;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,377 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Fragment fingerprinter that accepts fragments as arbitrary, i.e. non-canonical, SMILES or as atom containers.
+ * The string-based methods of the {@link IFragmentFingerprinter} expect the unique SMILES of the fragments, exactly
+ * as the predefined fragments were given. This decorator converts every given fragment SMILES into its unique SMILES
+ * via a {@link UniqueSmilesCache} and passes the converted fragments to the decorated fingerprinter. Since fragments
+ * recur very often, most of them are only looked up in the cache instead of being canonicalized again. Frequencies of
+ * different SMILES of the same fragment are summed up. The substructure-based (IAtomContainer) methods are passed on
+ * unchanged.
+ * <br>
+ * The batch methods canonicalize the fragments and calculate the fingerprints of one input after the other in a single
+ * parallel pass, using the single-input methods of the decorated fingerprinter, which therefore has to be
+ * thread-safe. A decorated {@link FragmentFingerprinter}, which caches its last result, is replaced in this pass by a
+ * stateless fingerprinter sharing its fragment dictionary.
+ * <br>
+ * The decorator is thread-safe if the decorated fingerprinter is, e.g. a {@link StatelessFragmentFingerprinter}. One
+ * cache can be shared by several decorators, as long as their predefined fragments were created with the SMILES
+ * flavor of the cache.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class CanonicalizingFragmentFingerprinter implements IFragmentFingerprinter {
+    //<editor-fold desc="private static final class variables" defaultstate="collapsed">
+    /**
+     * Version of the canonicalizing fragment fingerprinter
+     */
+    private static final String CANONICALIZING_FRAGMENT_FINGERPRINTER_VERSION = "1.0.0.0";
+    //</editor-fold>
+    //
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Decorated fingerprinter that calculates the fingerprints of the unique SMILES
+     */
+    private final IFragmentFingerprinter fragmentFingerprinter;
+    /**
+     * Fingerprinter used concurrently by the batch methods, the decorated one or, if that is a
+     * {@link FragmentFingerprinter}, a stateless fingerprinter with the same fragment dictionary
+     */
+    private final IFragmentFingerprinter concurrentFragmentFingerprinter;
+    /**
+     * Cache of the unique SMILES of the given fragments
+     */
+    private final UniqueSmilesCache uniqueSmilesCache;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor, decorates the given fingerprinter with a new cache of the default size that creates unique SMILES
+     * of the flavor {@link org.openscience.cdk.smiles.SmiFlavor#Unique}.
+     *
+     * @param aFragmentFingerprinter fingerprinter whose predefined fragments are unique SMILES.
+     * @throws NullPointerException is thrown if the fingerprinter is null.
+     */
+    public CanonicalizingFragmentFingerprinter(IFragmentFingerprinter aFragmentFingerprinter) throws NullPointerException {
+        this(aFragmentFingerprinter, new UniqueSmilesCache());
+    }
+    //
+    /**
+     * Constructor, decorates the given fingerprinter with the given cache.
+     *
+     * @param aFragmentFingerprinter fingerprinter whose predefined fragments are unique SMILES of the flavor of the
+     *                               cache.
+     * @param aUniqueSmilesCache cache for the unique SMILES, may be shared with other decorators.
+     * @throws NullPointerException is thrown if the fingerprinter or the cache is null.
+     */
+    public CanonicalizingFragmentFingerprinter(IFragmentFingerprinter aFragmentFingerprinter, UniqueSmilesCache aUniqueSmilesCache) throws NullPointerException {
+        Objects.requireNonNull(aFragmentFingerprinter, "aFragmentFingerprinter is null.");
+        Objects.requireNonNull(aUniqueSmilesCache, "aUniqueSmilesCache is null.");
+        this.fragmentFingerprinter = aFragmentFingerprinter;
+        if (aFragmentFingerprinter instanceof FragmentFingerprinter tmpFragmentFingerprinter) {
+            this.concurrentFragmentFingerprinter = new StatelessFragmentFingerprinter(tmpFragmentFingerprinter.getFragmentDictionary());
+        } else {
+            this.concurrentFragmentFingerprinter = aFragmentFingerprinter;
+        }
+        this.uniqueSmilesCache = aUniqueSmilesCache;
+    }
+    //</editor-fold>
+    //
+    // <editor-fold defaultstate="collapsed" desc="Overriden public methods">
+    /**
+     * {@inheritDoc}
+     *
+     * The given fragments may be arbitrary SMILES, they are converted into unique SMILES first.
+     *
+     * @throws NullPointerException is thrown if the list or one of its elements is null.
+     * @throws IllegalArgumentException is thrown if one of the SMILES is blank/empty or can not be parsed.
+     */
+    @Override
+    public IBitFingerprint getBitFingerprint(List<String> aListOfSmiles) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprinter.getBitFingerprint(this.getUniqueSmilesList(aListOfSmiles));
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * The keys of the given map may be arbitrary SMILES, they are converted into unique SMILES first. Frequencies of
+     * SMILES with the same unique SMILES are summed up.
+     *
+     * @throws NullPointerException is thrown if the map or one of its keys or values is null.
+     * @throws IllegalArgumentException is thrown if one of the SMILES is blank/empty or can not be parsed.
+     */
+    @Override
+    public ICountFingerprint getCountFingerprint(Map<String, Integer> aSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprinter.getCountFingerprint(this.getUniqueSmilesToFrequencyMap(aSmilesToFrequencyMap));
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * The given fragments may be arbitrary SMILES, they are converted into unique SMILES first.
+     *
+     * @throws NullPointerException is thrown if the list or one of its elements is null.
+     * @throws IllegalArgumentException is thrown if one of the SMILES is blank/empty or can not be parsed.
+     */
+    @Override
+    public ICountFingerprint getCountFingerprint(List<String> aSmilesList) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprinter.getCountFingerprint(this.getUniqueSmilesList(aSmilesList));
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * The given fragments may be arbitrary SMILES. Every list is converted into unique SMILES and its fingerprint is
+     * calculated in the same task, with the given number of threads.
+     *
+     * @throws NullPointerException is thrown if the collection, one of its lists or one of the list elements is null.
+     * @throws IllegalArgumentException is thrown if one of the SMILES is blank/empty or can not be parsed or if the
+     * parallelism is smaller than 1.
+     */
+    @Override
+    public List<IBitFingerprint> getBitFingerprints(Collection<? extends List<String>> aCollectionOfSmilesLists, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return ParallelFingerprintTask.calculate(aCollectionOfSmilesLists,
+                (List<String> aListOfSmiles) -> this.concurrentFragmentFingerprinter.getBitFingerprint(this.getUniqueSmilesList(aListOfSmiles)),
+                aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * The keys of the given maps may be arbitrary SMILES. Every map is converted into unique SMILES and its
+     * fingerprint is calculated in the same task, with the given number of threads. Frequencies of SMILES with the
+     * same unique SMILES are summed up.
+     *
+     * @throws NullPointerException is thrown if the collection or one of its maps is null or if a map contains
+     * keys or values that are null.
+     * @throws IllegalArgumentException is thrown if one of the SMILES is blank/empty or can not be parsed or if the
+     * parallelism is smaller than 1.
+     */
+    @Override
+    public List<ICountFingerprint> getCountFingerprints(Collection<? extends Map<String, Integer>> aCollectionOfSmilesToFrequencyMaps, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return ParallelFingerprintTask.calculate(aCollectionOfSmilesToFrequencyMaps,
+                (Map<String, Integer> aSmilesToFrequencyMap) -> this.concurrentFragmentFingerprinter.getCountFingerprint(this.getUniqueSmilesToFrequencyMap(aSmilesToFrequencyMap)),
+                aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getVersionDescription() {
+        StringBuilder tmpVersionDescriptionBuilder = new StringBuilder();
+        tmpVersionDescriptionBuilder.append(getClass().getSimpleName()).append("/").append(CanonicalizingFragmentFingerprinter.CANONICALIZING_FRAGMENT_FINGERPRINTER_VERSION)
+                .append(' ').append(this.fragmentFingerprinter.getVersionDescription());
+        return tmpVersionDescriptionBuilder.toString();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BitSet getFingerprint(IAtomContainer mol) throws CDKException {
+        return this.fragmentFingerprinter.getFingerprint(mol);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IBitFingerprint getBitFingerprint(IAtomContainer container) throws CDKException {
+        return this.fragmentFingerprinter.getBitFingerprint(container);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ICountFingerprint getCountFingerprint(IAtomContainer container) throws CDKException {
+        return this.fragmentFingerprinter.getCountFingerprint(container);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IBitFingerprint getBitFingerprint(IAtomContainer aMolecule, int aParallelism) throws CDKException {
+        return this.fragmentFingerprinter.getBitFingerprint(aMolecule, aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ICountFingerprint getCountFingerprint(IAtomContainer aMolecule, int aParallelism) throws CDKException {
+        return this.fragmentFingerprinter.getCountFingerprint(aMolecule, aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CombinedFragmentFingerprint getCombinedFingerprint(IAtomContainer aMolecule) throws CDKException {
+        return this.fragmentFingerprinter.getCombinedFingerprint(aMolecule);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Integer> getRawFingerprint(IAtomContainer container) throws CDKException {
+        return this.fragmentFingerprinter.getRawFingerprint(container);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSize() {
+        return this.fragmentFingerprinter.getSize();
+    }
+    // </editor-fold>
+    //
+    // <editor-fold defaultstate="collapsed" desc="Public methods">
+    /**
+     * Calculates the bit fingerprint of the given fragments, e.g. the fragments of one molecule generated by a CDK
+     * fragmenter. The unique SMILES of the fragments are obtained via the cache.
+     *
+     * @param aFragmentCollection fragments given as atom containers.
+     * @return bit fingerprint
+     * @throws NullPointerException is thrown if the collection or one of its fragments is null.
+     * @throws IllegalArgumentException is thrown if one of the fragments can not be written as SMILES.
+     */
+    public IBitFingerprint getBitFingerprintOfFragments(Collection<? extends IAtomContainer> aFragmentCollection) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprinter.getBitFingerprint(this.getUniqueSmilesListOfFragments(aFragmentCollection));
+    }
+    //
+    /**
+     * Calculates the count fingerprint of the given fragments, e.g. the fragments of one molecule generated by a CDK
+     * fragmenter. Every fragment counts once, i.e. a fragment that occurs several times has to be contained several
+     * times. The unique SMILES of the fragments are obtained via the cache.
+     *
+     * @param aFragmentCollection fragments given as atom containers.
+     * @return count fingerprint
+     * @throws NullPointerException is thrown if the collection or one of its fragments is null.
+     * @throws IllegalArgumentException is thrown if one of the fragments can not be written as SMILES.
+     */
+    public ICountFingerprint getCountFingerprintOfFragments(Collection<? extends IAtomContainer> aFragmentCollection) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprinter.getCountFingerprint(this.getUniqueSmilesListOfFragments(aFragmentCollection));
+    }
+    //
+    /**
+     * Returns the decorated fingerprinter.
+     *
+     * @return fingerprinter that receives the unique SMILES
+     */
+    public IFragmentFingerprinter getFragmentFingerprinter() {
+        return this.fragmentFingerprinter;
+    }
+    //
+    /**
+     * Returns the cache of the unique SMILES.
+     *
+     * @return unique SMILES cache
+     */
+    public UniqueSmilesCache getUniqueSmilesCache() {
+        return this.uniqueSmilesCache;
+    }
+    // </editor-fold>
+    //
+    // <editor-fold defaultstate="collapsed" desc="Private methods">
+    /**
+     * Converts the given SMILES into unique SMILES, keeping their order.
+     *
+     * @param aListOfSmiles SMILES of fragments.
+     * @return new list of unique SMILES
+     * @throws NullPointerException is thrown if the list or one of its elements is null.
+     * @throws IllegalArgumentException is thrown if one of the SMILES is blank/empty or can not be parsed.
+     */
+    private List<String> getUniqueSmilesList(List<String> aListOfSmiles) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aListOfSmiles, "aListOfSmiles (list of string instances) is null.");
+        List<String> tmpUniqueSmilesList = new ArrayList<>(aListOfSmiles.size());
+        for (String tmpSmiles : aListOfSmiles) {
+            Objects.requireNonNull(tmpSmiles, "aListOfSmiles (at least one list element) is null.");
+            tmpUniqueSmilesList.add(this.uniqueSmilesCache.getUniqueSmiles(tmpSmiles));
+        }
+        return tmpUniqueSmilesList;
+    }
+    //
+    /**
+     * Converts the keys of the given map into unique SMILES, summing up the frequencies of keys with the same unique
+     * SMILES.
+     *
+     * @param aSmilesToFrequencyMap map of fragment SMILES to frequencies.
+     * @return new map of unique SMILES to frequencies
+     * @throws NullPointerException is thrown if the map or one of its keys or values is null.
+     * @throws IllegalArgumentException is thrown if one of the SMILES is blank/empty or can not be parsed.
+     * @throws ArithmeticException is thrown if a summed up frequency overflows.
+     */
+    private Map<String, Integer> getUniqueSmilesToFrequencyMap(Map<String, Integer> aSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException, ArithmeticException {
+        Objects.requireNonNull(aSmilesToFrequencyMap, "aSmilesToFrequencyMap (Map of string and integer instances) is null.");
+        Map<String, Integer> tmpUniqueSmilesToFrequencyMap = new HashMap<>((int) (aSmilesToFrequencyMap.size() / 0.75f) + 1);
+        for (Map.Entry<String, Integer> tmpEntry : aSmilesToFrequencyMap.entrySet()) {
+            if (tmpEntry.getKey() == null || tmpEntry.getValue() == null) {
+                throw new NullPointerException("aSmilesToFrequencyMap (Map of string and integer instances) contains instances that are null.");
+            }
+            tmpUniqueSmilesToFrequencyMap.merge(this.uniqueSmilesCache.getUniqueSmiles(tmpEntry.getKey()), tmpEntry.getValue(), Math::addExact);
+        }
+        return tmpUniqueSmilesToFrequencyMap;
+    }
+    //
+    /**
+     * Converts the given fragments into unique SMILES, keeping their order.
+     *
+     * @param aFragmentCollection fragments given as atom containers.
+     * @return new list of unique SMILES
+     * @throws NullPointerException is thrown if the collection or one of its fragments is null.
+     * @throws IllegalArgumentException is thrown if one of the fragments can not be written as SMILES.
+     */
+    private List<String> getUniqueSmilesListOfFragments(Collection<? extends IAtomContainer> aFragmentCollection) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aFragmentCollection, "aFragmentCollection is null.");
+        List<String> tmpUniqueSmilesList = new ArrayList<>(aFragmentCollection.size());
+        for (IAtomContainer tmpFragment : aFragmentCollection) {
+            Objects.requireNonNull(tmpFragment, "aFragmentCollection (at least one fragment) is null.");
+            tmpUniqueSmilesList.add(this.uniqueSmilesCache.getUniqueSmiles(tmpFragment));
+        }
+        return tmpUniqueSmilesList;
+    }
+    // </editor-fold>
+}
@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Result of one substructure matching pass of a molecule against all predefined fragments, from which the bit, the
+ * count and the raw fingerprint are derived without matching the molecule again. It holds the number of unique
+ * matches of every fragment, as counted by the CDK SubstructureFingerprinter; a bit is set if the count is greater
+ * than zero.
+ * <br>Instances are immutable. Every call of one of the fingerprint methods creates a new fingerprint object.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class CombinedFragmentFingerprint {
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Dictionary of the predefined fragments, i.e. the fragment SMILES of the positions
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Number of unique matches of every fragment, indexed by position
+     */
+    private final int[] counts;
+    /**
+     * Number of fragments with at least one match
+     */
+    private final int numberOfMatchingFragments;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor. The count array is not copied.
+     *
+     * @param aFragmentDictionary dictionary of the predefined fragments.
+     * @param aCountArray number of unique matches of every fragment, indexed by position.
+     * @throws NullPointerException is thrown if the dictionary or the array is null.
+     * @throws IllegalArgumentException is thrown if the array length differs from the dictionary size.
+     */
+    CombinedFragmentFingerprint(FragmentDictionary aFragmentDictionary, int[] aCountArray) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        Objects.requireNonNull(aCountArray, "aCountArray is null.");
+        if (aCountArray.length != aFragmentDictionary.size()) {
+            throw new IllegalArgumentException("aCountArray must have one count per fragment of the dictionary.");
+        }
+        this.fragmentDictionary = aFragmentDictionary;
+        this.counts = aCountArray;
+        int tmpNumberOfMatchingFragments = 0;
+        for (int tmpCount : aCountArray) {
+            if (tmpCount != 0) {
+                tmpNumberOfMatchingFragments++;
+            }
+        }
+        this.numberOfMatchingFragments = tmpNumberOfMatchingFragments;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the bit fingerprint with the positions of the matching fragments set, like
+     * {@link FragmentFingerprinter#getBitFingerprint(org.openscience.cdk.interfaces.IAtomContainer)}.
+     *
+     * @return bit fingerprint
+     */
+    public IBitFingerprint getBitFingerprint() {
+        return new BitSetFingerprint(SubstructureKeyMatcher.toBitSet(this.counts));
+    }
+    //
+    /**
+     * Returns the count fingerprint with the number of unique matches of every fragment, like
+     * {@link FragmentFingerprinter#getCountFingerprint(org.openscience.cdk.interfaces.IAtomContainer)}. It is in the
+     * default dense mode, i.e. every fragment is a populated bin.
+     *
+     * @return count fingerprint
+     */
+    public CountFingerprint getCountFingerprint() {
+        return SubstructureKeyMatcher.toCountFingerprint(this.counts, this.fragmentDictionary);
+    }
+    //
+    /**
+     * Returns the raw fingerprint, i.e. a map of the unique SMILES of the matching fragments to their numbers of
+     * unique matches. Fragments without a match are not contained.
+     *
+     * @return new modifiable map of fragment SMILES to match counts
+     */
+    public Map<String, Integer> getRawFingerprint() {
+        Map<String, Integer> tmpRawFingerprint = new HashMap<>((int) (this.numberOfMatchingFragments / 0.75f) + 1);
+        for (int i = 0; i < this.counts.length; i++) {
+            if (this.counts[i] != 0) {
+                tmpRawFingerprint.put(this.fragmentDictionary.getFragment(i), this.counts[i]);
+            }
+        }
+        return tmpRawFingerprint;
+    }
+    //
+    /**
+     * Returns the number of unique matches of the fragment at the given position.
+     *
+     * @param aPosition position of the fragment.
+     * @return number of unique matches, 0 if the fragment does not match
+     * @throws IllegalArgumentException is thrown if the position is not present in the fingerprint.
+     */
+    public int getCount(int aPosition) throws IllegalArgumentException {
+        if (aPosition < 0 || aPosition >= this.counts.length) {
+            throw new IllegalArgumentException("This position does not exist in the fingerprint (undefined state).");
+        }
+        return this.counts[aPosition];
+    }
+    //
+    /**
+     * Returns the number of fragments with at least one match, i.e. the number of set bits.
+     *
+     * @return number of matching fragments
+     */
+    public int getNumberOfMatchingFragments() {
+        return this.numberOfMatchingFragments;
+    }
+    //
+    /**
+     * Returns the size of the fingerprint, i.e. the number of predefined fragments.
+     *
+     * @return fingerprint size
+     */
+    public int getSize() {
+        return this.counts.length;
+    }
+    //</editor-fold>
+}
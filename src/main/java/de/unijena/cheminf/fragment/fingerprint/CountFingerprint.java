@@ -26,7 +26,9 @@ package de.unijena.cheminf.fragment.fingerprint;
 
 import org.openscience.cdk.fingerprint.ICountFingerprint;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -42,23 +44,38 @@ import java.util.Objects;
  * @version 1.0.0.0
  */
 public class CountFingerprint implements ICountFingerprint {
+    //<editor-fold desc="Public interfaces" defaultstate="collapsed">
+    /**
+     * Receives the populated bins of a count fingerprint, see {@link #forEachPopulatedBin(HashCountConsumer)}.
+     */
+    @FunctionalInterface
+    public interface HashCountConsumer {
+        /**
+         * Called for one populated bin.
+         *
+         * @param aHash hash value, i.e. position of the bin in the fingerprint.
+         * @param aCount frequency in the bin, 1 if the fingerprint behaves as bit fingerprint.
+         */
+        void accept(int aHash, int aCount);
+    }
+    //</editor-fold>
+    //
     //<editor-fold desc="private final class variables" defaultstate="collapsed">
     /**
-     * Result Map of a count fingerprint. When the count fingerprint is created, if there is a match between
-     * the key fragments/unique SMILES and the passed fragments with the corresponding frequencies,
-     * the position of the key fragment assigned to it during initialization is mapped
-     * to the frequency of this fragment in the molecule. So, in this map, only the positions and frequencies of
-     * the fragments are stored if a match has occurred. In the following, the map can also be referred to as a raw map.
+     * Positions of the key fragments that occur in the molecule (or any set of fragments), sorted in ascending
+     * order. Together with the count array, it is the sparse representation of the count fingerprint: only the
+     * positions with a frequency different from zero are stored, as primitive ints.
      */
-    private final HashMap<Integer,Integer> uniqueSmilesPositionToFrequencyCountRawMap;
+    private final int[] positionArray;
     /**
-     * Key fragments that are set when the fingerprinter is initialized.
+     * Frequencies of the key fragments at the positions stored at the same index in the position array.
      */
-    private final String[] predefinedFragmentSmiles;
+    private final int[] countArray;
     /**
-     * Initial capacity value for maps
+     * The dictionary maps the predefined (key) fragments/unique SMILES to the position they have in the fingerprint.
+     * Count fingerprints created by a fingerprinter all reference the dictionary of the fingerprinter.
      */
-    private final double INITIAL_CAPACITY_VALUE = 1.5;
+    private final FragmentDictionary fragmentDictionary;
     //</editor-fold>
     //
     //<editor-fold desc="private class variables" defaultstate="collapsed">
@@ -68,9 +85,11 @@ public class CountFingerprint implements ICountFingerprint {
      */
     private boolean behaveAsBitFingerprint;
     /**
-     * The HashMap maps the predefined (key) fragments/unique SMILES to the position they have in the fingerprint.
+     * changes the indexing of the bins. If sparseMode == true, only the populated bins, i.e. the bins with a
+     * frequency different from 0, are indexed by {@link #numOfPopulatedbins()}, {@link #getHash(int)} and
+     * {@link #getCount(int)}, like in the hashed count fingerprints of the CDK. Otherwise, all bins are indexed.
      */
-    private HashMap<String,Integer> uniqueSmilesToPositionMap;
+    private boolean sparseMode;
     //</editor-fold>
     //
     //<editor-fold desc="Constructor" defaultstate="collapsed">
@@ -104,10 +123,77 @@ public class CountFingerprint implements ICountFingerprint {
                         "instances that are null.");
             }
         }
-        this.predefinedFragmentSmiles = anArrayOfFragments;
-        this.buildUniqueSmilesToPositionMap();
-        this.uniqueSmilesPositionToFrequencyCountRawMap = aPositionToFrequencyMap;
+        this.fragmentDictionary = new FragmentDictionary(anArrayOfFragments);
+        int[] tmpPositionArray = new int[aPositionToFrequencyMap.size()];
+        int[] tmpCountArray = new int[aPositionToFrequencyMap.size()];
+        int tmpIndex = 0;
+        for (Map.Entry<Integer, Integer> tmpEntry : aPositionToFrequencyMap.entrySet()) {
+            tmpPositionArray[tmpIndex] = tmpEntry.getKey();
+            tmpCountArray[tmpIndex] = tmpEntry.getValue();
+            tmpIndex++;
+        }
+        int[][] tmpSortedArrays = CountFingerprint.sortAndMerge(tmpPositionArray, tmpCountArray, tmpIndex);
+        this.positionArray = tmpSortedArrays[0];
+        this.countArray = tmpSortedArrays[1];
         this.behaveAsBitFingerprint = false;
+        this.sparseMode = false;
+    }
+    //
+    /**
+     * Constructor.
+     * Initialization of CountFingerprint with the already validated dictionary of a fingerprinter. The dictionary is
+     * shared and not copied, so the cost of the construction only depends on the number of populated bins.
+     * The positions and frequencies are given as (position, frequency) pairs at the same index of the two arrays,
+     * in arbitrary order. Frequencies of positions that occur more than once are summed up, so a list of fragments
+     * can be passed with a frequency of 1 for every occurrence. The parameters are not checked for validity.
+     *
+     * @param aFragmentDictionary dictionary of the predefined (key) fragments the fingerprint is based on.
+     * @param aPositionArray positions of key fragments in the fingerprint.
+     * @param aCountArray frequencies of the key fragments at the positions given at the same index.
+     * @param aLength number of (position, frequency) pairs to take from the arrays.
+     */
+    CountFingerprint(FragmentDictionary aFragmentDictionary, int[] aPositionArray, int[] aCountArray, int aLength) {
+        this.fragmentDictionary = aFragmentDictionary;
+        int[][] tmpSortedArrays = CountFingerprint.sortAndMerge(aPositionArray, aCountArray, aLength);
+        this.positionArray = tmpSortedArrays[0];
+        this.countArray = tmpSortedArrays[1];
+        this.behaveAsBitFingerprint = false;
+        this.sparseMode = false;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static methods" defaultstate="collapsed">
+    /**
+     * Creates a count fingerprint from (position, frequency) pairs that were already resolved against the given
+     * dictionary, e.g. by a parser working on the raw bytes of an input file. The pairs are given at the same
+     * index of the two arrays, in arbitrary order; frequencies of positions that occur more than once are summed up.
+     * The arrays are not modified and not referenced by the fingerprint.
+     *
+     * @param aFragmentDictionary dictionary of the predefined (key) fragments the fingerprint is based on.
+     * @param aPositionArray positions of key fragments in the fingerprint.
+     * @param aCountArray frequencies of the key fragments at the positions given at the same index.
+     * @param aLength number of (position, frequency) pairs to take from the arrays.
+     * @return CountFingerprint
+     * @throws NullPointerException is thrown if the dictionary or one of the arrays is null.
+     * @throws IllegalArgumentException is thrown if aLength exceeds one of the arrays, or if a position is not
+     * present in the dictionary or a frequency is negative.
+     */
+    public static CountFingerprint fromPositions(FragmentDictionary aFragmentDictionary, int[] aPositionArray, int[] aCountArray, int aLength) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        Objects.requireNonNull(aPositionArray, "aPositionArray is null.");
+        Objects.requireNonNull(aCountArray, "aCountArray is null.");
+        if (aLength < 0 || aLength > aPositionArray.length || aLength > aCountArray.length) {
+            throw new IllegalArgumentException("aLength exceeds the given arrays.");
+        }
+        for (int i = 0; i < aLength; i++) {
+            if (aPositionArray[i] < 0 || aPositionArray[i] >= aFragmentDictionary.size()) {
+                throw new IllegalArgumentException("aPositionArray contains a position that does not exist in the fingerprint.");
+            }
+            if (aCountArray[i] < 0) {
+                throw new IllegalArgumentException("aCountArray contains a negative frequency.");
+            }
+        }
+        return new CountFingerprint(aFragmentDictionary, aPositionArray, aCountArray, aLength);
     }
     //</editor-fold>
     //
@@ -123,7 +209,7 @@ public class CountFingerprint implements ICountFingerprint {
      */
     @Override
     public long size() {
-        return this.uniqueSmilesToPositionMap.size();
+        return this.fragmentDictionary.size();
     }
     //
     /**
@@ -133,11 +219,16 @@ public class CountFingerprint implements ICountFingerprint {
      * therefore the number of populated bins corresponds to the number of predefined fragments (unique SMILES).
      * If the list of key fragments passed during initialization does not contain duplicates, otherwise the size
      * of the fingerprint may be smaller than the number of fragments passed since duplicates are removed/ignored.
+     * In sparse mode, the number of bins with a frequency different from 0 is returned instead.
      *
+     * @see #setSparseMode(boolean)
      */
     @Override
     public int numOfPopulatedbins() {
-        return this.uniqueSmilesToPositionMap.size();
+        if (this.sparseMode) {
+            return this.positionArray.length;
+        }
+        return this.fragmentDictionary.size();
     }
     //
     /**
@@ -149,21 +240,23 @@ public class CountFingerprint implements ICountFingerprint {
      * The size of the fingerprint corresponds to the number of predefined fragments passed during initialization.
      * However, if duplicates are included, they are ignored and are not a part of the fingerprint multiple times.
      * The size of the fingerprint in this case is then different from the number of predefined fragments.
+     * In sparse mode, the index refers to the populated bins in ascending order of their positions and must be
+     * smaller than {@link #numOfPopulatedbins()}.
      *
      * @throws IllegalArgumentException is thrown if the given index does not exist in the fingerprint.
      */
     @Override
     public int getCount(int index) throws IllegalArgumentException {
-        if (index >= this.uniqueSmilesToPositionMap.size() || index < 0) {
-            throw new IllegalArgumentException("This position does not exist in the fingerprint (undefined state).");
-        } else if (index >= 0 && this.uniqueSmilesPositionToFrequencyCountRawMap.containsKey(index)) {
-            if (this.behaveAsBitFingerprint) {
-                return 1;
-            } else {
-                return this.uniqueSmilesPositionToFrequencyCountRawMap.get(index);
+        if (this.sparseMode) {
+            if (index >= this.positionArray.length || index < 0) {
+                throw new IllegalArgumentException("This populated bin does not exist in the fingerprint (undefined state).");
             }
+            return this.behaveAsBitFingerprint ? 1 : this.countArray[index];
+        }
+        if (index >= this.fragmentDictionary.size() || index < 0) {
+            throw new IllegalArgumentException("This position does not exist in the fingerprint (undefined state).");
         } else {
-            return 0;
+            return this.countAtPosition(index);
         }
     }
     //
@@ -171,19 +264,23 @@ public class CountFingerprint implements ICountFingerprint {
      * {@inheritDoc}
      *
      * Since this is a key-based fingerprint, the hash value is  the position of the bin in the
-     * fingerprint (no hash value is calculated).
+     * fingerprint (no hash value is calculated). The method only checks the given index and does not allocate.
+     * In sparse mode, the position of the populated bin with the given index is returned.
      *
+     * @throws IllegalArgumentException is thrown if the given index does not exist in the fingerprint.
      */
     @Override
-    public int getHash(int index) {
-        String[] tmpPredefinedFragmentsInArray = new String[this.uniqueSmilesToPositionMap.size()];
-        for(String tmpKeyFragmentPositionInFingerprint : this.uniqueSmilesToPositionMap.keySet()) {
-            tmpPredefinedFragmentsInArray[this.uniqueSmilesToPositionMap.get(tmpKeyFragmentPositionInFingerprint)] = tmpKeyFragmentPositionInFingerprint;
+    public int getHash(int index) throws IllegalArgumentException {
+        if (this.sparseMode) {
+            if (index >= this.positionArray.length || index < 0) {
+                throw new IllegalArgumentException("This populated bin does not exist in the fingerprint (undefined state).");
+            }
+            return this.positionArray[index];
         }
-        if(index >= tmpPredefinedFragmentsInArray.length || index < 0 ) {
+        if(index >= this.fragmentDictionary.size() || index < 0 ) {
             throw new IllegalArgumentException("This hash value/position does not exist in the fingerprint (undefined state).");
         }
-        return this.uniqueSmilesToPositionMap.get(tmpPredefinedFragmentsInArray[index]);
+        return index;
     }
     //
     /**
@@ -209,13 +306,16 @@ public class CountFingerprint implements ICountFingerprint {
      * {@inheritDoc}
      *
      * The parameter hash is not a calculated hash value, but also corresponds to the
-     * position of the bin in the fingerprint.
+     * position of the bin in the fingerprint. In sparse mode, only the positions of populated bins are contained.
      *
      * @throws IllegalArgumentException is thrown if the given hash value is negative.
      */
     @Override
     public boolean hasHash(int hash) throws IllegalArgumentException {
-        if(hash < this.uniqueSmilesToPositionMap.size() && hash >= 0) {
+        if (this.sparseMode && hash >= 0) {
+            return Arrays.binarySearch(this.positionArray, hash) >= 0;
+        }
+        if(hash < this.fragmentDictionary.size() && hash >= 0) {
             return true;
         } else if (hash < 0) {
             throw new IllegalArgumentException("Negative values are not allowed.");
@@ -238,16 +338,10 @@ public class CountFingerprint implements ICountFingerprint {
      */
     @Override
     public int getCountForHash(int hash) throws IllegalArgumentException {
-        if (hash >= this.uniqueSmilesToPositionMap.size() || hash < 0) {
+        if (hash >= this.fragmentDictionary.size() || hash < 0) {
             throw new IllegalArgumentException("This position does not exist in the fingerprint (undefined state).");
-        } else if (hash >= 0 && this.uniqueSmilesPositionToFrequencyCountRawMap.containsKey(hash)) {
-            if (this.behaveAsBitFingerprint) {
-                return 1;
-            } else {
-                return this.uniqueSmilesPositionToFrequencyCountRawMap.get(hash);
-            }
         } else {
-            return 0;
+            return this.countAtPosition(hash);
         }
     }
     //</editor-fold>
@@ -261,73 +355,159 @@ public class CountFingerprint implements ICountFingerprint {
      * @throws IllegalArgumentException is thrown if the given SMILES string is not a key fragment.
      */
     public int count(String aSmiles) throws IllegalArgumentException {
-        if(!this.uniqueSmilesToPositionMap.containsKey(aSmiles)) {
+        int tmpPosition = aSmiles == null ? FragmentDictionary.NOT_FOUND : this.fragmentDictionary.getPosition(aSmiles);
+        if(tmpPosition == FragmentDictionary.NOT_FOUND) {
             throw new IllegalArgumentException("The given SMILES string is not available");
         }
-        int tmpPosition =  this.uniqueSmilesToPositionMap.get(aSmiles);
-        if(this.uniqueSmilesPositionToFrequencyCountRawMap.containsKey(tmpPosition)) {
-            if(this.behaveAsBitFingerprint) {
-                return 1;
-            } else {
-                return this.uniqueSmilesPositionToFrequencyCountRawMap.get(tmpPosition);
-            }
-        } else {
-            return 0;
+        return this.countAtPosition(tmpPosition);
+    }
+    //
+    /**
+     * Switches the indexing of the bins between dense (default) and sparse mode. In dense mode, every bin of the
+     * fingerprint is indexed, i.e. {@link #numOfPopulatedbins()} returns the size of the fingerprint and
+     * {@link #getHash(int)} returns the given index. In sparse mode, only the bins with a frequency different from 0
+     * are indexed, so CDK code like the Tanimoto calculation, which iterates from 0 to {@link #numOfPopulatedbins()},
+     * only takes time proportional to the number of fragments that occur in the molecule.
+     * The methods {@link #size()}, {@link #getCountForHash(int)} and {@link #count(String)} are not affected.
+     *
+     * @param aSparseMode true to index only the populated bins.
+     */
+    public void setSparseMode(boolean aSparseMode) {
+        this.sparseMode = aSparseMode;
+    }
+    //
+    /**
+     * Returns whether only the populated bins are indexed.
+     *
+     * @return true if the fingerprint is in sparse mode.
+     * @see #setSparseMode(boolean)
+     */
+    public boolean isSparseMode() {
+        return this.sparseMode;
+    }
+    //
+    /**
+     * Passes the hash value (position) and frequency of every populated bin, i.e. every bin with a frequency
+     * different from 0, to the given consumer, in ascending order of the positions. In contrast to iterating over
+     * all bins with {@link #getHash(int)} and {@link #getCount(int)}, this only takes time proportional to the number
+     * of fragments that occur in the molecule.
+     *
+     * @param aConsumer receives the hash value and frequency of each populated bin.
+     * @throws NullPointerException is thrown if the given consumer is null.
+     */
+    public void forEachPopulatedBin(HashCountConsumer aConsumer) throws NullPointerException {
+        Objects.requireNonNull(aConsumer, "aConsumer is null.");
+        for (int i = 0; i < this.positionArray.length; i++) {
+            aConsumer.accept(this.positionArray[i], this.behaveAsBitFingerprint ? 1 : this.countArray[i]);
         }
     }
     //
     /**
      * Method for merging the given fingerprint fp into a current fingerprint.
      * Merging is intended only for count fingerprints generated from the same fragment set.
+     * The merged fingerprint is in sparse mode if this fingerprint is.
      *
      * @param aCountFingerprint to be merged
      * @return CountFingerprint, i.e. a merged count fingerprint.
      */
     public CountFingerprint mergedCountFingerprint(CountFingerprint aCountFingerprint) {
-        if(this.uniqueSmilesToPositionMap.size() != aCountFingerprint.size()) {
+        if(this.fragmentDictionary.size() != aCountFingerprint.size()) {
             throw new IllegalArgumentException("The two fingerprints are not the same size. Is only possible with" +
                     "fingerprints that come from the same fragment set.");
         }
-        HashMap<Integer, Integer> tmpRawMap = new HashMap<>(this.uniqueSmilesPositionToFrequencyCountRawMap);
-        for(int tmpKey : aCountFingerprint.getRawMap().keySet()) {
-            if (tmpRawMap.containsKey(tmpKey)) {
-                tmpRawMap.put(tmpKey, tmpRawMap.get(tmpKey) + aCountFingerprint.getRawMap().get(tmpKey));
-            } else {
-                tmpRawMap.put(tmpKey, aCountFingerprint.getRawMap().get(tmpKey));
-            }
+        int tmpLength = this.positionArray.length + aCountFingerprint.positionArray.length;
+        int[] tmpPositionArray = Arrays.copyOf(this.positionArray, tmpLength);
+        int[] tmpCountArray = Arrays.copyOf(this.countArray, tmpLength);
+        System.arraycopy(aCountFingerprint.positionArray, 0, tmpPositionArray, this.positionArray.length, aCountFingerprint.positionArray.length);
+        System.arraycopy(aCountFingerprint.countArray, 0, tmpCountArray, this.countArray.length, aCountFingerprint.countArray.length);
+        CountFingerprint tmpMergedCountFingerprint = new CountFingerprint(this.fragmentDictionary, tmpPositionArray, tmpCountArray, tmpLength);
+        tmpMergedCountFingerprint.setSparseMode(this.sparseMode);
+        return tmpMergedCountFingerprint;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Returns the dictionary of the predefined (key) fragments the fingerprint is based on.
+     *
+     * @return FragmentDictionary
+     */
+    FragmentDictionary getFragmentDictionary() {
+        return this.fragmentDictionary;
+    }
+    //
+    /**
+     * Writes the frequencies of the populated bins into the given array at the offset plus their positions,
+     * independent of the behaviour as bit fingerprint. The other elements of the array are not changed.
+     *
+     * @param aDestination array of at least the offset plus the size of the fingerprint.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     */
+    void writeCountsTo(int[] aDestination, int anOffset) {
+        for (int i = 0; i < this.positionArray.length; i++) {
+            aDestination[anOffset + this.positionArray[i]] = this.countArray[i];
         }
-        return new CountFingerprint(this.predefinedFragmentSmiles,tmpRawMap);
     }
     //</editor-fold>
     //
     //<editor-fold desc="Private method" defaultstate="collapsed">
     /**
-     * Returns the raw map of a count fingerprint
+     * Returns the frequency stored for the given position, or 1 if the fingerprint behaves as bit fingerprint and the
+     * position is populated. The position is looked up by binary search in the sorted position array.
      *
-     * @return HashMap<Integer,Integer> raw map
+     * @param aPosition position in the fingerprint.
+     * @return int count value, 0 if the position is not populated.
      */
-    private HashMap<Integer, Integer> getRawMap() {
-        return this.uniqueSmilesPositionToFrequencyCountRawMap;
+    private int countAtPosition(int aPosition) {
+        int tmpIndex = Arrays.binarySearch(this.positionArray, aPosition);
+        if (tmpIndex < 0) {
+            return 0;
+        }
+        return this.behaveAsBitFingerprint ? 1 : this.countArray[tmpIndex];
     }
     //
     /**
-     * The key fragments defined during initialization are stored in a map.
-     * The map maps the key fragments to their positions in the fingerprint.
+     * Sorts the given (position, frequency) pairs by position, sums up the frequencies of equal positions and removes
+     * the pairs with a frequency of 0. The pairs are packed into longs for sorting, position in the upper and
+     * frequency in the lower 32 bits, so the sort does not need boxing or an index array.
      *
-     * @return HashMap<String,Integer>
+     * @param aPositionArray positions in arbitrary order.
+     * @param aCountArray frequencies at the same index as their positions.
+     * @param aLength number of pairs to take from the arrays.
+     * @return int[][] with the sorted position array at index 0 and the count array at index 1.
      */
-    private HashMap<String, Integer> buildUniqueSmilesToPositionMap() {
-        this.uniqueSmilesToPositionMap = new HashMap<>((int) (this.predefinedFragmentSmiles.length*this.INITIAL_CAPACITY_VALUE), 0.75f);
-        int tmpValuePosition = 0;
-        for (String tmpKey : this.predefinedFragmentSmiles) {
-            if(!this.uniqueSmilesToPositionMap.containsKey(tmpKey)) {
-                this.uniqueSmilesToPositionMap.put(tmpKey, tmpValuePosition);
-                tmpValuePosition++;
+    private static int[][] sortAndMerge(int[] aPositionArray, int[] aCountArray, int aLength) {
+        long[] tmpPairArray = new long[aLength];
+        for (int i = 0; i < aLength; i++) {
+            tmpPairArray[i] = ((long) aPositionArray[i] << 32) | (aCountArray[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(tmpPairArray);
+        int[] tmpPositionArray = new int[aLength];
+        int[] tmpCountArray = new int[aLength];
+        int tmpSize = 0;
+        for (long tmpPair : tmpPairArray) {
+            int tmpPosition = (int) (tmpPair >> 32);
+            if (tmpSize > 0 && tmpPositionArray[tmpSize - 1] == tmpPosition) {
+                tmpCountArray[tmpSize - 1] += (int) tmpPair;
             } else {
-                continue;
+                tmpPositionArray[tmpSize] = tmpPosition;
+                tmpCountArray[tmpSize] = (int) tmpPair;
+                tmpSize++;
+            }
+        }
+        int tmpNonZeroSize = 0;
+        for (int i = 0; i < tmpSize; i++) {
+            if (tmpCountArray[i] != 0) {
+                tmpPositionArray[tmpNonZeroSize] = tmpPositionArray[i];
+                tmpCountArray[tmpNonZeroSize] = tmpCountArray[i];
+                tmpNonZeroSize++;
             }
         }
-        return this.uniqueSmilesToPositionMap;
+        if (tmpNonZeroSize < aLength) {
+            tmpPositionArray = Arrays.copyOf(tmpPositionArray, tmpNonZeroSize);
+            tmpCountArray = Arrays.copyOf(tmpCountArray, tmpNonZeroSize);
+        }
+        return new int[][] {tmpPositionArray, tmpCountArray};
     }
     //</editor-fold>
 }
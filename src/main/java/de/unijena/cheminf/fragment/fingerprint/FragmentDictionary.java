@@ -0,0 +1,519 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable dictionary that maps the predefined (key) fragments, given as unique SMILES, to their positions in the
+ * fingerprint. Fragments are numbered in the order of their first occurrence, duplicates are ignored.
+ * <br>
+ * In contrast to a HashMap&lt;String, Integer&gt;, the dictionary stores the positions as primitive ints in an
+ * open-addressing hash table with linear probing. The hash codes of the stored fragments are kept in a parallel
+ * int array, so a lookup only calls String.equals() for slots whose hash code matches, and neither the lookup nor
+ * the result require boxing. Because the dictionary is not modifiable after construction, one instance can be
+ * shared between fingerprinters, fingerprints and threads.
+ * <br>
+ * For large dictionaries, building the hash table on every start can be avoided by saving a snapshot of the
+ * dictionary once with {@link #saveSnapshot(Path)} and loading it with {@link #loadSnapshot(Path)}. The snapshot
+ * contains the hash table as it is, so loading it only copies the hash table from the memory-mapped file, the
+ * fragments are neither hashed, checked nor probed again and are decoded from the mapped file on first access.
+ * A CRC32 checksum protects the content of the snapshot.
+ * <pre>
+ * snapshot = magic (int "FFPD") version (int) size (int) number of slots (int) number of string bytes (int)
+ *            reserved (int) CRC32 of the following bytes (long)
+ *            slot to position (int)*slots slot to hash (int)*slots string offsets (int)*(size + 1) string bytes
+ * </pre>
+ * All integers of the snapshot are little-endian, the fragments are stored as UTF-8 one after the other in the
+ * order of their positions, fragment i spans the string bytes from offset i to offset i + 1.
+ * <br>
+ * Since the dictionary is referenced by the serializable count fingerprints, it is serializable as well. Only the
+ * fragments are serialized, the hash table is rebuilt on deserialization.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class FragmentDictionary implements Serializable {
+    //<editor-fold desc="public static final class variables" defaultstate="collapsed">
+    /**
+     * Position returned by {@link #getPosition(String)} for fragments that are not part of the dictionary.
+     */
+    public static final int NOT_FOUND = -1;
+    //</editor-fold>
+    //
+    //<editor-fold desc="private static final class variables" defaultstate="collapsed">
+    /**
+     * Marks an empty slot of the hash table
+     */
+    private static final int EMPTY_SLOT = -1;
+    /**
+     * Maximum fraction of occupied slots of the hash table. A low load factor keeps the probe sequences short.
+     */
+    private static final double MAXIMUM_LOAD_FACTOR = 0.5;
+    /**
+     * Magic number at the beginning of every snapshot, the ASCII characters "FFPD"
+     */
+    private static final int SNAPSHOT_MAGIC = 0x46465044;
+    /**
+     * Version of the snapshot format
+     */
+    private static final int SNAPSHOT_VERSION = 1;
+    /**
+     * Size of the snapshot header in bytes
+     */
+    private static final int SNAPSHOT_HEADER_SIZE = 32;
+    /**
+     * Version of the serialized form, which only consists of the fragment array
+     */
+    private static final long serialVersionUID = 1L;
+    //</editor-fold>
+    //
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Unique fragments in the order of their positions in the fingerprint. For dictionaries loaded from a snapshot,
+     * the fragments are decoded on first access, see {@link #fragmentAt(int)}.
+     */
+    private final String[] fragmentArray;
+    /**
+     * UTF-8 bytes of the fragments in the memory-mapped snapshot the dictionary was loaded from, null otherwise
+     */
+    private final transient ByteBuffer snapshotStringBuffer;
+    /**
+     * Offsets of the fragments in the snapshot string buffer, null if the dictionary was not loaded from a snapshot
+     */
+    private final transient int[] snapshotStringOffsetArray;
+    /**
+     * Hash table slots holding the position of the fragment stored in the slot or EMPTY_SLOT
+     */
+    private final transient int[] slotToPositionArray;
+    /**
+     * Hash table slots holding the hash code of the fragment stored in the slot
+     */
+    private final transient int[] slotToHashArray;
+    /**
+     * Bit mask to map a hash code to a slot, the number of slots is always a power of two
+     */
+    private final transient int slotMask;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor.
+     * Builds the dictionary for the given fragments. Duplicate fragments are ignored, i.e. a fragment is assigned
+     * the position of its first occurrence in the given array and the following fragments move up.
+     *
+     * @param anArrayOfFragments predefined (key) fragments in the form of unique SMILES.
+     * @throws NullPointerException is thrown if the array or at least one of its elements is null.
+     * @throws IllegalArgumentException is thrown if at least one of the array elements is blank/empty.
+     */
+    public FragmentDictionary(String[] anArrayOfFragments) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(anArrayOfFragments, "anArrayOfFragments (array of string instances) is null.");
+        int tmpNumberOfSlots = Integer.highestOneBit(Math.max(2, (int) (anArrayOfFragments.length / FragmentDictionary.MAXIMUM_LOAD_FACTOR)) - 1) << 1;
+        this.slotMask = tmpNumberOfSlots - 1;
+        this.slotToPositionArray = new int[tmpNumberOfSlots];
+        Arrays.fill(this.slotToPositionArray, FragmentDictionary.EMPTY_SLOT);
+        this.slotToHashArray = new int[tmpNumberOfSlots];
+        String[] tmpFragmentArray = new String[anArrayOfFragments.length];
+        int tmpSize = 0;
+        for (String tmpFragment : anArrayOfFragments) {
+            Objects.requireNonNull(tmpFragment, "anArrayOfFragments (at least one array element) is null.");
+            if (tmpFragment.isBlank()) {
+                throw new IllegalArgumentException("anArrayOfFragments (at least one array element) is blank/empty.");
+            }
+            int tmpHash = FragmentDictionary.spread(tmpFragment.hashCode());
+            int tmpSlot = tmpHash & this.slotMask;
+            boolean tmpIsDuplicate = false;
+            while (this.slotToPositionArray[tmpSlot] != FragmentDictionary.EMPTY_SLOT) {
+                if (this.slotToHashArray[tmpSlot] == tmpHash && tmpFragmentArray[this.slotToPositionArray[tmpSlot]].equals(tmpFragment)) {
+                    tmpIsDuplicate = true;
+                    break;
+                }
+                tmpSlot = (tmpSlot + 1) & this.slotMask;
+            }
+            if (tmpIsDuplicate) {
+                continue;
+            }
+            this.slotToPositionArray[tmpSlot] = tmpSize;
+            this.slotToHashArray[tmpSlot] = tmpHash;
+            tmpFragmentArray[tmpSize] = tmpFragment;
+            tmpSize++;
+        }
+        this.fragmentArray = Arrays.copyOf(tmpFragmentArray, tmpSize);
+        this.snapshotStringBuffer = null;
+        this.snapshotStringOffsetArray = null;
+    }
+    //
+    /**
+     * Constructor of a dictionary loaded from a snapshot, the hash table is already built and the fragments are
+     * decoded from the string buffer on first access.
+     *
+     * @param aSlotToPositionArray hash table slots holding the positions.
+     * @param aSlotToHashArray hash table slots holding the hash codes.
+     * @param aStringBuffer UTF-8 bytes of the fragments.
+     * @param aStringOffsetArray offsets of the fragments in the string buffer, one more than the number of fragments.
+     */
+    private FragmentDictionary(int[] aSlotToPositionArray, int[] aSlotToHashArray, ByteBuffer aStringBuffer, int[] aStringOffsetArray) {
+        this.fragmentArray = new String[aStringOffsetArray.length - 1];
+        this.slotToPositionArray = aSlotToPositionArray;
+        this.slotToHashArray = aSlotToHashArray;
+        this.slotMask = aSlotToPositionArray.length - 1;
+        this.snapshotStringBuffer = aStringBuffer;
+        this.snapshotStringOffsetArray = aStringOffsetArray;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static methods" defaultstate="collapsed">
+    /**
+     * Loads a dictionary from a snapshot written by {@link #saveSnapshot(Path)}. The file is memory-mapped, its
+     * checksum verified and the hash table taken over as it is. The fragments stay in the mapped file and are
+     * decoded on first access, so the dictionary can be used immediately.
+     *
+     * @param aPath snapshot file.
+     * @return dictionary with the same fragments, positions and hash table as the saved one
+     * @throws NullPointerException is thrown if the path is null.
+     * @throws IOException if the file can not be read, is not a dictionary snapshot or its content is corrupted.
+     */
+    public static FragmentDictionary loadSnapshot(Path aPath) throws NullPointerException, IOException {
+        Objects.requireNonNull(aPath, "aPath is null.");
+        try (FileChannel tmpChannel = FileChannel.open(aPath, StandardOpenOption.READ)) {
+            long tmpFileSize = tmpChannel.size();
+            if (tmpFileSize < FragmentDictionary.SNAPSHOT_HEADER_SIZE || tmpFileSize > Integer.MAX_VALUE) {
+                throw new IOException(aPath + " is not a fragment dictionary snapshot.");
+            }
+            ByteBuffer tmpBuffer = tmpChannel.map(FileChannel.MapMode.READ_ONLY, 0, tmpFileSize).order(ByteOrder.LITTLE_ENDIAN);
+            if (tmpBuffer.getInt() != FragmentDictionary.SNAPSHOT_MAGIC) {
+                throw new IOException(aPath + " is not a fragment dictionary snapshot.");
+            }
+            int tmpVersion = tmpBuffer.getInt();
+            if (tmpVersion != FragmentDictionary.SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported fragment dictionary snapshot version " + tmpVersion + ".");
+            }
+            int tmpSize = tmpBuffer.getInt();
+            int tmpNumberOfSlots = tmpBuffer.getInt();
+            int tmpNumberOfStringBytes = tmpBuffer.getInt();
+            tmpBuffer.getInt();
+            long tmpChecksum = tmpBuffer.getLong();
+            if (tmpSize < 0 || tmpNumberOfSlots < 2 || Integer.bitCount(tmpNumberOfSlots) != 1 || tmpSize >= tmpNumberOfSlots
+                    || tmpNumberOfStringBytes < 0 || tmpFileSize != FragmentDictionary.SNAPSHOT_HEADER_SIZE
+                    + 2L * Integer.BYTES * tmpNumberOfSlots + (long) Integer.BYTES * (tmpSize + 1) + tmpNumberOfStringBytes) {
+                throw new IOException("The header of " + aPath + " does not match its size.");
+            }
+            CRC32 tmpCrc32 = new CRC32();
+            tmpCrc32.update(tmpBuffer.slice(FragmentDictionary.SNAPSHOT_HEADER_SIZE, (int) tmpFileSize - FragmentDictionary.SNAPSHOT_HEADER_SIZE));
+            if (tmpCrc32.getValue() != tmpChecksum) {
+                throw new IOException("The checksum of " + aPath + " does not match, the snapshot is corrupted.");
+            }
+            int[] tmpSlotToPositionArray = new int[tmpNumberOfSlots];
+            int[] tmpSlotToHashArray = new int[tmpNumberOfSlots];
+            int[] tmpOffsetArray = new int[tmpSize + 1];
+            tmpBuffer.asIntBuffer().get(tmpSlotToPositionArray);
+            tmpBuffer.position(tmpBuffer.position() + Integer.BYTES * tmpNumberOfSlots);
+            tmpBuffer.asIntBuffer().get(tmpSlotToHashArray);
+            tmpBuffer.position(tmpBuffer.position() + Integer.BYTES * tmpNumberOfSlots);
+            tmpBuffer.asIntBuffer().get(tmpOffsetArray);
+            tmpBuffer.position(tmpBuffer.position() + Integer.BYTES * (tmpSize + 1));
+            ByteBuffer tmpStringBuffer = tmpBuffer.slice();
+            // the checksum only detects corruption, the structure is checked so that lookups can not fail later
+            boolean[] tmpIsPositionInTable = new boolean[tmpSize];
+            int tmpNumberOfOccupiedSlots = 0;
+            for (int tmpPosition : tmpSlotToPositionArray) {
+                if (tmpPosition == FragmentDictionary.EMPTY_SLOT) {
+                    continue;
+                }
+                if (tmpPosition < 0 || tmpPosition >= tmpSize || tmpIsPositionInTable[tmpPosition]) {
+                    throw new IOException("The hash table of " + aPath + " is invalid.");
+                }
+                tmpIsPositionInTable[tmpPosition] = true;
+                tmpNumberOfOccupiedSlots++;
+            }
+            if (tmpNumberOfOccupiedSlots != tmpSize || tmpOffsetArray[0] != 0 || tmpOffsetArray[tmpSize] != tmpNumberOfStringBytes) {
+                throw new IOException("The hash table or string offsets of " + aPath + " are invalid.");
+            }
+            for (int i = 0; i < tmpSize; i++) {
+                if (tmpOffsetArray[i + 1] <= tmpOffsetArray[i]) {
+                    throw new IOException("The string offsets of " + aPath + " are invalid.");
+                }
+            }
+            return new FragmentDictionary(tmpSlotToPositionArray, tmpSlotToHashArray, tmpStringBuffer, tmpOffsetArray);
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the position of the given fragment in the fingerprint.
+     *
+     * @param aUniqueSmiles fragment in the form of unique SMILES.
+     * @return position of the fragment or {@link #NOT_FOUND} if the fragment is not part of the dictionary.
+     * @throws NullPointerException is thrown if the given fragment is null.
+     */
+    public int getPosition(String aUniqueSmiles) throws NullPointerException {
+        int tmpHash = FragmentDictionary.spread(aUniqueSmiles.hashCode());
+        int tmpSlot = tmpHash & this.slotMask;
+        int tmpPosition;
+        while ((tmpPosition = this.slotToPositionArray[tmpSlot]) != FragmentDictionary.EMPTY_SLOT) {
+            if (this.slotToHashArray[tmpSlot] == tmpHash) {
+                String tmpFragment = this.fragmentAt(tmpPosition);
+                if (tmpFragment == aUniqueSmiles || tmpFragment.equals(aUniqueSmiles)) {
+                    return tmpPosition;
+                }
+            }
+            tmpSlot = (tmpSlot + 1) & this.slotMask;
+        }
+        return FragmentDictionary.NOT_FOUND;
+    }
+    //
+    /**
+     * Returns the position of the fragment whose UTF-8 encoded SMILES is stored in the given range of the buffer,
+     * e.g. a memory-mapped input file, without creating a String for it. For ASCII SMILES, which is the common case,
+     * the String hash code is computed and the stored fragments are compared directly on the bytes; SMILES with
+     * non-ASCII bytes are decoded and looked up via {@link #getPosition(String)}.
+     * The position and limit of the buffer are not changed.
+     *
+     * @param aBuffer buffer holding the SMILES bytes.
+     * @param anOffset absolute index of the first SMILES byte in the buffer.
+     * @param aLength number of SMILES bytes.
+     * @return position of the fragment or {@link #NOT_FOUND} if the fragment is not part of the dictionary.
+     * @throws NullPointerException is thrown if the given buffer is null.
+     * @throws IndexOutOfBoundsException is thrown if the given range exceeds the limit of the buffer.
+     */
+    public int getPosition(ByteBuffer aBuffer, int anOffset, int aLength) throws NullPointerException, IndexOutOfBoundsException {
+        Objects.checkFromIndexSize(anOffset, aLength, aBuffer.limit());
+        int tmpStringHash = 0;
+        for (int i = anOffset, tmpEnd = anOffset + aLength; i < tmpEnd; i++) {
+            byte tmpByte = aBuffer.get(i);
+            if (tmpByte < 0) {
+                byte[] tmpBytes = new byte[aLength];
+                aBuffer.get(anOffset, tmpBytes);
+                return this.getPosition(new String(tmpBytes, StandardCharsets.UTF_8));
+            }
+            tmpStringHash = 31 * tmpStringHash + tmpByte;
+        }
+        int tmpHash = FragmentDictionary.spread(tmpStringHash);
+        int tmpSlot = tmpHash & this.slotMask;
+        int tmpPosition;
+        while ((tmpPosition = this.slotToPositionArray[tmpSlot]) != FragmentDictionary.EMPTY_SLOT) {
+            if (this.slotToHashArray[tmpSlot] == tmpHash && FragmentDictionary.equalsAscii(this.fragmentAt(tmpPosition), aBuffer, anOffset, aLength)) {
+                return tmpPosition;
+            }
+            tmpSlot = (tmpSlot + 1) & this.slotMask;
+        }
+        return FragmentDictionary.NOT_FOUND;
+    }
+    //
+    /**
+     * Returns whether the given fragment is part of the dictionary.
+     *
+     * @param aUniqueSmiles fragment in the form of unique SMILES.
+     * @return true if the fragment is one of the predefined fragments.
+     * @throws NullPointerException is thrown if the given fragment is null.
+     */
+    public boolean contains(String aUniqueSmiles) throws NullPointerException {
+        return this.getPosition(aUniqueSmiles) != FragmentDictionary.NOT_FOUND;
+    }
+    //
+    /**
+     * Returns the fragment at the given position in the fingerprint.
+     *
+     * @param aPosition position in the fingerprint.
+     * @return unique SMILES of the fragment.
+     * @throws IllegalArgumentException is thrown if the given position is not present in the fingerprint.
+     */
+    public String getFragment(int aPosition) throws IllegalArgumentException {
+        if (aPosition < 0 || aPosition >= this.fragmentArray.length) {
+            throw new IllegalArgumentException("This position does not exist in the fingerprint (undefined state).");
+        }
+        return this.fragmentAt(aPosition);
+    }
+    //
+    /**
+     * Returns the number of unique fragments, i.e. the size of the fingerprint.
+     *
+     * @return int
+     */
+    public int size() {
+        return this.fragmentArray.length;
+    }
+    //
+    /**
+     * Returns a copy of the unique fragments in the order of their positions in the fingerprint.
+     *
+     * @return String[]
+     */
+    public String[] toArray() {
+        String[] tmpFragmentArray = new String[this.fragmentArray.length];
+        for (int i = 0; i < tmpFragmentArray.length; i++) {
+            tmpFragmentArray[i] = this.fragmentAt(i);
+        }
+        return tmpFragmentArray;
+    }
+    //
+    /**
+     * Saves a snapshot of the dictionary to the given file, see {@link #loadSnapshot(Path)}. An existing file is
+     * overwritten.
+     *
+     * @param aPath file to write.
+     * @throws NullPointerException is thrown if the path is null.
+     * @throws IOException if the file can not be written or the snapshot would exceed 2 GiB.
+     */
+    public void saveSnapshot(Path aPath) throws NullPointerException, IOException {
+        Objects.requireNonNull(aPath, "aPath is null.");
+        byte[][] tmpEncodedFragments = new byte[this.fragmentArray.length][];
+        long tmpNumberOfStringBytes = 0L;
+        for (int i = 0; i < this.fragmentArray.length; i++) {
+            tmpEncodedFragments[i] = this.fragmentAt(i).getBytes(StandardCharsets.UTF_8);
+            tmpNumberOfStringBytes += tmpEncodedFragments[i].length;
+        }
+        long tmpFileSize = FragmentDictionary.SNAPSHOT_HEADER_SIZE + 2L * Integer.BYTES * this.slotToPositionArray.length
+                + (long) Integer.BYTES * (this.fragmentArray.length + 1) + tmpNumberOfStringBytes;
+        if (tmpFileSize > Integer.MAX_VALUE) {
+            throw new IOException("The snapshot of the dictionary would exceed 2 GiB.");
+        }
+        ByteBuffer tmpBuffer = ByteBuffer.allocate((int) tmpFileSize).order(ByteOrder.LITTLE_ENDIAN);
+        tmpBuffer.position(FragmentDictionary.SNAPSHOT_HEADER_SIZE);
+        for (int tmpPosition : this.slotToPositionArray) {
+            tmpBuffer.putInt(tmpPosition);
+        }
+        for (int tmpHash : this.slotToHashArray) {
+            tmpBuffer.putInt(tmpHash);
+        }
+        int tmpOffset = 0;
+        tmpBuffer.putInt(tmpOffset);
+        for (byte[] tmpEncodedFragment : tmpEncodedFragments) {
+            tmpOffset += tmpEncodedFragment.length;
+            tmpBuffer.putInt(tmpOffset);
+        }
+        for (byte[] tmpEncodedFragment : tmpEncodedFragments) {
+            tmpBuffer.put(tmpEncodedFragment);
+        }
+        CRC32 tmpCrc32 = new CRC32();
+        tmpCrc32.update(tmpBuffer.array(), FragmentDictionary.SNAPSHOT_HEADER_SIZE, (int) tmpFileSize - FragmentDictionary.SNAPSHOT_HEADER_SIZE);
+        tmpBuffer.putInt(0, FragmentDictionary.SNAPSHOT_MAGIC).putInt(4, FragmentDictionary.SNAPSHOT_VERSION)
+                .putInt(8, this.fragmentArray.length).putInt(12, this.slotToPositionArray.length)
+                .putInt(16, (int) tmpNumberOfStringBytes).putInt(20, 0).putLong(24, tmpCrc32.getValue());
+        tmpBuffer.clear();
+        try (FileChannel tmpChannel = FileChannel.open(aPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (tmpBuffer.hasRemaining()) {
+                tmpChannel.write(tmpBuffer);
+            }
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Decodes all fragments that were not accessed yet before the fragment array is serialized, so that
+     * dictionaries loaded from a snapshot are serialized completely.
+     *
+     * @param aStream stream the dictionary is written to.
+     * @throws IOException if the stream can not be written.
+     */
+    private void writeObject(ObjectOutputStream aStream) throws IOException {
+        for (int i = 0; i < this.fragmentArray.length; i++) {
+            this.fragmentAt(i);
+        }
+        aStream.defaultWriteObject();
+    }
+    //
+    /**
+     * Replaces the deserialized instance, which only holds the fragment array, with a dictionary whose hash table
+     * is built from the fragments.
+     *
+     * @return dictionary with the same fragments and positions as the serialized one
+     * @throws NullPointerException is thrown if the serialized fragment array is null or contains null.
+     * @throws IllegalArgumentException is thrown if the serialized fragment array contains blank/empty strings.
+     */
+    private Object readResolve() throws NullPointerException, IllegalArgumentException {
+        return new FragmentDictionary(this.fragmentArray);
+    }
+    //
+    /**
+     * Returns the fragment at the given position, decoding it from the snapshot on first access. Concurrent first
+     * accesses may decode the fragment more than once, which is harmless since strings are immutable.
+     *
+     * @param aPosition position in the fingerprint, not checked.
+     * @return unique SMILES of the fragment
+     */
+    private String fragmentAt(int aPosition) {
+        String tmpFragment = this.fragmentArray[aPosition];
+        if (tmpFragment == null) {
+            int tmpOffset = this.snapshotStringOffsetArray[aPosition];
+            byte[] tmpBytes = new byte[this.snapshotStringOffsetArray[aPosition + 1] - tmpOffset];
+            this.snapshotStringBuffer.get(tmpOffset, tmpBytes);
+            tmpFragment = new String(tmpBytes, StandardCharsets.UTF_8);
+            this.fragmentArray[aPosition] = tmpFragment;
+        }
+        return tmpFragment;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Spreads the higher bits of the given hash code to the lower ones, since only the lower bits are used to
+     * determine the slot.
+     *
+     * @param aHashCode String hash code
+     * @return spread hash code
+     */
+    private static int spread(int aHashCode) {
+        int tmpHash = aHashCode * 0x9E3779B9;
+        return tmpHash ^ (tmpHash >>> 16);
+    }
+    //
+    /**
+     * Compares the given fragment to the ASCII bytes in the given range of the buffer.
+     *
+     * @param aFragment fragment SMILES
+     * @param aBuffer buffer holding ASCII bytes
+     * @param anOffset absolute index of the first byte
+     * @param aLength number of bytes
+     * @return true if the fragment consists of exactly the given characters
+     */
+    private static boolean equalsAscii(String aFragment, ByteBuffer aBuffer, int anOffset, int aLength) {
+        if (aFragment.length() != aLength) {
+            return false;
+        }
+        for (int i = 0; i < aLength; i++) {
+            if (aFragment.charAt(i) != aBuffer.get(anOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    //</editor-fold>
+}
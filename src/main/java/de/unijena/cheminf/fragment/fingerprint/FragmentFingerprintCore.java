@@ -0,0 +1,577 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.fingerprint.SubstructureFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Stateless core of the fragment fingerprinters, shared by {@link FragmentFingerprinter} and
+ * {@link StatelessFragmentFingerprinter}. It holds the dictionary of the predefined fragments, checks the inputs,
+ * creates the fingerprints and fills the fingerprint arrays, and compiles the SMARTS patterns of the fragments for
+ * the substructure-based methods on first use. Apart from the patterns and the optional fragment hierarchy, which
+ * are created once and published safely, it keeps no state, so it can be used by several threads at once.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class FragmentFingerprintCore {
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Dictionary of the unique predefined (key) SMILES fragments, mapping them to their positions in the
+     * fingerprint. It is shared by all count fingerprints created with it.
+     */
+    private final FragmentDictionary fragmentDictionary;
+    //</editor-fold>
+    //
+    //<editor-fold desc="private class variables" defaultstate="collapsed">
+    /**
+     * CDK fingerprinter holding the compiled SMARTS patterns of the predefined fragments. It is created only once
+     * and published safely via the volatile modifier.
+     */
+    private volatile SubstructureFingerprinter substructureFingerprinter;
+    /**
+     * Compiled SMARTS patterns of the predefined fragments for matching one molecule with several threads or along
+     * the fragment hierarchy. They are compiled on first use, independently of the SubstructureFingerprinter, and
+     * published safely via the volatile modifier.
+     */
+    private volatile SubstructureKeyMatcher substructureKeyMatcher;
+    /**
+     * Containment hierarchy of the predefined fragments, only built on request via
+     * {@link #initializeFragmentHierarchy()} and published safely via the volatile modifier.
+     */
+    private volatile FragmentHierarchy fragmentHierarchy;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor, creates the dictionary of the given fragments. Duplicates are ignored.
+     *
+     * @param aFragmentList predefined fragments in the form of unique SMILES.
+     * @throws NullPointerException is thrown if the list or one of its elements is null.
+     * @throws IllegalArgumentException is thrown if the list contains blank strings.
+     */
+    FragmentFingerprintCore(List<String> aFragmentList) throws NullPointerException, IllegalArgumentException {
+        FragmentFingerprintCore.validityCheckOfParameterList(aFragmentList, "aFragmentList (list of string instances) is null.",
+                "aFragmentList (at least one list element) is null.",
+                "aFragmentList (at least one list element) is blank/empty.");
+        this.fragmentDictionary = new FragmentDictionary(aFragmentList.toArray(new String[aFragmentList.size()]));
+    }
+    //
+    /**
+     * Constructor, uses the given dictionary of the predefined fragments.
+     *
+     * @param aFragmentDictionary dictionary of the predefined fragments.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    FragmentFingerprintCore(FragmentDictionary aFragmentDictionary) throws NullPointerException {
+        this.fragmentDictionary = Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Returns the dictionary of the predefined fragments.
+     *
+     * @return fragment dictionary
+     */
+    FragmentDictionary getFragmentDictionary() {
+        return this.fragmentDictionary;
+    }
+    //
+    /**
+     * Returns the number of predefined fragments without duplicates, i.e. the fingerprint size.
+     *
+     * @return fingerprint size
+     */
+    int size() {
+        return this.fragmentDictionary.size();
+    }
+    //
+    /**
+     * Checks the given list and creates its bit fingerprint.
+     *
+     * @param aListOfUniqueSmiles fragments in the form of unique SMILES.
+     * @return bit fingerprint
+     * @throws NullPointerException is thrown if the list or one of its elements is null.
+     * @throws IllegalArgumentException is thrown if the list contains blank/empty strings.
+     */
+    BitSetFingerprint getBitFingerprint(List<String> aListOfUniqueSmiles) throws NullPointerException, IllegalArgumentException {
+        FragmentFingerprintCore.validityCheckOfParameterList(aListOfUniqueSmiles, "aListOfUniqueSmiles (list of string instances) is null.",
+                "aListOfUniqueSmiles (at least one list element) is null.",
+                "aListOfUniqueSmiles (at least one list element) is blank/empty.");
+        BitSet tmpBitSet = new BitSet(this.fragmentDictionary.size());
+        for (String tmpUniqueSmiles : aListOfUniqueSmiles) {
+            int tmpPosition = this.fragmentDictionary.getPosition(tmpUniqueSmiles);
+            if (tmpPosition != FragmentDictionary.NOT_FOUND) {
+                tmpBitSet.set(tmpPosition);
+            }
+        }
+        return new BitSetFingerprint(tmpBitSet);
+    }
+    //
+    /**
+     * Checks the given map and creates the count fingerprint from the positions of the contained key fragments and
+     * their frequencies.
+     *
+     * @param aUniqueSmilesToFrequencyMap map of fragments in the form of unique SMILES to their frequencies.
+     * @return count fingerprint
+     * @throws NullPointerException is thrown if the map is null or contains keys or values that are null.
+     * @throws IllegalArgumentException is thrown if the map contains keys that are blank/empty.
+     */
+    CountFingerprint getCountFingerprint(Map<String, Integer> aUniqueSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException {
+        this.validityCheckOfParameterMap(aUniqueSmilesToFrequencyMap);
+        int[] tmpPositionArray = new int[aUniqueSmilesToFrequencyMap.size()];
+        int[] tmpCountArray = new int[aUniqueSmilesToFrequencyMap.size()];
+        int tmpLength = 0;
+        for (Map.Entry<String, Integer> tmpEntry : aUniqueSmilesToFrequencyMap.entrySet()) {
+            int tmpPosition = this.fragmentDictionary.getPosition(tmpEntry.getKey());
+            if (tmpPosition != FragmentDictionary.NOT_FOUND) {
+                tmpPositionArray[tmpLength] = tmpPosition;
+                tmpCountArray[tmpLength] = tmpEntry.getValue();
+                tmpLength++;
+            }
+        }
+        return new CountFingerprint(this.fragmentDictionary, tmpPositionArray, tmpCountArray, tmpLength);
+    }
+    //
+    /**
+     * Checks the given list and creates its count fingerprint, the frequency of a fragment is the number of its
+     * occurrences in the list.
+     *
+     * @param aUniqueSmilesList fragments in the form of unique SMILES, possibly several times.
+     * @return count fingerprint
+     * @throws NullPointerException is thrown if the list or one of its elements is null.
+     * @throws IllegalArgumentException is thrown if the list contains blank/empty strings.
+     */
+    CountFingerprint getCountFingerprint(List<String> aUniqueSmilesList) throws NullPointerException, IllegalArgumentException {
+        FragmentFingerprintCore.validityCheckOfParameterList(aUniqueSmilesList, "aUniqueSmilesList (list of string instances) is null.",
+                "aUniqueSmilesList (at least one list element) is null.",
+                "aUniqueSmilesList (at least one list element) is blank/empty.");
+        // every occurrence is passed with a frequency of 1, the CountFingerprint sums up equal positions
+        int[] tmpPositionArray = new int[aUniqueSmilesList.size()];
+        int[] tmpCountArray = new int[aUniqueSmilesList.size()];
+        int tmpLength = 0;
+        for (String tmpUniqueSmiles : aUniqueSmilesList) {
+            int tmpPosition = this.fragmentDictionary.getPosition(tmpUniqueSmiles);
+            if (tmpPosition != FragmentDictionary.NOT_FOUND) {
+                tmpPositionArray[tmpLength] = tmpPosition;
+                tmpCountArray[tmpLength] = 1;
+                tmpLength++;
+            }
+        }
+        return new CountFingerprint(this.fragmentDictionary, tmpPositionArray, tmpCountArray, tmpLength);
+    }
+    //
+    /**
+     * Creates the bit fingerprints of all given lists with the given number of threads.
+     *
+     * @param aCollectionOfUniqueSmilesLists lists of fragments in the form of unique SMILES, one per molecule.
+     * @param aParallelism number of threads to use, 1 for the calling thread.
+     * @return bit fingerprints in the iteration order of the collection
+     * @throws NullPointerException is thrown if the collection, one of its lists or one of the list elements is null.
+     * @throws IllegalArgumentException is thrown if one of the lists contains blank/empty strings or if the
+     * parallelism is smaller than 1.
+     */
+    List<IBitFingerprint> getBitFingerprints(Collection<? extends List<String>> aCollectionOfUniqueSmilesLists, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return ParallelFingerprintTask.calculate(aCollectionOfUniqueSmilesLists,
+                (List<String> aListOfUniqueSmiles) -> this.getBitFingerprint(aListOfUniqueSmiles), aParallelism);
+    }
+    //
+    /**
+     * Creates the count fingerprints of all given maps with the given number of threads.
+     *
+     * @param aCollectionOfUniqueSmilesToFrequencyMaps maps of fragments in the form of unique SMILES to their
+     *                                                 frequencies, one per molecule.
+     * @param aParallelism number of threads to use, 1 for the calling thread.
+     * @return count fingerprints in the iteration order of the collection
+     * @throws NullPointerException is thrown if the collection or one of its maps is null or if a map contains
+     * keys or values that are null.
+     * @throws IllegalArgumentException is thrown if one of the maps contains keys that are blank/empty or if the
+     * parallelism is smaller than 1.
+     */
+    List<ICountFingerprint> getCountFingerprints(Collection<? extends Map<String, Integer>> aCollectionOfUniqueSmilesToFrequencyMaps, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return ParallelFingerprintTask.calculate(aCollectionOfUniqueSmilesToFrequencyMaps,
+                (Map<String, Integer> aUniqueSmilesToFrequencyMap) -> this.getCountFingerprint(aUniqueSmilesToFrequencyMap), aParallelism);
+    }
+    //
+    /**
+     * Creates the substructure-based bit fingerprint of the given molecule, along the fragment hierarchy if it was
+     * initialised, otherwise with the CDK SubstructureFingerprinter.
+     *
+     * @param aMolecule molecule, prepared for the SMARTS matching, i.e. modified.
+     * @return bit fingerprint
+     * @throws CDKException is thrown if no fragments are defined.
+     */
+    IBitFingerprint getBitFingerprint(IAtomContainer aMolecule) throws CDKException {
+        FragmentHierarchy tmpFragmentHierarchy = this.fragmentHierarchy;
+        if (tmpFragmentHierarchy != null) {
+            return new BitSetFingerprint(this.getSubstructureKeyMatcher().matchBits(aMolecule, tmpFragmentHierarchy));
+        }
+        return this.getSubstructureFingerprinter().getBitFingerprint(aMolecule);
+    }
+    //
+    /**
+     * Creates the substructure-based count fingerprint of the given molecule, along the fragment hierarchy if it
+     * was initialised, otherwise with the CDK SubstructureFingerprinter.
+     *
+     * @param aMolecule molecule, prepared for the SMARTS matching, i.e. modified.
+     * @return count fingerprint
+     * @throws CDKException is thrown if no fragments are defined.
+     */
+    ICountFingerprint getCountFingerprint(IAtomContainer aMolecule) throws CDKException {
+        FragmentHierarchy tmpFragmentHierarchy = this.fragmentHierarchy;
+        if (tmpFragmentHierarchy != null) {
+            return this.getSubstructureKeyMatcher().countMatches(aMolecule, tmpFragmentHierarchy, this.fragmentDictionary);
+        }
+        return this.getSubstructureFingerprinter().getCountFingerprint(aMolecule);
+    }
+    //
+    /**
+     * Creates the substructure-based bit fingerprint of the given molecule, matching the patterns with the given
+     * number of threads.
+     *
+     * @param aMolecule molecule, prepared for the SMARTS matching, i.e. modified.
+     * @param aParallelism number of threads to use, 1 for the calling thread.
+     * @return bit fingerprint
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     * @throws CDKException is thrown if no fragments are defined.
+     */
+    IBitFingerprint getBitFingerprint(IAtomContainer aMolecule, int aParallelism) throws NullPointerException, IllegalArgumentException, CDKException {
+        return new BitSetFingerprint(this.getSubstructureKeyMatcher().matchBits(aMolecule, aParallelism));
+    }
+    //
+    /**
+     * Creates the substructure-based count fingerprint of the given molecule in the default dense mode, matching the
+     * patterns with the given number of threads.
+     *
+     * @param aMolecule molecule, prepared for the SMARTS matching, i.e. modified.
+     * @param aParallelism number of threads to use, 1 for the calling thread.
+     * @return count fingerprint
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     * @throws CDKException is thrown if no fragments are defined.
+     */
+    CountFingerprint getCountFingerprint(IAtomContainer aMolecule, int aParallelism) throws NullPointerException, IllegalArgumentException, CDKException {
+        return this.getSubstructureKeyMatcher().countMatches(aMolecule, aParallelism, this.fragmentDictionary);
+    }
+    //
+    /**
+     * Matches the given molecule once against all fragments, along the fragment hierarchy if it was initialised.
+     *
+     * @param aMolecule molecule, prepared for the SMARTS matching, i.e. modified.
+     * @return numbers of unique matches of all fragments
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws CDKException is thrown if no fragments are defined.
+     */
+    CombinedFragmentFingerprint getCombinedFingerprint(IAtomContainer aMolecule) throws NullPointerException, CDKException {
+        return this.getSubstructureKeyMatcher().matchCombined(aMolecule, this.fragmentHierarchy, this.fragmentDictionary);
+    }
+    //
+    /**
+     * Compiles the SMARTS patterns of the CDK SubstructureFingerprinter if this was not done before.
+     *
+     * @throws IllegalArgumentException is thrown if at least one of the predefined fragments can not be parsed
+     * as SMARTS pattern.
+     */
+    void initializeSubstructureFingerprinter() throws IllegalArgumentException {
+        this.getSubstructureFingerprinter();
+    }
+    //
+    /**
+     * Builds the containment hierarchy of the predefined fragments if this was not done before. Concurrent calls
+     * build it only once.
+     *
+     * @throws IllegalArgumentException is thrown if at least one of the predefined fragments can not be parsed
+     * as SMARTS pattern.
+     */
+    void initializeFragmentHierarchy() throws IllegalArgumentException {
+        if (this.fragmentHierarchy == null) {
+            synchronized (this) {
+                if (this.fragmentHierarchy == null) {
+                    this.fragmentHierarchy = new FragmentHierarchy(this.getSubstructureKeyMatcher());
+                }
+            }
+        }
+    }
+    //
+    /**
+     * Returns the fragment SMILES represented by the given position.
+     *
+     * @param aBit position in the fingerprint.
+     * @return unique SMILES of the position
+     * @throws IllegalArgumentException is thrown if the given bit position is not present in the fingerprint.
+     */
+    String getBitDefinition(int aBit) throws IllegalArgumentException {
+        if (aBit < 0 || aBit >= this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("This bit is not defined/present in the fingerprint.");
+        }
+        return this.fragmentDictionary.getFragment(aBit);
+    }
+    //
+    /**
+     * Writes the bits of the given list into the given array at the offset, the fingerprint range is overwritten
+     * completely.
+     *
+     * @param aListOfUniqueSmiles fragments in the form of unique SMILES.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list, one of its elements or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list contains blank/empty strings or if the destination
+     * array does not have enough space for the fingerprint at the given offset.
+     */
+    void fillBitArray(List<String> aListOfUniqueSmiles, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        FragmentFingerprintCore.validityCheckOfParameterList(aListOfUniqueSmiles, "aListOfUniqueSmiles (list of string instances) is null.",
+                "aListOfUniqueSmiles (at least one list element) is null.",
+                "aListOfUniqueSmiles (at least one list element) is blank/empty.");
+        Objects.requireNonNull(aDestination, "aDestination (array) is null.");
+        this.validityCheckOfDestinationRange(aDestination.length, anOffset);
+        Arrays.fill(aDestination, anOffset, anOffset + this.fragmentDictionary.size(), 0);
+        for (String tmpUniqueSmiles : aListOfUniqueSmiles) {
+            int tmpPosition = this.fragmentDictionary.getPosition(tmpUniqueSmiles);
+            if (tmpPosition != FragmentDictionary.NOT_FOUND) {
+                aDestination[anOffset + tmpPosition] = 1;
+            }
+        }
+    }
+    //
+    /**
+     * Writes the bits of the given list into the given byte array at the offset, the fingerprint range is
+     * overwritten completely.
+     *
+     * @param aListOfUniqueSmiles fragments in the form of unique SMILES.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list, one of its elements or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list contains blank/empty strings or if the destination
+     * array does not have enough space for the fingerprint at the given offset.
+     */
+    void fillBitArray(List<String> aListOfUniqueSmiles, byte[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        FragmentFingerprintCore.validityCheckOfParameterList(aListOfUniqueSmiles, "aListOfUniqueSmiles (list of string instances) is null.",
+                "aListOfUniqueSmiles (at least one list element) is null.",
+                "aListOfUniqueSmiles (at least one list element) is blank/empty.");
+        Objects.requireNonNull(aDestination, "aDestination (array) is null.");
+        this.validityCheckOfDestinationRange(aDestination.length, anOffset);
+        Arrays.fill(aDestination, anOffset, anOffset + this.fragmentDictionary.size(), (byte) 0);
+        for (String tmpUniqueSmiles : aListOfUniqueSmiles) {
+            int tmpPosition = this.fragmentDictionary.getPosition(tmpUniqueSmiles);
+            if (tmpPosition != FragmentDictionary.NOT_FOUND) {
+                aDestination[anOffset + tmpPosition] = 1;
+            }
+        }
+    }
+    //
+    /**
+     * Writes the bits of the key set of the given map into the given array at the offset, the fingerprint range is
+     * overwritten completely. The frequencies are not used.
+     *
+     * @param aUniqueSmilesToFrequencyMap map of fragments in the form of unique SMILES to their frequencies.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the map is null or contains keys or values that are null or if the
+     * destination array is null.
+     * @throws IllegalArgumentException is thrown if the map contains keys that are blank/empty or if the destination
+     * array does not have enough space for the fingerprint at the given offset.
+     */
+    void fillBitArray(Map<String, Integer> aUniqueSmilesToFrequencyMap, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.validityCheckOfParameterMap(aUniqueSmilesToFrequencyMap);
+        Objects.requireNonNull(aDestination, "aDestination (array) is null.");
+        this.validityCheckOfDestinationRange(aDestination.length, anOffset);
+        Arrays.fill(aDestination, anOffset, anOffset + this.fragmentDictionary.size(), 0);
+        for (String tmpUniqueSmiles : aUniqueSmilesToFrequencyMap.keySet()) {
+            int tmpPosition = this.fragmentDictionary.getPosition(tmpUniqueSmiles);
+            if (tmpPosition != FragmentDictionary.NOT_FOUND) {
+                aDestination[anOffset + tmpPosition] = 1;
+            }
+        }
+    }
+    //
+    /**
+     * Writes the frequencies of the given map into the given array at the offset, the fingerprint range is
+     * overwritten completely. Negative frequencies are written as 0.
+     *
+     * @param aUniqueSmilesToFrequencyMap map of fragments in the form of unique SMILES to their frequencies.
+     * @param aDestination array the frequencies are written to.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the map is null or contains keys or values that are null or if the
+     * destination array is null.
+     * @throws IllegalArgumentException is thrown if the map contains keys that are blank/empty or if the destination
+     * array does not have enough space for the fingerprint at the given offset.
+     */
+    void fillCountArray(Map<String, Integer> aUniqueSmilesToFrequencyMap, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.validityCheckOfParameterMap(aUniqueSmilesToFrequencyMap);
+        Objects.requireNonNull(aDestination, "aDestination (array) is null.");
+        this.validityCheckOfDestinationRange(aDestination.length, anOffset);
+        Arrays.fill(aDestination, anOffset, anOffset + this.fragmentDictionary.size(), 0);
+        for (Map.Entry<String, Integer> tmpEntry : aUniqueSmilesToFrequencyMap.entrySet()) {
+            int tmpPosition = this.fragmentDictionary.getPosition(tmpEntry.getKey());
+            if (tmpPosition != FragmentDictionary.NOT_FOUND) {
+                // like the count array methods always did, frequencies smaller than 1 result in a count of 0
+                aDestination[anOffset + tmpPosition] = Math.max(0, tmpEntry.getValue());
+            }
+        }
+    }
+    //
+    /**
+     * Writes the frequencies of the fragments of the given list, i.e. their numbers of occurrences, into the given
+     * array at the offset, the fingerprint range is overwritten completely.
+     *
+     * @param aListOfUniqueSmiles fragments in the form of unique SMILES, possibly several times.
+     * @param aDestination array the frequencies are written to.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list, one of its elements or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list contains blank/empty strings or if the destination
+     * array does not have enough space for the fingerprint at the given offset.
+     */
+    void fillCountArray(List<String> aListOfUniqueSmiles, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        FragmentFingerprintCore.validityCheckOfParameterList(aListOfUniqueSmiles, "aListOfUniqueSmiles (list of string instances) is null.",
+                "aListOfUniqueSmiles (at least one list element) is null.",
+                "aListOfUniqueSmiles (at least one list element) is blank/empty.");
+        Objects.requireNonNull(aDestination, "aDestination (array) is null.");
+        this.validityCheckOfDestinationRange(aDestination.length, anOffset);
+        Arrays.fill(aDestination, anOffset, anOffset + this.fragmentDictionary.size(), 0);
+        for (String tmpUniqueSmiles : aListOfUniqueSmiles) {
+            int tmpPosition = this.fragmentDictionary.getPosition(tmpUniqueSmiles);
+            if (tmpPosition != FragmentDictionary.NOT_FOUND) {
+                aDestination[anOffset + tmpPosition]++;
+            }
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Returns the CDK SubstructureFingerprinter used for the substructure-based fingerprints. It is created on first
+     * access, so the SMARTS patterns of the predefined fragments are parsed only once, also by concurrent callers.
+     *
+     * @return SubstructureFingerprinter
+     */
+    private SubstructureFingerprinter getSubstructureFingerprinter() {
+        SubstructureFingerprinter tmpSubstructureFingerprinter = this.substructureFingerprinter;
+        if (tmpSubstructureFingerprinter == null) {
+            synchronized (this) {
+                tmpSubstructureFingerprinter = this.substructureFingerprinter;
+                if (tmpSubstructureFingerprinter == null) {
+                    tmpSubstructureFingerprinter = new SubstructureFingerprinter(this.fragmentDictionary.toArray());
+                    this.substructureFingerprinter = tmpSubstructureFingerprinter;
+                }
+            }
+        }
+        return tmpSubstructureFingerprinter;
+    }
+    //
+    /**
+     * Returns the compiled SMARTS patterns used for matching one molecule with several threads or along the fragment
+     * hierarchy. They are created on first access, also by concurrent callers only once.
+     *
+     * @return SubstructureKeyMatcher
+     */
+    private SubstructureKeyMatcher getSubstructureKeyMatcher() {
+        SubstructureKeyMatcher tmpSubstructureKeyMatcher = this.substructureKeyMatcher;
+        if (tmpSubstructureKeyMatcher == null) {
+            synchronized (this) {
+                tmpSubstructureKeyMatcher = this.substructureKeyMatcher;
+                if (tmpSubstructureKeyMatcher == null) {
+                    tmpSubstructureKeyMatcher = new SubstructureKeyMatcher(this.fragmentDictionary.toArray());
+                    this.substructureKeyMatcher = tmpSubstructureKeyMatcher;
+                }
+            }
+        }
+        return tmpSubstructureKeyMatcher;
+    }
+    //
+    /**
+     * The input map is checked for validity.
+     *
+     * @param aUniqueSmilesToFrequencyMap map that is checked for validity.
+     * @throws NullPointerException is thrown if the map is null or contains keys or values that are null.
+     * @throws IllegalArgumentException is thrown if the map contains keys that are blank/empty.
+     */
+    private void validityCheckOfParameterMap(Map<String, Integer> aUniqueSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aUniqueSmilesToFrequencyMap, "aUniqueSmilesToFrequencyMap (Map of string and integer instances) is null.");
+        for (Map.Entry<String, Integer> tmpEntry : aUniqueSmilesToFrequencyMap.entrySet()) {
+            if (tmpEntry.getKey() == null || tmpEntry.getValue() == null) {
+                throw new NullPointerException("aUniqueSmilesToFrequencyMap (Map of string and integer instances) contains " +
+                        "instances that are null.");
+            }
+            if (tmpEntry.getKey().isBlank()) {
+                throw new IllegalArgumentException("aUniqueSmilesToFrequencyMap (Map of strings an integer instances) contains strings that are blank/empty.");
+            }
+        }
+    }
+    //
+    /**
+     * Checks that an array of the given length can hold the fingerprint at the given offset.
+     *
+     * @param aDestinationLength length of the destination array.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws IllegalArgumentException is thrown if the fingerprint does not fit into the array at the offset.
+     */
+    private void validityCheckOfDestinationRange(int aDestinationLength, int anOffset) throws IllegalArgumentException {
+        if (anOffset < 0 || anOffset > aDestinationLength - this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("The destination array does not have enough space for the fingerprint at the given offset.");
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * The input list is checked for validity.
+     *
+     * @param aListOfUniqueSmiles is an input list that is checked for validity.
+     * @param anArgumentNullExceptionMessage NullPointerException message.
+     * @param anArgumentElementNullMessage NullPointerException message for list elements.
+     * @param anArgumentElementBlankEmptyMessage error message for empty/blank list elements.
+     * @throws NullPointerException is thrown if the input list or one of its elements is null.
+     * @throws IllegalArgumentException is thrown if the input list contains blank/empty strings.
+     */
+    private static void validityCheckOfParameterList(
+            List<String> aListOfUniqueSmiles,
+            String anArgumentNullExceptionMessage,
+            String anArgumentElementNullMessage,
+            String anArgumentElementBlankEmptyMessage
+    ) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aListOfUniqueSmiles, anArgumentNullExceptionMessage);
+        for (String tmpUniqueSmiles : aListOfUniqueSmiles) {
+            Objects.requireNonNull(tmpUniqueSmiles, anArgumentElementNullMessage);
+            if (tmpUniqueSmiles.isBlank()) {
+                throw new IllegalArgumentException(anArgumentElementBlankEmptyMessage);
+            }
+        }
+    }
+    //</editor-fold>
+}
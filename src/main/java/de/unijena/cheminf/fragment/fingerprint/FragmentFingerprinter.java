@@ -33,13 +33,11 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * Class to generate fragment fingerprints. Bit and count fragment fingerprints can be generated.
@@ -62,15 +60,11 @@ import java.util.Set;
 public class FragmentFingerprinter implements IFragmentFingerprinter {
     //<editor-fold desc="private final class variables" defaultstate="collapsed">
     /**
-     * The array containing all the unique predefined (key) SMILES fragments based
-     * on which the fingerprints are then created. This set of fragment/unique SMILES
-     * must be included when initializing this class.
+     * Core shared with the {@link StatelessFragmentFingerprinter} that creates all fingerprints. It holds the
+     * dictionary of the unique predefined (key) SMILES fragments, which maps the fragments to the position they have
+     * in the fingerprint, and the compiled SMARTS patterns of the fragments.
      */
-    private final String[] fragmentArray;
-    /**
-     * Initial capacity value for maps
-     */
-    private final double INITIAL_CAPACITY_VALUE = 1.5;
+    private final FragmentFingerprintCore fragmentFingerprintCore;
     //</editor-fold>
     //
     //<editor-fold desc="private static final class variables" defaultstate="collapsed">
@@ -81,34 +75,26 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
     //</editor-fold>
     //
     //<editor-fold desc="private class variables" defaultstate="collapsed">
-    /**
-     * The fragmentArray is converted into a HashMap to speed up the matching of the unique SMILES.
-     * The Map maps the unique SMILES of the predefined fragments to the position they have in the array.
-     */
-    private HashMap<String, Integer> uniqueSmilesToPositionMap;
     /**
      * Bit fingerprint for storing the calculated fragment bit fingerprint.
      */
     private BitSetFingerprint cacheBitFingerprint;
     /**
-     * This map is a raw map. If a match between key fragments and molecule fragments (or any fragments) occurs
-     * during the creation of the count fingerprint,the position of the key fragment in the fingerprint is mapped to
-     * the frequency of occurrence of the fragment.
+     * Count fingerprint for storing the calculated fragment count fingerprint.
      */
-    private HashMap<Integer,Integer> cacheRawCountMap;
+    private CountFingerprint cacheCountFingerprint;
     /**
-     * The list is a clone of the list passed as a parameter when creating the bit fingerprint.
-     * It is used to check whether a bit fingerprint already exists for a given list of fragments or molecule fragments.
+     * Copy of the list the cached bit fingerprint was calculated for, taken at the time of the calculation. It is
+     * used to check whether a bit fingerprint already exists for the list passed to {@link #getBitArray(List)}.
+     * Since it is a copy, changes of the caller's list after the calculation are detected.
      */
-    private List<String> cacheListToGenerateBitFingerprint;
+    private List<String> cacheInputOfBitFingerprint;
     /**
-     * The list stores all keys of a map that are necessary to create the count fingerprint.
-     * The map usually represents a molecule by representing the fragments of the molecule by unique SMILES in the
-     * key set and indicating their frequency in the value set. In principle, however,such a map can be applied to any
-     * set of fragments.This list is used to check whether a count fingerprint has already been created for the
-     * specified map.
+     * Copy of the map or list the cached count fingerprint was calculated for, taken at the time of the calculation.
+     * It is used to check whether a count fingerprint already exists for the map or list passed to
+     * {@link #getCountArray(Map)} or {@link #getCountArray(List)}.
      */
-    private List<String> cacheListToGenerateCountFingerprint;
+    private Object cacheInputOfCountFingerprint;
     //</editor-fold>
     //
     // <editor-fold defaultstate="collapsed" desc="Constructor">
@@ -126,12 +112,21 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      * @throws IllegalArgumentException is thrown if the list contains blank strings.
      */
     public FragmentFingerprinter(List<String> aFragmentList) throws NullPointerException, IllegalArgumentException {
-        // Check whether aFragmentList is null or whether there are elements (strings) in the list that are empty.
-        this.validityCheckOfParameterList(aFragmentList,"aFragmentList (list of string instances) is null.",
-                "aFragmentList (at least one list element) is null.",
-                "aFragmentList (at least one list element) is blank/empty.");
-        this.fragmentArray = aFragmentList.toArray(new String[aFragmentList.size()]);
-        this.buildUniqueSmilesToPositionMap();
+        this.fragmentFingerprintCore = new FragmentFingerprintCore(aFragmentList);
+    }
+    //
+    /**
+     * Constructor.
+     * Initialization of the fragment fingerprinter with an existing dictionary of the predefined fragments, e.g.
+     * loaded from a snapshot via {@link FragmentDictionary#loadSnapshot}. The fragments of a dictionary are
+     * already unique and valid, so they are neither checked nor hashed again. The dictionary can be shared with
+     * other fingerprinters.
+     *
+     * @param aFragmentDictionary dictionary of the predefined fragments.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    public FragmentFingerprinter(FragmentDictionary aFragmentDictionary) throws NullPointerException {
+        this.fragmentFingerprintCore = new FragmentFingerprintCore(aFragmentDictionary);
     }
     // </editor-fold>
     //
@@ -153,21 +148,8 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      */
     @Override
     public IBitFingerprint getBitFingerprint(List<String> aListOfUniqueSmiles) throws NullPointerException, IllegalArgumentException {
-        this.validityCheckOfParameterList(aListOfUniqueSmiles,"aListOfUniqueSmiles (list of string instances) is null.",
-                "aListOfUniqueSmiles (at least one list element) is null.",
-                "aListOfUniqueSmiles (at least one list element) is blank/empty.");
-        BitSet tmpBitSet = new BitSet(this.uniqueSmilesToPositionMap.size());
-        Set<String> tmpUniqueSmilesSet = new HashSet<>((int) (aListOfUniqueSmiles.size()*this.INITIAL_CAPACITY_VALUE));
-        tmpUniqueSmilesSet.addAll(aListOfUniqueSmiles);
-        ArrayList<String> tmpUniqueSmilesList = new ArrayList<>(tmpUniqueSmilesSet);
-        this.cacheListToGenerateBitFingerprint = (ArrayList<String>) tmpUniqueSmilesList.clone();
-        for(String tmpUniqueSmilesWithoutDuplicates : tmpUniqueSmilesList) {
-            if (this.uniqueSmilesToPositionMap.containsKey(tmpUniqueSmilesWithoutDuplicates)) {
-                int tmpPosition = uniqueSmilesToPositionMap.get(tmpUniqueSmilesWithoutDuplicates);
-                tmpBitSet.set(tmpPosition, true);
-            }
-        }
-        this.cacheBitFingerprint = new BitSetFingerprint(tmpBitSet);
+        this.cacheBitFingerprint = this.fragmentFingerprintCore.getBitFingerprint(aListOfUniqueSmiles);
+        this.cacheInputOfBitFingerprint = new ArrayList<>(aListOfUniqueSmiles);
         return this.cacheBitFingerprint;
     }
     //
@@ -191,26 +173,9 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      */
     @Override
     public CountFingerprint getCountFingerprint(Map<String, Integer> aUniqueSmilesToFrequencyMap) throws NullPointerException,IllegalArgumentException {
-        this.cacheRawCountMap = new HashMap<>((int) (this.uniqueSmilesToPositionMap.size()*this.INITIAL_CAPACITY_VALUE), 0.75f);
-        this.cacheListToGenerateCountFingerprint = new ArrayList<>(aUniqueSmilesToFrequencyMap.size());
-        Objects.requireNonNull(aUniqueSmilesToFrequencyMap, "aUniqueSmilesToFrequencyMap (Map of string and integer instances) is null.");
-        for (String tmpUniqueSmiles : aUniqueSmilesToFrequencyMap.keySet()) {
-            if(tmpUniqueSmiles == null || aUniqueSmilesToFrequencyMap.get(tmpUniqueSmiles) == null) {
-                throw new NullPointerException("aUniqueSmilesToFrequencyMap (Map of string and integer instances) contains " +
-                        "instances that are null.");
-            }
-            if(tmpUniqueSmiles.isBlank() || tmpUniqueSmiles.isEmpty()) {
-                throw new IllegalArgumentException("aUniqueSmilesToFrequencyMap (Map of strings an integer instances) contains strings that are blank/empty.");
-            }
-            if (this.uniqueSmilesToPositionMap.containsKey(tmpUniqueSmiles)) {
-                int tmpPosition = this.uniqueSmilesToPositionMap.get(tmpUniqueSmiles);
-                this.cacheRawCountMap.put(tmpPosition,aUniqueSmilesToFrequencyMap.get(tmpUniqueSmiles));
-            }
-            for(int i = 1; i<=aUniqueSmilesToFrequencyMap.get(tmpUniqueSmiles); i++) {
-                this.cacheListToGenerateCountFingerprint.add(tmpUniqueSmiles);
-            }
-        }
-        return new CountFingerprint(this.fragmentArray, this.cacheRawCountMap);
+        this.cacheCountFingerprint = this.fragmentFingerprintCore.getCountFingerprint(aUniqueSmilesToFrequencyMap);
+        this.cacheInputOfCountFingerprint = new HashMap<>(aUniqueSmilesToFrequencyMap);
+        return this.cacheCountFingerprint;
     }
     //
     /**
@@ -228,25 +193,45 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      * once in the list. To be able to calculate the fingerprint for a molecule,
      * the fragments should belong to one molecule.
      * @return count fingerprint
-     * @throws NullPointerException is thrown if the list aUniqueSmilesToFrequencyList is null.
-     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings.
+     * @throws NullPointerException is thrown if the list aUniqueSmilesList is null.
+     * @throws IllegalArgumentException is thrown if the list aUniqueSmilesList contains blank/empty strings.
      */
     @Override
     public ICountFingerprint getCountFingerprint(List<String> aUniqueSmilesList) throws NullPointerException, IllegalArgumentException {
-        HashMap<String, Integer> tmpUniqueSmilesToFrequencyCountMap = new HashMap<>((int) (this.uniqueSmilesToPositionMap.size()*this.INITIAL_CAPACITY_VALUE), 0.75f);
-        Objects.requireNonNull(aUniqueSmilesList, "aUniqueSmilesToFrequencyList (list of string instances) is null.");
-        for (String tmpSmiles : aUniqueSmilesList) {
-            Objects.requireNonNull(tmpSmiles, "aUniqueSmilesToFrequencyList (at least one list element) is null.");
-            if(tmpSmiles.isBlank() || tmpSmiles.isEmpty()) {
-                throw new IllegalArgumentException("aUniqueSmilesToFrequencyList (at least one list element) is blank/empty.");
-            }
-            if (!tmpUniqueSmilesToFrequencyCountMap.containsKey(tmpSmiles)) {
-                tmpUniqueSmilesToFrequencyCountMap.put(tmpSmiles, 1);
-            } else {
-                tmpUniqueSmilesToFrequencyCountMap.put(tmpSmiles, tmpUniqueSmilesToFrequencyCountMap.get(tmpSmiles) + 1);
-            }
-        }
-        return this.getCountFingerprint(tmpUniqueSmilesToFrequencyCountMap);
+        this.cacheCountFingerprint = this.fragmentFingerprintCore.getCountFingerprint(aUniqueSmilesList);
+        this.cacheInputOfCountFingerprint = new ArrayList<>(aUniqueSmilesList);
+        return this.cacheCountFingerprint;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * In contrast to {@link #getBitFingerprint(List)}, the calculated fingerprints are not cached, so the batch
+     * calculation does not interfere with the caching of the single molecule methods.
+     *
+     * @throws NullPointerException is thrown if the collection, one of its lists or one of the list elements is null.
+     * @throws IllegalArgumentException is thrown if one of the lists contains blank/empty strings or if the
+     * parallelism is smaller than 1.
+     */
+    @Override
+    public List<IBitFingerprint> getBitFingerprints(Collection<? extends List<String>> aCollectionOfUniqueSmilesLists, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprintCore.getBitFingerprints(aCollectionOfUniqueSmilesLists, aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * In contrast to {@link #getCountFingerprint(Map)}, the calculated fingerprints are not cached, so the batch
+     * calculation does not interfere with the caching of the single molecule methods.
+     *
+     * @throws NullPointerException is thrown if the collection or one of its maps is null or if a map contains
+     * keys or values that are null.
+     * @throws IllegalArgumentException is thrown if one of the maps contains keys that are blank/empty or if the
+     * parallelism is smaller than 1.
+     */
+    @Override
+    public List<ICountFingerprint> getCountFingerprints(Collection<? extends Map<String, Integer>> aCollectionOfUniqueSmilesToFrequencyMaps, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprintCore.getCountFingerprints(aCollectionOfUniqueSmilesToFrequencyMaps, aParallelism);
     }
     //
     /**
@@ -256,7 +241,7 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
     public String getVersionDescription() {
         StringBuilder tmpVersionDescriptionBuilder = new StringBuilder();
         tmpVersionDescriptionBuilder.append(getClass().getSimpleName()).append("/").append(FragmentFingerprinter.FRAGMENT_FINGERPRINTER_VERSION)
-                .append(' ').append("num_bits").append('=').append(this.uniqueSmilesToPositionMap.size());
+                .append(' ').append("num_bits").append('=').append(this.fragmentFingerprintCore.size());
         return tmpVersionDescriptionBuilder.toString();
     }
     //
@@ -271,37 +256,79 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
     //
     /**
      * {@inheritDoc}
+     *
+     * If the fragment hierarchy was initialised via {@link #initializeFragmentHierarchy()}, fragments containing a
+     * fragment that did not match are not tested; the result is the same.
+     *
      * @see SubstructureFingerprinter
      */
     @Override
     public IBitFingerprint getBitFingerprint(IAtomContainer container) throws CDKException {
-        String[] tmpPredefinedFragments = this.getPredefinedFragmentArrayWithoutDuplicates();
-        SubstructureFingerprinter tmpSubstructureFingerprint = new SubstructureFingerprinter(tmpPredefinedFragments);
-        IBitFingerprint tmpBitFingerprintBySubstructureSearch = tmpSubstructureFingerprint.getBitFingerprint(container);
-        return tmpBitFingerprintBySubstructureSearch;
+        return this.fragmentFingerprintCore.getBitFingerprint(container);
     }
     //
     /**
      * {@inheritDoc}
+     *
+     * If the fragment hierarchy was initialised via {@link #initializeFragmentHierarchy()}, fragments containing a
+     * fragment that did not match are not tested; the result is the same.
+     *
      * @see SubstructureFingerprinter
      */
     @Override
     public ICountFingerprint getCountFingerprint(IAtomContainer container) throws CDKException {
-        String[] tmpPredefinedFragments = this.getPredefinedFragmentArrayWithoutDuplicates();
-        SubstructureFingerprinter tmpSubstructureFingerprint = new SubstructureFingerprinter(tmpPredefinedFragments);
-        ICountFingerprint tmpCountFingerprintBySubstructureSearch = tmpSubstructureFingerprint.getCountFingerprint(container);
-        return tmpCountFingerprintBySubstructureSearch;
+        return this.fragmentFingerprintCore.getCountFingerprint(container);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    @Override
+    public IBitFingerprint getBitFingerprint(IAtomContainer aMolecule, int aParallelism) throws NullPointerException, IllegalArgumentException, CDKException {
+        return this.fragmentFingerprintCore.getBitFingerprint(aMolecule, aParallelism);
     }
     //
     /**
-     * UnsupportedOperationException. This method is not supported.
      * {@inheritDoc}
      *
-     * @throws UnsupportedOperationException method is not supported
+     * The returned count fingerprint is in the default dense mode, i.e. like the one of
+     * {@link #getCountFingerprint(IAtomContainer)}, every fragment is a populated bin.
+     *
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    @Override
+    public CountFingerprint getCountFingerprint(IAtomContainer aMolecule, int aParallelism) throws NullPointerException, IllegalArgumentException, CDKException {
+        return this.fragmentFingerprintCore.getCountFingerprint(aMolecule, aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * The raw fingerprint maps the unique SMILES of every predefined fragment that matches the molecule to its number
+     * of unique matches, i.e. the populated bins of {@link #getCountFingerprint(IAtomContainer)} with their keys.
+     * Fragments without a match are not contained. To obtain the bit and count fingerprints as well, use
+     * {@link #getCombinedFingerprint(IAtomContainer)}, which searches the molecule only once.
      */
     @Override
     public Map<String, Integer> getRawFingerprint(IAtomContainer container) throws CDKException {
-       throw new UnsupportedOperationException();
+        return this.getCombinedFingerprint(container).getRawFingerprint();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * If the fragment hierarchy was initialised via {@link #initializeFragmentHierarchy()}, it is used for the
+     * matching.
+     *
+     * @throws NullPointerException is thrown if the molecule is null.
+     */
+    @Override
+    public CombinedFragmentFingerprint getCombinedFingerprint(IAtomContainer aMolecule) throws NullPointerException, CDKException {
+        return this.fragmentFingerprintCore.getCombinedFingerprint(aMolecule);
     }
     //
     /**
@@ -318,11 +345,40 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      */
     @Override
     public int getSize() {
-        return this.uniqueSmilesToPositionMap.size();
+        return this.fragmentFingerprintCore.size();
     }
     // </editor-fold>
     //
     // <editor-fold defaultstate="collapsed" desc="Public methods">
+    /**
+     * Compiles the predefined fragments into SMARTS patterns for the substructure-based (IAtomContainer) fingerprint
+     * methods. Calling this method is optional since the patterns are otherwise compiled lazily on the first call of
+     * one of these methods, but it allows to move the one-time parsing cost to the startup of an application.
+     * Repeated calls have no effect.
+     *
+     * @throws IllegalArgumentException is thrown if at least one of the predefined fragments can not be parsed
+     * as SMARTS pattern.
+     */
+    public void initializeSubstructureFingerprinter() throws IllegalArgumentException {
+        this.fragmentFingerprintCore.initializeSubstructureFingerprinter();
+    }
+    //
+    /**
+     * Builds the containment hierarchy of the predefined fragments, i.e. determines which fragments contain which
+     * other fragments with identical SMARTS atom and bond expressions. Afterwards, {@link #getBitFingerprint(IAtomContainer)}
+     * and {@link #getCountFingerprint(IAtomContainer)} test the fragments from small to large and skip every fragment
+     * containing a fragment that did not match, since it can not match either. This saves many isomorphism tests if
+     * the predefined fragments are nested, e.g. for fragments generated by exhaustive fragmentation, at the one-time
+     * cost of testing the fragments pairwise for containment. The results do not change. Repeated calls have no
+     * effect.
+     *
+     * @throws IllegalArgumentException is thrown if at least one of the predefined fragments can not be parsed
+     * as SMARTS pattern.
+     */
+    public void initializeFragmentHierarchy() throws IllegalArgumentException {
+        this.fragmentFingerprintCore.initializeFragmentHierarchy();
+    }
+    //
     /**
      * Returns the bit definitions i.e. which  bit stands for which fragment SMILES.
      * Important, the number of possible bit definitions may differ from the number of key
@@ -333,12 +389,7 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      * @throws IllegalArgumentException is thrown if the given bit position is not present in the fingerprint.
      */
     public String getBitDefinition(int aBit) throws IllegalArgumentException {
-        String[] tmpPredefinedFragmentsInArray = this.getPredefinedFragmentArrayWithoutDuplicates();
-        if(aBit < tmpPredefinedFragmentsInArray.length && aBit >= 0) {
-            return tmpPredefinedFragmentsInArray[aBit];
-        } else {
-            throw new IllegalArgumentException("This bit is not defined/present in the fingerprint.");
-        }
+        return this.fragmentFingerprintCore.getBitDefinition(aBit);
     }
     //
     /**
@@ -347,6 +398,8 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      * However, the size may differ if there are duplicates in the specified predefined fragments, as they
      * will be ignored/removed.
      * This method is only available for bit fingerprints based on unique SMILES comparisons.
+     * If the last bit fingerprint was calculated for an equal list, it is reused. The given list
+     * is not modified.
      *
      * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
      * in the form of unique SMILES.
@@ -355,13 +408,17 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings.
      */
     public int[] getBitArray(List<String> aListOfUniqueSmiles) throws NullPointerException, IllegalArgumentException {
-        this.validityCheckOfParameterList(aListOfUniqueSmiles,"aListOfUniqueSmiles (list of string instances) is null.",
-                "aListOfUniqueSmiles (at least one list element) is null.",
-                "aListOfUniqueSmiles (at least one list element) is blank/empty.");
-        Set<String> tmpUniqueSmilesSet = new HashSet<>((int) (aListOfUniqueSmiles.size()*this.INITIAL_CAPACITY_VALUE));
-        tmpUniqueSmilesSet.addAll(aListOfUniqueSmiles);
-        List<String> tmpListWithoutPossibleDuplicates = new ArrayList<>(tmpUniqueSmilesSet);
-        return this.createBitArray(tmpListWithoutPossibleDuplicates);
+        Objects.requireNonNull(aListOfUniqueSmiles, "aListOfUniqueSmiles (list of string instances) is null.");
+        int[] tmpBitArray = new int[this.fragmentFingerprintCore.size()];
+        if (this.isCachedInput(aListOfUniqueSmiles, this.cacheInputOfBitFingerprint)) {
+            BitSet tmpBitSet = this.cacheBitFingerprint.asBitSet();
+            for (int i = tmpBitSet.nextSetBit(0); i >= 0; i = tmpBitSet.nextSetBit(i + 1)) {
+                tmpBitArray[i] = 1;
+            }
+        } else {
+            this.fillBitArray(aListOfUniqueSmiles, tmpBitArray, 0);
+        }
+        return tmpBitArray;
     }
     //
     /**
@@ -382,19 +439,9 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      * contains keys or values that are blank/empty, respectively.
      */
     public int[] getBitArray(Map<String,Integer> aUniqueSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException {
-        Objects.requireNonNull(aUniqueSmilesToFrequencyMap, "aUniqueSmilesToFrequencyMap (Map of string and integer instances) is null.");
-        List<String> tmpListOfUniqueSmiles = new ArrayList<>(aUniqueSmilesToFrequencyMap.size());
-        for(String tmpUniqueSmiles : aUniqueSmilesToFrequencyMap.keySet()) {
-            if(tmpUniqueSmiles == null || aUniqueSmilesToFrequencyMap.get(tmpUniqueSmiles) == null) {
-                throw new NullPointerException("aUniqueSmilesToFrequencyMap (Map of string and integer instances) contains " +
-                        "instances that are null.");
-            }
-            if(tmpUniqueSmiles.isBlank() || tmpUniqueSmiles.isEmpty()) {
-                throw new IllegalArgumentException("aUniqueSmilesToFrequencyMap (Map of strings an integer instances) contains strings that are blank/empty.");
-            }
-            tmpListOfUniqueSmiles.add(tmpUniqueSmiles);
-        }
-        return this.createBitArray(tmpListOfUniqueSmiles);
+        int[] tmpBitArray = new int[this.fragmentFingerprintCore.size()];
+        this.fillBitArray(aUniqueSmilesToFrequencyMap, tmpBitArray, 0);
+        return tmpBitArray;
     }
     //
     /**
@@ -405,6 +452,8 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      * However, the size may differ if there are duplicates in the specified predefined fragments, as they
      * will be ignored/removed.
      * This method is only available for count fingerprints based on unique SMILES comparisons.
+     * Negative frequencies result in a count of 0.
+     * If the last count fingerprint was calculated for an equal map, it is reused.
      *
      * @param aUniqueSmilesToFrequencyMap map usually represents a molecule by representing the fragments of
      * the molecule by unique SMILES in the key set and indicating their frequency in the value set. In principle,
@@ -417,25 +466,26 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      */
     public int[] getCountArray(Map<String, Integer> aUniqueSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException {
         Objects.requireNonNull(aUniqueSmilesToFrequencyMap, "aUniqueSmilesToFrequencyMap (Map of string and integer instances) is null.");
-        List<String> tmpListOfUniqueSmiles = new ArrayList<>(aUniqueSmilesToFrequencyMap.size());
-        for(String tmpUniqueSmiles : aUniqueSmilesToFrequencyMap.keySet()) {
-            if(tmpUniqueSmiles == null || aUniqueSmilesToFrequencyMap.get(tmpUniqueSmiles) == null) {
-                throw new NullPointerException("aUniqueSmilesToFrequencyMap (Map of string and integer instances) contains " +
-                        "instances that are null.");
-            }
-            if(tmpUniqueSmiles.isBlank() || tmpUniqueSmiles.isEmpty()) {
-                throw new IllegalArgumentException("aUniqueSmilesToFrequencyMap (Map of strings an integer instances) contains strings that are blank/empty.");
-            }
-            for(int i = 1; i<=aUniqueSmilesToFrequencyMap.get(tmpUniqueSmiles); i++) {
-                tmpListOfUniqueSmiles.add(tmpUniqueSmiles);
+        int[] tmpCountArray = new int[this.fragmentFingerprintCore.size()];
+        if (this.isCachedInput(aUniqueSmilesToFrequencyMap, this.cacheInputOfCountFingerprint)) {
+            this.cacheCountFingerprint.writeCountsTo(tmpCountArray, 0);
+            // the count fingerprint keeps negative frequencies, the count array does not
+            for (int i = 0; i < tmpCountArray.length; i++) {
+                if (tmpCountArray[i] < 0) {
+                    tmpCountArray[i] = 0;
+                }
             }
+        } else {
+            this.fillCountArray(aUniqueSmilesToFrequencyMap, tmpCountArray, 0);
         }
-       return this.createCountArray(tmpListOfUniqueSmiles);
+        return tmpCountArray;
     }
     //
     /**
      * Returns the count array for the specified list.
      * This method is only available for count fingerprints based on unique SMILES comparisons.
+     * If the last count fingerprint was calculated for an equal list, it is reused. The given
+     * list is not modified.
      * @see #getCountArray(Map)
      *
      * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
@@ -445,134 +495,129 @@ public class FragmentFingerprinter implements IFragmentFingerprinter {
      * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings.
      */
     public int[] getCountArray(List<String> aListOfUniqueSmiles) throws NullPointerException, IllegalArgumentException {
-        this.validityCheckOfParameterList(aListOfUniqueSmiles,"aListOfUniqueSmiles (list of string instances) is null.",
-                "aListOfUniqueSmiles (at least one list element) is null.",
-                "aListOfUniqueSmiles (at least one list element) is blank/empty.");
-        return this.createCountArray(aListOfUniqueSmiles);
+        Objects.requireNonNull(aListOfUniqueSmiles, "aListOfUniqueSmiles (list of string instances) is null.");
+        int[] tmpCountArray = new int[this.fragmentFingerprintCore.size()];
+        if (this.isCachedInput(aListOfUniqueSmiles, this.cacheInputOfCountFingerprint)) {
+            this.cacheCountFingerprint.writeCountsTo(tmpCountArray, 0);
+        } else {
+            this.fillCountArray(aListOfUniqueSmiles, tmpCountArray, 0);
+        }
+        return tmpCountArray;
     }
-    // </editor-fold>
     //
-    // <editor-fold defaultstate="collapsed" desc="Private methods">
     /**
-     * Generates count array for the specified list (molecule).
-     * Among other things, already generated results are used to generate the array.
-     * For example, if a count fingerprint has already been generated for the given list of unique SMILES or for
-     * the given molecule, the result of the count fingerprint is expanded into an array. Otherwise,
-     * the count fingerprint is generated first and then the count array.
+     * Writes the bit array for the specified list into the given array, starting at the given offset, instead of
+     * allocating a new array. The range of the fingerprint size is overwritten completely, so the same array can be
+     * reused for every molecule, or a large array can hold one row per molecule of a fingerprint matrix.
+     * No results are cached and no objects are created per fragment.
      *
-     * @param aListOfUniqueSmiles is a list that stores fragments in the form of unique SMILES.
-     * @return int[] count array
+     * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
+     * in the form of unique SMILES.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings or if
+     * the destination array does not have enough space for the fingerprint at the given offset.
+     * @see #getBitArray(List)
      */
-    private int[] createCountArray(List<String> aListOfUniqueSmiles) {
-        int[] tmpCountArray = new int[this.uniqueSmilesToPositionMap.size()];
-        if(this.cacheRawCountMap != null && this.cacheListToGenerateCountFingerprint.size() == aListOfUniqueSmiles.size()) {
-            Collections.sort(aListOfUniqueSmiles);
-            Collections.sort(this.cacheListToGenerateCountFingerprint);
-            if(aListOfUniqueSmiles.equals(this.cacheListToGenerateCountFingerprint)) {
-                for (int tmpPositivePositions : this.cacheRawCountMap.keySet()) {
-                    tmpCountArray[tmpPositivePositions] = this.cacheRawCountMap.get(tmpPositivePositions);
-                }
-            }
-        } else {
-            this.cacheRawCountMap = null;
-            this.cacheListToGenerateCountFingerprint = null;
-            this.getCountFingerprint(aListOfUniqueSmiles);
-            for (int tmpPositivePositions : this.cacheRawCountMap.keySet()) {
-                tmpCountArray[tmpPositivePositions] = this.cacheRawCountMap.get(tmpPositivePositions);
-            }
-        }
-        return tmpCountArray;
+    public void fillBitArray(List<String> aListOfUniqueSmiles, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillBitArray(aListOfUniqueSmiles, aDestination, anOffset);
     }
     //
     /**
-     * Generates bit array for the specified list (molecule).
-     * Among other things, already generated results are used to generate the array.
-     * For example, if a bit fingerprint has already been generated for the given list of unique SMILES or for
-     * the given molecule, the result of the bit fingerprint is expanded into an array. Otherwise,
-     * the bit fingerprint is generated first and then the bit array.
+     * Writes the bit array for the specified list into the given byte array, starting at the given offset.
+     * Apart from the type of the destination array, the method is identical to
+     * {@link #fillBitArray(List, int[], int)}.
      *
-     * @param aListOfUniqueSmiles is a list that stores fragments in the form of unique SMILES.
-     * @return int[] bit array
+     * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
+     * in the form of unique SMILES.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings or if
+     * the destination array does not have enough space for the fingerprint at the given offset.
      */
-    private int[] createBitArray(List<String> aListOfUniqueSmiles) {
-        int[] tmpBitArray = new int[this.uniqueSmilesToPositionMap.size()];
-        if(this.cacheBitFingerprint != null && this.cacheListToGenerateBitFingerprint.size() == aListOfUniqueSmiles.size()) {
-            Collections.sort(aListOfUniqueSmiles);
-            Collections.sort(this.cacheListToGenerateBitFingerprint);
-            if(aListOfUniqueSmiles.equals(this.cacheListToGenerateBitFingerprint)) {
-                for (int tmpPositivePositions : this.cacheBitFingerprint.getSetbits()) {
-                    tmpBitArray[tmpPositivePositions] = 1;
-                }
-                //return tmpBitArray;
-            }
-        } else {
-            this.cacheBitFingerprint = null;
-            this.cacheListToGenerateBitFingerprint = null;
-            this.getBitFingerprint(aListOfUniqueSmiles);
-            for (int tmpPositivePositions : this.cacheBitFingerprint.getSetbits()) {
-                tmpBitArray[tmpPositivePositions] = 1;
-            }
-        }
-        return tmpBitArray;
+    public void fillBitArray(List<String> aListOfUniqueSmiles, byte[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillBitArray(aListOfUniqueSmiles, aDestination, anOffset);
     }
     //
     /**
-     * Method stores all key fragments specified during initialization in an array. It ensures that there are
-     * no fragment duplicates in the array.
+     * Writes the bit array for the key set of the specified map into the given array, starting at the given offset.
+     * The frequencies are not used.
+     * @see #fillBitArray(List, int[], int)
      *
-     * @return String[]
+     * @param aUniqueSmilesToFrequencyMap map that represents a molecule by the unique SMILES of its fragments in
+     * the key set and their frequencies in the value set.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the map aUniqueSmilesToFrequencyMap is null or contains keys or
+     * values that are null or if the destination array is null.
+     * @throws IllegalArgumentException is thrown if the map aUniqueSmilesToFrequencyMap contains keys that are
+     * blank/empty or if the destination array does not have enough space for the fingerprint at the given offset.
      */
-    private String[] getPredefinedFragmentArrayWithoutDuplicates() {
-        String[] tmpPredefinedFragmentsInArray = new String[this.uniqueSmilesToPositionMap.size()];
-        for(String tmpKeyFragmentPositionInFingerprint : this.uniqueSmilesToPositionMap.keySet()) {
-            tmpPredefinedFragmentsInArray[this.uniqueSmilesToPositionMap.get(tmpKeyFragmentPositionInFingerprint)] = tmpKeyFragmentPositionInFingerprint;
-        }
-        return tmpPredefinedFragmentsInArray;
+    public void fillBitArray(Map<String, Integer> aUniqueSmilesToFrequencyMap, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillBitArray(aUniqueSmilesToFrequencyMap, aDestination, anOffset);
     }
     //
     /**
-     * The input parameter are checked for validity.
-     *
-     * @param aListOfUniqueSmiles is an input list that is checked for validity.
-     * @param anArgumentNullExceptionMessage NullPointerException message.
-     * @param anArgumentElementNullMessage NullPointerException message for list elements.
-     * @param anArgumentElementBlankEmptyMessage error message for empty/blank list elements.
-     * @throws IllegalArgumentException is thrown if the input list is null.
-     * @throws NullPointerException is thrown if the input list contains blank/empty strings.
-     */
-    private void validityCheckOfParameterList(
-            List<String> aListOfUniqueSmiles,
-            String anArgumentNullExceptionMessage,
-            String anArgumentElementNullMessage,
-            String anArgumentElementBlankEmptyMessage
-    ) throws IllegalArgumentException, NullPointerException {
-        Objects.requireNonNull(aListOfUniqueSmiles, anArgumentNullExceptionMessage);
-        for (String tmpUniqueSmiles : aListOfUniqueSmiles) {
-            Objects.requireNonNull(tmpUniqueSmiles, anArgumentElementNullMessage);
-            if (tmpUniqueSmiles.isBlank() || tmpUniqueSmiles.isEmpty()) {
-                throw new IllegalArgumentException(anArgumentElementBlankEmptyMessage);
-            }
-        }
+     * Writes the count array for the specified map into the given array, starting at the given offset. Negative
+     * frequencies are written as 0.
+     * @see #fillBitArray(List, int[], int)
+     *
+     * @param aUniqueSmilesToFrequencyMap map that represents a molecule by the unique SMILES of its fragments in
+     * the key set and their frequencies in the value set.
+     * @param aDestination array the frequencies are written to.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the map aUniqueSmilesToFrequencyMap is null or contains keys or
+     * values that are null or if the destination array is null.
+     * @throws IllegalArgumentException is thrown if the map aUniqueSmilesToFrequencyMap contains keys that are
+     * blank/empty or if the destination array does not have enough space for the fingerprint at the given offset.
+     */
+    public void fillCountArray(Map<String, Integer> aUniqueSmilesToFrequencyMap, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillCountArray(aUniqueSmilesToFrequencyMap, aDestination, anOffset);
     }
     //
     /**
-     * The key fragments defined during initialization are stored in a map.
-     * The map maps the key fragments to their positions in the fingerprint.
+     * Writes the count array for the specified list into the given array, starting at the given offset. The
+     * frequency of a fragment is given by the number of its occurrences in the list.
+     * @see #fillBitArray(List, int[], int)
      *
-     * @return HashMap<String,Integer>
+     * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
+     * in the form of unique SMILES.
+     * @param aDestination array the frequencies are written to.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings or if
+     * the destination array does not have enough space for the fingerprint at the given offset.
      */
-    private HashMap<String,Integer> buildUniqueSmilesToPositionMap() {
-        this.uniqueSmilesToPositionMap = new HashMap<>((int) (this.fragmentArray.length*this.INITIAL_CAPACITY_VALUE), 0.75f);
-        int tmpValuePosition = 0;
-        for (String tmpKey : this.fragmentArray) {
-            if (!this.uniqueSmilesToPositionMap.containsKey(tmpKey)) {
-                this.uniqueSmilesToPositionMap.put(tmpKey, tmpValuePosition);
-                tmpValuePosition++;
-            } else {
-                continue;
-            }
-        }
-        return this.uniqueSmilesToPositionMap;
+    public void fillCountArray(List<String> aListOfUniqueSmiles, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillCountArray(aListOfUniqueSmiles, aDestination, anOffset);
+    }
+    // </editor-fold>
+    //
+    // <editor-fold defaultstate="collapsed" desc="Package-private methods">
+    /**
+     * Returns the dictionary of the predefined fragments.
+     *
+     * @return fragment dictionary
+     */
+    FragmentDictionary getFragmentDictionary() {
+        return this.fragmentFingerprintCore.getFragmentDictionary();
+    }
+    // </editor-fold>
+    //
+    // <editor-fold defaultstate="collapsed" desc="Private methods">
+    /**
+     * Checks whether the given input equals the copy of the input the cached fingerprint was calculated for. The
+     * input is compared element by element, so an instance modified after the calculation is not mistaken for the
+     * cached input.
+     *
+     * @param anInput list or map passed to one of the array methods.
+     * @param aCachedInput copy of the input of the cached fingerprint or null if there is none.
+     * @return true if the cached fingerprint can be used for the given input.
+     */
+    private boolean isCachedInput(Object anInput, Object aCachedInput) {
+        return aCachedInput != null && aCachedInput.equals(anInput);
     }
     // </editor-fold>
 }
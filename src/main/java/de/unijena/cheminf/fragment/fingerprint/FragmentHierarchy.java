@@ -0,0 +1,226 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.AtomMatcher;
+import org.openscience.cdk.isomorphism.BondMatcher;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.VentoFoggia;
+import org.openscience.cdk.isomorphism.matchers.Expr;
+import org.openscience.cdk.isomorphism.matchers.QueryAtom;
+import org.openscience.cdk.isomorphism.matchers.QueryBond;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Containment hierarchy of the fragment patterns of a {@link SubstructureKeyMatcher}, a directed acyclic graph with
+ * an edge from a fragment to every fragment that contains it. A fragment is contained in another fragment if there
+ * is a subgraph isomorphism from the first into the second fragment that maps every atom and bond to one with an
+ * identical SMARTS expression (or maps an atom or bond that matches anything). Every molecule containing the larger
+ * fragment then necessarily contains the smaller one, so if a parent fragment does not match a molecule, none of its
+ * descendants can match and their isomorphism tests can be skipped. The containment test is conservative: fragments
+ * whose atoms or bonds only imply each other without identical expressions are not connected, which only costs
+ * pruning opportunities, never correctness. Fragments with stereo elements or component grouping constraints are
+ * never used as parents since their matches depend on more than the subgraph.
+ * <br>The hierarchy is built once per fragment set. Its size is quadratic in the number of fragments in the worst
+ * case; only the transitive reduction is kept, i.e. the direct parents of every fragment.
+ * <br>The hierarchy is immutable and can be used by several threads at the same time.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class FragmentHierarchy {
+    //<editor-fold desc="private static final class constants" defaultstate="collapsed">
+    /**
+     * Property key of the component grouping of SMARTS queries, see the CDK ComponentFilter
+     */
+    private static final String COMPONENT_GROUPING_PROPERTY_KEY = "COMPONENT.GROUPING";
+    /**
+     * Atom matcher that accepts an atom of a fragment if the atom of the containing fragment has an identical
+     * expression
+     */
+    private static final AtomMatcher IDENTICAL_EXPRESSION_ATOM_MATCHER = new AtomMatcher() {
+        @Override
+        public boolean matches(IAtom anAtom, IAtom aContainingAtom) {
+            return anAtom instanceof QueryAtom tmpQueryAtom && aContainingAtom instanceof QueryAtom tmpContainingQueryAtom
+                    && FragmentHierarchy.isImplied(tmpQueryAtom.getExpression(), tmpContainingQueryAtom.getExpression());
+        }
+    };
+    /**
+     * Bond matcher that accepts a bond of a fragment if the bond of the containing fragment has an identical
+     * expression
+     */
+    private static final BondMatcher IDENTICAL_EXPRESSION_BOND_MATCHER = new BondMatcher() {
+        @Override
+        public boolean matches(IBond aBond, IBond aContainingBond) {
+            return aBond instanceof QueryBond tmpQueryBond && aContainingBond instanceof QueryBond tmpContainingQueryBond
+                    && FragmentHierarchy.isImplied(tmpQueryBond.getExpression(), tmpContainingQueryBond.getExpression());
+        }
+    };
+    //</editor-fold>
+    //
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Fragment positions in topological order, every fragment follows all its parents
+     */
+    private final int[] topologicalOrder;
+    /**
+     * Direct parents of every fragment position, i.e. the contained fragments
+     */
+    private final int[][] parents;
+    /**
+     * Number of edges of the hierarchy
+     */
+    private final int numberOfEdges;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor, builds the hierarchy of the fragment patterns of the given matcher by testing the fragments for
+     * containment, starting with the largest candidates. Candidates are screened by their signatures and skipped if
+     * they are already known ancestors.
+     *
+     * @param aSubstructureKeyMatcher matcher with the compiled fragment patterns.
+     * @throws NullPointerException is thrown if the matcher is null.
+     */
+    FragmentHierarchy(SubstructureKeyMatcher aSubstructureKeyMatcher) throws NullPointerException {
+        Objects.requireNonNull(aSubstructureKeyMatcher, "aSubstructureKeyMatcher is null.");
+        int tmpSize = aSubstructureKeyMatcher.size();
+        Integer[] tmpOrder = new Integer[tmpSize];
+        for (int i = 0; i < tmpSize; i++) {
+            tmpOrder[i] = i;
+        }
+        // contained fragments have at most as many atoms and bonds, equal sizes are ordered by position
+        Arrays.sort(tmpOrder, Comparator.<Integer>comparingInt(aPosition -> aSubstructureKeyMatcher.getQuery(aPosition).getAtomCount())
+                .thenComparingInt(aPosition -> aSubstructureKeyMatcher.getQuery(aPosition).getBondCount())
+                .thenComparingInt(aPosition -> aPosition));
+        this.topologicalOrder = new int[tmpSize];
+        Pattern[] tmpContainmentPatterns = new Pattern[tmpSize];
+        for (int i = 0; i < tmpSize; i++) {
+            this.topologicalOrder[i] = tmpOrder[i];
+            IAtomContainer tmpQuery = aSubstructureKeyMatcher.getQuery(tmpOrder[i]);
+            if (FragmentHierarchy.isParentCandidate(tmpQuery)) {
+                tmpContainmentPatterns[i] = VentoFoggia.findSubstructure(tmpQuery,
+                        FragmentHierarchy.IDENTICAL_EXPRESSION_ATOM_MATCHER, FragmentHierarchy.IDENTICAL_EXPRESSION_BOND_MATCHER);
+            }
+        }
+        this.parents = new int[tmpSize][];
+        // ancestors by index in the topological order
+        BitSet[] tmpAncestors = new BitSet[tmpSize];
+        int[] tmpParentBuffer = new int[tmpSize];
+        int tmpNumberOfEdges = 0;
+        for (int i = 0; i < tmpSize; i++) {
+            int tmpPosition = this.topologicalOrder[i];
+            IAtomContainer tmpQuery = aSubstructureKeyMatcher.getQuery(tmpPosition);
+            SubstructureSignature tmpSignature = aSubstructureKeyMatcher.getSignature(tmpPosition);
+            BitSet tmpAncestorSet = new BitSet(i);
+            int tmpNumberOfParents = 0;
+            for (int j = i - 1; j >= 0; j--) {
+                if (tmpContainmentPatterns[j] == null || tmpAncestorSet.get(j)) {
+                    continue;
+                }
+                int tmpCandidatePosition = this.topologicalOrder[j];
+                if (aSubstructureKeyMatcher.getSignature(tmpCandidatePosition).isContainedIn(tmpSignature)
+                        && tmpContainmentPatterns[j].matches(tmpQuery)) {
+                    tmpParentBuffer[tmpNumberOfParents++] = tmpCandidatePosition;
+                    tmpAncestorSet.set(j);
+                    tmpAncestorSet.or(tmpAncestors[j]);
+                }
+            }
+            tmpAncestors[i] = tmpAncestorSet;
+            this.parents[tmpPosition] = Arrays.copyOf(tmpParentBuffer, tmpNumberOfParents);
+            tmpNumberOfEdges += tmpNumberOfParents;
+        }
+        this.numberOfEdges = tmpNumberOfEdges;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Returns the fragment positions in topological order, i.e. every fragment follows all its parents. Smaller
+     * fragments come first.
+     *
+     * @return fragment positions; the array must not be modified
+     */
+    int[] getTopologicalOrder() {
+        return this.topologicalOrder;
+    }
+    //
+    /**
+     * Returns the direct parents of the fragment at the given position, i.e. the largest fragments it contains.
+     *
+     * @param aPosition fragment position.
+     * @return parent positions; the array must not be modified
+     */
+    int[] getParents(int aPosition) {
+        return this.parents[aPosition];
+    }
+    //
+    /**
+     * Returns the number of edges of the hierarchy, i.e. the summed number of direct parents of all fragments.
+     *
+     * @return number of edges
+     */
+    int getNumberOfEdges() {
+        return this.numberOfEdges;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Checks whether the query can be the parent of another fragment, i.e. whether every subgraph isomorphism to a
+     * molecule is a match of the query. Queries with stereo elements or component grouping have additional
+     * constraints.
+     *
+     * @param aQuery parsed fragment query.
+     * @return true if the query can be a parent
+     */
+    private static boolean isParentCandidate(IAtomContainer aQuery) {
+        return !aQuery.stereoElements().iterator().hasNext()
+                && aQuery.getProperty(FragmentHierarchy.COMPONENT_GROUPING_PROPERTY_KEY) == null;
+    }
+    //
+    /**
+     * Checks whether every atom or bond matching the containing expression also matches the given expression, i.e.
+     * whether the expressions are identical or the given expression matches anything.
+     *
+     * @param anExpression expression of the contained fragment.
+     * @param aContainingExpression expression of the containing fragment.
+     * @return true if the expression is implied
+     */
+    private static boolean isImplied(Expr anExpression, Expr aContainingExpression) {
+        if (anExpression == null) {
+            return false;
+        }
+        return anExpression.type() == Expr.Type.TRUE || anExpression.equals(aContainingExpression);
+    }
+    //</editor-fold>
+}
@@ -24,12 +24,19 @@
 
 package de.unijena.cheminf.fragment.fingerprint;
 
+import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.fingerprint.IBitFingerprint;
 import org.openscience.cdk.fingerprint.ICountFingerprint;
 import org.openscience.cdk.fingerprint.IFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Interface for implementing fragment fingerprinters.
@@ -100,5 +107,180 @@ public interface IFragmentFingerprinter extends IFingerprinter {
      * @return the count fingerprint
      */
     ICountFingerprint getCountFingerprint(List<String> aUniqueSmilesList);
+    //
+    /**
+     * Method for calculating the substructure-based bit fingerprint of a single molecule with several threads. The
+     * result is the same as the one of {@link #getBitFingerprint(IAtomContainer)}, but the SMARTS patterns of the
+     * predefined fragments are distributed to the given number of threads and matched concurrently against the
+     * molecule, which reduces the time needed for one large molecule. The molecule is prepared for the SMARTS
+     * matching (ring perception and aromaticity) once, i.e. it is modified. The default implementation ignores the
+     * parallelism and delegates to {@link #getBitFingerprint(IAtomContainer)}.
+     *
+     * @param aMolecule molecule to calculate the fingerprint for.
+     * @param aParallelism number of threads used to match the patterns, 1 means sequential matching on the
+     *                     calling thread.
+     * @return bit fingerprint with the positions of the matching fragments set
+     * @throws CDKException is thrown if no fragments are defined.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    default IBitFingerprint getBitFingerprint(IAtomContainer aMolecule, int aParallelism) throws CDKException {
+        if (aParallelism < 1) {
+            throw new IllegalArgumentException("aParallelism must be at least 1.");
+        }
+        return this.getBitFingerprint(aMolecule);
+    }
+    //
+    /**
+     * Method for calculating the substructure-based count fingerprint of a single molecule with several threads.
+     * The frequencies are the same as the ones of {@link #getCountFingerprint(IAtomContainer)}, i.e. the numbers
+     * of unique matches, but the SMARTS patterns of the predefined fragments are distributed to the given number of
+     * threads and matched concurrently against the molecule. The molecule is prepared for the SMARTS matching
+     * (ring perception and aromaticity) once, i.e. it is modified. The default implementation ignores the
+     * parallelism and delegates to {@link #getCountFingerprint(IAtomContainer)}.
+     *
+     * @param aMolecule molecule to calculate the fingerprint for.
+     * @param aParallelism number of threads used to match the patterns, 1 means sequential matching on the
+     *                     calling thread.
+     * @return count fingerprint with the number of unique matches of every fragment
+     * @throws CDKException is thrown if no fragments are defined.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    default ICountFingerprint getCountFingerprint(IAtomContainer aMolecule, int aParallelism) throws CDKException {
+        if (aParallelism < 1) {
+            throw new IllegalArgumentException("aParallelism must be at least 1.");
+        }
+        return this.getCountFingerprint(aMolecule);
+    }
+    //
+    /**
+     * Method for calculating the bit, count and raw substructure-based fingerprints of a single molecule with one
+     * substructure search. The molecule is matched once against all predefined fragments, counting the unique matches
+     * like {@link #getCountFingerprint(IAtomContainer)}; the returned result derives the bit fingerprint, the count
+     * fingerprint and the raw fingerprint (see {@link #getRawFingerprint(IAtomContainer)}) from these counts. This is
+     * faster than calling the single fingerprint methods one after the other, which search the molecule again each
+     * time. The molecule is prepared for the SMARTS matching (ring perception and aromaticity), i.e. it is modified.
+     * The default implementation derives the result from {@link #getCountFingerprint(IAtomContainer)}, which has to
+     * return a {@link CountFingerprint} of the fragments.
+     *
+     * @param aMolecule molecule to calculate the fingerprints for.
+     * @return match result from which all three fingerprints can be obtained
+     * @throws CDKException is thrown if no fragments are defined.
+     * @throws UnsupportedOperationException is thrown by the default implementation if the count fingerprint is not
+     * a {@link CountFingerprint}.
+     */
+    default CombinedFragmentFingerprint getCombinedFingerprint(IAtomContainer aMolecule) throws CDKException {
+        ICountFingerprint tmpCountFingerprint = this.getCountFingerprint(aMolecule);
+        if (!(tmpCountFingerprint instanceof CountFingerprint tmpFragmentCountFingerprint)) {
+            throw new UnsupportedOperationException("The count fingerprint does not define its fragments.");
+        }
+        FragmentDictionary tmpFragmentDictionary = tmpFragmentCountFingerprint.getFragmentDictionary();
+        int[] tmpCountArray = new int[tmpFragmentDictionary.size()];
+        tmpFragmentCountFingerprint.writeCountsTo(tmpCountArray, 0);
+        return new CombinedFragmentFingerprint(tmpFragmentDictionary, tmpCountArray);
+    }
+    //
+    /**
+     * Method for calculating the bit fingerprints of multiple molecules (or arbitrary fragment sets) at once.
+     * The work is distributed to the given number of threads. Each list in the collection is processed as described
+     * in {@link #getBitFingerprint(List)}. The default implementation ignores the parallelism and calculates the
+     * fingerprints one after the other on the calling thread; implementations that are safe to be used by several
+     * threads override it.
+     *
+     * @param aCollectionOfUniqueSmilesLists collection of lists that store fragments in the form of unique SMILES,
+     *                                       one list per molecule.
+     * @param aParallelism number of threads used to calculate the fingerprints, 1 means sequential calculation
+     *                     on the calling thread.
+     * @return the bit fingerprints in the iteration order of the given collection
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    default List<IBitFingerprint> getBitFingerprints(Collection<? extends List<String>> aCollectionOfUniqueSmilesLists, int aParallelism) {
+        if (aParallelism < 1) {
+            throw new IllegalArgumentException("aParallelism must be at least 1.");
+        }
+        List<IBitFingerprint> tmpBitFingerprintList = new ArrayList<>(aCollectionOfUniqueSmilesLists.size());
+        for (List<String> tmpListOfUniqueSmiles : aCollectionOfUniqueSmilesLists) {
+            tmpBitFingerprintList.add(this.getBitFingerprint(tmpListOfUniqueSmiles));
+        }
+        return tmpBitFingerprintList;
+    }
+    //
+    /**
+     * Method for calculating the bit fingerprints of multiple molecules (or arbitrary fragment sets) at once,
+     * using as many threads as the common fork-join pool, in which the work is then done.
+     *
+     * @param aCollectionOfUniqueSmilesLists collection of lists that store fragments in the form of unique SMILES,
+     *                                       one list per molecule.
+     * @return the bit fingerprints in the iteration order of the given collection
+     * @see #getBitFingerprints(Collection, int)
+     */
+    default List<IBitFingerprint> getBitFingerprints(Collection<? extends List<String>> aCollectionOfUniqueSmilesLists) {
+        return this.getBitFingerprints(aCollectionOfUniqueSmilesLists, ForkJoinPool.getCommonPoolParallelism());
+    }
+    //
+    /**
+     * Method for calculating the bit fingerprints of a stream of molecules (or arbitrary fragment sets).
+     * The stream is consumed completely before the fingerprints are calculated.
+     *
+     * @param aStreamOfUniqueSmilesLists stream of lists that store fragments in the form of unique SMILES,
+     *                                   one list per molecule.
+     * @param aParallelism number of threads used to calculate the fingerprints.
+     * @return the bit fingerprints in the encounter order of the given stream
+     * @see #getBitFingerprints(Collection, int)
+     */
+    default List<IBitFingerprint> getBitFingerprints(Stream<? extends List<String>> aStreamOfUniqueSmilesLists, int aParallelism) {
+        return this.getBitFingerprints(aStreamOfUniqueSmilesLists.collect(Collectors.toList()), aParallelism);
+    }
+    //
+    /**
+     * Method for calculating the count fingerprints of multiple molecules (or arbitrary fragment sets) at once.
+     * The work is distributed to the given number of threads. Each map in the collection is processed as described
+     * in {@link #getCountFingerprint(Map)}. The default implementation ignores the parallelism and calculates the
+     * fingerprints one after the other on the calling thread; implementations that are safe to be used by several
+     * threads override it.
+     *
+     * @param aCollectionOfUniqueSmilesToFrequencyMaps collection of maps that map fragments in the form of unique
+     *                                                 SMILES to their frequencies, one map per molecule.
+     * @param aParallelism number of threads used to calculate the fingerprints, 1 means sequential calculation
+     *                     on the calling thread.
+     * @return the count fingerprints in the iteration order of the given collection
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    default List<ICountFingerprint> getCountFingerprints(Collection<? extends Map<String, Integer>> aCollectionOfUniqueSmilesToFrequencyMaps, int aParallelism) {
+        if (aParallelism < 1) {
+            throw new IllegalArgumentException("aParallelism must be at least 1.");
+        }
+        List<ICountFingerprint> tmpCountFingerprintList = new ArrayList<>(aCollectionOfUniqueSmilesToFrequencyMaps.size());
+        for (Map<String, Integer> tmpUniqueSmilesToFrequencyMap : aCollectionOfUniqueSmilesToFrequencyMaps) {
+            tmpCountFingerprintList.add(this.getCountFingerprint(tmpUniqueSmilesToFrequencyMap));
+        }
+        return tmpCountFingerprintList;
+    }
+    //
+    /**
+     * Method for calculating the count fingerprints of multiple molecules (or arbitrary fragment sets) at once,
+     * using as many threads as the common fork-join pool, in which the work is then done.
+     *
+     * @param aCollectionOfUniqueSmilesToFrequencyMaps collection of maps that map fragments in the form of unique
+     *                                                 SMILES to their frequencies, one map per molecule.
+     * @return the count fingerprints in the iteration order of the given collection
+     * @see #getCountFingerprints(Collection, int)
+     */
+    default List<ICountFingerprint> getCountFingerprints(Collection<? extends Map<String, Integer>> aCollectionOfUniqueSmilesToFrequencyMaps) {
+        return this.getCountFingerprints(aCollectionOfUniqueSmilesToFrequencyMaps, ForkJoinPool.getCommonPoolParallelism());
+    }
+    //
+    /**
+     * Method for calculating the count fingerprints of a stream of molecules (or arbitrary fragment sets).
+     * The stream is consumed completely before the fingerprints are calculated.
+     *
+     * @param aStreamOfUniqueSmilesToFrequencyMaps stream of maps that map fragments in the form of unique
+     *                                             SMILES to their frequencies, one map per molecule.
+     * @param aParallelism number of threads used to calculate the fingerprints.
+     * @return the count fingerprints in the encounter order of the given stream
+     * @see #getCountFingerprints(Collection, int)
+     */
+    default List<ICountFingerprint> getCountFingerprints(Stream<? extends Map<String, Integer>> aStreamOfUniqueSmilesToFrequencyMaps, int aParallelism) {
+        return this.getCountFingerprints(aStreamOfUniqueSmilesToFrequencyMaps.collect(Collectors.toList()), aParallelism);
+    }
     // </editor-fold>
 }
@@ -0,0 +1,196 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Fork-join task that applies a fingerprint function to every element of a list of inputs and stores the results
+ * in the order of the inputs. The index range is split recursively until the ranges are small enough to be
+ * processed sequentially, so idle worker threads can steal the remaining work of busy ones.
+ * The given function must be safe to be called concurrently. The tasks run in the common pool if the requested
+ * parallelism equals its parallelism, otherwise in a shared pool that is created once per parallelism and reused
+ * by all later calls, see {@link SharedForkJoinPools}.
+ *
+ * @param <T> type of the inputs, e.g. lists of fragment SMILES
+ * @param <R> type of the results, e.g. fingerprints
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class ParallelFingerprintTask<T, R> extends RecursiveAction {
+    //<editor-fold desc="private static final class variables" defaultstate="collapsed">
+    /**
+     * Version of the serialized form inherited from ForkJoinTask, the task is never serialized
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Number of sub ranges created per worker thread so that the work can be balanced between the threads.
+     */
+    private static final int SUB_RANGES_PER_THREAD = 8;
+    //</editor-fold>
+    //
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Inputs to process
+     */
+    private final List<? extends T> inputs;
+    /**
+     * Array the results are written to, at the index of the respective input
+     */
+    private final Object[] results;
+    /**
+     * Function that creates the result for one input
+     */
+    private final Function<? super T, ? extends R> function;
+    /**
+     * First index (inclusive) of the range processed by this task
+     */
+    private final int start;
+    /**
+     * Last index (exclusive) of the range processed by this task
+     */
+    private final int end;
+    /**
+     * Maximum size of a range that is processed sequentially
+     */
+    private final int sequentialThreshold;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor.
+     *
+     * @param anInputList inputs to process
+     * @param aResultArray array the results are written to
+     * @param aFunction function that creates the result for one input
+     * @param aStart first index (inclusive) of the range to process
+     * @param anEnd last index (exclusive) of the range to process
+     * @param aSequentialThreshold maximum size of a range that is processed sequentially
+     */
+    private ParallelFingerprintTask(List<? extends T> anInputList, Object[] aResultArray, Function<? super T, ? extends R> aFunction,
+                                    int aStart, int anEnd, int aSequentialThreshold) {
+        this.inputs = anInputList;
+        this.results = aResultArray;
+        this.function = aFunction;
+        this.start = aStart;
+        this.end = anEnd;
+        this.sequentialThreshold = aSequentialThreshold;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static methods" defaultstate="collapsed">
+    /**
+     * Applies the given function to all inputs using the given number of threads and returns the results in the
+     * iteration order of the inputs. With a parallelism of 1, the inputs are processed on the calling thread,
+     * otherwise in the pool returned by {@link SharedForkJoinPools#getPool(int)}.
+     * An exception thrown by the function for one of the inputs is rethrown by this method.
+     *
+     * @param aCollectionOfInputs inputs to process
+     * @param aFunction function that creates the result for one input, must be thread-safe
+     * @param aParallelism number of threads to use
+     * @param <T> type of the inputs
+     * @param <R> type of the results
+     * @return list of the results in the iteration order of the inputs
+     * @throws NullPointerException is thrown if the collection or the function is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    static <T, R> List<R> calculate(Collection<? extends T> aCollectionOfInputs, Function<? super T, ? extends R> aFunction,
+                                    int aParallelism) throws NullPointerException, IllegalArgumentException {
+        if (aParallelism < 1) {
+            throw new IllegalArgumentException("aParallelism must be at least 1.");
+        }
+        return ParallelFingerprintTask.calculate(aCollectionOfInputs, aFunction,
+                aParallelism == 1 ? null : SharedForkJoinPools.getPool(aParallelism));
+    }
+    //
+    /**
+     * Applies the given function to all inputs in the given pool and returns the results in the iteration order of
+     * the inputs. This allows callers to keep a long-lived pool of their own. If the pool is null or there are fewer
+     * than two inputs, the inputs are processed on the calling thread.
+     * An exception thrown by the function for one of the inputs is rethrown by this method.
+     *
+     * @param aCollectionOfInputs inputs to process
+     * @param aFunction function that creates the result for one input, must be thread-safe
+     * @param aPool pool to process the inputs in, null for the calling thread
+     * @param <T> type of the inputs
+     * @param <R> type of the results
+     * @return list of the results in the iteration order of the inputs
+     * @throws NullPointerException is thrown if the collection or the function is null.
+     */
+    static <T, R> List<R> calculate(Collection<? extends T> aCollectionOfInputs, Function<? super T, ? extends R> aFunction,
+                                    ForkJoinPool aPool) throws NullPointerException {
+        Objects.requireNonNull(aCollectionOfInputs, "aCollectionOfInputs (collection of fingerprint inputs) is null.");
+        Objects.requireNonNull(aFunction, "aFunction is null.");
+        List<? extends T> tmpInputList;
+        if (aCollectionOfInputs instanceof List && aCollectionOfInputs instanceof RandomAccess) {
+            tmpInputList = (List<? extends T>) aCollectionOfInputs;
+        } else {
+            tmpInputList = new ArrayList<>(aCollectionOfInputs);
+        }
+        Object[] tmpResultArray = new Object[tmpInputList.size()];
+        if (aPool == null || tmpInputList.size() < 2) {
+            new ParallelFingerprintTask<T, R>(tmpInputList, tmpResultArray, aFunction, 0, tmpInputList.size(), tmpInputList.size()).compute();
+        } else {
+            int tmpSequentialThreshold = Math.max(1, tmpInputList.size() / (aPool.getParallelism() * ParallelFingerprintTask.SUB_RANGES_PER_THREAD));
+            aPool.invoke(new ParallelFingerprintTask<T, R>(tmpInputList, tmpResultArray, aFunction, 0, tmpInputList.size(), tmpSequentialThreshold));
+        }
+        List<R> tmpResultList = new ArrayList<>(tmpResultArray.length);
+        for (Object tmpResult : tmpResultArray) {
+            // the array only holds results of the function
+            @SuppressWarnings("unchecked")
+            R tmpTypedResult = (R) tmpResult;
+            tmpResultList.add(tmpTypedResult);
+        }
+        return tmpResultList;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Overridden protected methods" defaultstate="collapsed">
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute() {
+        if (this.end - this.start <= this.sequentialThreshold) {
+            for (int i = this.start; i < this.end; i++) {
+                this.results[i] = this.function.apply(this.inputs.get(i));
+            }
+        } else {
+            int tmpMiddle = (this.start + this.end) >>> 1;
+            ParallelFingerprintTask.invokeAll(
+                    new ParallelFingerprintTask<T, R>(this.inputs, this.results, this.function, this.start, tmpMiddle, this.sequentialThreshold),
+                    new ParallelFingerprintTask<T, R>(this.inputs, this.results, this.function, tmpMiddle, this.end, this.sequentialThreshold));
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fork-join pools shared by all parallel computations of the library, i.e. batch fingerprints, concurrent substructure
+ * matching and similarity searches. For a requested parallelism that equals the one of the common pool, the common
+ * pool is used, otherwise one pool per parallelism that is created on the first request and reused by all later
+ * requests, so no threads are started and stopped per call.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class SharedForkJoinPools {
+    //<editor-fold desc="private static final class variables" defaultstate="collapsed">
+    /**
+     * Pools with a parallelism different from the one of the common pool, mapped to their parallelism. The pools
+     * are never shut down, their worker threads are daemon threads that terminate when the pool is idle.
+     */
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> SHARED_POOLS = new ConcurrentHashMap<>();
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Private constructor, the class only has static methods.
+     */
+    private SharedForkJoinPools() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static methods" defaultstate="collapsed">
+    /**
+     * Returns the pool used for the given number of threads. This is the common pool if the parallelism equals
+     * its parallelism, otherwise a shared pool with the given parallelism that is created on the first request and
+     * reused afterwards. The returned pool must not be shut down.
+     *
+     * @param aParallelism number of threads to use
+     * @return pool with the given parallelism
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    public static ForkJoinPool getPool(int aParallelism) throws IllegalArgumentException {
+        if (aParallelism < 1) {
+            throw new IllegalArgumentException("aParallelism must be at least 1.");
+        }
+        if (aParallelism == ForkJoinPool.getCommonPoolParallelism()) {
+            return ForkJoinPool.commonPool();
+        }
+        return SharedForkJoinPools.SHARED_POOLS.computeIfAbsent(aParallelism, ForkJoinPool::new);
+    }
+    //</editor-fold>
+}
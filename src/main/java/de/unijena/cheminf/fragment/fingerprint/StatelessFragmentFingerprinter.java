@@ -0,0 +1,477 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.fingerprint.SubstructureFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable and thread-safe variant of the {@link FragmentFingerprinter}. It offers the same fingerprint methods but
+ * keeps no results of previous calls, i.e. every call only works on its own local data. Therefore, one instance can
+ * be shared between an arbitrary number of threads without any external synchronization, and the fragment
+ * dictionary is held only once instead of once per thread.
+ * <br>
+ * The only state initialised after construction are the compiled SMARTS patterns of the predefined fragments that
+ * are used for the IAtomContainer based methods and, on request, their containment hierarchy. They are created once,
+ * either on the first call of one of these methods, via {@link #initializeSubstructureFingerprinter()} or via
+ * {@link #initializeFragmentHierarchy()}, and are not modified afterwards.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class StatelessFragmentFingerprinter implements IFragmentFingerprinter {
+    //<editor-fold desc="private static final class variables" defaultstate="collapsed">
+    /**
+     * Version of the stateless fragment fingerprinter
+     */
+    private static final String STATELESS_FRAGMENT_FINGERPRINTER_VERSION = "1.0.0.0";
+    //</editor-fold>
+    //
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Stateless core holding the dictionary of the predefined fragments and the compiled SMARTS patterns, which
+     * creates all fingerprints.
+     */
+    private final FragmentFingerprintCore fragmentFingerprintCore;
+    //</editor-fold>
+    //
+    // <editor-fold defaultstate="collapsed" desc="Constructor">
+    /**
+     * Constructor.
+     * Initialization of the fragment fingerprinter by using a user-defined
+     * set of fragments in the form of unique SMILES.
+     * Duplicate fragment SMILES strings in the input list are ignored and are not part of the fingerprint
+     * multiple times.
+     *
+     * @param aFragmentList is the list in which the predefined fragments are stored.
+     * @throws NullPointerException is thrown if the list aFragmentList is null.
+     * @throws IllegalArgumentException is thrown if the list contains blank strings.
+     */
+    public StatelessFragmentFingerprinter(List<String> aFragmentList) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore = new FragmentFingerprintCore(aFragmentList);
+    }
+    //
+    /**
+     * Constructor.
+     * Initialization of the fragment fingerprinter with an existing dictionary of the predefined fragments, e.g.
+     * loaded from a snapshot via {@link FragmentDictionary#loadSnapshot}. The fragments of a dictionary are
+     * already unique and valid, so they are neither checked nor hashed again. The dictionary can be shared with
+     * other fingerprinters.
+     *
+     * @param aFragmentDictionary dictionary of the predefined fragments.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    public StatelessFragmentFingerprinter(FragmentDictionary aFragmentDictionary) throws NullPointerException {
+        this.fragmentFingerprintCore = new FragmentFingerprintCore(aFragmentDictionary);
+    }
+    // </editor-fold>
+    //
+    // <editor-fold defaultstate="collapsed" desc="Overriden public methods">
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings.
+     */
+    @Override
+    public IBitFingerprint getBitFingerprint(List<String> aListOfUniqueSmiles) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprintCore.getBitFingerprint(aListOfUniqueSmiles);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException is thrown if the map aUniqueSmilesToFrequencyMap is
+     * null or contains keys or values that are null respectively.
+     * @throws IllegalArgumentException is thrown if the map aUniqueSmilesToFrequencyMap
+     * contains keys that are blank/empty.
+     */
+    @Override
+    public CountFingerprint getCountFingerprint(Map<String, Integer> aUniqueSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprintCore.getCountFingerprint(aUniqueSmilesToFrequencyMap);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException is thrown if the list aUniqueSmilesList is null.
+     * @throws IllegalArgumentException is thrown if the list aUniqueSmilesList contains blank/empty strings.
+     */
+    @Override
+    public CountFingerprint getCountFingerprint(List<String> aUniqueSmilesList) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprintCore.getCountFingerprint(aUniqueSmilesList);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException is thrown if the collection, one of its lists or one of the list elements is null.
+     * @throws IllegalArgumentException is thrown if one of the lists contains blank/empty strings or if the
+     * parallelism is smaller than 1.
+     */
+    @Override
+    public List<IBitFingerprint> getBitFingerprints(Collection<? extends List<String>> aCollectionOfUniqueSmilesLists, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprintCore.getBitFingerprints(aCollectionOfUniqueSmilesLists, aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException is thrown if the collection or one of its maps is null or if a map contains
+     * keys or values that are null.
+     * @throws IllegalArgumentException is thrown if one of the maps contains keys that are blank/empty or if the
+     * parallelism is smaller than 1.
+     */
+    @Override
+    public List<ICountFingerprint> getCountFingerprints(Collection<? extends Map<String, Integer>> aCollectionOfUniqueSmilesToFrequencyMaps, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return this.fragmentFingerprintCore.getCountFingerprints(aCollectionOfUniqueSmilesToFrequencyMaps, aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getVersionDescription() {
+        StringBuilder tmpVersionDescriptionBuilder = new StringBuilder();
+        tmpVersionDescriptionBuilder.append(getClass().getSimpleName()).append("/").append(StatelessFragmentFingerprinter.STATELESS_FRAGMENT_FINGERPRINTER_VERSION)
+                .append(' ').append("num_bits").append('=').append(this.fragmentFingerprintCore.size());
+        return tmpVersionDescriptionBuilder.toString();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BitSet getFingerprint(IAtomContainer mol) throws CDKException {
+        return this.getBitFingerprint(mol).asBitSet();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the given atom container is prepared for the SMARTS matching (ring perception and aromaticity),
+     * i.e. it is modified. Concurrent calls must therefore not pass the same atom container instance.
+     *
+     * If the fragment hierarchy was initialised via {@link #initializeFragmentHierarchy()}, fragments containing a
+     * fragment that did not match are not tested; the result is the same.
+     *
+     * @see SubstructureFingerprinter
+     */
+    @Override
+    public IBitFingerprint getBitFingerprint(IAtomContainer container) throws CDKException {
+        return this.fragmentFingerprintCore.getBitFingerprint(container);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the given atom container is prepared for the SMARTS matching (ring perception and aromaticity),
+     * i.e. it is modified. Concurrent calls must therefore not pass the same atom container instance.
+     *
+     * If the fragment hierarchy was initialised via {@link #initializeFragmentHierarchy()}, fragments containing a
+     * fragment that did not match are not tested; the result is the same.
+     *
+     * @see SubstructureFingerprinter
+     */
+    @Override
+    public ICountFingerprint getCountFingerprint(IAtomContainer container) throws CDKException {
+        return this.fragmentFingerprintCore.getCountFingerprint(container);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the given atom container is prepared for the SMARTS matching (ring perception and aromaticity),
+     * i.e. it is modified. Concurrent calls must therefore not pass the same atom container instance.
+     *
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    @Override
+    public IBitFingerprint getBitFingerprint(IAtomContainer aMolecule, int aParallelism) throws NullPointerException, IllegalArgumentException, CDKException {
+        return this.fragmentFingerprintCore.getBitFingerprint(aMolecule, aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * The returned count fingerprint is in the default dense mode, i.e. like the one of
+     * {@link #getCountFingerprint(IAtomContainer)}, every fragment is a populated bin.
+     *
+     * Note that the given atom container is prepared for the SMARTS matching (ring perception and aromaticity),
+     * i.e. it is modified. Concurrent calls must therefore not pass the same atom container instance.
+     *
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    @Override
+    public CountFingerprint getCountFingerprint(IAtomContainer aMolecule, int aParallelism) throws NullPointerException, IllegalArgumentException, CDKException {
+        return this.fragmentFingerprintCore.getCountFingerprint(aMolecule, aParallelism);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * The raw fingerprint maps the unique SMILES of every predefined fragment that matches the molecule to its number
+     * of unique matches, i.e. the populated bins of {@link #getCountFingerprint(IAtomContainer)} with their keys.
+     * Fragments without a match are not contained. To obtain the bit and count fingerprints as well, use
+     * {@link #getCombinedFingerprint(IAtomContainer)}, which searches the molecule only once.
+     */
+    @Override
+    public Map<String, Integer> getRawFingerprint(IAtomContainer container) throws CDKException {
+        return this.getCombinedFingerprint(container).getRawFingerprint();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * If the fragment hierarchy was initialised via {@link #initializeFragmentHierarchy()}, it is used for the
+     * matching.
+     *
+     * Note that the given atom container is prepared for the SMARTS matching (ring perception and aromaticity),
+     * i.e. it is modified. Concurrent calls must therefore not pass the same atom container instance.
+     *
+     * @throws NullPointerException is thrown if the molecule is null.
+     */
+    @Override
+    public CombinedFragmentFingerprint getCombinedFingerprint(IAtomContainer aMolecule) throws NullPointerException, CDKException {
+        return this.fragmentFingerprintCore.getCombinedFingerprint(aMolecule);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * The size is equal to the number of predefined fragments without duplicates.
+     */
+    @Override
+    public int getSize() {
+        return this.fragmentFingerprintCore.size();
+    }
+    // </editor-fold>
+    //
+    // <editor-fold defaultstate="collapsed" desc="Public methods">
+    /**
+     * Compiles the predefined fragments into SMARTS patterns for the substructure-based (IAtomContainer)
+     * fingerprint methods. Calling this method is optional since the patterns are otherwise compiled on the first
+     * call of one of these methods. Repeated calls have no effect.
+     *
+     * @throws IllegalArgumentException is thrown if at least one of the predefined fragments can not be parsed
+     * as SMARTS pattern.
+     */
+    public void initializeSubstructureFingerprinter() throws IllegalArgumentException {
+        this.fragmentFingerprintCore.initializeSubstructureFingerprinter();
+    }
+    //
+    /**
+     * Builds the containment hierarchy of the predefined fragments, i.e. determines which fragments contain which
+     * other fragments with identical SMARTS atom and bond expressions. Afterwards, {@link #getBitFingerprint(IAtomContainer)}
+     * and {@link #getCountFingerprint(IAtomContainer)} skip every fragment containing a fragment that did not match,
+     * without changing the results. The hierarchy is built only once, repeated and concurrent calls have no further
+     * effect.
+     *
+     * @throws IllegalArgumentException is thrown if at least one of the predefined fragments can not be parsed
+     * as SMARTS pattern.
+     */
+    public void initializeFragmentHierarchy() throws IllegalArgumentException {
+        this.fragmentFingerprintCore.initializeFragmentHierarchy();
+    }
+    //
+    /**
+     * Returns the bit definition, i.e. the fragment SMILES represented by the given position.
+     *
+     * @param aBit position in the fingerprint.
+     * @return unique SMILES corresponding to the specified position.
+     * @throws IllegalArgumentException is thrown if the given bit position is not present in the fingerprint.
+     */
+    public String getBitDefinition(int aBit) throws IllegalArgumentException {
+        return this.fragmentFingerprintCore.getBitDefinition(aBit);
+    }
+    //
+    /**
+     * Returns the bit array for the specified list of fragments.
+     *
+     * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
+     * in the form of unique SMILES.
+     * @return int[] bit array
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings.
+     * @see FragmentFingerprinter#getBitArray(List)
+     */
+    public int[] getBitArray(List<String> aListOfUniqueSmiles) throws NullPointerException, IllegalArgumentException {
+        int[] tmpBitArray = new int[this.fragmentFingerprintCore.size()];
+        this.fillBitArray(aListOfUniqueSmiles, tmpBitArray, 0);
+        return tmpBitArray;
+    }
+    //
+    /**
+     * Returns the bit array for the key set of the specified map, the frequencies are not used.
+     *
+     * @param aUniqueSmilesToFrequencyMap map that represents a molecule by the unique SMILES of its fragments in
+     * the key set and their frequencies in the value set.
+     * @return int[] bit array
+     * @throws NullPointerException is thrown if the map aUniqueSmilesToFrequencyMap is
+     * null or contains keys or values that are null respectively.
+     * @throws IllegalArgumentException is thrown if the map aUniqueSmilesToFrequencyMap
+     * contains keys that are blank/empty.
+     * @see FragmentFingerprinter#getBitArray(Map)
+     */
+    public int[] getBitArray(Map<String, Integer> aUniqueSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException {
+        int[] tmpBitArray = new int[this.fragmentFingerprintCore.size()];
+        this.fillBitArray(aUniqueSmilesToFrequencyMap, tmpBitArray, 0);
+        return tmpBitArray;
+    }
+    //
+    /**
+     * Returns the count array for the specified map. Negative frequencies result in a count of 0.
+     *
+     * @param aUniqueSmilesToFrequencyMap map that represents a molecule by the unique SMILES of its fragments in
+     * the key set and their frequencies in the value set.
+     * @return int[] count array
+     * @throws NullPointerException is thrown if the map aUniqueSmilesToFrequencyMap is
+     * null or contains keys or values that are null respectively.
+     * @throws IllegalArgumentException is thrown if the map aUniqueSmilesToFrequencyMap
+     * contains keys that are blank/empty.
+     * @see FragmentFingerprinter#getCountArray(Map)
+     */
+    public int[] getCountArray(Map<String, Integer> aUniqueSmilesToFrequencyMap) throws NullPointerException, IllegalArgumentException {
+        int[] tmpCountArray = new int[this.fragmentFingerprintCore.size()];
+        this.fillCountArray(aUniqueSmilesToFrequencyMap, tmpCountArray, 0);
+        return tmpCountArray;
+    }
+    //
+    /**
+     * Returns the count array for the specified list, the frequency of a fragment is given by the number of its
+     * occurrences in the list.
+     *
+     * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
+     * in the form of unique SMILES.
+     * @return int[] count array
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings.
+     * @see FragmentFingerprinter#getCountArray(List)
+     */
+    public int[] getCountArray(List<String> aListOfUniqueSmiles) throws NullPointerException, IllegalArgumentException {
+        int[] tmpCountArray = new int[this.fragmentFingerprintCore.size()];
+        this.fillCountArray(aListOfUniqueSmiles, tmpCountArray, 0);
+        return tmpCountArray;
+    }
+    //
+    /**
+     * Writes the bit array for the specified list into the given array, starting at the given offset, instead of
+     * allocating a new array. The range of the fingerprint size is overwritten completely, so the same array can be
+     * reused for every molecule, or a large array can hold one row per molecule of a fingerprint matrix.
+     * No results are cached and no objects are created per fragment.
+     *
+     * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
+     * in the form of unique SMILES.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings or if
+     * the destination array does not have enough space for the fingerprint at the given offset.
+     */
+    public void fillBitArray(List<String> aListOfUniqueSmiles, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillBitArray(aListOfUniqueSmiles, aDestination, anOffset);
+    }
+    //
+    /**
+     * Writes the bit array for the specified list into the given byte array, starting at the given offset.
+     * Apart from the type of the destination array, the method is identical to
+     * {@link #fillBitArray(List, int[], int)}.
+     *
+     * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
+     * in the form of unique SMILES.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings or if
+     * the destination array does not have enough space for the fingerprint at the given offset.
+     */
+    public void fillBitArray(List<String> aListOfUniqueSmiles, byte[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillBitArray(aListOfUniqueSmiles, aDestination, anOffset);
+    }
+    //
+    /**
+     * Writes the bit array for the key set of the specified map into the given array, starting at the given offset.
+     * The frequencies are not used.
+     * @see #fillBitArray(List, int[], int)
+     *
+     * @param aUniqueSmilesToFrequencyMap map that represents a molecule by the unique SMILES of its fragments in
+     * the key set and their frequencies in the value set.
+     * @param aDestination array the bits are written to (0 or 1).
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the map aUniqueSmilesToFrequencyMap is null or contains keys or
+     * values that are null or if the destination array is null.
+     * @throws IllegalArgumentException is thrown if the map aUniqueSmilesToFrequencyMap contains keys that are
+     * blank/empty or if the destination array does not have enough space for the fingerprint at the given offset.
+     */
+    public void fillBitArray(Map<String, Integer> aUniqueSmilesToFrequencyMap, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillBitArray(aUniqueSmilesToFrequencyMap, aDestination, anOffset);
+    }
+    //
+    /**
+     * Writes the count array for the specified map into the given array, starting at the given offset. Negative
+     * frequencies are written as 0.
+     * @see #fillBitArray(List, int[], int)
+     *
+     * @param aUniqueSmilesToFrequencyMap map that represents a molecule by the unique SMILES of its fragments in
+     * the key set and their frequencies in the value set.
+     * @param aDestination array the frequencies are written to.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the map aUniqueSmilesToFrequencyMap is null or contains keys or
+     * values that are null or if the destination array is null.
+     * @throws IllegalArgumentException is thrown if the map aUniqueSmilesToFrequencyMap contains keys that are
+     * blank/empty or if the destination array does not have enough space for the fingerprint at the given offset.
+     */
+    public void fillCountArray(Map<String, Integer> aUniqueSmilesToFrequencyMap, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillCountArray(aUniqueSmilesToFrequencyMap, aDestination, anOffset);
+    }
+    //
+    /**
+     * Writes the count array for the specified list into the given array, starting at the given offset. The
+     * frequency of a fragment is given by the number of its occurrences in the list.
+     * @see #fillBitArray(List, int[], int)
+     *
+     * @param aListOfUniqueSmiles is a list that stores molecule fragments or arbitrary fragments
+     * in the form of unique SMILES.
+     * @param aDestination array the frequencies are written to.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the list aListOfUniqueSmiles or the destination array is null.
+     * @throws IllegalArgumentException is thrown if the list aListOfUniqueSmiles contains blank/empty strings or if
+     * the destination array does not have enough space for the fingerprint at the given offset.
+     */
+    public void fillCountArray(List<String> aListOfUniqueSmiles, int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.fragmentFingerprintCore.fillCountArray(aListOfUniqueSmiles, aDestination, anOffset);
+    }
+    // </editor-fold>
+}
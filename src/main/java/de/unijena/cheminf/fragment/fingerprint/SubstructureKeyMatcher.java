@@ -0,0 +1,548 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.matchers.Expr;
+import org.openscience.cdk.isomorphism.matchers.QueryAtom;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.QueryBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smarts.Smarts;
+import org.openscience.cdk.smarts.SmartsPattern;
+import org.openscience.cdk.smarts.SmartsResult;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compiled SMARTS patterns of the predefined fragments for substructure-based fingerprints of single molecules,
+ * matched by several threads at once. The patterns are compiled once; per molecule, the molecule is prepared once
+ * (ring perception and aromaticity, like the CDK SubstructureFingerprinter does) and then matched concurrently
+ * against all patterns in a long-lived fork-join pool. Before a pattern is matched, the feature counts of the molecule are screened against the
+ * {@link SubstructureSignature} of the pattern, and patterns the molecule can not contain are skipped without a
+ * subgraph isomorphism test. If only a few patterns pass the screen, they are matched on the calling thread, since
+ * distributing them would cost more than it saves. The results are identical to the ones of the CDK SubstructureFingerprinter: a bit is set
+ * if the pattern matches, the count is the number of unique matches.
+ * <br>Alternatively, a molecule can be matched on the calling thread along a {@link FragmentHierarchy} of the
+ * patterns, which skips every pattern that contains another pattern that did not match.
+ * <br>Matching only reads the prepared molecule, except for the ring size, ring count and recursive SMARTS
+ * expressions, which temporarily mark atoms of the molecule or initialize state of the pattern. Patterns using
+ * these expressions are matched sequentially on the calling thread after the other patterns. Unique SMILES of
+ * fragments never contain them.
+ * <br>The matcher is immutable and can be used by several threads for different molecules at the same time.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class SubstructureKeyMatcher {
+    //<editor-fold desc="private static final class variables" defaultstate="collapsed">
+    /**
+     * Minimum number of patterns passing the signature screen for them to be matched by several threads
+     */
+    private static final int MINIMUM_CONCURRENT_CANDIDATES = 32;
+    /**
+     * Number of sub ranges created per worker thread so that the work can be balanced between the threads
+     */
+    private static final int SUB_RANGES_PER_THREAD = 8;
+    //</editor-fold>
+    //
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Parsed queries of the patterns, in the order of the fingerprint positions
+     */
+    private final IAtomContainer[] queries;
+    /**
+     * Compiled patterns, in the order of the fingerprint positions
+     */
+    private final Pattern[] patterns;
+    /**
+     * Signatures of the patterns for screening molecules, in the order of the fingerprint positions
+     */
+    private final SubstructureSignature[] signatures;
+    /**
+     * Positions of the patterns that can be matched concurrently against the same molecule
+     */
+    private final int[] concurrentPositions;
+    /**
+     * Positions of the patterns that have to be matched sequentially
+     */
+    private final int[] sequentialPositions;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor, parses and compiles the given SMARTS.
+     *
+     * @param aSmartsArray SMARTS (or SMILES) of the predefined fragments in the order of their positions.
+     * @throws NullPointerException is thrown if the array or one of its elements is null.
+     * @throws IllegalArgumentException is thrown if one of the SMARTS can not be parsed.
+     */
+    SubstructureKeyMatcher(String[] aSmartsArray) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aSmartsArray, "aSmartsArray is null.");
+        this.queries = new IAtomContainer[aSmartsArray.length];
+        this.patterns = new Pattern[aSmartsArray.length];
+        this.signatures = new SubstructureSignature[aSmartsArray.length];
+        int[] tmpConcurrentPositions = new int[aSmartsArray.length];
+        int tmpNumberOfConcurrentPositions = 0;
+        int[] tmpSequentialPositions = new int[aSmartsArray.length];
+        int tmpNumberOfSequentialPositions = 0;
+        for (int i = 0; i < aSmartsArray.length; i++) {
+            Objects.requireNonNull(aSmartsArray[i], "aSmartsArray (at least one array element) is null.");
+            QueryAtomContainer tmpQuery = new QueryAtomContainer(SilentChemObjectBuilder.getInstance());
+            SmartsResult tmpResult = Smarts.parseToResult(tmpQuery, aSmartsArray[i]);
+            if (!tmpResult.ok()) {
+                throw new IllegalArgumentException("Could not parse SMARTS: " + aSmartsArray[i] + "\n"
+                        + tmpResult.getMessage() + "\n" + tmpResult.displayErrorLocation());
+            }
+            this.queries[i] = tmpQuery;
+            this.patterns[i] = Pattern.findSubstructure(tmpQuery);
+            this.signatures[i] = SubstructureSignature.of(tmpQuery);
+            if (SubstructureKeyMatcher.isConcurrentlyMatchable(tmpQuery)) {
+                tmpConcurrentPositions[tmpNumberOfConcurrentPositions++] = i;
+            } else {
+                tmpSequentialPositions[tmpNumberOfSequentialPositions++] = i;
+            }
+        }
+        this.concurrentPositions = Arrays.copyOf(tmpConcurrentPositions, tmpNumberOfConcurrentPositions);
+        this.sequentialPositions = Arrays.copyOf(tmpSequentialPositions, tmpNumberOfSequentialPositions);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Returns for every pattern whether it matches the given molecule. The molecule is prepared first, i.e. its
+     * ring and aromaticity flags are set.
+     *
+     * @param aMolecule molecule to match.
+     * @param aParallelism number of threads to use, 1 matches all patterns on the calling thread. The patterns are
+     *                     matched in the pool returned by {@link SharedForkJoinPools#getPool(int)}.
+     * @return bit set with the positions of the matching patterns
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    BitSet matchBits(IAtomContainer aMolecule, int aParallelism) throws NullPointerException, IllegalArgumentException, CDKException {
+        return this.matchBits(aMolecule, aParallelism == 1 ? null : SharedForkJoinPools.getPool(aParallelism));
+    }
+    //
+    /**
+     * Returns for every pattern whether it matches the given molecule, matching the patterns in the given pool. The
+     * molecule is prepared first, i.e. its ring and aromaticity flags are set.
+     *
+     * @param aMolecule molecule to match.
+     * @param aPool pool to match the patterns in, null to match all patterns on the calling thread.
+     * @return bit set with the positions of the matching patterns
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    BitSet matchBits(IAtomContainer aMolecule, ForkJoinPool aPool) throws NullPointerException, CDKException {
+        return SubstructureKeyMatcher.toBitSet(this.match(aMolecule, aPool, false));
+    }
+    //
+    /**
+     * Returns for every pattern whether it matches the given molecule, on the calling thread and skipping the
+     * patterns with a parent in the given hierarchy that did not match. The molecule is prepared first, i.e. its
+     * ring and aromaticity flags are set.
+     *
+     * @param aMolecule molecule to match.
+     * @param aFragmentHierarchy hierarchy of the patterns of this matcher.
+     * @return bit set with the positions of the matching patterns
+     * @throws NullPointerException is thrown if the molecule or the hierarchy is null.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    BitSet matchBits(IAtomContainer aMolecule, FragmentHierarchy aFragmentHierarchy) throws NullPointerException, CDKException {
+        return SubstructureKeyMatcher.toBitSet(this.match(aMolecule, aFragmentHierarchy, false));
+    }
+    //
+    /**
+     * Returns the count fingerprint with the number of unique matches of every pattern in the given molecule. The
+     * molecule is prepared first, i.e. its ring and aromaticity flags are set.
+     *
+     * @param aMolecule molecule to match.
+     * @param aParallelism number of threads to use, 1 matches all patterns on the calling thread. The patterns are
+     *                     matched in the pool returned by {@link SharedForkJoinPools#getPool(int)}.
+     * @param aFragmentDictionary dictionary of the fragments the patterns were compiled from, in the same order.
+     * @return count fingerprint, in the default dense mode like the one of the CDK SubstructureFingerprinter
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    CountFingerprint countMatches(IAtomContainer aMolecule, int aParallelism, FragmentDictionary aFragmentDictionary)
+            throws NullPointerException, IllegalArgumentException, CDKException {
+        return this.countMatches(aMolecule, aParallelism == 1 ? null : SharedForkJoinPools.getPool(aParallelism), aFragmentDictionary);
+    }
+    //
+    /**
+     * Returns the count fingerprint with the number of unique matches of every pattern in the given molecule,
+     * matching the patterns in the given pool. The molecule is prepared first, i.e. its ring and aromaticity flags
+     * are set.
+     *
+     * @param aMolecule molecule to match.
+     * @param aPool pool to match the patterns in, null to match all patterns on the calling thread.
+     * @param aFragmentDictionary dictionary of the fragments the patterns were compiled from, in the same order.
+     * @return count fingerprint, in the default dense mode like the one of the CDK SubstructureFingerprinter
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    CountFingerprint countMatches(IAtomContainer aMolecule, ForkJoinPool aPool, FragmentDictionary aFragmentDictionary)
+            throws NullPointerException, CDKException {
+        return SubstructureKeyMatcher.toCountFingerprint(this.match(aMolecule, aPool, true), aFragmentDictionary);
+    }
+    //
+    /**
+     * Returns the count fingerprint with the number of unique matches of every pattern in the given molecule, on the
+     * calling thread and skipping the patterns with a parent in the given hierarchy that did not match. The molecule
+     * is prepared first, i.e. its ring and aromaticity flags are set.
+     *
+     * @param aMolecule molecule to match.
+     * @param aFragmentHierarchy hierarchy of the patterns of this matcher.
+     * @param aFragmentDictionary dictionary of the fragments the patterns were compiled from, in the same order.
+     * @return count fingerprint, in the default dense mode like the one of the CDK SubstructureFingerprinter
+     * @throws NullPointerException is thrown if the molecule or the hierarchy is null.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    CountFingerprint countMatches(IAtomContainer aMolecule, FragmentHierarchy aFragmentHierarchy, FragmentDictionary aFragmentDictionary)
+            throws NullPointerException, CDKException {
+        return SubstructureKeyMatcher.toCountFingerprint(this.match(aMolecule, aFragmentHierarchy, true), aFragmentDictionary);
+    }
+    //
+    /**
+     * Matches the given molecule once and returns the result from which the bit, count and raw fingerprints are
+     * derived. The patterns are matched on the calling thread, along the given hierarchy if there is one. The molecule
+     * is prepared first, i.e. its ring and aromaticity flags are set.
+     *
+     * @param aMolecule molecule to match.
+     * @param aFragmentHierarchy hierarchy of the patterns of this matcher, or null to match all patterns that pass
+     *                           the signature screen.
+     * @param aFragmentDictionary dictionary of the fragments the patterns were compiled from, in the same order.
+     * @return numbers of unique matches of all patterns
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    CombinedFragmentFingerprint matchCombined(IAtomContainer aMolecule, FragmentHierarchy aFragmentHierarchy, FragmentDictionary aFragmentDictionary)
+            throws NullPointerException, CDKException {
+        int[] tmpCounts = aFragmentHierarchy == null ? this.match(aMolecule, (ForkJoinPool) null, true) : this.match(aMolecule, aFragmentHierarchy, true);
+        return new CombinedFragmentFingerprint(aFragmentDictionary, tmpCounts);
+    }
+    //
+    /**
+     * Returns the parsed query of the pattern at the given position.
+     *
+     * @param aPosition position of the pattern.
+     * @return query atom container
+     */
+    IAtomContainer getQuery(int aPosition) {
+        return this.queries[aPosition];
+    }
+    //
+    /**
+     * Returns the screening signature of the pattern at the given position.
+     *
+     * @param aPosition position of the pattern.
+     * @return signature of the pattern
+     */
+    SubstructureSignature getSignature(int aPosition) {
+        return this.signatures[aPosition];
+    }
+    //
+    /**
+     * Returns the number of patterns.
+     *
+     * @return number of patterns
+     */
+    int size() {
+        return this.patterns.length;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Prepares the molecule, screens it against the signatures of all patterns and matches it against the patterns
+     * that passed the screen. The concurrently matchable candidates are matched in the given pool if there are at
+     * least {@link #MINIMUM_CONCURRENT_CANDIDATES} of them, otherwise on the calling thread.
+     *
+     * @param aMolecule molecule to match.
+     * @param aPool pool to match the patterns in, null for the calling thread.
+     * @param isCounting true to count the unique matches, false to only check for a match.
+     * @return number of unique matches, or 1 and 0 for matching and not matching patterns
+     * @throws NullPointerException is thrown if the molecule is null.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    private int[] match(IAtomContainer aMolecule, ForkJoinPool aPool, boolean isCounting) throws NullPointerException, CDKException {
+        Objects.requireNonNull(aMolecule, "aMolecule is null.");
+        if (this.patterns.length == 0) {
+            throw new CDKException("No substructures were defined");
+        }
+        SmartsPattern.prepare(aMolecule);
+        int[] tmpMoleculeFeatureCounts = SubstructureSignature.countFeatures(aMolecule);
+        int[] tmpCandidatePositions = new int[this.concurrentPositions.length];
+        int tmpNumberOfCandidates = 0;
+        for (int tmpPosition : this.concurrentPositions) {
+            if (this.signatures[tmpPosition].isSatisfiedBy(tmpMoleculeFeatureCounts)) {
+                tmpCandidatePositions[tmpNumberOfCandidates++] = tmpPosition;
+            }
+        }
+        int[] tmpCounts = new int[this.patterns.length];
+        if (aPool == null || aPool.getParallelism() == 1 || tmpNumberOfCandidates < SubstructureKeyMatcher.MINIMUM_CONCURRENT_CANDIDATES) {
+            new MatchTask(aMolecule, isCounting, tmpCandidatePositions, tmpCounts, 0, tmpNumberOfCandidates, tmpNumberOfCandidates).compute();
+        } else {
+            int tmpSequentialThreshold = Math.max(1, tmpNumberOfCandidates / (aPool.getParallelism() * SubstructureKeyMatcher.SUB_RANGES_PER_THREAD));
+            aPool.invoke(new MatchTask(aMolecule, isCounting, tmpCandidatePositions, tmpCounts, 0, tmpNumberOfCandidates, tmpSequentialThreshold));
+        }
+        for (int tmpPosition : this.sequentialPositions) {
+            if (this.signatures[tmpPosition].isSatisfiedBy(tmpMoleculeFeatureCounts)) {
+                tmpCounts[tmpPosition] = this.matchPattern(tmpPosition, aMolecule, isCounting);
+            }
+        }
+        return tmpCounts;
+    }
+    //
+    /**
+     * Prepares the molecule and matches it against the patterns in the topological order of the given hierarchy, on
+     * the calling thread. Patterns whose signature the molecule does not satisfy or with a parent that did not match
+     * are skipped.
+     *
+     * @param aMolecule molecule to match.
+     * @param aFragmentHierarchy hierarchy of the patterns of this matcher.
+     * @param isCounting true to count the unique matches, false to only check for a match.
+     * @return number of unique matches, or 1 and 0 for matching and not matching patterns
+     * @throws NullPointerException is thrown if the molecule or the hierarchy is null.
+     * @throws CDKException is thrown if no patterns are defined.
+     */
+    private int[] match(IAtomContainer aMolecule, FragmentHierarchy aFragmentHierarchy, boolean isCounting) throws NullPointerException, CDKException {
+        Objects.requireNonNull(aMolecule, "aMolecule is null.");
+        Objects.requireNonNull(aFragmentHierarchy, "aFragmentHierarchy is null.");
+        if (this.patterns.length == 0) {
+            throw new CDKException("No substructures were defined");
+        }
+        SmartsPattern.prepare(aMolecule);
+        int[] tmpMoleculeFeatureCounts = SubstructureSignature.countFeatures(aMolecule);
+        int[] tmpCounts = new int[this.patterns.length];
+        for (int tmpPosition : aFragmentHierarchy.getTopologicalOrder()) {
+            if (!this.signatures[tmpPosition].isSatisfiedBy(tmpMoleculeFeatureCounts)) {
+                continue;
+            }
+            boolean tmpIsParentMissing = false;
+            for (int tmpParentPosition : aFragmentHierarchy.getParents(tmpPosition)) {
+                if (tmpCounts[tmpParentPosition] == 0) {
+                    tmpIsParentMissing = true;
+                    break;
+                }
+            }
+            if (!tmpIsParentMissing) {
+                tmpCounts[tmpPosition] = this.matchPattern(tmpPosition, aMolecule, isCounting);
+            }
+        }
+        return tmpCounts;
+    }
+    //
+    /**
+     * Matches one pattern against the prepared molecule.
+     *
+     * @param aPosition position of the pattern.
+     * @param aMolecule prepared molecule.
+     * @param isCounting true to count the unique matches, false to only check for a match.
+     * @return number of unique matches, or 1 and 0 for a match and no match
+     */
+    private int matchPattern(int aPosition, IAtomContainer aMolecule, boolean isCounting) {
+        if (isCounting) {
+            return this.patterns[aPosition].matchAll(aMolecule).countUnique();
+        }
+        return this.patterns[aPosition].matches(aMolecule) ? 1 : 0;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private static methods" defaultstate="collapsed">
+    /**
+     * Converts the match results to a bit set.
+     *
+     * @param aCountArray match results of all patterns.
+     * @return bit set with the positions of the matching patterns
+     */
+    static BitSet toBitSet(int[] aCountArray) {
+        BitSet tmpBitSet = new BitSet(aCountArray.length);
+        for (int i = 0; i < aCountArray.length; i++) {
+            if (aCountArray[i] != 0) {
+                tmpBitSet.set(i);
+            }
+        }
+        return tmpBitSet;
+    }
+    //
+    /**
+     * Converts the match counts to a count fingerprint.
+     *
+     * @param aCountArray numbers of unique matches of all patterns.
+     * @param aFragmentDictionary dictionary of the fragments the patterns were compiled from, in the same order.
+     * @return count fingerprint in the default dense mode
+     */
+    static CountFingerprint toCountFingerprint(int[] aCountArray, FragmentDictionary aFragmentDictionary) {
+        int[] tmpPositions = new int[aCountArray.length];
+        int[] tmpPopulatedCounts = new int[aCountArray.length];
+        int tmpLength = 0;
+        for (int i = 0; i < aCountArray.length; i++) {
+            if (aCountArray[i] != 0) {
+                tmpPositions[tmpLength] = i;
+                tmpPopulatedCounts[tmpLength++] = aCountArray[i];
+            }
+        }
+        return CountFingerprint.fromPositions(aFragmentDictionary, tmpPositions, tmpPopulatedCounts, tmpLength);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Checks whether the query can be matched concurrently with other queries against the same molecule, i.e.
+     * whether none of its atom and bond expressions changes the molecule or the query while matching.
+     *
+     * @param aQuery parsed SMARTS query.
+     * @return true if the query only reads the molecule
+     */
+    private static boolean isConcurrentlyMatchable(IAtomContainer aQuery) {
+        for (IAtom tmpAtom : aQuery.atoms()) {
+            if (tmpAtom instanceof QueryAtom tmpQueryAtom && !SubstructureKeyMatcher.isReadOnly(tmpQueryAtom.getExpression())) {
+                return false;
+            }
+        }
+        for (IBond tmpBond : aQuery.bonds()) {
+            if (tmpBond instanceof QueryBond tmpQueryBond && !SubstructureKeyMatcher.isReadOnly(tmpQueryBond.getExpression())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    //
+    /**
+     * Checks whether the expression and all its sub expressions only read the matched atom or bond.
+     *
+     * @param anExpression expression to check, may be null.
+     * @return false if the expression contains a ring size, ring count or recursive expression
+     */
+    private static boolean isReadOnly(Expr anExpression) {
+        if (anExpression == null) {
+            return true;
+        }
+        switch (anExpression.type()) {
+            case RING_SIZE:
+            case RING_SMALLEST:
+            case RING_COUNT:
+            case RECURSIVE:
+                return false;
+            default:
+                return SubstructureKeyMatcher.isReadOnly(anExpression.left()) && SubstructureKeyMatcher.isReadOnly(anExpression.right());
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private classes" defaultstate="collapsed">
+    /**
+     * Fork-join task that matches a range of candidate patterns against the prepared molecule and writes the results
+     * to the positions of the patterns. The range is split recursively until it is small enough to be matched
+     * sequentially.
+     */
+    private final class MatchTask extends RecursiveAction {
+        /**
+         * Version of the serialized form inherited from ForkJoinTask, the task is never serialized
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Prepared molecule
+         */
+        private final IAtomContainer molecule;
+        /**
+         * True to count the unique matches, false to only check for a match
+         */
+        private final boolean isCounting;
+        /**
+         * Positions of the candidate patterns
+         */
+        private final int[] candidatePositions;
+        /**
+         * Results of all patterns, indexed by position
+         */
+        private final int[] counts;
+        /**
+         * First index (inclusive) of the candidate range processed by this task
+         */
+        private final int start;
+        /**
+         * Last index (exclusive) of the candidate range processed by this task
+         */
+        private final int end;
+        /**
+         * Maximum size of a range that is matched sequentially
+         */
+        private final int sequentialThreshold;
+        //
+        /**
+         * Constructor.
+         *
+         * @param aMolecule prepared molecule.
+         * @param isCounting true to count the unique matches, false to only check for a match.
+         * @param aCandidatePositions positions of the candidate patterns.
+         * @param aCountArray results of all patterns, indexed by position.
+         * @param aStart first index (inclusive) of the candidate range.
+         * @param anEnd last index (exclusive) of the candidate range.
+         * @param aSequentialThreshold maximum size of a range that is matched sequentially.
+         */
+        private MatchTask(IAtomContainer aMolecule, boolean isCounting, int[] aCandidatePositions, int[] aCountArray,
+                          int aStart, int anEnd, int aSequentialThreshold) {
+            this.molecule = aMolecule;
+            this.isCounting = isCounting;
+            this.candidatePositions = aCandidatePositions;
+            this.counts = aCountArray;
+            this.start = aStart;
+            this.end = anEnd;
+            this.sequentialThreshold = aSequentialThreshold;
+        }
+        //
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (this.end - this.start <= this.sequentialThreshold) {
+                for (int i = this.start; i < this.end; i++) {
+                    int tmpPosition = this.candidatePositions[i];
+                    this.counts[tmpPosition] = SubstructureKeyMatcher.this.matchPattern(tmpPosition, this.molecule, this.isCounting);
+                }
+            } else {
+                int tmpMiddle = (this.start + this.end) >>> 1;
+                MatchTask.invokeAll(
+                        new MatchTask(this.molecule, this.isCounting, this.candidatePositions, this.counts, this.start, tmpMiddle, this.sequentialThreshold),
+                        new MatchTask(this.molecule, this.isCounting, this.candidatePositions, this.counts, tmpMiddle, this.end, this.sequentialThreshold));
+            }
+        }
+    }
+    //</editor-fold>
+}
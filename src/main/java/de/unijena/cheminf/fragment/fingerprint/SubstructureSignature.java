@@ -0,0 +1,367 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.Expr;
+import org.openscience.cdk.isomorphism.matchers.QueryAtom;
+import org.openscience.cdk.isomorphism.matchers.QueryBond;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Feature signature of a substructure query for screening molecules before the subgraph isomorphism test. The
+ * signature holds the minimum number of atoms and bonds a molecule must have for the query to match, in total and per
+ * element, aromaticity, ring membership and bond order. The features are derived from the atom and bond expressions
+ * of the query and only count what every expression necessarily requires, i.e. features under a negation are ignored
+ * and of a disjunction only the features required by all alternatives are kept. Since every query atom and bond is
+ * mapped to a different atom and bond of the molecule, a molecule with fewer atoms or bonds of a feature than the
+ * signature can not contain the query. The screen therefore never rejects a matching query.
+ * <br>The feature counts of a molecule have to be determined after its ring and aromaticity flags are set, like they
+ * are read while matching.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class SubstructureSignature {
+    //<editor-fold desc="private static final class constants" defaultstate="collapsed">
+    /**
+     * Feature index of the number of atoms
+     */
+    private static final int ATOMS = 0;
+    /**
+     * Feature index of the number of bonds
+     */
+    private static final int BONDS = 1;
+    /**
+     * Feature index of the number of aromatic atoms
+     */
+    private static final int AROMATIC_ATOMS = 2;
+    /**
+     * Feature index of the number of aliphatic atoms
+     */
+    private static final int ALIPHATIC_ATOMS = 3;
+    /**
+     * Feature index of the number of ring atoms
+     */
+    private static final int RING_ATOMS = 4;
+    /**
+     * Feature index of the number of aromatic bonds
+     */
+    private static final int AROMATIC_BONDS = 5;
+    /**
+     * Feature index of the number of ring bonds
+     */
+    private static final int RING_BONDS = 6;
+    /**
+     * Feature index of the number of single bonds, followed by double, triple and quadruple bonds
+     */
+    private static final int ORDER_BONDS = 7;
+    /**
+     * Feature index of the number of aliphatic single bonds, followed by aliphatic double, triple and quadruple bonds
+     */
+    private static final int ALIPHATIC_ORDER_BONDS = 11;
+    /**
+     * Highest bond order with an own feature
+     */
+    private static final int MAXIMUM_BOND_ORDER = 4;
+    /**
+     * Feature index of the number of hydrogen atoms, followed by the elements in the order of their atomic numbers
+     */
+    private static final int ELEMENT_ATOMS = 15;
+    /**
+     * Highest atomic number with an own feature
+     */
+    private static final int MAXIMUM_ATOMIC_NUMBER = 118;
+    /**
+     * Number of features
+     */
+    static final int NUMBER_OF_FEATURES = SubstructureSignature.ELEMENT_ATOMS + SubstructureSignature.MAXIMUM_ATOMIC_NUMBER;
+    //</editor-fold>
+    //
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Indices of the features the query requires, the number of atoms first
+     */
+    private final int[] features;
+    /**
+     * Minimum counts of the required features, in the order of the feature indices
+     */
+    private final int[] minimumCounts;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor, keeps the features with a count greater than zero.
+     *
+     * @param aFeatureCountArray minimum counts of all features.
+     */
+    private SubstructureSignature(int[] aFeatureCountArray) {
+        int tmpNumberOfFeatures = 0;
+        for (int tmpCount : aFeatureCountArray) {
+            if (tmpCount > 0) {
+                tmpNumberOfFeatures++;
+            }
+        }
+        this.features = new int[tmpNumberOfFeatures];
+        this.minimumCounts = new int[tmpNumberOfFeatures];
+        int tmpIndex = 0;
+        for (int i = 0; i < aFeatureCountArray.length; i++) {
+            if (aFeatureCountArray[i] > 0) {
+                this.features[tmpIndex] = i;
+                this.minimumCounts[tmpIndex++] = aFeatureCountArray[i];
+            }
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private static methods" defaultstate="collapsed">
+    /**
+     * Derives the signature of the given query from its atom and bond expressions. Atoms and bonds that are no query
+     * atoms or bonds only count as atom or bond.
+     *
+     * @param aQuery parsed substructure query.
+     * @return signature of the query
+     * @throws NullPointerException is thrown if the query is null.
+     */
+    static SubstructureSignature of(IAtomContainer aQuery) throws NullPointerException {
+        Objects.requireNonNull(aQuery, "aQuery is null.");
+        int[] tmpFeatureCounts = new int[SubstructureSignature.NUMBER_OF_FEATURES];
+        tmpFeatureCounts[SubstructureSignature.ATOMS] = aQuery.getAtomCount();
+        tmpFeatureCounts[SubstructureSignature.BONDS] = aQuery.getBondCount();
+        for (IAtom tmpAtom : aQuery.atoms()) {
+            if (tmpAtom instanceof QueryAtom tmpQueryAtom) {
+                Expr tmpExpression = tmpQueryAtom.getExpression();
+                SubstructureSignature.countFeatures(SubstructureSignature.getRequiredAtomFeatures(tmpExpression), tmpFeatureCounts);
+                int tmpAtomicNumber = SubstructureSignature.getRequiredAtomicNumber(tmpExpression);
+                if (tmpAtomicNumber > 0) {
+                    tmpFeatureCounts[SubstructureSignature.ELEMENT_ATOMS + tmpAtomicNumber - 1]++;
+                }
+            }
+        }
+        for (IBond tmpBond : aQuery.bonds()) {
+            if (tmpBond instanceof QueryBond tmpQueryBond) {
+                SubstructureSignature.countFeatures(SubstructureSignature.getRequiredBondFeatures(tmpQueryBond.getExpression()), tmpFeatureCounts);
+            }
+        }
+        return new SubstructureSignature(tmpFeatureCounts);
+    }
+    //
+    /**
+     * Counts the features of the given molecule. The ring and aromaticity flags of the molecule have to be set.
+     *
+     * @param aMolecule molecule to screen.
+     * @return counts of all features of the molecule, indexed by feature
+     * @throws NullPointerException is thrown if the molecule is null.
+     */
+    static int[] countFeatures(IAtomContainer aMolecule) throws NullPointerException {
+        Objects.requireNonNull(aMolecule, "aMolecule is null.");
+        int[] tmpFeatureCounts = new int[SubstructureSignature.NUMBER_OF_FEATURES];
+        tmpFeatureCounts[SubstructureSignature.ATOMS] = aMolecule.getAtomCount();
+        tmpFeatureCounts[SubstructureSignature.BONDS] = aMolecule.getBondCount();
+        for (IAtom tmpAtom : aMolecule.atoms()) {
+            tmpFeatureCounts[tmpAtom.isAromatic() ? SubstructureSignature.AROMATIC_ATOMS : SubstructureSignature.ALIPHATIC_ATOMS]++;
+            if (tmpAtom.isInRing()) {
+                tmpFeatureCounts[SubstructureSignature.RING_ATOMS]++;
+            }
+            Integer tmpAtomicNumber = tmpAtom.getAtomicNumber();
+            if (tmpAtomicNumber != null && tmpAtomicNumber > 0 && tmpAtomicNumber <= SubstructureSignature.MAXIMUM_ATOMIC_NUMBER) {
+                tmpFeatureCounts[SubstructureSignature.ELEMENT_ATOMS + tmpAtomicNumber - 1]++;
+            }
+        }
+        for (IBond tmpBond : aMolecule.bonds()) {
+            if (tmpBond.isAromatic()) {
+                tmpFeatureCounts[SubstructureSignature.AROMATIC_BONDS]++;
+            }
+            if (tmpBond.isInRing()) {
+                tmpFeatureCounts[SubstructureSignature.RING_BONDS]++;
+            }
+            IBond.Order tmpOrder = tmpBond.getOrder();
+            int tmpNumericOrder = tmpOrder == null ? 0 : tmpOrder.numeric();
+            if (tmpNumericOrder > 0 && tmpNumericOrder <= SubstructureSignature.MAXIMUM_BOND_ORDER) {
+                tmpFeatureCounts[SubstructureSignature.ORDER_BONDS + tmpNumericOrder - 1]++;
+                if (!tmpBond.isAromatic()) {
+                    tmpFeatureCounts[SubstructureSignature.ALIPHATIC_ORDER_BONDS + tmpNumericOrder - 1]++;
+                }
+            }
+        }
+        return tmpFeatureCounts;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Checks whether a molecule with the given feature counts has enough atoms and bonds of every required feature to
+     * possibly contain the query.
+     *
+     * @param aMoleculeFeatureCountArray feature counts of the molecule as returned by {@link #countFeatures(IAtomContainer)}.
+     * @return false if the query can not match the molecule, true if it may match
+     */
+    boolean isSatisfiedBy(int[] aMoleculeFeatureCountArray) {
+        for (int i = 0; i < this.features.length; i++) {
+            if (aMoleculeFeatureCountArray[this.features[i]] < this.minimumCounts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    //
+    /**
+     * Checks whether the given signature requires at least as many atoms and bonds of every feature as this one. If
+     * the query of this signature is contained in another query with identical atom and bond expressions, this is
+     * necessarily the case, since the contained atoms and bonds require the same features.
+     *
+     * @param aContainingSignature signature of the possibly containing query.
+     * @return false if the query of this signature can not be contained in the other query with identical
+     * expressions, true if it may be
+     */
+    boolean isContainedIn(SubstructureSignature aContainingSignature) {
+        for (int i = 0; i < this.features.length; i++) {
+            int tmpIndex = Arrays.binarySearch(aContainingSignature.features, this.features[i]);
+            if (tmpIndex < 0 || aContainingSignature.minimumCounts[tmpIndex] < this.minimumCounts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    //
+    /**
+     * Returns the number of features the query requires.
+     *
+     * @return number of required features
+     */
+    int getNumberOfRequiredFeatures() {
+        return this.features.length;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Increments the counts of the features set in the given mask.
+     *
+     * @param aFeatureMask bit mask of features with an index smaller than 32.
+     * @param aFeatureCountArray feature counts to increment.
+     */
+    private static void countFeatures(int aFeatureMask, int[] aFeatureCountArray) {
+        while (aFeatureMask != 0) {
+            aFeatureCountArray[Integer.numberOfTrailingZeros(aFeatureMask)]++;
+            aFeatureMask &= aFeatureMask - 1;
+        }
+    }
+    //
+    /**
+     * Returns the aromaticity and ring membership features every atom matching the expression necessarily has.
+     *
+     * @param anExpression atom expression, may be null.
+     * @return bit mask of the required atom features
+     */
+    private static int getRequiredAtomFeatures(Expr anExpression) {
+        if (anExpression == null) {
+            return 0;
+        }
+        switch (anExpression.type()) {
+            case IS_AROMATIC:
+            case AROMATIC_ELEMENT:
+                return 1 << SubstructureSignature.AROMATIC_ATOMS;
+            case IS_ALIPHATIC:
+            case ALIPHATIC_ELEMENT:
+                return 1 << SubstructureSignature.ALIPHATIC_ATOMS;
+            case IS_IN_RING:
+                return 1 << SubstructureSignature.RING_ATOMS;
+            case AND:
+                return SubstructureSignature.getRequiredAtomFeatures(anExpression.left())
+                        | SubstructureSignature.getRequiredAtomFeatures(anExpression.right());
+            case OR:
+                return SubstructureSignature.getRequiredAtomFeatures(anExpression.left())
+                        & SubstructureSignature.getRequiredAtomFeatures(anExpression.right());
+            default:
+                return 0;
+        }
+    }
+    //
+    /**
+     * Returns the atomic number every atom matching the expression necessarily has.
+     *
+     * @param anExpression atom expression, may be null.
+     * @return required atomic number or 0 if the expression does not require a specific element
+     */
+    private static int getRequiredAtomicNumber(Expr anExpression) {
+        if (anExpression == null) {
+            return 0;
+        }
+        switch (anExpression.type()) {
+            case ELEMENT:
+            case ALIPHATIC_ELEMENT:
+            case AROMATIC_ELEMENT:
+                int tmpAtomicNumber = anExpression.value();
+                return tmpAtomicNumber > 0 && tmpAtomicNumber <= SubstructureSignature.MAXIMUM_ATOMIC_NUMBER ? tmpAtomicNumber : 0;
+            case AND:
+                int tmpLeftAtomicNumber = SubstructureSignature.getRequiredAtomicNumber(anExpression.left());
+                return tmpLeftAtomicNumber != 0 ? tmpLeftAtomicNumber : SubstructureSignature.getRequiredAtomicNumber(anExpression.right());
+            case OR:
+                int tmpAlternativeAtomicNumber = SubstructureSignature.getRequiredAtomicNumber(anExpression.left());
+                return tmpAlternativeAtomicNumber == SubstructureSignature.getRequiredAtomicNumber(anExpression.right()) ? tmpAlternativeAtomicNumber : 0;
+            default:
+                return 0;
+        }
+    }
+    //
+    /**
+     * Returns the aromaticity, ring membership and bond order features every bond matching the expression necessarily
+     * has.
+     *
+     * @param anExpression bond expression, may be null.
+     * @return bit mask of the required bond features
+     */
+    private static int getRequiredBondFeatures(Expr anExpression) {
+        if (anExpression == null) {
+            return 0;
+        }
+        switch (anExpression.type()) {
+            case IS_AROMATIC:
+                return 1 << SubstructureSignature.AROMATIC_BONDS;
+            case IS_IN_RING:
+                return 1 << SubstructureSignature.RING_BONDS;
+            case ORDER:
+                return anExpression.value() > 0 && anExpression.value() <= SubstructureSignature.MAXIMUM_BOND_ORDER
+                        ? 1 << (SubstructureSignature.ORDER_BONDS + anExpression.value() - 1) : 0;
+            case ALIPHATIC_ORDER:
+                return anExpression.value() > 0 && anExpression.value() <= SubstructureSignature.MAXIMUM_BOND_ORDER
+                        ? 1 << (SubstructureSignature.ALIPHATIC_ORDER_BONDS + anExpression.value() - 1) : 0;
+            case AND:
+                return SubstructureSignature.getRequiredBondFeatures(anExpression.left())
+                        | SubstructureSignature.getRequiredBondFeatures(anExpression.right());
+            case OR:
+                return SubstructureSignature.getRequiredBondFeatures(anExpression.left())
+                        & SubstructureSignature.getRequiredBondFeatures(anExpression.right());
+            default:
+                return 0;
+        }
+    }
+    //</editor-fold>
+}
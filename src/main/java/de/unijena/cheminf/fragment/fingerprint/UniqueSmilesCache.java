@@ -0,0 +1,337 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of unique SMILES, keyed on arbitrary (non-canonical) SMILES of fragments. Fragments
+ * recur very often, e.g. for all molecules of a data set, and generating a unique SMILES requires parsing and
+ * canonical labelling, which is far more expensive than a lookup. The cache canonicalizes a given SMILES only once and
+ * returns the stored unique SMILES for all later occurrences of the same string.
+ * <br>
+ * The cache is divided into segments, each holding its least recently used entries up to its share of the maximum
+ * size; the least recently used entry of a full segment is evicted. A segment is only locked for the lookup and the
+ * insertion, a SMILES is canonicalized without holding the lock, so requests for the same segment do not wait for
+ * each other's canonicalization. Concurrent first requests for the same SMILES may therefore canonicalize it more
+ * than once; the first stored unique SMILES is returned to all of them. Parsers and generators are kept per thread
+ * since they are not thread-safe.
+ * <br>
+ * Fragments given as atom containers are first written as non-canonical SMILES, which does not need the canonical
+ * labelling, and then canonicalized through the cache like a given SMILES.
+ * <br>
+ * The unique SMILES are created with the SMILES flavor given at construction, {@link SmiFlavor#Unique} by default,
+ * which has to be the flavor the predefined fragments of the fingerprinter were created with.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class UniqueSmilesCache {
+    //<editor-fold desc="public static final class constants" defaultstate="collapsed">
+    /**
+     * Default maximum number of cached SMILES
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 100000;
+    //</editor-fold>
+    //
+    //<editor-fold desc="private static final class constants" defaultstate="collapsed">
+    /**
+     * Maximum number of segments, i.e. of requests that are processed in parallel
+     */
+    private static final int MAXIMUM_NUMBER_OF_SEGMENTS = 64;
+    /**
+     * SMILES flavor used to write atom containers for the cache lookup; it retains everything a unique SMILES can
+     * contain
+     */
+    private static final int KEY_SMILES_FLAVOR = SmiFlavor.Isomeric | SmiFlavor.AtomAtomMap;
+    //</editor-fold>
+    //
+    //<editor-fold desc="private final class variables" defaultstate="collapsed">
+    /**
+     * Segments of the cache, selected by the hash code of the SMILES
+     */
+    private final Segment[] segments;
+    /**
+     * Maximum number of cached SMILES
+     */
+    private final int maximumSize;
+    /**
+     * SMILES flavor of the unique SMILES
+     */
+    private final int smilesFlavor;
+    /**
+     * SMILES parser of every thread
+     */
+    private final ThreadLocal<SmilesParser> smilesParser;
+    /**
+     * Generator of the unique SMILES of every thread
+     */
+    private final ThreadLocal<SmilesGenerator> uniqueSmilesGenerator;
+    /**
+     * Generator of the SMILES of atom containers used for the lookup of every thread
+     */
+    private final ThreadLocal<SmilesGenerator> keySmilesGenerator;
+    /**
+     * Number of requests answered from the cache
+     */
+    private final LongAdder hitCount;
+    /**
+     * Number of requests that required a canonicalization
+     */
+    private final LongAdder missCount;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor for a cache of {@link #DEFAULT_MAXIMUM_SIZE} SMILES, creating unique SMILES of the flavor
+     * {@link SmiFlavor#Unique}.
+     */
+    public UniqueSmilesCache() {
+        this(UniqueSmilesCache.DEFAULT_MAXIMUM_SIZE, SmiFlavor.Unique);
+    }
+    //
+    /**
+     * Constructor for a cache of the given size, creating unique SMILES of the flavor {@link SmiFlavor#Unique}.
+     *
+     * @param aMaximumSize maximum number of cached SMILES.
+     * @throws IllegalArgumentException is thrown if the maximum size is smaller than 1.
+     */
+    public UniqueSmilesCache(int aMaximumSize) throws IllegalArgumentException {
+        this(aMaximumSize, SmiFlavor.Unique);
+    }
+    //
+    /**
+     * Constructor for a cache of the given size, creating unique SMILES of the given flavor.
+     *
+     * @param aMaximumSize maximum number of cached SMILES.
+     * @param aSmilesFlavor SMILES flavor of the unique SMILES, see {@link SmiFlavor}; it should contain
+     *                      {@link SmiFlavor#Canonical}.
+     * @throws IllegalArgumentException is thrown if the maximum size is smaller than 1.
+     */
+    public UniqueSmilesCache(int aMaximumSize, int aSmilesFlavor) throws IllegalArgumentException {
+        if (aMaximumSize < 1) {
+            throw new IllegalArgumentException("aMaximumSize must be at least 1.");
+        }
+        int tmpNumberOfSegments = Math.min(UniqueSmilesCache.MAXIMUM_NUMBER_OF_SEGMENTS, Integer.highestOneBit(aMaximumSize));
+        int tmpSegmentCapacity = (aMaximumSize + tmpNumberOfSegments - 1) / tmpNumberOfSegments;
+        this.segments = new Segment[tmpNumberOfSegments];
+        for (int i = 0; i < tmpNumberOfSegments; i++) {
+            // the last segments are one entry smaller if the maximum size is not divisible by the number of segments
+            int tmpCapacity = i < aMaximumSize - (tmpSegmentCapacity - 1) * tmpNumberOfSegments ? tmpSegmentCapacity : tmpSegmentCapacity - 1;
+            this.segments[i] = new Segment(tmpCapacity);
+        }
+        this.maximumSize = aMaximumSize;
+        this.smilesFlavor = aSmilesFlavor;
+        this.smilesParser = ThreadLocal.withInitial(() -> new SmilesParser(SilentChemObjectBuilder.getInstance()));
+        this.uniqueSmilesGenerator = ThreadLocal.withInitial(() -> new SmilesGenerator(aSmilesFlavor));
+        this.keySmilesGenerator = ThreadLocal.withInitial(() -> new SmilesGenerator(UniqueSmilesCache.KEY_SMILES_FLAVOR));
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the unique SMILES of the fragment given as SMILES. It is canonicalized only if the same string is not
+     * cached yet, outside the lock of its segment.
+     *
+     * @param aSmiles SMILES of a fragment, canonical or not.
+     * @return unique SMILES of the fragment
+     * @throws NullPointerException is thrown if the SMILES is null.
+     * @throws IllegalArgumentException is thrown if the SMILES is blank/empty or can not be parsed or written as
+     * unique SMILES.
+     */
+    public String getUniqueSmiles(String aSmiles) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aSmiles, "aSmiles is null.");
+        if (aSmiles.isBlank()) {
+            throw new IllegalArgumentException("aSmiles is blank/empty.");
+        }
+        int tmpHash = aSmiles.hashCode();
+        Segment tmpSegment = this.segments[(tmpHash ^ (tmpHash >>> 16)) & (this.segments.length - 1)];
+        String tmpCachedUniqueSmiles;
+        synchronized (tmpSegment) {
+            tmpCachedUniqueSmiles = tmpSegment.get(aSmiles);
+        }
+        if (tmpCachedUniqueSmiles != null) {
+            this.hitCount.increment();
+            return tmpCachedUniqueSmiles;
+        }
+        this.missCount.increment();
+        String tmpUniqueSmiles = this.canonicalize(aSmiles);
+        synchronized (tmpSegment) {
+            // another thread may have stored the same SMILES in the meantime, its result is kept
+            tmpCachedUniqueSmiles = tmpSegment.putIfAbsent(aSmiles, tmpUniqueSmiles);
+        }
+        return tmpCachedUniqueSmiles != null ? tmpCachedUniqueSmiles : tmpUniqueSmiles;
+    }
+    //
+    /**
+     * Returns the unique SMILES of the given fragment. The fragment is written as non-canonical SMILES, which is then
+     * canonicalized through the cache, see {@link #getUniqueSmiles(String)}.
+     *
+     * @param aFragment fragment atom container.
+     * @return unique SMILES of the fragment
+     * @throws NullPointerException is thrown if the fragment is null.
+     * @throws IllegalArgumentException is thrown if the fragment can not be written as SMILES.
+     */
+    public String getUniqueSmiles(IAtomContainer aFragment) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aFragment, "aFragment is null.");
+        String tmpSmiles;
+        try {
+            tmpSmiles = this.keySmilesGenerator.get().create(aFragment);
+        } catch (CDKException anException) {
+            throw new IllegalArgumentException("aFragment can not be written as SMILES: " + anException.getMessage(), anException);
+        }
+        if (tmpSmiles.isEmpty()) {
+            // the empty fragment, its unique SMILES is empty as well and is not cached
+            return tmpSmiles;
+        }
+        return this.getUniqueSmiles(tmpSmiles);
+    }
+    //
+    /**
+     * Returns the current number of cached SMILES.
+     *
+     * @return number of cached SMILES
+     */
+    public int size() {
+        int tmpSize = 0;
+        for (Segment tmpSegment : this.segments) {
+            synchronized (tmpSegment) {
+                tmpSize += tmpSegment.size();
+            }
+        }
+        return tmpSize;
+    }
+    //
+    /**
+     * Removes all cached SMILES. The hit and miss counts are kept.
+     */
+    public void clear() {
+        for (Segment tmpSegment : this.segments) {
+            synchronized (tmpSegment) {
+                tmpSegment.clear();
+            }
+        }
+    }
+    //
+    /**
+     * Returns the maximum number of cached SMILES.
+     *
+     * @return maximum size
+     */
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+    //
+    /**
+     * Returns the SMILES flavor of the unique SMILES.
+     *
+     * @return SMILES flavor, see {@link SmiFlavor}
+     */
+    public int getSmilesFlavor() {
+        return this.smilesFlavor;
+    }
+    //
+    /**
+     * Returns the number of requests that were answered from the cache.
+     *
+     * @return number of cache hits
+     */
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+    //
+    /**
+     * Returns the number of requests that required a canonicalization, i.e. the number of canonicalized SMILES.
+     *
+     * @return number of cache misses
+     */
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Parses the SMILES and writes it as unique SMILES.
+     *
+     * @param aSmiles SMILES of a fragment.
+     * @return unique SMILES
+     * @throws IllegalArgumentException is thrown if the SMILES can not be parsed or written as unique SMILES.
+     */
+    private String canonicalize(String aSmiles) throws IllegalArgumentException {
+        try {
+            IAtomContainer tmpFragment = this.smilesParser.get().parseSmiles(aSmiles);
+            return this.uniqueSmilesGenerator.get().create(tmpFragment);
+        } catch (CDKException anException) {
+            throw new IllegalArgumentException("SMILES can not be canonicalized: " + aSmiles + " (" + anException.getMessage() + ")", anException);
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Segment" defaultstate="collapsed">
+    /**
+     * Segment of the cache, a map in access order that evicts its least recently used entry when it exceeds its
+     * capacity. It is guarded by its own monitor.
+     */
+    private static final class Segment extends LinkedHashMap<String, String> {
+        /**
+         * Version of the serialized form inherited from LinkedHashMap, the segment is never serialized
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Maximum number of entries of the segment
+         */
+        private final int capacity;
+        /**
+         * Constructor.
+         *
+         * @param aCapacity maximum number of entries.
+         */
+        Segment(int aCapacity) {
+            super(16, 0.75f, true);
+            this.capacity = aCapacity;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> anEldestEntry) {
+            return this.size() > this.capacity;
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants and encoding helpers of the binary fingerprint format shared by {@link BinaryFingerprintWriter} and
+ * {@link BinaryFingerprintReader}. All multibyte integers are big-endian.
+ * <pre>
+ * file    = magic (int "FFPB") version (byte) type (byte, 0 = bit, 1 = count) dictionary record*
+ * dictionary = size (varint) (string)*size      fragments in the order of their positions
+ * record  = name (string) bits | counts
+ * bits    = ceil(size / 8) bytes                bit i is bit (i mod 8) of byte (i / 8), least significant first
+ * counts  = n (varint) (gap (varint) count (varint))*n
+ *           positions ascending, gap = position - previous position - 1 with previous position = -1 initially
+ * string  = length (varint) UTF-8 bytes
+ * varint  = unsigned LEB128 of a 32-bit int, 7 bits per byte, least significant group first
+ * </pre>
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class BinaryFingerprintFormat {
+    //<editor-fold desc="Package-private static final class variables" defaultstate="collapsed">
+    /**
+     * Magic number at the beginning of every file, the ASCII characters "FFPB"
+     */
+    static final int MAGIC = 0x46465042;
+    /**
+     * Version of the format
+     */
+    static final byte VERSION = 1;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Private constructor, the class only has static members.
+     */
+    private BinaryFingerprintFormat() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private static methods" defaultstate="collapsed">
+    /**
+     * Writes the given int as unsigned varint.
+     *
+     * @param anOutput output to write to.
+     * @param aValue value, interpreted as unsigned.
+     * @throws IOException if the value can not be written.
+     */
+    static void writeVarint(DataOutput anOutput, int aValue) throws IOException {
+        int tmpValue = aValue;
+        while ((tmpValue & ~0x7F) != 0) {
+            anOutput.writeByte((tmpValue & 0x7F) | 0x80);
+            tmpValue >>>= 7;
+        }
+        anOutput.writeByte(tmpValue);
+    }
+    //
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param anInput input to read from.
+     * @return value
+     * @throws IOException if the value can not be read or is longer than five bytes.
+     */
+    static int readVarint(DataInput anInput) throws IOException {
+        int tmpValue = 0;
+        for (int tmpShift = 0; tmpShift < 35; tmpShift += 7) {
+            int tmpByte = anInput.readUnsignedByte();
+            tmpValue |= (tmpByte & 0x7F) << tmpShift;
+            if ((tmpByte & 0x80) == 0) {
+                return tmpValue;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+    //
+    /**
+     * Writes the given String as varint length and UTF-8 bytes.
+     *
+     * @param anOutput output to write to.
+     * @param aString String to write.
+     * @throws IOException if the String can not be written.
+     */
+    static void writeString(DataOutput anOutput, String aString) throws IOException {
+        byte[] tmpBytes = aString.getBytes(StandardCharsets.UTF_8);
+        BinaryFingerprintFormat.writeVarint(anOutput, tmpBytes.length);
+        anOutput.write(tmpBytes);
+    }
+    //
+    /**
+     * Reads a String written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param anInput input to read from.
+     * @return String
+     * @throws IOException if the String can not be read.
+     */
+    static String readString(DataInput anInput) throws IOException {
+        int tmpLength = BinaryFingerprintFormat.readVarint(anInput);
+        if (tmpLength < 0) {
+            throw new IOException("Malformed string length.");
+        }
+        byte[] tmpBytes = new byte[tmpLength];
+        anInput.readFully(tmpBytes);
+        return new String(tmpBytes, StandardCharsets.UTF_8);
+    }
+    //</editor-fold>
+}
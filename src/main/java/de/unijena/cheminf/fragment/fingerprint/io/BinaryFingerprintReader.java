@@ -0,0 +1,262 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads fingerprints written by {@link BinaryFingerprintWriter}. The header, i.e. the fragment dictionary and the
+ * kind of fingerprints, is read by the constructor; the records are read one at a time by iterating over the reader.
+ * IO errors and truncated records during iteration are thrown as {@link UncheckedIOException}.
+ * The reader is not thread-safe.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class BinaryFingerprintReader implements Iterator<FingerprintRecord>, Closeable {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Input the records are read from
+     */
+    private final DataInputStream inputStream;
+    /**
+     * Dictionary of the key fragments read from the header
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Kind of fingerprints in the file
+     */
+    private final FingerprintType fingerprintType;
+    /**
+     * Reused buffer of the packed bits of a bit record
+     */
+    private final byte[] bitBuffer;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Record that is returned by the next call of next(), null if it has not been read yet
+     */
+    private FingerprintRecord nextRecord;
+    /**
+     * True if the end of the input has been reached
+     */
+    private boolean isExhausted;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor that reads the header. If the stream is not buffered, it is wrapped in a BufferedInputStream.
+     *
+     * @param anInputStream stream to read from, closed by {@link #close()}.
+     * @throws NullPointerException is thrown if the stream is null.
+     * @throws IOException is thrown if the header can not be read, the stream is not a binary fingerprint file or
+     * has an unsupported version.
+     */
+    public BinaryFingerprintReader(InputStream anInputStream) throws NullPointerException, IOException {
+        Objects.requireNonNull(anInputStream, "anInputStream is null.");
+        this.inputStream = new DataInputStream(anInputStream instanceof BufferedInputStream ? anInputStream : new BufferedInputStream(anInputStream, 1 << 16));
+        if (this.inputStream.readInt() != BinaryFingerprintFormat.MAGIC) {
+            throw new IOException("The stream is not a binary fingerprint file.");
+        }
+        int tmpVersion = this.inputStream.readUnsignedByte();
+        if (tmpVersion != BinaryFingerprintFormat.VERSION) {
+            throw new IOException("Unsupported version " + tmpVersion + " of the binary fingerprint format.");
+        }
+        int tmpType = this.inputStream.readUnsignedByte();
+        if (tmpType >= FingerprintType.values().length) {
+            throw new IOException("Unknown fingerprint type " + tmpType + ".");
+        }
+        this.fingerprintType = FingerprintType.values()[tmpType];
+        int tmpSize = BinaryFingerprintFormat.readVarint(this.inputStream);
+        if (tmpSize < 0) {
+            throw new IOException("Malformed dictionary size.");
+        }
+        String[] tmpFragmentArray = new String[tmpSize];
+        for (int i = 0; i < tmpSize; i++) {
+            tmpFragmentArray[i] = BinaryFingerprintFormat.readString(this.inputStream);
+        }
+        try {
+            this.fragmentDictionary = new FragmentDictionary(tmpFragmentArray);
+        } catch (IllegalArgumentException anException) {
+            throw new IOException("Malformed dictionary.", anException);
+        }
+        if (this.fragmentDictionary.size() != tmpSize) {
+            throw new IOException("Malformed dictionary, it contains duplicates.");
+        }
+        this.bitBuffer = new byte[(tmpSize + 7) >>> 3];
+        this.isExhausted = false;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the dictionary of the key fragments stored in the header.
+     *
+     * @return FragmentDictionary
+     */
+    public FragmentDictionary getFragmentDictionary() {
+        return this.fragmentDictionary;
+    }
+    //
+    /**
+     * Returns the kind of fingerprints in the file.
+     *
+     * @return FingerprintType
+     */
+    public FingerprintType getFingerprintType() {
+        return this.fingerprintType;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException is thrown if the next record can not be read or is truncated.
+     */
+    @Override
+    public boolean hasNext() throws UncheckedIOException {
+        if (this.nextRecord != null) {
+            return true;
+        }
+        if (this.isExhausted) {
+            return false;
+        }
+        try {
+            this.inputStream.mark(1);
+            if (this.inputStream.read() < 0) {
+                this.isExhausted = true;
+                return false;
+            }
+            this.inputStream.reset();
+            this.nextRecord = this.readRecord();
+            return true;
+        } catch (IOException anException) {
+            throw new UncheckedIOException("Record can not be read.", anException);
+        }
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException is thrown if the next record can not be read or is truncated.
+     */
+    @Override
+    public FingerprintRecord next() throws NoSuchElementException, UncheckedIOException {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException("No more records.");
+        }
+        FingerprintRecord tmpRecord = this.nextRecord;
+        this.nextRecord = null;
+        return tmpRecord;
+    }
+    //
+    /**
+     * Returns a sequential stream of the remaining records. Closing the stream closes this reader.
+     *
+     * @return stream of records
+     */
+    public Stream<FingerprintRecord> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        this.close();
+                    } catch (IOException anException) {
+                        throw new UncheckedIOException(anException);
+                    }
+                });
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        this.isExhausted = true;
+        this.nextRecord = null;
+        this.inputStream.close();
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Reads the next record.
+     *
+     * @return record
+     * @throws IOException is thrown if the record can not be read, is truncated or malformed.
+     */
+    private FingerprintRecord readRecord() throws IOException {
+        String tmpName = BinaryFingerprintFormat.readString(this.inputStream);
+        if (this.fingerprintType == FingerprintType.BIT) {
+            this.inputStream.readFully(this.bitBuffer);
+            int tmpNumberOfSetBits = 0;
+            for (byte tmpByte : this.bitBuffer) {
+                tmpNumberOfSetBits += Integer.bitCount(tmpByte & 0xFF);
+            }
+            int[] tmpPositionArray = new int[tmpNumberOfSetBits];
+            int tmpIndex = 0;
+            for (int i = 0; i < this.bitBuffer.length; i++) {
+                for (int tmpBits = this.bitBuffer[i] & 0xFF; tmpBits != 0; tmpBits &= tmpBits - 1) {
+                    tmpPositionArray[tmpIndex++] = (i << 3) + Integer.numberOfTrailingZeros(tmpBits);
+                }
+            }
+            if (tmpNumberOfSetBits > 0 && tmpPositionArray[tmpNumberOfSetBits - 1] >= this.fragmentDictionary.size()) {
+                throw new IOException("Malformed bit record of " + tmpName + ".");
+            }
+            return new FingerprintRecord(tmpName, this.fragmentDictionary, tmpPositionArray, null);
+        }
+        int tmpLength = BinaryFingerprintFormat.readVarint(this.inputStream);
+        if (tmpLength < 0 || tmpLength > this.fragmentDictionary.size()) {
+            throw new IOException("Malformed count record of " + tmpName + ".");
+        }
+        int[] tmpPositionArray = new int[tmpLength];
+        int[] tmpCountArray = new int[tmpLength];
+        long tmpPosition = -1L;
+        for (int i = 0; i < tmpLength; i++) {
+            tmpPosition += 1L + (BinaryFingerprintFormat.readVarint(this.inputStream) & 0xFFFFFFFFL);
+            if (tmpPosition >= this.fragmentDictionary.size()) {
+                throw new IOException("Malformed count record of " + tmpName + ".");
+            }
+            tmpPositionArray[i] = (int) tmpPosition;
+            tmpCountArray[i] = BinaryFingerprintFormat.readVarint(this.inputStream);
+        }
+        return new FingerprintRecord(tmpName, this.fragmentDictionary, tmpPositionArray, tmpCountArray);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,352 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Writes fingerprints in a compact binary format (see {@link BinaryFingerprintFormat} for the layout) that can be
+ * read with {@link BinaryFingerprintReader}. The header records the fragment dictionary, followed by one record per
+ * molecule with its name: bit fingerprints are stored as packed bits, count fingerprints as varint-encoded
+ * (position gap, count) pairs of the populated bins only. For typical molecules with a few dozen fragments and a
+ * dictionary of thousands of fragments, a count record takes tens of bytes instead of the kilobytes of the dense
+ * text representation.
+ * <br>A writer stores either bit or count fingerprints. It is not thread-safe.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class BinaryFingerprintWriter implements Closeable, Flushable {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Output the records are written to
+     */
+    private final DataOutputStream outputStream;
+    /**
+     * Dictionary of the key fragments
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Kind of fingerprints written
+     */
+    private final FingerprintType fingerprintType;
+    /**
+     * Reused buffer of the packed bits of a bit record
+     */
+    private final byte[] bitBuffer;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Reused buffer of the positions of a count record
+     */
+    private int[] positionBuffer;
+    /**
+     * Reused buffer of the counts of a count record
+     */
+    private int[] countBuffer;
+    /**
+     * Number of records written so far
+     */
+    private long numberOfRecords;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor that writes the header. If the stream is not buffered, it is wrapped in a BufferedOutputStream.
+     *
+     * @param anOutputStream stream to write to, closed by {@link #close()}.
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @param aFingerprintType kind of fingerprints to write.
+     * @throws NullPointerException is thrown if one of the arguments is null.
+     * @throws IOException is thrown if the header can not be written.
+     */
+    public BinaryFingerprintWriter(OutputStream anOutputStream, FragmentDictionary aFragmentDictionary, FingerprintType aFingerprintType) throws NullPointerException, IOException {
+        Objects.requireNonNull(anOutputStream, "anOutputStream is null.");
+        this.fragmentDictionary = Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        this.fingerprintType = Objects.requireNonNull(aFingerprintType, "aFingerprintType is null.");
+        this.outputStream = new DataOutputStream(anOutputStream instanceof BufferedOutputStream ? anOutputStream : new BufferedOutputStream(anOutputStream, 1 << 16));
+        this.bitBuffer = new byte[(aFragmentDictionary.size() + 7) >>> 3];
+        this.positionBuffer = new int[64];
+        this.countBuffer = new int[64];
+        this.numberOfRecords = 0L;
+        this.outputStream.writeInt(BinaryFingerprintFormat.MAGIC);
+        this.outputStream.writeByte(BinaryFingerprintFormat.VERSION);
+        this.outputStream.writeByte(aFingerprintType.ordinal());
+        BinaryFingerprintFormat.writeVarint(this.outputStream, aFragmentDictionary.size());
+        for (int i = 0; i < aFragmentDictionary.size(); i++) {
+            BinaryFingerprintFormat.writeString(this.outputStream, aFragmentDictionary.getFragment(i));
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Writes a bit fingerprint given as array of 0 and 1 (any value different from 0 counts as set bit), e.g. as
+     * created by getBitArray() or fillBitArray() of the fingerprinters.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aBitArray array holding the fingerprint.
+     * @param anOffset index of the first position of the fingerprint in the array.
+     * @throws NullPointerException is thrown if the name or the array is null.
+     * @throws IllegalArgumentException is thrown if the array does not hold the fingerprint at the given offset.
+     * @throws IllegalStateException is thrown if this writer does not write bit fingerprints.
+     * @throws IOException is thrown if the record can not be written.
+     */
+    public void writeBitArray(String aName, int[] aBitArray, int anOffset) throws NullPointerException, IllegalArgumentException, IllegalStateException, IOException {
+        this.checkRecord(aName, FingerprintType.BIT);
+        this.checkArrayRange(aBitArray, anOffset);
+        Arrays.fill(this.bitBuffer, (byte) 0);
+        for (int i = 0; i < this.fragmentDictionary.size(); i++) {
+            if (aBitArray[anOffset + i] != 0) {
+                this.bitBuffer[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        this.writeBitRecord(aName);
+    }
+    //
+    /**
+     * Writes the given bit fingerprint.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aBitFingerprint fingerprint to write.
+     * @throws NullPointerException is thrown if the name or the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has bits set beyond the size of the dictionary.
+     * @throws IllegalStateException is thrown if this writer does not write bit fingerprints.
+     * @throws IOException is thrown if the record can not be written.
+     */
+    public void writeBitFingerprint(String aName, IBitFingerprint aBitFingerprint) throws NullPointerException, IllegalArgumentException, IllegalStateException, IOException {
+        this.checkRecord(aName, FingerprintType.BIT);
+        Objects.requireNonNull(aBitFingerprint, "aBitFingerprint is null.");
+        BitSet tmpBitSet = aBitFingerprint.asBitSet();
+        if (tmpBitSet.length() > this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("aBitFingerprint has bits set beyond the size of the dictionary.");
+        }
+        byte[] tmpBytes = tmpBitSet.toByteArray();
+        Arrays.fill(this.bitBuffer, (byte) 0);
+        System.arraycopy(tmpBytes, 0, this.bitBuffer, 0, tmpBytes.length);
+        this.writeBitRecord(aName);
+    }
+    //
+    /**
+     * Writes a count fingerprint given as dense array of frequencies, e.g. as created by getCountArray() or
+     * fillCountArray() of the fingerprinters. Only positions with a frequency different from 0 are stored.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aCountArray array holding the fingerprint.
+     * @param anOffset index of the first position of the fingerprint in the array.
+     * @throws NullPointerException is thrown if the name or the array is null.
+     * @throws IllegalArgumentException is thrown if the array does not hold the fingerprint at the given offset or
+     * contains negative frequencies.
+     * @throws IllegalStateException is thrown if this writer does not write count fingerprints.
+     * @throws IOException is thrown if the record can not be written.
+     */
+    public void writeCountArray(String aName, int[] aCountArray, int anOffset) throws NullPointerException, IllegalArgumentException, IllegalStateException, IOException {
+        this.checkRecord(aName, FingerprintType.COUNT);
+        this.checkArrayRange(aCountArray, anOffset);
+        int tmpLength = 0;
+        for (int i = 0; i < this.fragmentDictionary.size(); i++) {
+            int tmpCount = aCountArray[anOffset + i];
+            if (tmpCount != 0) {
+                tmpLength = this.addToCountBuffers(tmpLength, i, tmpCount);
+            }
+        }
+        this.writeCountRecord(aName, tmpLength);
+    }
+    //
+    /**
+     * Writes the given count fingerprint. For a {@link CountFingerprint}, only its populated bins are visited;
+     * other implementations are read bin by bin via getHash() and getCount(). In both cases, the hashes must be
+     * positions in the dictionary of this writer.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aCountFingerprint fingerprint to write.
+     * @throws NullPointerException is thrown if the name or the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has positions outside the dictionary or
+     * negative frequencies.
+     * @throws IllegalStateException is thrown if this writer does not write count fingerprints.
+     * @throws IOException is thrown if the record can not be written.
+     */
+    public void writeCountFingerprint(String aName, ICountFingerprint aCountFingerprint) throws NullPointerException, IllegalArgumentException, IllegalStateException, IOException {
+        this.checkRecord(aName, FingerprintType.COUNT);
+        Objects.requireNonNull(aCountFingerprint, "aCountFingerprint is null.");
+        if (aCountFingerprint instanceof CountFingerprint) {
+            int[] tmpLength = new int[1];
+            ((CountFingerprint) aCountFingerprint).forEachPopulatedBin((int aHash, int aCount) -> {
+                // the fingerprint may be based on another, larger dictionary
+                if (aHash < 0 || aHash >= this.fragmentDictionary.size()) {
+                    throw new IllegalArgumentException("aCountFingerprint has a position outside the dictionary.");
+                }
+                tmpLength[0] = this.addToCountBuffers(tmpLength[0], aHash, aCount);
+            });
+            this.writeCountRecord(aName, tmpLength[0]);
+            return;
+        }
+        int[] tmpCountArray = new int[this.fragmentDictionary.size()];
+        for (int i = 0; i < aCountFingerprint.numOfPopulatedbins(); i++) {
+            int tmpPosition = aCountFingerprint.getHash(i);
+            if (tmpPosition < 0 || tmpPosition >= tmpCountArray.length) {
+                throw new IllegalArgumentException("aCountFingerprint has a position outside the dictionary.");
+            }
+            tmpCountArray[tmpPosition] += aCountFingerprint.getCount(i);
+        }
+        this.writeCountArray(aName, tmpCountArray, 0);
+    }
+    //
+    /**
+     * Returns the number of records written so far.
+     *
+     * @return long
+     */
+    public long getNumberOfRecords() {
+        return this.numberOfRecords;
+    }
+    //
+    /**
+     * Returns the kind of fingerprints written.
+     *
+     * @return FingerprintType
+     */
+    public FingerprintType getFingerprintType() {
+        return this.fingerprintType;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        this.outputStream.flush();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        this.outputStream.close();
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Checks the name of a record and the fingerprint type of the writer.
+     *
+     * @param aName name of the record.
+     * @param aFingerprintType type of the record.
+     * @throws NullPointerException is thrown if the name is null.
+     * @throws IllegalStateException is thrown if the writer writes the other type.
+     */
+    private void checkRecord(String aName, FingerprintType aFingerprintType) throws NullPointerException, IllegalStateException {
+        Objects.requireNonNull(aName, "aName is null.");
+        if (this.fingerprintType != aFingerprintType) {
+            throw new IllegalStateException("This writer writes " + this.fingerprintType + " fingerprints.");
+        }
+    }
+    //
+    /**
+     * Checks that the given array holds a fingerprint at the given offset.
+     *
+     * @param anArray array holding the fingerprint.
+     * @param anOffset index of the first position.
+     * @throws NullPointerException is thrown if the array is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint does not fit into the array at the offset.
+     */
+    private void checkArrayRange(int[] anArray, int anOffset) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(anArray, "array is null.");
+        if (anOffset < 0 || anOffset > anArray.length - this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("The array does not hold the fingerprint at the given offset.");
+        }
+    }
+    //
+    /**
+     * Appends a (position, count) pair to the count buffers. Positions must be added in ascending order.
+     *
+     * @param aLength number of pairs already in the buffers.
+     * @param aPosition position of the bin.
+     * @param aCount frequency of the bin.
+     * @return new number of pairs
+     * @throws IllegalArgumentException is thrown if the frequency is negative.
+     */
+    private int addToCountBuffers(int aLength, int aPosition, int aCount) throws IllegalArgumentException {
+        if (aCount < 0) {
+            throw new IllegalArgumentException("Negative frequencies can not be written.");
+        }
+        if (aLength == this.positionBuffer.length) {
+            this.positionBuffer = Arrays.copyOf(this.positionBuffer, aLength * 2);
+            this.countBuffer = Arrays.copyOf(this.countBuffer, aLength * 2);
+        }
+        this.positionBuffer[aLength] = aPosition;
+        this.countBuffer[aLength] = aCount;
+        return aLength + 1;
+    }
+    //
+    /**
+     * Writes a bit record from the bit buffer.
+     *
+     * @param aName name of the record.
+     * @throws IOException is thrown if the record can not be written.
+     */
+    private void writeBitRecord(String aName) throws IOException {
+        BinaryFingerprintFormat.writeString(this.outputStream, aName);
+        this.outputStream.write(this.bitBuffer);
+        this.numberOfRecords++;
+    }
+    //
+    /**
+     * Writes a count record from the count buffers.
+     *
+     * @param aName name of the record.
+     * @param aLength number of (position, count) pairs in the buffers.
+     * @throws IOException is thrown if the record can not be written.
+     */
+    private void writeCountRecord(String aName, int aLength) throws IOException {
+        BinaryFingerprintFormat.writeString(this.outputStream, aName);
+        BinaryFingerprintFormat.writeVarint(this.outputStream, aLength);
+        int tmpPreviousPosition = -1;
+        for (int i = 0; i < aLength; i++) {
+            BinaryFingerprintFormat.writeVarint(this.outputStream, this.positionBuffer[i] - tmpPreviousPosition - 1);
+            BinaryFingerprintFormat.writeVarint(this.outputStream, this.countBuffer[i]);
+            tmpPreviousPosition = this.positionBuffer[i];
+        }
+        this.numberOfRecords++;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Three-stage pipeline that overlaps reading, fingerprinting and writing: a reader thread takes the input items
+ * (e.g. molecules from a {@link MoleculeFragmentsReader}) from an iterator and submits them to a pool of worker
+ * threads, and the calling thread passes the worker results to a sink (e.g. a writer) in input order.
+ * <br>The reader hands the futures of the submitted items to the writer through a bounded queue. If the writer
+ * falls behind, the queue fills up and the reader blocks, so at most queue capacity + 1 items are in memory at a
+ * time, independent of the input size. Since the writer takes the futures in the order they were submitted,
+ * the output order equals the input order although the workers finish in arbitrary order.
+ * <br>The worker function must be thread-safe, e.g. based on a {@link de.unijena.cheminf.fragment.fingerprint.StatelessFragmentFingerprinter};
+ * iterator and sink are only used by one thread each. If the iterator, a worker or the sink throws an exception,
+ * the pipeline is stopped and the exception is rethrown by {@link #run(Iterator, Function, ResultSink)}. The method
+ * returns only after the reader thread has terminated, so the iterator and its underlying resources can be closed
+ * afterwards.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class FingerprintPipeline {
+    //<editor-fold desc="Public interfaces" defaultstate="collapsed">
+    /**
+     * Final stage of the pipeline that receives the results in input order, on the thread that runs the pipeline.
+     *
+     * @param <R> type of the results
+     */
+    @FunctionalInterface
+    public interface ResultSink<R> {
+        /**
+         * Consumes the result of the next input item.
+         *
+         * @param aResult result of the worker function.
+         * @throws IOException if the result can not be written.
+         */
+        void accept(R aResult) throws IOException;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static final class variables" defaultstate="collapsed">
+    /**
+     * Default number of futures in the queue between reader and writer per worker thread
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY_PER_WORKER = 64;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Marks the end of the input in the queue
+     */
+    private static final Future<Object> END_OF_INPUT = CompletableFuture.completedFuture(null);
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Number of worker threads
+     */
+    private final int numberOfWorkers;
+    /**
+     * Capacity of the queue between reader and writer
+     */
+    private final int queueCapacity;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor with one worker per available processor and the default queue capacity.
+     */
+    public FingerprintPipeline() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    //
+    /**
+     * Constructor with the default queue capacity.
+     *
+     * @param aNumberOfWorkers number of worker threads.
+     * @throws IllegalArgumentException is thrown if the number of workers is not positive.
+     */
+    public FingerprintPipeline(int aNumberOfWorkers) throws IllegalArgumentException {
+        this(aNumberOfWorkers, Math.max(1, aNumberOfWorkers) * FingerprintPipeline.DEFAULT_QUEUE_CAPACITY_PER_WORKER);
+    }
+    //
+    /**
+     * Constructor.
+     *
+     * @param aNumberOfWorkers number of worker threads.
+     * @param aQueueCapacity maximum number of submitted items whose results have not been written yet.
+     * @throws IllegalArgumentException is thrown if the number of workers or the queue capacity is not positive.
+     */
+    public FingerprintPipeline(int aNumberOfWorkers, int aQueueCapacity) throws IllegalArgumentException {
+        if (aNumberOfWorkers <= 0) {
+            throw new IllegalArgumentException("aNumberOfWorkers must be positive.");
+        }
+        if (aQueueCapacity <= 0) {
+            throw new IllegalArgumentException("aQueueCapacity must be positive.");
+        }
+        this.numberOfWorkers = aNumberOfWorkers;
+        this.queueCapacity = aQueueCapacity;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Runs the pipeline until the iterator is exhausted and all results are passed to the sink.
+     *
+     * @param aSource input items, only accessed by the reader thread.
+     * @param aWorker thread-safe function that calculates the result of an item.
+     * @param aSink receives the results in input order, called on the current thread.
+     * @param <T> type of the input items
+     * @param <R> type of the results
+     * @return number of processed items
+     * @throws NullPointerException is thrown if one of the arguments is null.
+     * @throws IOException is thrown if the sink throws it.
+     * @throws InterruptedException is thrown if the current thread is interrupted while waiting for a result.
+     * @throws RuntimeException is rethrown if the iterator or a worker throws it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T, R> long run(Iterator<? extends T> aSource, Function<? super T, ? extends R> aWorker, ResultSink<? super R> aSink) throws NullPointerException, IOException, InterruptedException {
+        Objects.requireNonNull(aSource, "aSource is null.");
+        Objects.requireNonNull(aWorker, "aWorker is null.");
+        Objects.requireNonNull(aSink, "aSink is null.");
+        BlockingQueue<Future<?>> tmpQueue = new ArrayBlockingQueue<>(this.queueCapacity);
+        ExecutorService tmpWorkerPool = Executors.newFixedThreadPool(this.numberOfWorkers, (Runnable aRunnable) -> {
+            Thread tmpThread = new Thread(aRunnable, "FingerprintPipeline-worker");
+            tmpThread.setDaemon(true);
+            return tmpThread;
+        });
+        Thread tmpReaderThread = new Thread(() -> {
+            try {
+                try {
+                    while (aSource.hasNext()) {
+                        T tmpItem = aSource.next();
+                        tmpQueue.put(tmpWorkerPool.submit(() -> aWorker.apply(tmpItem)));
+                    }
+                } catch (RuntimeException | Error anException) {
+                    tmpQueue.put(CompletableFuture.failedFuture(anException));
+                }
+                tmpQueue.put(FingerprintPipeline.END_OF_INPUT);
+            } catch (InterruptedException anException) {
+                // the writer stopped the pipeline
+                Thread.currentThread().interrupt();
+            }
+        }, "FingerprintPipeline-reader");
+        tmpReaderThread.setDaemon(true);
+        tmpReaderThread.start();
+        long tmpNumberOfItems = 0L;
+        try {
+            Future<?> tmpFuture;
+            while ((tmpFuture = tmpQueue.take()) != FingerprintPipeline.END_OF_INPUT) {
+                R tmpResult;
+                try {
+                    tmpResult = (R) tmpFuture.get();
+                } catch (ExecutionException anException) {
+                    Throwable tmpCause = anException.getCause();
+                    if (tmpCause instanceof RuntimeException) {
+                        throw (RuntimeException) tmpCause;
+                    }
+                    if (tmpCause instanceof Error) {
+                        throw (Error) tmpCause;
+                    }
+                    throw new IllegalStateException(tmpCause);
+                }
+                aSink.accept(tmpResult);
+                tmpNumberOfItems++;
+            }
+        } finally {
+            tmpReaderThread.interrupt();
+            tmpWorkerPool.shutdownNow();
+            // the reader may still be inside the iterator, which must not be used (e.g. closed) after returning
+            boolean tmpIsInterrupted = false;
+            while (tmpReaderThread.isAlive()) {
+                try {
+                    tmpReaderThread.join();
+                } catch (InterruptedException anException) {
+                    tmpIsInterrupted = true;
+                }
+            }
+            if (tmpIsInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return tmpNumberOfItems;
+    }
+    //
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return int
+     */
+    public int getNumberOfWorkers() {
+        return this.numberOfWorkers;
+    }
+    //
+    /**
+     * Returns the capacity of the queue between reader and writer.
+     *
+     * @return int
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * One fingerprint read by {@link BinaryFingerprintReader}, i.e. the name of the molecule and the positions of its
+ * populated bins in ascending order with their frequencies. For bit fingerprints, all frequencies are 1.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class FingerprintRecord {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Name/ID of the molecule
+     */
+    private final String name;
+    /**
+     * Dictionary of the key fragments of the file
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Positions of the populated bins in ascending order
+     */
+    private final int[] positionArray;
+    /**
+     * Frequencies of the populated bins, null for bit fingerprints
+     */
+    private final int[] countArray;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor, the arrays are taken over.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aFragmentDictionary dictionary of the key fragments.
+     * @param aPositionArray positions of the populated bins in ascending order.
+     * @param aCountArray frequencies of the populated bins or null for a bit fingerprint.
+     */
+    FingerprintRecord(String aName, FragmentDictionary aFragmentDictionary, int[] aPositionArray, int[] aCountArray) {
+        this.name = aName;
+        this.fragmentDictionary = aFragmentDictionary;
+        this.positionArray = aPositionArray;
+        this.countArray = aCountArray;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the name/ID of the molecule.
+     *
+     * @return name
+     */
+    public String getName() {
+        return this.name;
+    }
+    //
+    /**
+     * Returns the kind of the fingerprint.
+     *
+     * @return FingerprintType
+     */
+    public FingerprintType getFingerprintType() {
+        return this.countArray == null ? FingerprintType.BIT : FingerprintType.COUNT;
+    }
+    //
+    /**
+     * Returns the number of populated bins, i.e. set bits or bins with a frequency different from 0.
+     *
+     * @return int
+     */
+    public int getNumberOfPopulatedBins() {
+        return this.positionArray.length;
+    }
+    //
+    /**
+     * Returns the position of the populated bin at the given index; positions are in ascending order.
+     *
+     * @param anIndex index from 0 to getNumberOfPopulatedBins() - 1.
+     * @return position in the fingerprint
+     * @throws IndexOutOfBoundsException is thrown if the index is out of range.
+     */
+    public int getPosition(int anIndex) throws IndexOutOfBoundsException {
+        return this.positionArray[anIndex];
+    }
+    //
+    /**
+     * Returns the frequency of the populated bin at the given index, 1 for bit fingerprints.
+     *
+     * @param anIndex index from 0 to getNumberOfPopulatedBins() - 1.
+     * @return frequency
+     * @throws IndexOutOfBoundsException is thrown if the index is out of range.
+     */
+    public int getCount(int anIndex) throws IndexOutOfBoundsException {
+        Objects.checkIndex(anIndex, this.positionArray.length);
+        return this.countArray == null ? 1 : this.countArray[anIndex];
+    }
+    //
+    /**
+     * Writes the dense fingerprint, i.e. 0/1 for bit fingerprints or the frequencies for count fingerprints,
+     * into the given array, starting at the given offset.
+     *
+     * @param aDestination destination array.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the destination array is null.
+     * @throws IllegalArgumentException is thrown if the destination array does not have enough space for the
+     * fingerprint at the given offset.
+     */
+    public void fillArray(int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aDestination, "aDestination (array) is null.");
+        if (anOffset < 0 || anOffset > aDestination.length - this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("The destination array does not have enough space for the fingerprint at the given offset.");
+        }
+        Arrays.fill(aDestination, anOffset, anOffset + this.fragmentDictionary.size(), 0);
+        for (int i = 0; i < this.positionArray.length; i++) {
+            aDestination[anOffset + this.positionArray[i]] = this.countArray == null ? 1 : this.countArray[i];
+        }
+    }
+    //
+    /**
+     * Creates the bit fingerprint, i.e. the populated bins of a count fingerprint become set bits.
+     *
+     * @return BitSetFingerprint
+     */
+    public IBitFingerprint toBitFingerprint() {
+        BitSet tmpBitSet = new BitSet(this.fragmentDictionary.size());
+        for (int tmpPosition : this.positionArray) {
+            tmpBitSet.set(tmpPosition);
+        }
+        return new BitSetFingerprint(tmpBitSet);
+    }
+    //
+    /**
+     * Creates the count fingerprint based on the dictionary of the file; for bit fingerprints, all frequencies are 1.
+     *
+     * @return CountFingerprint
+     */
+    public CountFingerprint toCountFingerprint() {
+        int[] tmpCountArray = this.countArray;
+        if (tmpCountArray == null) {
+            tmpCountArray = new int[this.positionArray.length];
+            Arrays.fill(tmpCountArray, 1);
+        }
+        return CountFingerprint.fromPositions(this.fragmentDictionary, this.positionArray, tmpCountArray, this.positionArray.length);
+    }
+    //</editor-fold>
+}
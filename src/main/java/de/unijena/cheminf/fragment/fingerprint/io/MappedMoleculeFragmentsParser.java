@@ -0,0 +1,375 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Parser for the semicolon-separated fragment and molecule-fragments files of the performance test that works on
+ * the memory-mapped bytes of the files instead of lines and Strings (see {@link MoleculeFragmentsReader} for the
+ * format). The columns of a line are found in place, frequencies are parsed directly from their digits, and the
+ * fragment SMILES are resolved via {@link FragmentDictionary#getPosition(ByteBuffer, int, int)}, so parsing a
+ * molecule does not create any String or boxed Integer. Molecules are handed to a consumer as a reused
+ * {@link ParsedMoleculeFragments} view.
+ * <br>Files are mapped in windows of at most {@link #DEFAULT_WINDOW_SIZE} bytes, so files larger than 2 GB can be
+ * parsed; a window always ends after the last complete line it contains. The input must be UTF-8 (or ASCII) encoded,
+ * line breaks may be LF or CRLF, empty lines are skipped and a trailing separator is allowed. As in the
+ * MoleculeFragmentsReader, a fragment that occurs more than once in a line replaces its earlier frequency.
+ * <br>An instance can be used for several files, but not concurrently by multiple threads.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class MappedMoleculeFragmentsParser {
+    //<editor-fold desc="Public interfaces" defaultstate="collapsed">
+    /**
+     * Receives the molecules parsed by {@link #parse(Path, boolean, MoleculeFragmentsConsumer)}.
+     */
+    @FunctionalInterface
+    public interface MoleculeFragmentsConsumer {
+        /**
+         * Is called once per molecule, in the order of the file. The given view is only valid during the call.
+         *
+         * @param aMolecule view on the parsed molecule.
+         */
+        void accept(ParsedMoleculeFragments aMolecule);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static final class variables" defaultstate="collapsed">
+    /**
+     * Default maximum size of a mapped window in bytes (1 GB)
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Separator of the columns
+     */
+    private static final byte SEPARATOR = ';';
+    /**
+     * Line feed
+     */
+    private static final byte LINE_FEED = '\n';
+    /**
+     * Carriage return
+     */
+    private static final byte CARRIAGE_RETURN = '\r';
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Dictionary the fragments are resolved against
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Maximum size of a mapped window in bytes
+     */
+    private final int windowSize;
+    /**
+     * Reused view on the current molecule
+     */
+    private final ParsedMoleculeFragments molecule;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor.
+     *
+     * @param aFragmentDictionary dictionary the fragments of the molecules are resolved against.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    public MappedMoleculeFragmentsParser(FragmentDictionary aFragmentDictionary) throws NullPointerException {
+        this(aFragmentDictionary, MappedMoleculeFragmentsParser.DEFAULT_WINDOW_SIZE);
+    }
+    //
+    /**
+     * Constructor with a custom window size, used for testing lines that cross window boundaries.
+     *
+     * @param aFragmentDictionary dictionary the fragments of the molecules are resolved against.
+     * @param aWindowSize maximum size of a mapped window in bytes, must be larger than the longest line.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     * @throws IllegalArgumentException is thrown if the window size is not positive.
+     */
+    MappedMoleculeFragmentsParser(FragmentDictionary aFragmentDictionary, int aWindowSize) throws NullPointerException, IllegalArgumentException {
+        this.fragmentDictionary = Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        if (aWindowSize <= 0) {
+            throw new IllegalArgumentException("aWindowSize must be positive.");
+        }
+        this.windowSize = aWindowSize;
+        this.molecule = new ParsedMoleculeFragments(aFragmentDictionary);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static methods" defaultstate="collapsed">
+    /**
+     * Reads the key fragments from a semicolon-separated fragment file, i.e. the first column of every non-empty line.
+     * The returned array can be passed to the fingerprinters or to {@link FragmentDictionary#FragmentDictionary(String[])}.
+     *
+     * @param aPath path of the UTF-8 encoded fragment file.
+     * @param aHasHeaderLine true if the first line is a header line that is to be skipped.
+     * @return fragment SMILES in the order of the file
+     * @throws NullPointerException is thrown if aPath is null.
+     * @throws IOException is thrown if the file can not be read or contains a line longer than the window size.
+     */
+    public static String[] readFragments(Path aPath, boolean aHasHeaderLine) throws NullPointerException, IOException {
+        Objects.requireNonNull(aPath, "aPath is null.");
+        List<String> tmpFragmentList = new ArrayList<>();
+        MappedMoleculeFragmentsParser.forEachLine(aPath, aHasHeaderLine, MappedMoleculeFragmentsParser.DEFAULT_WINDOW_SIZE,
+                (ByteBuffer aBuffer, int aStart, int anEnd, long aLineNumber) -> {
+                    int tmpEnd = MappedMoleculeFragmentsParser.indexOf(aBuffer, MappedMoleculeFragmentsParser.SEPARATOR, aStart, anEnd);
+                    byte[] tmpBytes = new byte[(tmpEnd < 0 ? anEnd : tmpEnd) - aStart];
+                    aBuffer.get(aStart, tmpBytes);
+                    tmpFragmentList.add(new String(tmpBytes, StandardCharsets.UTF_8));
+                });
+        return tmpFragmentList.toArray(new String[0]);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Parses the given molecule-fragments file and passes every molecule to the consumer.
+     *
+     * @param aPath path of the molecule-fragments file.
+     * @param aHasHeaderLine true if the first line is a header line that is to be skipped.
+     * @param aConsumer consumer of the parsed molecules.
+     * @return number of parsed molecules
+     * @throws NullPointerException is thrown if aPath or aConsumer is null.
+     * @throws IOException is thrown if the file can not be read or contains a line longer than the window size.
+     * @throws IllegalArgumentException is thrown if a line is malformed, i.e. has less than two columns, a fragment
+     * without frequency or a frequency that is not an integer; the message contains the line number.
+     */
+    public long parse(Path aPath, boolean aHasHeaderLine, MoleculeFragmentsConsumer aConsumer) throws NullPointerException, IOException, IllegalArgumentException {
+        Objects.requireNonNull(aPath, "aPath is null.");
+        Objects.requireNonNull(aConsumer, "aConsumer is null.");
+        long[] tmpNumberOfMolecules = new long[1];
+        MappedMoleculeFragmentsParser.forEachLine(aPath, aHasHeaderLine, this.windowSize,
+                (ByteBuffer aBuffer, int aStart, int anEnd, long aLineNumber) -> {
+                    this.parseLine(aBuffer, aStart, anEnd, aLineNumber);
+                    aConsumer.accept(this.molecule);
+                    tmpNumberOfMolecules[0]++;
+                });
+        return tmpNumberOfMolecules[0];
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Parses one molecule line into the reused view.
+     *
+     * @param aBuffer buffer holding the line.
+     * @param aStart index of the first byte of the line.
+     * @param anEnd index after the last byte of the line, without line break.
+     * @param aLineNumber line number for error messages.
+     * @throws IllegalArgumentException is thrown if the line is malformed.
+     */
+    private void parseLine(ByteBuffer aBuffer, int aStart, int anEnd, long aLineNumber) throws IllegalArgumentException {
+        int tmpNameEnd = MappedMoleculeFragmentsParser.indexOf(aBuffer, MappedMoleculeFragmentsParser.SEPARATOR, aStart, anEnd);
+        if (tmpNameEnd < 0) {
+            throw new IllegalArgumentException("Line " + aLineNumber + " has no SMILES column.");
+        }
+        int tmpSmilesEnd = MappedMoleculeFragmentsParser.indexOf(aBuffer, MappedMoleculeFragmentsParser.SEPARATOR, tmpNameEnd + 1, anEnd);
+        if (tmpSmilesEnd < 0) {
+            tmpSmilesEnd = anEnd;
+        }
+        this.molecule.reset(aBuffer, aLineNumber, aStart, tmpNameEnd, tmpNameEnd + 1, tmpSmilesEnd);
+        int tmpStart = tmpSmilesEnd + 1;
+        while (tmpStart < anEnd) {
+            int tmpFragmentEnd = MappedMoleculeFragmentsParser.indexOf(aBuffer, MappedMoleculeFragmentsParser.SEPARATOR, tmpStart, anEnd);
+            if (tmpFragmentEnd < 0 || tmpFragmentEnd + 1 >= anEnd) {
+                throw new IllegalArgumentException("Line " + aLineNumber + ": a fragment has no frequency.");
+            }
+            int tmpFrequencyEnd = MappedMoleculeFragmentsParser.indexOf(aBuffer, MappedMoleculeFragmentsParser.SEPARATOR, tmpFragmentEnd + 1, anEnd);
+            if (tmpFrequencyEnd < 0) {
+                tmpFrequencyEnd = anEnd;
+            }
+            int tmpFrequency = MappedMoleculeFragmentsParser.parseInt(aBuffer, tmpFragmentEnd + 1, tmpFrequencyEnd, aLineNumber);
+            int tmpPosition = this.fragmentDictionary.getPosition(aBuffer, tmpStart, tmpFragmentEnd - tmpStart);
+            if (tmpPosition == FragmentDictionary.NOT_FOUND) {
+                this.molecule.addUnknownFragment();
+            } else {
+                this.molecule.addKeyFragment(tmpPosition, tmpFrequency);
+            }
+            tmpStart = tmpFrequencyEnd + 1;
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Maps the given file window by window and passes every non-empty line, without line break, to the handler.
+     * A window ends after the last line break it contains, the next window starts with the following line.
+     *
+     * @param aPath path of the file.
+     * @param aHasHeaderLine true if the first line is skipped.
+     * @param aWindowSize maximum size of a mapped window in bytes.
+     * @param aHandler handler of the lines.
+     * @throws IOException is thrown if the file can not be read or contains a line longer than the window size.
+     */
+    private static void forEachLine(Path aPath, boolean aHasHeaderLine, int aWindowSize, LineHandler aHandler) throws IOException {
+        try (FileChannel tmpChannel = FileChannel.open(aPath, StandardOpenOption.READ)) {
+            long tmpFileSize = tmpChannel.size();
+            long tmpWindowStart = 0L;
+            long tmpLineNumber = 0L;
+            boolean tmpIsHeaderPending = aHasHeaderLine;
+            while (tmpWindowStart < tmpFileSize) {
+                int tmpWindowLength = (int) Math.min(aWindowSize, tmpFileSize - tmpWindowStart);
+                boolean tmpIsLastWindow = tmpWindowStart + tmpWindowLength == tmpFileSize;
+                MappedByteBuffer tmpBuffer = tmpChannel.map(FileChannel.MapMode.READ_ONLY, tmpWindowStart, tmpWindowLength);
+                int tmpLineStart = 0;
+                while (tmpLineStart < tmpWindowLength) {
+                    int tmpLineEnd = MappedMoleculeFragmentsParser.indexOf(tmpBuffer, MappedMoleculeFragmentsParser.LINE_FEED, tmpLineStart, tmpWindowLength);
+                    if (tmpLineEnd < 0) {
+                        if (!tmpIsLastWindow) {
+                            break;
+                        }
+                        tmpLineEnd = tmpWindowLength;
+                    }
+                    tmpLineNumber++;
+                    int tmpContentEnd = tmpLineEnd;
+                    if (tmpContentEnd > tmpLineStart && tmpBuffer.get(tmpContentEnd - 1) == MappedMoleculeFragmentsParser.CARRIAGE_RETURN) {
+                        tmpContentEnd--;
+                    }
+                    if (tmpIsHeaderPending) {
+                        tmpIsHeaderPending = false;
+                    } else if (!MappedMoleculeFragmentsParser.isBlank(tmpBuffer, tmpLineStart, tmpContentEnd)) {
+                        aHandler.handle(tmpBuffer, tmpLineStart, tmpContentEnd, tmpLineNumber);
+                    }
+                    tmpLineStart = tmpLineEnd + 1;
+                }
+                if (tmpLineStart == 0) {
+                    throw new IOException("Line " + (tmpLineNumber + 1) + " is longer than the window size of " + aWindowSize + " bytes.");
+                }
+                tmpWindowStart += Math.min(tmpLineStart, tmpWindowLength);
+            }
+        }
+    }
+    //
+    /**
+     * Returns the index of the first occurrence of the given byte in the given range of the buffer.
+     *
+     * @param aBuffer buffer to search.
+     * @param aByte byte to find.
+     * @param aStart first index to check.
+     * @param anEnd index after the last index to check.
+     * @return index of the byte or -1 if it does not occur in the range
+     */
+    private static int indexOf(ByteBuffer aBuffer, byte aByte, int aStart, int anEnd) {
+        for (int i = aStart; i < anEnd; i++) {
+            if (aBuffer.get(i) == aByte) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    //
+    /**
+     * Returns whether the given range of the buffer only contains whitespace characters.
+     *
+     * @param aBuffer buffer to check.
+     * @param aStart first index to check.
+     * @param anEnd index after the last index to check.
+     * @return true if the range is empty or blank
+     */
+    private static boolean isBlank(ByteBuffer aBuffer, int aStart, int anEnd) {
+        for (int i = aStart; i < anEnd; i++) {
+            byte tmpByte = aBuffer.get(i);
+            if (tmpByte != ' ' && tmpByte != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+    //
+    /**
+     * Parses the decimal integer with optional sign in the given range of the buffer.
+     *
+     * @param aBuffer buffer holding the digits.
+     * @param aStart index of the first byte.
+     * @param anEnd index after the last byte.
+     * @param aLineNumber line number for error messages.
+     * @return parsed integer
+     * @throws IllegalArgumentException is thrown if the range is not a valid integer.
+     */
+    private static int parseInt(ByteBuffer aBuffer, int aStart, int anEnd, long aLineNumber) throws IllegalArgumentException {
+        int tmpIndex = aStart;
+        boolean tmpIsNegative = false;
+        if (tmpIndex < anEnd && (aBuffer.get(tmpIndex) == '-' || aBuffer.get(tmpIndex) == '+')) {
+            tmpIsNegative = aBuffer.get(tmpIndex) == '-';
+            tmpIndex++;
+        }
+        if (tmpIndex == anEnd) {
+            throw new IllegalArgumentException("Line " + aLineNumber + ": invalid frequency.");
+        }
+        long tmpValue = 0L;
+        for (; tmpIndex < anEnd; tmpIndex++) {
+            int tmpDigit = aBuffer.get(tmpIndex) - '0';
+            if (tmpDigit < 0 || tmpDigit > 9) {
+                throw new IllegalArgumentException("Line " + aLineNumber + ": invalid frequency.");
+            }
+            tmpValue = tmpValue * 10L + tmpDigit;
+            if (tmpValue > (long) Integer.MAX_VALUE + 1L) {
+                throw new IllegalArgumentException("Line " + aLineNumber + ": frequency out of integer range.");
+            }
+        }
+        tmpValue = tmpIsNegative ? -tmpValue : tmpValue;
+        if (tmpValue > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Line " + aLineNumber + ": frequency out of integer range.");
+        }
+        return (int) tmpValue;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private interfaces" defaultstate="collapsed">
+    /**
+     * Handler of the lines of a mapped file.
+     */
+    @FunctionalInterface
+    private interface LineHandler {
+        /**
+         * Handles one non-empty line.
+         *
+         * @param aBuffer buffer holding the line.
+         * @param aStart index of the first byte of the line.
+         * @param anEnd index after the last byte of the line, without line break.
+         * @param aLineNumber line number, starting at 1.
+         */
+        void handle(ByteBuffer aBuffer, int aStart, int anEnd, long aLineNumber);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * One molecule read from a molecule-fragments file, i.e. its name/ID, its SMILES and its fragments with their
+ * frequencies. The fragment map can directly be passed to
+ * {@link de.unijena.cheminf.fragment.fingerprint.IFragmentFingerprinter#getCountFingerprint(java.util.Map)}, the
+ * fragment list to {@link de.unijena.cheminf.fragment.fingerprint.IFragmentFingerprinter#getBitFingerprint(java.util.List)}.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class MoleculeFragments {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Name/ID of the molecule
+     */
+    private final String name;
+    /**
+     * SMILES of the molecule
+     */
+    private final String smiles;
+    /**
+     * Fragment SMILES mapped to their frequencies in the molecule
+     */
+    private final HashMap<String, Integer> fragmentFrequencyMap;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aSmiles SMILES of the molecule.
+     * @param aFragmentFrequencyMap fragment SMILES mapped to their frequencies; the map is taken over, not copied.
+     * @throws NullPointerException is thrown if one of the arguments is null.
+     */
+    public MoleculeFragments(String aName, String aSmiles, HashMap<String, Integer> aFragmentFrequencyMap) throws NullPointerException {
+        this.name = Objects.requireNonNull(aName, "aName (name of the molecule) is null.");
+        this.smiles = Objects.requireNonNull(aSmiles, "aSmiles (SMILES of the molecule) is null.");
+        this.fragmentFrequencyMap = Objects.requireNonNull(aFragmentFrequencyMap, "aFragmentFrequencyMap is null.");
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the name/ID of the molecule.
+     *
+     * @return name
+     */
+    public String getName() {
+        return this.name;
+    }
+    //
+    /**
+     * Returns the SMILES of the molecule.
+     *
+     * @return SMILES
+     */
+    public String getSmiles() {
+        return this.smiles;
+    }
+    //
+    /**
+     * Returns the fragment SMILES of the molecule mapped to their frequencies. The map is not copied.
+     *
+     * @return fragment-to-frequency map
+     */
+    public HashMap<String, Integer> getFragmentFrequencyMap() {
+        return this.fragmentFrequencyMap;
+    }
+    //
+    /**
+     * Returns a new list of the (unique) fragment SMILES of the molecule.
+     *
+     * @return list of fragment SMILES
+     */
+    public ArrayList<String> getFragmentList() {
+        return new ArrayList<>(this.fragmentFrequencyMap.keySet());
+    }
+    //</editor-fold>
+}
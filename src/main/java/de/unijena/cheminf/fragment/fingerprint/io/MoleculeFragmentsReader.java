@@ -0,0 +1,247 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming reader for semicolon-separated molecule-fragments files as used by the performance test, i.e. files
+ * in which every line describes one molecule:
+ * <pre>name;SMILES;fragment 1;frequency 1;fragment 2;frequency 2;...</pre>
+ * The lines are read one at a time and only the current molecule is kept in memory, so files of arbitrary length
+ * can be processed in constant memory. Empty lines are skipped, a trailing separator is allowed.
+ * Per line, a fragment that occurs more than once replaces the frequency of its earlier occurrence.
+ * <br>The reader is an iterator over the molecules; IO errors during iteration are thrown as
+ * {@link UncheckedIOException}, malformed lines as {@link IllegalArgumentException} carrying the line number.
+ * The reader is not thread-safe.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class MoleculeFragmentsReader implements Iterator<MoleculeFragments>, Closeable {
+    //<editor-fold desc="Public static final class variables" defaultstate="collapsed">
+    /**
+     * Separator of the columns
+     */
+    public static final char SEPARATOR = ';';
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Underlying reader
+     */
+    private final BufferedReader reader;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Molecule that is returned by the next call of next(), null if it has not been read yet
+     */
+    private MoleculeFragments nextMolecule;
+    /**
+     * Number of lines read so far, including the header line and empty lines
+     */
+    private long lineNumber;
+    /**
+     * True if the end of the input has been reached
+     */
+    private boolean isExhausted;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor. If the reader is not a BufferedReader, it is wrapped in one.
+     *
+     * @param aReader reader of the molecule-fragments file.
+     * @param aHasHeaderLine true if the first line is a header line that is to be skipped.
+     * @throws NullPointerException is thrown if aReader is null.
+     * @throws IOException is thrown if the header line can not be read.
+     */
+    public MoleculeFragmentsReader(Reader aReader, boolean aHasHeaderLine) throws NullPointerException, IOException {
+        Objects.requireNonNull(aReader, "aReader is null.");
+        this.reader = aReader instanceof BufferedReader ? (BufferedReader) aReader : new BufferedReader(aReader);
+        this.lineNumber = 0L;
+        this.isExhausted = false;
+        if (aHasHeaderLine && this.reader.readLine() != null) {
+            this.lineNumber++;
+        }
+    }
+    //
+    /**
+     * Constructor that opens the given UTF-8 encoded file and skips its header line.
+     *
+     * @param aPath path of the molecule-fragments file.
+     * @throws NullPointerException is thrown if aPath is null.
+     * @throws IOException is thrown if the file can not be opened.
+     */
+    public MoleculeFragmentsReader(Path aPath) throws NullPointerException, IOException {
+        this(Files.newBufferedReader(Objects.requireNonNull(aPath, "aPath is null."), StandardCharsets.UTF_8), true);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException is thrown if the next line can not be read.
+     * @throws IllegalArgumentException is thrown if the next line is malformed.
+     */
+    @Override
+    public boolean hasNext() throws UncheckedIOException, IllegalArgumentException {
+        if (this.nextMolecule != null) {
+            return true;
+        }
+        if (this.isExhausted) {
+            return false;
+        }
+        try {
+            String tmpLine;
+            while ((tmpLine = this.reader.readLine()) != null) {
+                this.lineNumber++;
+                if (!tmpLine.isBlank()) {
+                    this.nextMolecule = this.parseLine(tmpLine);
+                    return true;
+                }
+            }
+        } catch (IOException anException) {
+            throw new UncheckedIOException("Line " + (this.lineNumber + 1) + " can not be read.", anException);
+        }
+        this.isExhausted = true;
+        return false;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException is thrown if the next line can not be read.
+     * @throws IllegalArgumentException is thrown if the next line is malformed.
+     */
+    @Override
+    public MoleculeFragments next() throws NoSuchElementException, UncheckedIOException, IllegalArgumentException {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException("No more molecules.");
+        }
+        MoleculeFragments tmpMolecule = this.nextMolecule;
+        this.nextMolecule = null;
+        return tmpMolecule;
+    }
+    //
+    /**
+     * Returns a sequential stream of the remaining molecules. Closing the stream closes this reader.
+     *
+     * @return stream of molecules
+     */
+    public Stream<MoleculeFragments> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        this.close();
+                    } catch (IOException anException) {
+                        throw new UncheckedIOException(anException);
+                    }
+                });
+    }
+    //
+    /**
+     * Returns the number of lines read so far, including the header line and empty lines.
+     *
+     * @return line number of the last read line
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        this.isExhausted = true;
+        this.nextMolecule = null;
+        this.reader.close();
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Parses one line into the molecule it describes. The columns are cut out with indexOf() to avoid
+     * the intermediate array of String.split().
+     *
+     * @param aLine line to parse.
+     * @return molecule
+     * @throws IllegalArgumentException is thrown if the line has less than two columns, a fragment without frequency,
+     * or a frequency that is not an integer.
+     */
+    private MoleculeFragments parseLine(String aLine) throws IllegalArgumentException {
+        int tmpNameEnd = aLine.indexOf(MoleculeFragmentsReader.SEPARATOR);
+        if (tmpNameEnd < 0) {
+            throw new IllegalArgumentException("Line " + this.lineNumber + " has no SMILES column.");
+        }
+        int tmpSmilesEnd = aLine.indexOf(MoleculeFragmentsReader.SEPARATOR, tmpNameEnd + 1);
+        if (tmpSmilesEnd < 0) {
+            tmpSmilesEnd = aLine.length();
+        }
+        String tmpName = aLine.substring(0, tmpNameEnd);
+        String tmpSmiles = aLine.substring(tmpNameEnd + 1, tmpSmilesEnd);
+        HashMap<String, Integer> tmpFragmentMap = new HashMap<>();
+        int tmpStart = tmpSmilesEnd + 1;
+        while (tmpStart < aLine.length()) {
+            int tmpFragmentEnd = aLine.indexOf(MoleculeFragmentsReader.SEPARATOR, tmpStart);
+            if (tmpFragmentEnd < 0 || tmpFragmentEnd + 1 >= aLine.length()) {
+                throw new IllegalArgumentException("Line " + this.lineNumber + ": fragment " + aLine.substring(tmpStart, tmpFragmentEnd < 0 ? aLine.length() : tmpFragmentEnd) + " has no frequency.");
+            }
+            int tmpFrequencyEnd = aLine.indexOf(MoleculeFragmentsReader.SEPARATOR, tmpFragmentEnd + 1);
+            if (tmpFrequencyEnd < 0) {
+                tmpFrequencyEnd = aLine.length();
+            }
+            int tmpFrequency;
+            try {
+                tmpFrequency = Integer.parseInt(aLine, tmpFragmentEnd + 1, tmpFrequencyEnd, 10);
+            } catch (NumberFormatException anException) {
+                throw new IllegalArgumentException("Line " + this.lineNumber + ": invalid frequency " + aLine.substring(tmpFragmentEnd + 1, tmpFrequencyEnd) + ".", anException);
+            }
+            tmpFragmentMap.put(aLine.substring(tmpStart, tmpFragmentEnd), tmpFrequency);
+            tmpStart = tmpFrequencyEnd + 1;
+        }
+        return new MoleculeFragments(tmpName, tmpSmiles, tmpFragmentMap);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,335 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * One molecule parsed by the {@link MappedMoleculeFragmentsParser}, i.e. a view on one line of the input file.
+ * The fragments are already resolved to their positions in the fragment dictionary; fragments that are not part
+ * of the dictionary are only counted. Name and SMILES of the molecule are decoded on request only.
+ * <br>The parser reuses one instance for all molecules and the view refers to the mapped file, so the object is
+ * only valid during the call of {@link MappedMoleculeFragmentsParser.MoleculeFragmentsConsumer#accept}. Values that
+ * are needed afterwards must be copied, e.g. by creating a fingerprint.
+ * <br>Like in {@link MoleculeFragmentsReader}, a key fragment that occurs more than once in a line replaces the
+ * frequency of its earlier occurrence, so both readers yield the same fingerprints for the same file.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class ParsedMoleculeFragments {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Dictionary the fragments are resolved against
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Index of the key fragment entry of every dictionary position in the current line, -1 if the position does not
+     * occur in the line. It is used to find an earlier occurrence of a fragment in constant time.
+     */
+    private final int[] positionToEntryIndexArray;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Buffer holding the current line
+     */
+    private ByteBuffer buffer;
+    /**
+     * Index of the first byte of the name in the buffer
+     */
+    private int nameStart;
+    /**
+     * Index after the last byte of the name in the buffer
+     */
+    private int nameEnd;
+    /**
+     * Index of the first byte of the SMILES in the buffer
+     */
+    private int smilesStart;
+    /**
+     * Index after the last byte of the SMILES in the buffer
+     */
+    private int smilesEnd;
+    /**
+     * Line number of the molecule in the input file, starting at 1
+     */
+    private long lineNumber;
+    /**
+     * Dictionary positions of the key fragments of the molecule
+     */
+    private int[] positionArray;
+    /**
+     * Frequencies of the key fragments at the same index
+     */
+    private int[] countArray;
+    /**
+     * Number of key fragment entries
+     */
+    private int numberOfKeyFragments;
+    /**
+     * Number of fragment entries that are not part of the dictionary
+     */
+    private int numberOfUnknownFragments;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor.
+     *
+     * @param aFragmentDictionary dictionary the fragments are resolved against.
+     */
+    ParsedMoleculeFragments(FragmentDictionary aFragmentDictionary) {
+        this.fragmentDictionary = aFragmentDictionary;
+        this.positionToEntryIndexArray = new int[aFragmentDictionary.size()];
+        Arrays.fill(this.positionToEntryIndexArray, -1);
+        this.positionArray = new int[16];
+        this.countArray = new int[16];
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the name/ID of the molecule, decoded from the input file.
+     *
+     * @return name
+     */
+    public String getName() {
+        return this.decode(this.nameStart, this.nameEnd);
+    }
+    //
+    /**
+     * Returns the SMILES of the molecule, decoded from the input file.
+     *
+     * @return SMILES
+     */
+    public String getSmiles() {
+        return this.decode(this.smilesStart, this.smilesEnd);
+    }
+    //
+    /**
+     * Returns the line number of the molecule in the input file, starting at 1.
+     *
+     * @return line number
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+    //
+    /**
+     * Returns the number of distinct fragments of the molecule that are part of the dictionary.
+     *
+     * @return number of key fragment entries
+     */
+    public int getNumberOfKeyFragments() {
+        return this.numberOfKeyFragments;
+    }
+    //
+    /**
+     * Returns the number of fragment entries of the molecule that are not part of the dictionary.
+     *
+     * @return number of unknown fragment entries
+     */
+    public int getNumberOfUnknownFragments() {
+        return this.numberOfUnknownFragments;
+    }
+    //
+    /**
+     * Returns the dictionary position of the key fragment entry at the given index.
+     *
+     * @param anIndex index of the key fragment entry, from 0 to getNumberOfKeyFragments() - 1.
+     * @return position in the fingerprint
+     * @throws IndexOutOfBoundsException is thrown if the index is out of range.
+     */
+    public int getPosition(int anIndex) throws IndexOutOfBoundsException {
+        return this.positionArray[Objects.checkIndex(anIndex, this.numberOfKeyFragments)];
+    }
+    //
+    /**
+     * Returns the frequency of the key fragment entry at the given index.
+     *
+     * @param anIndex index of the key fragment entry, from 0 to getNumberOfKeyFragments() - 1.
+     * @return frequency
+     * @throws IndexOutOfBoundsException is thrown if the index is out of range.
+     */
+    public int getCount(int anIndex) throws IndexOutOfBoundsException {
+        return this.countArray[Objects.checkIndex(anIndex, this.numberOfKeyFragments)];
+    }
+    //
+    /**
+     * Creates the bit fingerprint of the molecule.
+     *
+     * @return BitSetFingerprint
+     */
+    public IBitFingerprint getBitFingerprint() {
+        BitSet tmpBitSet = new BitSet(this.fragmentDictionary.size());
+        for (int i = 0; i < this.numberOfKeyFragments; i++) {
+            tmpBitSet.set(this.positionArray[i]);
+        }
+        return new BitSetFingerprint(tmpBitSet);
+    }
+    //
+    /**
+     * Creates the count fingerprint of the molecule.
+     *
+     * @return CountFingerprint
+     * @throws IllegalArgumentException is thrown if the molecule has a negative frequency.
+     */
+    public CountFingerprint getCountFingerprint() throws IllegalArgumentException {
+        return CountFingerprint.fromPositions(this.fragmentDictionary, this.positionArray, this.countArray, this.numberOfKeyFragments);
+    }
+    //
+    /**
+     * Writes the bit array of the molecule into the given array, starting at the given offset.
+     *
+     * @param aDestination array the bits are written to, as 0 and 1.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the destination array is null.
+     * @throws IllegalArgumentException is thrown if the destination array does not have enough space for the
+     * fingerprint at the given offset.
+     */
+    public void fillBitArray(int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.validityCheckOfDestination(aDestination, anOffset);
+        Arrays.fill(aDestination, anOffset, anOffset + this.fragmentDictionary.size(), 0);
+        for (int i = 0; i < this.numberOfKeyFragments; i++) {
+            aDestination[anOffset + this.positionArray[i]] = 1;
+        }
+    }
+    //
+    /**
+     * Writes the count array of the molecule into the given array, starting at the given offset. Like in the
+     * fillCountArray() methods of the fingerprinters, negative frequencies result in a count of 0.
+     *
+     * @param aDestination array the frequencies are written to.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the destination array is null.
+     * @throws IllegalArgumentException is thrown if the destination array does not have enough space for the
+     * fingerprint at the given offset.
+     */
+    public void fillCountArray(int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        this.validityCheckOfDestination(aDestination, anOffset);
+        Arrays.fill(aDestination, anOffset, anOffset + this.fragmentDictionary.size(), 0);
+        for (int i = 0; i < this.numberOfKeyFragments; i++) {
+            aDestination[anOffset + this.positionArray[i]] = Math.max(this.countArray[i], 0);
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Resets the view to a new line.
+     *
+     * @param aBuffer buffer holding the line.
+     * @param aLineNumber line number of the line.
+     * @param aNameStart index of the first byte of the name.
+     * @param aNameEnd index after the last byte of the name.
+     * @param aSmilesStart index of the first byte of the SMILES.
+     * @param aSmilesEnd index after the last byte of the SMILES.
+     */
+    void reset(ByteBuffer aBuffer, long aLineNumber, int aNameStart, int aNameEnd, int aSmilesStart, int aSmilesEnd) {
+        this.buffer = aBuffer;
+        this.lineNumber = aLineNumber;
+        this.nameStart = aNameStart;
+        this.nameEnd = aNameEnd;
+        this.smilesStart = aSmilesStart;
+        this.smilesEnd = aSmilesEnd;
+        for (int i = 0; i < this.numberOfKeyFragments; i++) {
+            this.positionToEntryIndexArray[this.positionArray[i]] = -1;
+        }
+        this.numberOfKeyFragments = 0;
+        this.numberOfUnknownFragments = 0;
+    }
+    //
+    /**
+     * Adds a key fragment entry or, if the fragment already occurred in the line, replaces its frequency.
+     *
+     * @param aPosition dictionary position of the fragment.
+     * @param aCount frequency of the fragment.
+     */
+    void addKeyFragment(int aPosition, int aCount) {
+        int tmpEntryIndex = this.positionToEntryIndexArray[aPosition];
+        if (tmpEntryIndex >= 0) {
+            this.countArray[tmpEntryIndex] = aCount;
+            return;
+        }
+        this.positionToEntryIndexArray[aPosition] = this.numberOfKeyFragments;
+        if (this.numberOfKeyFragments == this.positionArray.length) {
+            this.positionArray = Arrays.copyOf(this.positionArray, this.numberOfKeyFragments * 2);
+            this.countArray = Arrays.copyOf(this.countArray, this.numberOfKeyFragments * 2);
+        }
+        this.positionArray[this.numberOfKeyFragments] = aPosition;
+        this.countArray[this.numberOfKeyFragments] = aCount;
+        this.numberOfKeyFragments++;
+    }
+    //
+    /**
+     * Counts a fragment entry that is not part of the dictionary.
+     */
+    void addUnknownFragment() {
+        this.numberOfUnknownFragments++;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Decodes the given range of the buffer as UTF-8.
+     *
+     * @param aStart index of the first byte.
+     * @param anEnd index after the last byte.
+     * @return decoded String
+     */
+    private String decode(int aStart, int anEnd) {
+        byte[] tmpBytes = new byte[anEnd - aStart];
+        this.buffer.get(aStart, tmpBytes);
+        return new String(tmpBytes, StandardCharsets.UTF_8);
+    }
+    //
+    /**
+     * Checks that the given array can hold the fingerprint at the given offset.
+     *
+     * @param aDestination destination array.
+     * @param anOffset index in the destination array of the first position of the fingerprint.
+     * @throws NullPointerException is thrown if the destination array is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint does not fit into the array at the offset.
+     */
+    private void validityCheckOfDestination(int[] aDestination, int anOffset) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aDestination, "aDestination (array) is null.");
+        if (anOffset < 0 || anOffset > aDestination.length - this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("The destination array does not have enough space for the fingerprint at the given offset.");
+        }
+    }
+    //</editor-fold>
+}
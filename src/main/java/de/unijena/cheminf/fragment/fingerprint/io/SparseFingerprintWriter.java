@@ -0,0 +1,335 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Writes count fingerprints as text in one of the sparse formats of {@link SparseTextFormat}, one line per
+ * molecule. Only the populated bins are formatted, and the digits are written from a reused character buffer, so
+ * the output size and the formatting time depend on the number of key fragments in a molecule, not on the size of
+ * the fragment dictionary. {@link #writeCountFingerprint(String, ICountFingerprint)} with a {@link CountFingerprint}
+ * does not touch the empty bins at all.
+ * <br>The writer is not thread-safe.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class SparseFingerprintWriter implements Closeable, Flushable {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Output the lines are written to
+     */
+    private final Writer writer;
+    /**
+     * Format of the lines
+     */
+    private final SparseTextFormat format;
+    /**
+     * Separator between the name/target and the bins and between the bins
+     */
+    private final char separator;
+    /**
+     * Added to the positions, 1 for the 1-based indices of the SVMlight format
+     */
+    private final int positionOffset;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Reused buffer of the current line
+     */
+    private char[] lineBuffer;
+    /**
+     * Length of the current line in the buffer
+     */
+    private int lineLength;
+    /**
+     * Last position written in the current line, for checking the ascending order
+     */
+    private int lastPosition;
+    /**
+     * Number of lines written so far
+     */
+    private long numberOfRecords;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor. If the writer is not buffered, it is wrapped in a BufferedWriter.
+     *
+     * @param aWriter writer to write to, closed by {@link #close()}.
+     * @param aFormat format of the lines.
+     * @throws NullPointerException is thrown if one of the arguments is null.
+     */
+    public SparseFingerprintWriter(Writer aWriter, SparseTextFormat aFormat) throws NullPointerException {
+        Objects.requireNonNull(aWriter, "aWriter is null.");
+        this.format = Objects.requireNonNull(aFormat, "aFormat is null.");
+        this.writer = aWriter instanceof BufferedWriter ? aWriter : new BufferedWriter(aWriter, 1 << 16);
+        this.separator = aFormat == SparseTextFormat.SPARSE ? ';' : ' ';
+        this.positionOffset = aFormat == SparseTextFormat.SPARSE ? 0 : 1;
+        this.lineBuffer = new char[256];
+        this.lineLength = 0;
+        this.numberOfRecords = 0L;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Writes a count fingerprint given as dense array of frequencies, e.g. as created by getCountArray() or
+     * fillCountArray() of the fingerprinters. Only positions with a frequency different from 0 are written; the
+     * array still has to be scanned completely, so prefer {@link #writeCountFingerprint(String, ICountFingerprint)}
+     * when the fingerprint is available in sparse form.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aCountArray array holding the fingerprint.
+     * @param anOffset index of the first position of the fingerprint in the array.
+     * @param aLength number of positions of the fingerprint, i.e. the size of the fragment dictionary.
+     * @throws NullPointerException is thrown if the name or the array is null.
+     * @throws IllegalArgumentException is thrown if the name can not be written in this format, the array does not
+     * hold the fingerprint at the given offset or contains negative frequencies.
+     * @throws IOException is thrown if the line can not be written.
+     */
+    public void writeCountArray(String aName, int[] aCountArray, int anOffset, int aLength) throws NullPointerException, IllegalArgumentException, IOException {
+        Objects.requireNonNull(aCountArray, "aCountArray is null.");
+        if (anOffset < 0 || aLength < 0 || anOffset > aCountArray.length - aLength) {
+            throw new IllegalArgumentException("The array does not hold the fingerprint at the given offset.");
+        }
+        this.startLine(aName);
+        for (int i = 0; i < aLength; i++) {
+            int tmpCount = aCountArray[anOffset + i];
+            if (tmpCount != 0) {
+                this.appendBin(i, tmpCount);
+            }
+        }
+        this.endLine(aName);
+    }
+    //
+    /**
+     * Writes the given count fingerprint. For a {@link CountFingerprint}, only its populated bins are visited;
+     * the bins of other implementations are read via getHash() and getCount() and sorted by position first,
+     * frequencies of duplicate positions are summed up.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aCountFingerprint fingerprint to write.
+     * @throws NullPointerException is thrown if the name or the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the name can not be written in this format or the fingerprint
+     * has negative positions or frequencies.
+     * @throws IOException is thrown if the line can not be written.
+     */
+    public void writeCountFingerprint(String aName, ICountFingerprint aCountFingerprint) throws NullPointerException, IllegalArgumentException, IOException {
+        Objects.requireNonNull(aCountFingerprint, "aCountFingerprint is null.");
+        this.startLine(aName);
+        if (aCountFingerprint instanceof CountFingerprint) {
+            ((CountFingerprint) aCountFingerprint).forEachPopulatedBin(this::appendBin);
+        } else {
+            int tmpNumberOfBins = aCountFingerprint.numOfPopulatedbins();
+            long[] tmpBins = new long[tmpNumberOfBins];
+            for (int i = 0; i < tmpNumberOfBins; i++) {
+                int tmpPosition = aCountFingerprint.getHash(i);
+                if (tmpPosition < 0) {
+                    throw new IllegalArgumentException("aCountFingerprint has a negative position.");
+                }
+                // position in the upper half, index in the lower half, so sorting orders by position
+                tmpBins[i] = ((long) tmpPosition << 32) | i;
+            }
+            Arrays.sort(tmpBins);
+            for (int i = 0; i < tmpNumberOfBins; ) {
+                int tmpPosition = (int) (tmpBins[i] >>> 32);
+                int tmpCount = 0;
+                for (; i < tmpNumberOfBins && (int) (tmpBins[i] >>> 32) == tmpPosition; i++) {
+                    tmpCount += aCountFingerprint.getCount((int) tmpBins[i]);
+                }
+                this.appendBin(tmpPosition, tmpCount);
+            }
+        }
+        this.endLine(aName);
+    }
+    //
+    /**
+     * Returns the number of lines written so far.
+     *
+     * @return long
+     */
+    public long getNumberOfRecords() {
+        return this.numberOfRecords;
+    }
+    //
+    /**
+     * Returns the format of the lines.
+     *
+     * @return SparseTextFormat
+     */
+    public SparseTextFormat getFormat() {
+        return this.format;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        this.writer.flush();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Checks the name and begins a new line, in the sparse format with the name, in the SVMlight format with the
+     * target value.
+     *
+     * @param aName name/ID of the molecule.
+     * @throws NullPointerException is thrown if the name is null.
+     * @throws IllegalArgumentException is thrown if the name contains a line break or, in the sparse format,
+     * the separator.
+     */
+    private void startLine(String aName) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aName, "aName is null.");
+        for (int i = 0; i < aName.length(); i++) {
+            char tmpChar = aName.charAt(i);
+            if (tmpChar == '\n' || tmpChar == '\r' || (this.format == SparseTextFormat.SPARSE && tmpChar == this.separator)) {
+                throw new IllegalArgumentException("The name " + aName + " can not be written in the " + this.format + " format.");
+            }
+        }
+        this.lineLength = 0;
+        this.lastPosition = -1;
+        if (this.format == SparseTextFormat.SPARSE) {
+            this.appendString(aName);
+        } else {
+            this.appendChar('0');
+        }
+    }
+    //
+    /**
+     * Appends a populated bin to the current line, bins with frequency 0 are skipped.
+     *
+     * @param aPosition position of the bin in the fingerprint.
+     * @param aCount frequency.
+     * @throws IllegalArgumentException is thrown if the frequency is negative or the positions are not ascending.
+     */
+    private void appendBin(int aPosition, int aCount) throws IllegalArgumentException {
+        if (aCount < 0) {
+            throw new IllegalArgumentException("Negative frequencies can not be written.");
+        }
+        if (aCount == 0) {
+            return;
+        }
+        if (aPosition <= this.lastPosition) {
+            throw new IllegalArgumentException("The positions of the fingerprint are not ascending.");
+        }
+        this.lastPosition = aPosition;
+        this.appendChar(this.separator);
+        this.appendInt(aPosition + this.positionOffset);
+        this.appendChar(':');
+        this.appendInt(aCount);
+    }
+    //
+    /**
+     * Finishes the current line, in the SVMlight format with the name as comment, and writes it.
+     *
+     * @param aName name/ID of the molecule.
+     * @throws IOException is thrown if the line can not be written.
+     */
+    private void endLine(String aName) throws IOException {
+        if (this.format == SparseTextFormat.SVMLIGHT) {
+            this.appendString(" # ");
+            this.appendString(aName);
+        }
+        this.appendChar('\n');
+        this.writer.write(this.lineBuffer, 0, this.lineLength);
+        this.numberOfRecords++;
+    }
+    //
+    /**
+     * Appends the decimal digits of a non-negative int to the current line without creating a String.
+     *
+     * @param aValue value to append.
+     */
+    private void appendInt(int aValue) {
+        int tmpNumberOfDigits = 1;
+        for (int tmpRest = aValue / 10; tmpRest != 0; tmpRest /= 10) {
+            tmpNumberOfDigits++;
+        }
+        this.ensureCapacity(tmpNumberOfDigits);
+        int tmpValue = aValue;
+        for (int i = this.lineLength + tmpNumberOfDigits - 1; i >= this.lineLength; i--) {
+            this.lineBuffer[i] = (char) ('0' + tmpValue % 10);
+            tmpValue /= 10;
+        }
+        this.lineLength += tmpNumberOfDigits;
+    }
+    //
+    /**
+     * Appends a String to the current line.
+     *
+     * @param aString String to append.
+     */
+    private void appendString(String aString) {
+        this.ensureCapacity(aString.length());
+        aString.getChars(0, aString.length(), this.lineBuffer, this.lineLength);
+        this.lineLength += aString.length();
+    }
+    //
+    /**
+     * Appends a character to the current line.
+     *
+     * @param aChar character to append.
+     */
+    private void appendChar(char aChar) {
+        this.ensureCapacity(1);
+        this.lineBuffer[this.lineLength++] = aChar;
+    }
+    //
+    /**
+     * Grows the line buffer if it can not take the given number of further characters.
+     *
+     * @param aNumberOfCharacters number of characters to append.
+     */
+    private void ensureCapacity(int aNumberOfCharacters) {
+        if (this.lineLength + aNumberOfCharacters > this.lineBuffer.length) {
+            this.lineBuffer = Arrays.copyOf(this.lineBuffer, Math.max(this.lineBuffer.length << 1, this.lineLength + aNumberOfCharacters));
+        }
+    }
+    //</editor-fold>
+}
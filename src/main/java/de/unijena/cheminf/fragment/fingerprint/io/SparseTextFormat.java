@@ -0,0 +1,47 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+/**
+ * Sparse text formats of count fingerprints written by {@link SparseFingerprintWriter}. Both formats list only the
+ * populated bins of a fingerprint in ascending order of their positions, so a line grows with the number of key
+ * fragments found in the molecule and not with the size of the fragment dictionary.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public enum SparseTextFormat {
+    /**
+     * One line per molecule of the form {@code name;position:count;position:count}, positions are the 0-based
+     * indices of the dense count array
+     */
+    SPARSE,
+    /**
+     * SVMlight/LibSVM format, one line per molecule of the form {@code 0 index:count index:count # name}, indices
+     * are 1-based as required by the format, the target value is always 0 and the name is appended as comment
+     */
+    SVMLIGHT
+}
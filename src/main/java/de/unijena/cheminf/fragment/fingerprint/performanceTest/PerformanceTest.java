@@ -24,7 +24,17 @@
 
 package de.unijena.cheminf.fragment.fingerprint.performanceTest;
 
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
 import de.unijena.cheminf.fragment.fingerprint.FragmentFingerprinter;
+import de.unijena.cheminf.fragment.fingerprint.StatelessFragmentFingerprinter;
+import de.unijena.cheminf.fragment.fingerprint.io.BinaryFingerprintWriter;
+import de.unijena.cheminf.fragment.fingerprint.io.FingerprintPipeline;
+import de.unijena.cheminf.fragment.fingerprint.io.FingerprintType;
+import de.unijena.cheminf.fragment.fingerprint.io.MoleculeFragments;
+import de.unijena.cheminf.fragment.fingerprint.io.MoleculeFragmentsReader;
+import de.unijena.cheminf.fragment.fingerprint.io.SparseFingerprintWriter;
+import de.unijena.cheminf.fragment.fingerprint.io.SparseTextFormat;
 
 import org.openscience.cdk.fingerprint.IBitFingerprint;
 import org.openscience.cdk.fingerprint.ICountFingerprint;
@@ -33,15 +43,16 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -79,6 +90,38 @@ public class PerformanceTest {
      * Name of the CSV file with the results of the generated count fingerprints.
      */
     private static final String COUNT_FINGERPRINT_RESULT_FILE_NAME = "COUNT_FINGERPRINT";
+    /**
+     * Optional command line argument that enables the pipelined mode.
+     */
+    private static final String PIPELINE_OPTION = "--pipeline";
+    /**
+     * Prefix of the optional command line argument that sets the number of worker threads of the pipelined mode.
+     */
+    private static final String WORKERS_OPTION_PREFIX = "--workers=";
+    /**
+     * Prefix of the optional command line argument that sets the queue capacity of the pipelined mode.
+     */
+    private static final String QUEUE_OPTION_PREFIX = "--queue=";
+    /**
+     * Optional command line argument that enables the binary output of the fingerprints.
+     */
+    private static final String BINARY_OPTION = "--binary";
+    /**
+     * File extension of the binary fingerprint result files.
+     */
+    private static final String BINARY_FILE_EXTENSION = ".ffp";
+    /**
+     * Optional command line argument that enables the sparse text output of the count fingerprints.
+     */
+    private static final String SPARSE_OPTION = "--sparse";
+    /**
+     * Optional command line argument that enables the SVMlight/LibSVM output of the count fingerprints.
+     */
+    private static final String SVMLIGHT_OPTION = "--svmlight";
+    /**
+     * File extension of the count fingerprint result file in SVMlight/LibSVM format.
+     */
+    private static final String SVMLIGHT_FILE_EXTENSION = ".svm";
     //</editor-fold>
     //
     //<editor-fold defaultstate="collapsed" desc="Private final class variables">
@@ -90,10 +133,6 @@ public class PerformanceTest {
      * Initial capacity of the lists in which the data for generating the fingerprints is stored.
      */
     private final int INITIAL_CAPACITY_VALUE_NUMBER_OF_FRAGMENTS = 4000;
-    /**
-     * Initial capacity of maps
-     */
-    private final double INITIAL_CAPACITY_VALUE = 1.5;
     /**
      * Separator for separating the lines in the input files.
      */
@@ -154,6 +193,46 @@ public class PerformanceTest {
      * The list contains a collection of fragments and their frequency stored as a HashMap.
      */
     private ArrayList<HashMap<String, Integer>> moleculeFragmentList;
+    /**
+     * True if the fingerprints are generated in pipelined mode.
+     */
+    private boolean isPipelined;
+    /**
+     * Number of worker threads of the pipelined mode.
+     */
+    private int numberOfWorkers;
+    /**
+     * Capacity of the queue between reader and writer of the pipelined mode, 0 for the default.
+     */
+    private int queueCapacity;
+    /**
+     * True if the fingerprints are written in the binary format instead of text.
+     */
+    private boolean isBinaryOutput;
+    /**
+     * Binary bit fingerprint result file, only used for binary output.
+     */
+    private File bitFingerprintBinaryFile;
+    /**
+     * Binary count fingerprint result file, only used for binary output.
+     */
+    private File countFingerprintBinaryFile;
+    /**
+     * Writer of the binary bit fingerprints, only used for binary output.
+     */
+    private BinaryFingerprintWriter bitFingerprintBinaryWriter;
+    /**
+     * Writer of the binary count fingerprints, only used for binary output.
+     */
+    private BinaryFingerprintWriter countFingerprintBinaryWriter;
+    /**
+     * Sparse text format of the count fingerprints, null for the dense text or the binary output.
+     */
+    private SparseTextFormat countFingerprintSparseFormat;
+    /**
+     * Writer of the count fingerprints in sparse text format, only used for sparse output.
+     */
+    private SparseFingerprintWriter countFingerprintSparseWriter;
     //</editor-fold>
     //
     //<editor-fold defaultstate="collapsed" desc="Constructor">
@@ -198,15 +277,32 @@ public class PerformanceTest {
      *                </ul>
      *               </li>
      *               </ul>
+     *               Optional further arguments:
+     *               <ul>
+     *                <li>--pipeline: the molecule file is not loaded completely before the fingerprints are generated.
+     *                Instead, a reader thread streams the molecules to a pool of worker threads that generate bit and
+     *                count fingerprints together, and the results are written in input order while the next molecules
+     *                are read and processed. The bin size only determines after how many molecules the elapsed time
+     *                is logged.</li>
+     *                <li>--binary: the fingerprints are written in the compact binary format of
+     *                {@link BinaryFingerprintWriter} (files with extension .ffp) instead of text.</li>
+     *                <li>--sparse or --svmlight: the count fingerprints are written by {@link SparseFingerprintWriter}
+     *                in the sparse text format name;position:count;... or in SVMlight/LibSVM format (file with
+     *                extension .svm) instead of dense arrays, can not be combined with --binary.</li>
+     *                <li>--workers=n: number of worker threads of the pipelined mode, default: number of processors.</li>
+     *                <li>--queue=n: maximum number of molecules in process in the pipelined mode,
+     *                default: 64 per worker thread.</li>
+     *               </ul>
      *
      *
      * @throws IOException is thrown if the constructor is unable to open a text file for logging occurred exceptions.
      * @throws IllegalArgumentException is thrown if the given arguments are invalid.
      */
     public PerformanceTest(String[] anArgs) throws IOException, IllegalArgumentException {
-        if(anArgs.length !=4) {
+        if(anArgs.length < 4) {
             throw new IllegalArgumentException("Four arguments (three file names and the number of the molecules in process) are required.");
         }
+        this.parseOptionalArguments(anArgs);
         String tmpInputFilePath =  (new File("").getAbsoluteFile().getAbsolutePath()) + File.separator;
         /*Set up exception log file*/
         if(anArgs[2].isEmpty()) {
@@ -258,36 +354,70 @@ public class PerformanceTest {
             File tmpCountFingerprintsOutputFile = new File(tmpOutputPath + PerformanceTest.CSV_COUNT_FINGERPRINT_PROCESS_RESULT_FILE_NAME +"_"+ tmpProcessingTime + ".csv");
             FileWriter tmpCountFingerprintResultWriter = new FileWriter(tmpCountFingerprintsOutputFile, false);
             this.countPrintWriter = new PrintWriter(tmpCountFingerprintResultWriter);
-            // bit fingerprint result file
-            File tmpBitArrayFingerprintResultFile = new File(tmpOutputPath + PerformanceTest.BIT_FINGERPRINT_RESULT_FILE_NAME +"_"+ tmpProcessingTime+ ".txt");
-            FileWriter tmpBitArrayFingerprintResultWriter = new FileWriter(tmpBitArrayFingerprintResultFile, false);
-            this.bitFingerprintPrintWriter = new PrintWriter(tmpBitArrayFingerprintResultWriter);
-            // count fingerprint result file
-            File tmpCountArrayFingerprintResultFile = new File(tmpOutputPath + PerformanceTest.COUNT_FINGERPRINT_RESULT_FILE_NAME +"_" + tmpProcessingTime+ ".txt");
-            FileWriter tmpCountArrayFingerprintResultWriter = new FileWriter(tmpCountArrayFingerprintResultFile, false);
-            this.countFingerprintPrintWriter = new PrintWriter(tmpCountArrayFingerprintResultWriter);
+            if (this.isBinaryOutput) {
+                // binary fingerprint result files, opened when the key fragments are loaded
+                this.bitFingerprintBinaryFile = new File(tmpOutputPath + PerformanceTest.BIT_FINGERPRINT_RESULT_FILE_NAME + "_" + tmpProcessingTime + PerformanceTest.BINARY_FILE_EXTENSION);
+                this.countFingerprintBinaryFile = new File(tmpOutputPath + PerformanceTest.COUNT_FINGERPRINT_RESULT_FILE_NAME + "_" + tmpProcessingTime + PerformanceTest.BINARY_FILE_EXTENSION);
+            } else {
+                // bit fingerprint result file
+                File tmpBitArrayFingerprintResultFile = new File(tmpOutputPath + PerformanceTest.BIT_FINGERPRINT_RESULT_FILE_NAME +"_"+ tmpProcessingTime+ ".txt");
+                FileWriter tmpBitArrayFingerprintResultWriter = new FileWriter(tmpBitArrayFingerprintResultFile, false);
+                this.bitFingerprintPrintWriter = new PrintWriter(tmpBitArrayFingerprintResultWriter);
+                // count fingerprint result file
+                if (this.countFingerprintSparseFormat == null) {
+                    File tmpCountArrayFingerprintResultFile = new File(tmpOutputPath + PerformanceTest.COUNT_FINGERPRINT_RESULT_FILE_NAME +"_" + tmpProcessingTime+ ".txt");
+                    FileWriter tmpCountArrayFingerprintResultWriter = new FileWriter(tmpCountArrayFingerprintResultFile, false);
+                    this.countFingerprintPrintWriter = new PrintWriter(tmpCountArrayFingerprintResultWriter);
+                } else {
+                    String tmpFileExtension = this.countFingerprintSparseFormat == SparseTextFormat.SVMLIGHT ? PerformanceTest.SVMLIGHT_FILE_EXTENSION : ".txt";
+                    File tmpCountSparseFingerprintResultFile = new File(tmpOutputPath + PerformanceTest.COUNT_FINGERPRINT_RESULT_FILE_NAME + "_" + tmpProcessingTime + tmpFileExtension);
+                    this.countFingerprintSparseWriter = new SparseFingerprintWriter(new FileWriter(tmpCountSparseFingerprintResultFile, false), this.countFingerprintSparseFormat);
+                }
+            }
             this.listOfMoleculeFragmentsList = new ArrayList<>(this.INITIAL_CAPACITY_VALUE_NUMBER_OF_MOLECULES);
-            // read in CSV files that contain fragments
+            // read in CSV files that contain fragments, in pipelined mode only the key fragments
             try {
-                this.importDataFromTextFile();
+                if (this.isPipelined) {
+                    this.importFragmentsFromTextFile();
+                } else {
+                    this.importDataFromTextFile();
+                }
             } catch (IOException anException) {
                 this.exceptionsPrintWriter.println("Fragment load ERROR. Unsuitable (structure) CSV files were tried to be read in.");
                 this.exceptionsPrintWriter.flush();
                 this.appendToLogfile(anException);
                 throw new Exception("Fragment load ERROR. Unsuitable (structure) CSV files were tried to be read in. ");
             }
+            if (this.isBinaryOutput) {
+                this.openBinaryFingerprintWriters();
+            }
             // generate bit and count fingerprints
-            int tmpMaximumNumberOfMolecules = this.getListOfMoleculeFragmentsListSize();
             int tmpGivenBinSize = Integer.parseInt(anArgs[3]);
-            if(tmpGivenBinSize > tmpMaximumNumberOfMolecules) {
-                throw new IllegalArgumentException("The specified number of bin sizes exceeds the number of available molecules.");
+            if (this.isPipelined) {
+                if (tmpGivenBinSize <= 0) {
+                    throw new IllegalArgumentException("The specified bin size must be positive.");
+                }
+                this.generateFingerprintsPipelined(tmpGivenBinSize);
+            } else {
+                int tmpMaximumNumberOfMolecules = this.getListOfMoleculeFragmentsListSize();
+                if(tmpGivenBinSize > tmpMaximumNumberOfMolecules) {
+                    throw new IllegalArgumentException("The specified number of bin sizes exceeds the number of available molecules.");
+                }
+                this.generateFingerprints(tmpGivenBinSize);
             }
-            this.generateFingerprints(Integer.parseInt(anArgs[3]));
             this.resultsPrintWriter.flush();
             this.bitPrintWriter.flush();
             this.countPrintWriter.flush();
-            this.bitFingerprintPrintWriter.flush();
-            this.countFingerprintPrintWriter.flush();
+            if (this.isBinaryOutput) {
+                this.bitFingerprintBinaryWriter.flush();
+                this.countFingerprintBinaryWriter.flush();
+            } else if (this.countFingerprintSparseWriter != null) {
+                this.bitFingerprintPrintWriter.flush();
+                this.countFingerprintSparseWriter.flush();
+            } else {
+                this.bitFingerprintPrintWriter.flush();
+                this.countFingerprintPrintWriter.flush();
+            }
             this.exceptionsPrintWriter.flush();
             System.out.println("Application is finished");
             System.out.println("The directory where the results are located: " + this.workingPath);
@@ -298,10 +428,23 @@ public class PerformanceTest {
         } finally {
             this.exceptionsPrintWriter.close();
             this.resultsPrintWriter.close();
-            this.bitFingerprintPrintWriter.close();
+            if (this.bitFingerprintPrintWriter != null) {
+                this.bitFingerprintPrintWriter.close();
+            }
             this.countPrintWriter.close();
-            this.countFingerprintPrintWriter.close();
+            if (this.countFingerprintPrintWriter != null) {
+                this.countFingerprintPrintWriter.close();
+            }
             this.bitPrintWriter.close();
+            if (this.bitFingerprintBinaryWriter != null) {
+                this.bitFingerprintBinaryWriter.close();
+            }
+            if (this.countFingerprintBinaryWriter != null) {
+                this.countFingerprintBinaryWriter.close();
+            }
+            if (this.countFingerprintSparseWriter != null) {
+                this.countFingerprintSparseWriter.close();
+            }
         }
     }
     //</editor-fold>
@@ -322,14 +465,51 @@ public class PerformanceTest {
      * alternately in the line. Again, all components are separated by a semicolon.
      *
      * @throws IOException is thrown if an error occurs when reading in the two text files.
+     * @throws IndexOutOfBoundsException is thrown if a line of the molecule file has not the right length.
+     * @throws IllegalArgumentException is thrown if a frequency in the molecule file is not a number.
      */
-    private void importDataFromTextFile() throws IOException {
-        try (BufferedReader tmpFragmentSetReader = new BufferedReader(new FileReader(this.moleculeFile));
-             BufferedReader tmpMoleculeFragmentsReader = new BufferedReader(new FileReader(this.fragmentFile))) {
+    private void importDataFromTextFile() throws IOException, IndexOutOfBoundsException, IllegalArgumentException {
+        this.importFragmentsFromTextFile();
+        try (BufferedReader tmpMoleculeFragmentsReader = new BufferedReader(new FileReader(this.fragmentFile))) {
+            this.moleculeFragmentList = new ArrayList<>(this.INITIAL_CAPACITY_VALUE_NUMBER_OF_MOLECULES);
+            // Read CSV file (molecules file) molecule by molecule, ignoring the header
+            this.listOfMoleculeNames = new ArrayList<>(this.INITIAL_CAPACITY_VALUE_NUMBER_OF_MOLECULES);
+            try (MoleculeFragmentsReader tmpMoleculeReader = new MoleculeFragmentsReader(tmpMoleculeFragmentsReader, true)) {
+                while (tmpMoleculeReader.hasNext()) {
+                    MoleculeFragments tmpMolecule = tmpMoleculeReader.next();
+                    this.listOfMoleculeNames.add(tmpMolecule.getName());
+                    this.moleculeFragmentList.add(tmpMolecule.getFragmentFrequencyMap());
+                    this.listOfMoleculeFragmentsList.add(tmpMolecule.getFragmentList());
+                }
+            } catch (UncheckedIOException anException) {
+                this.appendToLogfile(anException);
+                throw new IOException("invalid molecule file. At least one line is not readable");
+            } catch (IllegalArgumentException anException) {
+                this.appendToLogfile(anException);
+                if (anException.getCause() instanceof NumberFormatException) {
+                    // invalid frequency, the message of the reader names the line and the value
+                    throw anException;
+                }
+                IndexOutOfBoundsException tmpLengthException = new IndexOutOfBoundsException("The line has not the right length: " + anException.getMessage());
+                tmpLengthException.initCause(anException);
+                throw tmpLengthException;
+            }
+        } catch (IOException anException) {
+            this.appendToLogfile(anException);
+            throw new IOException("File is not readable");
+        }
+    }
+    //
+    /**
+     * Reads the key fragments from the fragment file, i.e. the first column of every line except the header line.
+     *
+     * @throws IOException is thrown if an error occurs when reading in the fragment file.
+     */
+    private void importFragmentsFromTextFile() throws IOException {
+        try (BufferedReader tmpFragmentSetReader = new BufferedReader(new FileReader(this.moleculeFile))) {
             //Read CSV file (fragments file) to obtain fragments used to create fingerprints
             String tmpLine;
             this.fragmentList = new ArrayList<>(this.INITIAL_CAPACITY_VALUE_NUMBER_OF_FRAGMENTS);
-            this.moleculeFragmentList = new ArrayList<>(this.INITIAL_CAPACITY_VALUE_NUMBER_OF_MOLECULES);
             try {
                 while ((tmpLine = tmpFragmentSetReader.readLine()) != null) {
                     String[] tmpSmilesOfFragments = tmpLine.split(this.LINE_SEPARATOR_SEMICOLON);
@@ -341,41 +521,6 @@ public class PerformanceTest {
                 this.appendToLogfile(anException);
                 throw new IOException("invalid fragment file. At least one line is not readable.");
             }
-            // Read CSV file (molecules file)
-            List<List<String>> tmpListOfMoleculesFragmentsAndFrequenciesList = new ArrayList<>(this.INITIAL_CAPACITY_VALUE_NUMBER_OF_MOLECULES);
-            String tmpMoleculeLine;
-            try {
-                while ((tmpMoleculeLine = tmpMoleculeFragmentsReader.readLine()) != null) {
-                    String[] tmpMoleculeFragmentsAndFrequencies = tmpMoleculeLine.split(this.LINE_SEPARATOR_SEMICOLON);
-                    tmpListOfMoleculesFragmentsAndFrequenciesList.add(Arrays.asList(tmpMoleculeFragmentsAndFrequencies));
-                }
-            } catch (IOException anException) {
-                this.appendToLogfile(anException);
-                throw new IOException("invalid molecule file. At least one line is not readable");
-            }
-            List<String> tmpMoleculeFragmentsAndFrequenciesList;
-            this.listOfMoleculeNames = new ArrayList<>();
-            // ignore header
-            for (int i = 1; i < tmpListOfMoleculesFragmentsAndFrequenciesList.size(); i++) {
-                tmpMoleculeFragmentsAndFrequenciesList = tmpListOfMoleculesFragmentsAndFrequenciesList.get(i);
-                this.listOfMoleculeNames.add(tmpMoleculeFragmentsAndFrequenciesList.get(0));
-                List<String> tmpListWithoutNameAndMoleculeSmiles = tmpMoleculeFragmentsAndFrequenciesList.subList(2, tmpMoleculeFragmentsAndFrequenciesList.size());
-                HashMap<String, Integer> tmpMoleculeFragmentsMap = new HashMap<>((int) (tmpListWithoutNameAndMoleculeSmiles.size()*this.INITIAL_CAPACITY_VALUE));
-                ArrayList<String> tmpDataToGenerateBitFingerprint = new ArrayList<>();
-                try {
-                    for (int j = 0; j < tmpListWithoutNameAndMoleculeSmiles.size(); j++) {
-                        if (j % 2 == 0) { // magic number to store the fragment SMILES and their frequencies from the file into a HashMap
-                            tmpMoleculeFragmentsMap.put(tmpListWithoutNameAndMoleculeSmiles.get(j), Integer.valueOf(tmpListWithoutNameAndMoleculeSmiles.get(j + 1)));
-                            tmpDataToGenerateBitFingerprint.add(tmpListWithoutNameAndMoleculeSmiles.get(j));
-                        }
-                    }
-                } catch (IndexOutOfBoundsException anException) {
-                    this.appendToLogfile(anException);
-                    throw new IndexOutOfBoundsException("The line has not the right length");
-                }
-                this.moleculeFragmentList.add(tmpMoleculeFragmentsMap);
-                this.listOfMoleculeFragmentsList.add(tmpDataToGenerateBitFingerprint);
-            }
         } catch (IOException anException) {
             this.appendToLogfile(anException);
             throw new IOException("File is not readable");
@@ -402,8 +547,12 @@ public class PerformanceTest {
         this.resultsPrintWriter.println();
         this.bitPrintWriter.println("Number of fragments: " + this.fragmentList.size() + " and number of molecules: " + this.listOfMoleculeFragmentsList.size());
         this.bitPrintWriter.println("Molecules processed, Bit fingerprint process time in ms");
-        this.bitFingerprintPrintWriter.println("Molecule name/ID, bit fingerprint");
-        this.countFingerprintPrintWriter.println("Molecule name/ID, count fingerprint");
+        if (!this.isBinaryOutput) {
+            this.bitFingerprintPrintWriter.println("Molecule name/ID, bit fingerprint");
+        }
+        if (this.countFingerprintPrintWriter != null) {
+            this.countFingerprintPrintWriter.println("Molecule name/ID, count fingerprint");
+        }
         for (int i = aNumberOfMoleculesInProcess; i <= this.listOfMoleculeFragmentsList.size(); i+= aNumberOfMoleculesInProcess) {
             List<ArrayList<String>> tmpNumberOfMoleculesInProcess = this.listOfMoleculeFragmentsList.subList(0, i);
             long tmpStartTime = System.currentTimeMillis();
@@ -427,9 +576,9 @@ public class PerformanceTest {
             String tmpMoleculeNameOrID = (String) tmpMoleculeNameIterator.next();
             try {
                 tmpBitArray = tmpFragmentFingerprinter.getBitArray(tmpListOfMolecule);
-                this.bitFingerprintPrintWriter.println(tmpMoleculeNameOrID + "," + java.util.Arrays.toString(tmpBitArray));
+                this.writeBitFingerprint(tmpMoleculeNameOrID, tmpBitArray);
             } catch (Exception anException) {
-                this.bitFingerprintPrintWriter.println(tmpMoleculeNameOrID + " ERROR. The fingerprint could not be created!");
+                this.writeFingerprintError(this.bitFingerprintPrintWriter, tmpMoleculeNameOrID);
                 System.out.println(anException + " Bit fingerprint generation ERROR. There may be incorrect/invalid elements in the fragment list oder molecule list");
                 this.exceptionsPrintWriter.println("Bit fingerprint generation ERROR. There may be incorrect/invalid elements in the fragment list oder molecule list");
                 this.appendToLogfile(anException);
@@ -464,11 +613,15 @@ public class PerformanceTest {
             HashMap<String, Integer> tmpListOfMolecule = (HashMap<String, Integer>) tmpMolecule.next();
             String tmpMoleculeNameOrID = (String) tmpMoleculeNameIterator.next();
             try {
-                tmpCountArray = tmpFragmentFingerprinter.getCountArray(tmpListOfMolecule);
-                this.countFingerprintPrintWriter.println(tmpMoleculeNameOrID + "," + java.util.Arrays.toString(tmpCountArray));
+                if (this.countFingerprintSparseWriter != null) {
+                    this.countFingerprintSparseWriter.writeCountFingerprint(tmpMoleculeNameOrID, tmpFragmentFingerprinter.getCountFingerprint(tmpListOfMolecule));
+                } else {
+                    tmpCountArray = tmpFragmentFingerprinter.getCountArray(tmpListOfMolecule);
+                    this.writeCountFingerprint(tmpMoleculeNameOrID, tmpCountArray);
+                }
             } catch (Exception anException) {
                 System.out.println(tmpMoleculeNameOrID + "----molecule");
-                this.countFingerprintPrintWriter.println(tmpMoleculeNameOrID+ " ERROR. The fingerprint could not be created!");
+                this.writeFingerprintError(this.countFingerprintPrintWriter, tmpMoleculeNameOrID);
                 System.out.println(anException + " Count fingerprint generation ERROR. There may be incorrect/invalid elements in the fragment list oder molecule list");
                 this.exceptionsPrintWriter.println("Count fingerprint generation ERROR. There may be incorrect/invalid elements in the fragment list oder molecule list");
                 this.appendToLogfile(anException);
@@ -477,6 +630,250 @@ public class PerformanceTest {
         System.out.println("Bit and count fingerprints were generated successfully.");
     }
     //
+    /**
+     * Generates bit and count fingerprints in pipelined mode: the molecule file is streamed by a reader thread,
+     * the fingerprints are calculated by a pool of worker threads using a thread-safe StatelessFragmentFingerprinter,
+     * and the results are written in input order on the current thread, so reading, calculating and writing overlap.
+     * The elapsed time is logged after every aNumberOfMoleculesInProcess molecules and at the end.
+     *
+     * @param aNumberOfMoleculesInProcess number of molecules after which the elapsed time is logged.
+     * @throws Exception is thrown if the molecule file can not be read or is malformed.
+     */
+    private void generateFingerprintsPipelined(int aNumberOfMoleculesInProcess) throws Exception {
+        StatelessFragmentFingerprinter tmpFragmentFingerprinter = new StatelessFragmentFingerprinter(this.fragmentList);
+        FingerprintPipeline tmpPipeline = this.queueCapacity > 0
+                ? new FingerprintPipeline(this.numberOfWorkers, this.queueCapacity)
+                : new FingerprintPipeline(this.numberOfWorkers);
+        String tmpModeDescription = "Pipelined mode with " + tmpPipeline.getNumberOfWorkers() + " worker threads and a queue capacity of "
+                + tmpPipeline.getQueueCapacity() + ", bit and count fingerprints are generated together";
+        this.resultsPrintWriter.println();
+        this.resultsPrintWriter.println("Number of fragments: " + this.fragmentList.size());
+        System.out.println("Number of fragments: " + this.fragmentList.size());
+        this.resultsPrintWriter.println(tmpModeDescription);
+        System.out.println(tmpModeDescription);
+        this.resultsPrintWriter.println();
+        this.bitPrintWriter.println("Number of fragments: " + this.fragmentList.size() + ". " + tmpModeDescription);
+        this.bitPrintWriter.println("Molecules processed, Pipeline process time in ms");
+        this.countPrintWriter.println("Number of fragments: " + this.fragmentList.size() + ". " + tmpModeDescription);
+        this.countPrintWriter.println("Molecules processed, Pipeline process time in ms");
+        if (!this.isBinaryOutput) {
+            this.bitFingerprintPrintWriter.println("Molecule name/ID, bit fingerprint");
+        }
+        if (this.countFingerprintPrintWriter != null) {
+            this.countFingerprintPrintWriter.println("Molecule name/ID, count fingerprint");
+        }
+        long tmpStartTime = System.currentTimeMillis();
+        long tmpNumberOfMolecules;
+        try (MoleculeFragmentsReader tmpMoleculeReader = new MoleculeFragmentsReader(this.fragmentFile.toPath())) {
+            tmpNumberOfMolecules = tmpPipeline.run(tmpMoleculeReader,
+                    (MoleculeFragments aMolecule) -> this.calculateFingerprintResult(tmpFragmentFingerprinter, aMolecule),
+                    new FingerprintPipeline.ResultSink<FingerprintResult>() {
+                        private long numberOfWrittenMolecules = 0L;
+                        @Override
+                        public void accept(FingerprintResult aResult) throws IOException {
+                            PerformanceTest.this.writeFingerprintResult(aResult);
+                            this.numberOfWrittenMolecules++;
+                            if (this.numberOfWrittenMolecules % aNumberOfMoleculesInProcess == 0) {
+                                PerformanceTest.this.logPipelineTime(this.numberOfWrittenMolecules, System.currentTimeMillis() - tmpStartTime);
+                            }
+                        }
+                    });
+        }
+        if (tmpNumberOfMolecules % aNumberOfMoleculesInProcess != 0) {
+            this.logPipelineTime(tmpNumberOfMolecules, System.currentTimeMillis() - tmpStartTime);
+        }
+        System.out.println("Number of molecules: " + tmpNumberOfMolecules);
+        System.out.println("Bit and count fingerprints were generated successfully.");
+    }
+    //
+    /**
+     * Calculates the bit and count array of the given molecule and, for text output, formats them as lines of the
+     * fingerprint result files. Called concurrently by the worker threads of the pipelined mode.
+     *
+     * @param aFragmentFingerprinter thread-safe fingerprinter.
+     * @param aMolecule molecule to process.
+     * @return result to write
+     */
+    private FingerprintResult calculateFingerprintResult(StatelessFragmentFingerprinter aFragmentFingerprinter, MoleculeFragments aMolecule) {
+        try {
+            int[] tmpBitArray = aFragmentFingerprinter.getBitArray(aMolecule.getFragmentFrequencyMap());
+            if (this.countFingerprintSparseFormat != null) {
+                // the sparse line is formatted by the writer, its cost depends only on the number of populated bins
+                return new FingerprintResult(aMolecule.getName(), null, null, aFragmentFingerprinter.getCountFingerprint(aMolecule.getFragmentFrequencyMap()),
+                        this.formatBitFingerprint(aMolecule.getName(), tmpBitArray), null, null);
+            }
+            int[] tmpCountArray = aFragmentFingerprinter.getCountArray(aMolecule.getFragmentFrequencyMap());
+            if (this.isBinaryOutput) {
+                return new FingerprintResult(aMolecule.getName(), tmpBitArray, tmpCountArray, null, null, null, null);
+            }
+            return new FingerprintResult(aMolecule.getName(), null, null, null,
+                    this.formatBitFingerprint(aMolecule.getName(), tmpBitArray),
+                    this.formatCountFingerprint(aMolecule.getName(), tmpCountArray), null);
+        } catch (Exception anException) {
+            StringWriter tmpStringWriter = new StringWriter();
+            anException.printStackTrace(new PrintWriter(tmpStringWriter));
+            return new FingerprintResult(aMolecule.getName(), null, null, null, null, null, tmpStringWriter.toString());
+        }
+    }
+    //
+    /**
+     * Writes the result calculated by {@link #calculateFingerprintResult(StatelessFragmentFingerprinter, MoleculeFragments)}
+     * to the fingerprint result files and logs the exception if the fingerprints could not be created.
+     *
+     * @param aResult result of a molecule.
+     * @throws IOException is thrown if the binary result files can not be written.
+     */
+    private void writeFingerprintResult(FingerprintResult aResult) throws IOException {
+        if (aResult.stackTrace != null) {
+            this.writeFingerprintError(this.bitFingerprintPrintWriter, aResult.name);
+            this.writeFingerprintError(this.countFingerprintPrintWriter, aResult.name);
+            System.out.println("Fingerprint generation ERROR. There may be incorrect/invalid elements in the fragment list oder molecule list");
+            this.exceptionsPrintWriter.println("Fingerprint generation ERROR. There may be incorrect/invalid elements in the fragment list oder molecule list");
+            this.exceptionsPrintWriter.println(aResult.stackTrace);
+            this.exceptionsPrintWriter.flush();
+        } else if (this.isBinaryOutput) {
+            this.bitFingerprintBinaryWriter.writeBitArray(aResult.name, aResult.bitArray, 0);
+            this.countFingerprintBinaryWriter.writeCountArray(aResult.name, aResult.countArray, 0);
+        } else if (this.countFingerprintSparseWriter != null) {
+            this.bitFingerprintPrintWriter.println(aResult.bitLine);
+            this.countFingerprintSparseWriter.writeCountFingerprint(aResult.name, aResult.countFingerprint);
+        } else {
+            this.bitFingerprintPrintWriter.println(aResult.bitLine);
+            this.countFingerprintPrintWriter.println(aResult.countLine);
+        }
+    }
+    //
+    /**
+     * Writes the bit fingerprint of a molecule to the bit fingerprint result file.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aBitArray bit array of the molecule.
+     * @throws IOException is thrown if the binary result file can not be written.
+     */
+    private void writeBitFingerprint(String aName, int[] aBitArray) throws IOException {
+        if (this.isBinaryOutput) {
+            this.bitFingerprintBinaryWriter.writeBitArray(aName, aBitArray, 0);
+        } else {
+            this.bitFingerprintPrintWriter.println(this.formatBitFingerprint(aName, aBitArray));
+        }
+    }
+    //
+    /**
+     * Writes the count fingerprint of a molecule to the count fingerprint result file.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aCountArray count array of the molecule.
+     * @throws IOException is thrown if the binary result file can not be written.
+     */
+    private void writeCountFingerprint(String aName, int[] aCountArray) throws IOException {
+        if (this.isBinaryOutput) {
+            this.countFingerprintBinaryWriter.writeCountArray(aName, aCountArray, 0);
+        } else {
+            this.countFingerprintPrintWriter.println(this.formatCountFingerprint(aName, aCountArray));
+        }
+    }
+    //
+    /**
+     * Marks a molecule whose fingerprint could not be created in the given text result file. Binary and sparse
+     * result files do not contain a record for such molecules.
+     *
+     * @param aTextPrintWriter text result file, null for binary or sparse output.
+     * @param aName name/ID of the molecule.
+     */
+    private void writeFingerprintError(PrintWriter aTextPrintWriter, String aName) {
+        if (aTextPrintWriter != null) {
+            aTextPrintWriter.println(aName + " ERROR. The fingerprint could not be created!");
+        }
+    }
+    //
+    /**
+     * Formats the bit fingerprint of a molecule as line of the text result file.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aBitArray bit array of the molecule.
+     * @return line
+     */
+    private String formatBitFingerprint(String aName, int[] aBitArray) {
+        return aName + "," + java.util.Arrays.toString(aBitArray);
+    }
+    //
+    /**
+     * Formats the count fingerprint of a molecule as line of the text result file.
+     *
+     * @param aName name/ID of the molecule.
+     * @param aCountArray count array of the molecule.
+     * @return line
+     */
+    private String formatCountFingerprint(String aName, int[] aCountArray) {
+        return aName + "," + java.util.Arrays.toString(aCountArray);
+    }
+    //
+    /**
+     * Opens the binary fingerprint result files and writes their headers, based on the loaded key fragments.
+     *
+     * @throws IOException is thrown if the files can not be created.
+     */
+    private void openBinaryFingerprintWriters() throws IOException {
+        FragmentDictionary tmpFragmentDictionary = new FragmentDictionary(this.fragmentList.toArray(new String[0]));
+        this.bitFingerprintBinaryWriter = new BinaryFingerprintWriter(new FileOutputStream(this.bitFingerprintBinaryFile), tmpFragmentDictionary, FingerprintType.BIT);
+        this.countFingerprintBinaryWriter = new BinaryFingerprintWriter(new FileOutputStream(this.countFingerprintBinaryFile), tmpFragmentDictionary, FingerprintType.COUNT);
+    }
+    //
+    /**
+     * Logs the elapsed time of the pipelined mode for the given number of processed molecules.
+     *
+     * @param aNumberOfMolecules number of molecules processed so far.
+     * @param anElapsedTime elapsed time in ms.
+     */
+    private void logPipelineTime(long aNumberOfMolecules, long anElapsedTime) {
+        this.resultsPrintWriter.println("Processing " + aNumberOfMolecules + " valid molecules.");
+        this.resultsPrintWriter.println("Pipelined fingerprint generation took: " + anElapsedTime + " ms.");
+        this.bitPrintWriter.println(aNumberOfMolecules + "," + anElapsedTime);
+        this.countPrintWriter.println(aNumberOfMolecules + "," + anElapsedTime);
+    }
+    //
+    /**
+     * Parses the optional command line arguments following the four required ones.
+     *
+     * @param anArgs all command line arguments.
+     * @throws IllegalArgumentException is thrown if an optional argument is unknown or has an invalid value.
+     */
+    private void parseOptionalArguments(String[] anArgs) throws IllegalArgumentException {
+        this.isPipelined = false;
+        this.isBinaryOutput = false;
+        this.countFingerprintSparseFormat = null;
+        this.numberOfWorkers = Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = 0;
+        for (int i = 4; i < anArgs.length; i++) {
+            String tmpArgument = anArgs[i];
+            try {
+                if (tmpArgument.equals(PerformanceTest.PIPELINE_OPTION)) {
+                    this.isPipelined = true;
+                } else if (tmpArgument.equals(PerformanceTest.BINARY_OPTION)) {
+                    this.isBinaryOutput = true;
+                } else if (tmpArgument.equals(PerformanceTest.SPARSE_OPTION)) {
+                    this.countFingerprintSparseFormat = SparseTextFormat.SPARSE;
+                } else if (tmpArgument.equals(PerformanceTest.SVMLIGHT_OPTION)) {
+                    this.countFingerprintSparseFormat = SparseTextFormat.SVMLIGHT;
+                } else if (tmpArgument.startsWith(PerformanceTest.WORKERS_OPTION_PREFIX)) {
+                    this.numberOfWorkers = Integer.parseInt(tmpArgument.substring(PerformanceTest.WORKERS_OPTION_PREFIX.length()));
+                } else if (tmpArgument.startsWith(PerformanceTest.QUEUE_OPTION_PREFIX)) {
+                    this.queueCapacity = Integer.parseInt(tmpArgument.substring(PerformanceTest.QUEUE_OPTION_PREFIX.length()));
+                } else {
+                    throw new IllegalArgumentException("Unknown argument: " + tmpArgument);
+                }
+            } catch (NumberFormatException anException) {
+                throw new IllegalArgumentException("Invalid number in argument: " + tmpArgument);
+            }
+        }
+        if (this.numberOfWorkers <= 0 || this.queueCapacity < 0) {
+            throw new IllegalArgumentException("The number of workers and the queue capacity must be positive.");
+        }
+        if (this.isBinaryOutput && this.countFingerprintSparseFormat != null) {
+            throw new IllegalArgumentException("The binary output can not be combined with a sparse text output.");
+        }
+    }
+    //
     /**
      * Appends the given exception's stack trace to a log file.
      *
@@ -505,4 +902,62 @@ public class PerformanceTest {
         return this.listOfMoleculeFragmentsList.size();
     }
     //</editor-fold>
+    //
+    //<editor-fold defaultstate="collapsed" desc="Private classes">
+    /**
+     * Result of a molecule in the pipelined mode, i.e. the arrays for binary output, the formatted lines for text
+     * output, the count fingerprint for sparse output, or the stack trace of the exception if the fingerprints
+     * could not be created.
+     */
+    private static final class FingerprintResult {
+        /**
+         * Name/ID of the molecule
+         */
+        private final String name;
+        /**
+         * Bit array, only for binary output
+         */
+        private final int[] bitArray;
+        /**
+         * Count array, only for binary output
+         */
+        private final int[] countArray;
+        /**
+         * Count fingerprint, only for sparse output
+         */
+        private final CountFingerprint countFingerprint;
+        /**
+         * Formatted bit fingerprint, only for text output
+         */
+        private final String bitLine;
+        /**
+         * Formatted count fingerprint, only for text output
+         */
+        private final String countLine;
+        /**
+         * Stack trace of the exception or null
+         */
+        private final String stackTrace;
+        /**
+         * Constructor.
+         *
+         * @param aName name/ID of the molecule.
+         * @param aBitArray bit array or null.
+         * @param aCountArray count array or null.
+         * @param aCountFingerprint count fingerprint or null.
+         * @param aBitLine formatted bit fingerprint or null.
+         * @param aCountLine formatted count fingerprint or null.
+         * @param aStackTrace stack trace of the exception or null.
+         */
+        private FingerprintResult(String aName, int[] aBitArray, int[] aCountArray, CountFingerprint aCountFingerprint, String aBitLine, String aCountLine, String aStackTrace) {
+            this.name = aName;
+            this.bitArray = aBitArray;
+            this.countArray = aCountArray;
+            this.countFingerprint = aCountFingerprint;
+            this.bitLine = aBitLine;
+            this.countLine = aCountLine;
+            this.stackTrace = aStackTrace;
+        }
+    }
+    //</editor-fold>
 }
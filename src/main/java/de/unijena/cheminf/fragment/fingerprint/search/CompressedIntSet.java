@@ -0,0 +1,730 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.search;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints, e.g. molecule IDs, in the style of roaring bitmaps. The values are
+ * partitioned into chunks of 65536 by their upper 16 bits. A chunk holding at most
+ * {@value #MAXIMUM_ARRAY_CARDINALITY} values stores their lower 16 bits as sorted char array (2 bytes per value),
+ * a denser chunk as bitmap of 8 kB. Sparse sets therefore need about 2 bytes per value and dense sets about
+ * 1 bit per possible value, and intersections, unions and differences work chunk by chunk on the compact
+ * representations instead of on the single values.
+ * <br>Adding values in ascending order, as done when molecules are numbered consecutively, appends to the last
+ * chunk without searching. The set operations return new sets and do not modify their operands. The class is not
+ * thread-safe, but sets that are no longer modified can be read concurrently.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class CompressedIntSet {
+    //<editor-fold desc="Public static final class variables" defaultstate="collapsed">
+    /**
+     * Maximum number of values of a chunk stored as array, denser chunks are stored as bitmap. At this cardinality
+     * both representations take 8 kB.
+     */
+    public static final int MAXIMUM_ARRAY_CARDINALITY = 4096;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Number of longs of a chunk bitmap, 65536 bits
+     */
+    private static final int BITMAP_LENGTH = 1024;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Upper 16 bits of the values of the chunks, ascending
+     */
+    private char[] keys;
+    /**
+     * Chunks, parallel to the keys
+     */
+    private Container[] containers;
+    /**
+     * Number of chunks
+     */
+    private int numberOfContainers;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor of an empty set.
+     */
+    public CompressedIntSet() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+        this.numberOfContainers = 0;
+    }
+    //
+    /**
+     * Copy constructor.
+     *
+     * @param aSet set to copy.
+     * @throws NullPointerException is thrown if the set is null.
+     */
+    public CompressedIntSet(CompressedIntSet aSet) throws NullPointerException {
+        this.keys = Arrays.copyOf(aSet.keys, Math.max(aSet.numberOfContainers, 1));
+        this.containers = new Container[this.keys.length];
+        for (int i = 0; i < aSet.numberOfContainers; i++) {
+            this.containers[i] = aSet.containers[i].copy();
+        }
+        this.numberOfContainers = aSet.numberOfContainers;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static methods" defaultstate="collapsed">
+    /**
+     * Returns a set of the given values.
+     *
+     * @param aValues values, in any order.
+     * @return CompressedIntSet
+     * @throws NullPointerException is thrown if the array is null.
+     * @throws IllegalArgumentException is thrown if a value is negative.
+     */
+    public static CompressedIntSet of(int... aValues) throws NullPointerException, IllegalArgumentException {
+        CompressedIntSet tmpSet = new CompressedIntSet();
+        for (int tmpValue : aValues) {
+            tmpSet.add(tmpValue);
+        }
+        return tmpSet;
+    }
+    //
+    /**
+     * Returns the set of all values from aStart (inclusive) to anEnd (exclusive).
+     *
+     * @param aStart first value.
+     * @param anEnd value after the last one.
+     * @return CompressedIntSet
+     * @throws IllegalArgumentException is thrown if aStart is negative or greater than anEnd.
+     */
+    public static CompressedIntSet range(int aStart, int anEnd) throws IllegalArgumentException {
+        if (aStart < 0 || aStart > anEnd) {
+            throw new IllegalArgumentException("Invalid range " + aStart + " to " + anEnd + ".");
+        }
+        CompressedIntSet tmpSet = new CompressedIntSet();
+        int tmpChunkStart = aStart;
+        while (tmpChunkStart < anEnd) {
+            int tmpKey = tmpChunkStart >>> 16;
+            int tmpLow = tmpChunkStart & 0xFFFF;
+            int tmpHigh = (int) Math.min((long) anEnd - ((long) tmpKey << 16), 65536L);
+            int tmpCardinality = tmpHigh - tmpLow;
+            Container tmpContainer;
+            if (tmpCardinality <= CompressedIntSet.MAXIMUM_ARRAY_CARDINALITY) {
+                char[] tmpValues = new char[tmpCardinality];
+                for (int i = 0; i < tmpCardinality; i++) {
+                    tmpValues[i] = (char) (tmpLow + i);
+                }
+                tmpContainer = new Container(tmpValues, null, tmpCardinality);
+            } else {
+                long[] tmpBitmap = new long[CompressedIntSet.BITMAP_LENGTH];
+                int tmpFirstWord = tmpLow >>> 6;
+                int tmpLastWord = (tmpHigh - 1) >>> 6;
+                for (int i = tmpFirstWord; i <= tmpLastWord; i++) {
+                    long tmpMask = -1L;
+                    if (i == tmpFirstWord) {
+                        tmpMask &= -1L << (tmpLow & 63);
+                    }
+                    if (i == tmpLastWord) {
+                        tmpMask &= -1L >>> (63 - ((tmpHigh - 1) & 63));
+                    }
+                    tmpBitmap[i] = tmpMask;
+                }
+                tmpContainer = new Container(null, tmpBitmap, tmpCardinality);
+            }
+            tmpSet.appendContainer((char) tmpKey, tmpContainer);
+            tmpChunkStart = (tmpKey + 1) << 16;
+            if (tmpChunkStart <= 0) {
+                break;
+            }
+        }
+        return tmpSet;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Adds a value to the set. Adding a value greater than all values of the set takes constant time.
+     *
+     * @param aValue value to add.
+     * @return true if the value was not part of the set before
+     * @throws IllegalArgumentException is thrown if the value is negative.
+     */
+    public boolean add(int aValue) throws IllegalArgumentException {
+        if (aValue < 0) {
+            throw new IllegalArgumentException("Negative values can not be stored: " + aValue);
+        }
+        char tmpKey = (char) (aValue >>> 16);
+        int tmpIndex;
+        if (this.numberOfContainers > 0 && this.keys[this.numberOfContainers - 1] == tmpKey) {
+            tmpIndex = this.numberOfContainers - 1;
+        } else {
+            tmpIndex = Arrays.binarySearch(this.keys, 0, this.numberOfContainers, tmpKey);
+            if (tmpIndex < 0) {
+                tmpIndex = -tmpIndex - 1;
+                this.insertContainer(tmpIndex, tmpKey, new Container(new char[4], null, 0));
+            }
+        }
+        return this.containers[tmpIndex].add((char) aValue);
+    }
+    //
+    /**
+     * Returns whether the set contains the given value.
+     *
+     * @param aValue value.
+     * @return true if the value is part of the set
+     */
+    public boolean contains(int aValue) {
+        if (aValue < 0) {
+            return false;
+        }
+        int tmpIndex = Arrays.binarySearch(this.keys, 0, this.numberOfContainers, (char) (aValue >>> 16));
+        return tmpIndex >= 0 && this.containers[tmpIndex].contains((char) aValue);
+    }
+    //
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return int
+     */
+    public int getCardinality() {
+        int tmpCardinality = 0;
+        for (int i = 0; i < this.numberOfContainers; i++) {
+            tmpCardinality += this.containers[i].cardinality;
+        }
+        return tmpCardinality;
+    }
+    //
+    /**
+     * Returns whether the set is empty.
+     *
+     * @return true if the set contains no values
+     */
+    public boolean isEmpty() {
+        return this.numberOfContainers == 0;
+    }
+    //
+    /**
+     * Returns the intersection of this set and the given set.
+     *
+     * @param aSet other set.
+     * @return new set with the values contained in both sets
+     * @throws NullPointerException is thrown if the set is null.
+     */
+    public CompressedIntSet and(CompressedIntSet aSet) throws NullPointerException {
+        CompressedIntSet tmpResult = new CompressedIntSet();
+        int i = 0;
+        int j = 0;
+        while (i < this.numberOfContainers && j < aSet.numberOfContainers) {
+            if (this.keys[i] < aSet.keys[j]) {
+                i++;
+            } else if (this.keys[i] > aSet.keys[j]) {
+                j++;
+            } else {
+                Container tmpContainer = this.containers[i].and(aSet.containers[j]);
+                if (tmpContainer != null) {
+                    tmpResult.appendContainer(this.keys[i], tmpContainer);
+                }
+                i++;
+                j++;
+            }
+        }
+        return tmpResult;
+    }
+    //
+    /**
+     * Returns the union of this set and the given set.
+     *
+     * @param aSet other set.
+     * @return new set with the values contained in at least one of the sets
+     * @throws NullPointerException is thrown if the set is null.
+     */
+    public CompressedIntSet or(CompressedIntSet aSet) throws NullPointerException {
+        CompressedIntSet tmpResult = new CompressedIntSet();
+        int i = 0;
+        int j = 0;
+        while (i < this.numberOfContainers || j < aSet.numberOfContainers) {
+            if (j == aSet.numberOfContainers || (i < this.numberOfContainers && this.keys[i] < aSet.keys[j])) {
+                tmpResult.appendContainer(this.keys[i], this.containers[i].copy());
+                i++;
+            } else if (i == this.numberOfContainers || this.keys[i] > aSet.keys[j]) {
+                tmpResult.appendContainer(aSet.keys[j], aSet.containers[j].copy());
+                j++;
+            } else {
+                tmpResult.appendContainer(this.keys[i], this.containers[i].or(aSet.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return tmpResult;
+    }
+    //
+    /**
+     * Returns the difference of this set and the given set.
+     *
+     * @param aSet set of the values to remove.
+     * @return new set with the values of this set that are not contained in the given set
+     * @throws NullPointerException is thrown if the set is null.
+     */
+    public CompressedIntSet andNot(CompressedIntSet aSet) throws NullPointerException {
+        CompressedIntSet tmpResult = new CompressedIntSet();
+        int j = 0;
+        for (int i = 0; i < this.numberOfContainers; i++) {
+            while (j < aSet.numberOfContainers && aSet.keys[j] < this.keys[i]) {
+                j++;
+            }
+            Container tmpContainer;
+            if (j < aSet.numberOfContainers && aSet.keys[j] == this.keys[i]) {
+                tmpContainer = this.containers[i].andNot(aSet.containers[j]);
+            } else {
+                tmpContainer = this.containers[i].copy();
+            }
+            if (tmpContainer != null) {
+                tmpResult.appendContainer(this.keys[i], tmpContainer);
+            }
+        }
+        return tmpResult;
+    }
+    //
+    /**
+     * Passes the values of the set in ascending order to the given consumer.
+     *
+     * @param aConsumer consumer of the values.
+     * @throws NullPointerException is thrown if the consumer is null.
+     */
+    public void forEach(IntConsumer aConsumer) throws NullPointerException {
+        for (int i = 0; i < this.numberOfContainers; i++) {
+            this.containers[i].forEach(this.keys[i] << 16, aConsumer);
+        }
+    }
+    //
+    /**
+     * Returns the values of the set in ascending order.
+     *
+     * @return int array
+     */
+    public int[] toArray() {
+        int[] tmpArray = new int[this.getCardinality()];
+        int tmpIndex = 0;
+        for (int i = 0; i < this.numberOfContainers; i++) {
+            Container tmpContainer = this.containers[i];
+            int tmpHigh = this.keys[i] << 16;
+            if (tmpContainer.values != null) {
+                for (int j = 0; j < tmpContainer.cardinality; j++) {
+                    tmpArray[tmpIndex++] = tmpHigh | tmpContainer.values[j];
+                }
+            } else {
+                for (int j = 0; j < CompressedIntSet.BITMAP_LENGTH; j++) {
+                    for (long tmpWord = tmpContainer.bitmap[j]; tmpWord != 0L; tmpWord &= tmpWord - 1) {
+                        tmpArray[tmpIndex++] = tmpHigh | (j << 6) | Long.numberOfTrailingZeros(tmpWord);
+                    }
+                }
+            }
+        }
+        return tmpArray;
+    }
+    //
+    /**
+     * Returns the approximate number of bytes used by the set.
+     *
+     * @return long
+     */
+    public long getSizeInBytes() {
+        long tmpSize = 16L + this.keys.length * 2L + this.containers.length * 4L;
+        for (int i = 0; i < this.numberOfContainers; i++) {
+            Container tmpContainer = this.containers[i];
+            tmpSize += 24L + (tmpContainer.values != null ? tmpContainer.values.length * 2L : CompressedIntSet.BITMAP_LENGTH * 8L);
+        }
+        return tmpSize;
+    }
+    //
+    /**
+     * Releases the unused capacity of the internal arrays, e.g. after the set has been built.
+     */
+    public void trimToSize() {
+        this.keys = Arrays.copyOf(this.keys, Math.max(this.numberOfContainers, 1));
+        this.containers = Arrays.copyOf(this.containers, this.keys.length);
+        for (int i = 0; i < this.numberOfContainers; i++) {
+            Container tmpContainer = this.containers[i];
+            if (tmpContainer.values != null && tmpContainer.values.length > tmpContainer.cardinality) {
+                tmpContainer.values = Arrays.copyOf(tmpContainer.values, tmpContainer.cardinality);
+            }
+        }
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object anObject) {
+        if (this == anObject) {
+            return true;
+        }
+        if (!(anObject instanceof CompressedIntSet)) {
+            return false;
+        }
+        return Arrays.equals(this.toArray(), ((CompressedIntSet) anObject).toArray());
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.toArray());
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Appends a chunk whose key is greater than all keys of the set.
+     *
+     * @param aKey upper 16 bits of the values.
+     * @param aContainer chunk.
+     */
+    private void appendContainer(char aKey, Container aContainer) {
+        this.insertContainer(this.numberOfContainers, aKey, aContainer);
+    }
+    //
+    /**
+     * Inserts a chunk at the given index.
+     *
+     * @param anIndex index of the chunk.
+     * @param aKey upper 16 bits of the values.
+     * @param aContainer chunk.
+     */
+    private void insertContainer(int anIndex, char aKey, Container aContainer) {
+        if (this.numberOfContainers == this.keys.length) {
+            int tmpNewLength = this.keys.length + (this.keys.length >> 1) + 1;
+            this.keys = Arrays.copyOf(this.keys, tmpNewLength);
+            this.containers = Arrays.copyOf(this.containers, tmpNewLength);
+        }
+        System.arraycopy(this.keys, anIndex, this.keys, anIndex + 1, this.numberOfContainers - anIndex);
+        System.arraycopy(this.containers, anIndex, this.containers, anIndex + 1, this.numberOfContainers - anIndex);
+        this.keys[anIndex] = aKey;
+        this.containers[anIndex] = aContainer;
+        this.numberOfContainers++;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private classes" defaultstate="collapsed">
+    /**
+     * Chunk of up to 65536 values sharing the upper 16 bits, stored either as sorted array of the lower 16 bits or
+     * as bitmap.
+     */
+    private static final class Container {
+        /**
+         * Sorted lower 16 bits of the values, null if the chunk is a bitmap
+         */
+        private char[] values;
+        /**
+         * Bitmap of the lower 16 bits of the values, null if the chunk is an array
+         */
+        private long[] bitmap;
+        /**
+         * Number of values in the chunk
+         */
+        private int cardinality;
+        //
+        /**
+         * Constructor.
+         *
+         * @param aValues sorted values or null.
+         * @param aBitmap bitmap or null.
+         * @param aCardinality number of values.
+         */
+        private Container(char[] aValues, long[] aBitmap, int aCardinality) {
+            this.values = aValues;
+            this.bitmap = aBitmap;
+            this.cardinality = aCardinality;
+        }
+        //
+        /**
+         * Returns a chunk of the given bitmap, converted to an array if it is sparse enough.
+         *
+         * @param aBitmap bitmap, taken over.
+         * @param aCardinality number of set bits.
+         * @return chunk or null if the bitmap is empty
+         */
+        private static Container ofBitmap(long[] aBitmap, int aCardinality) {
+            if (aCardinality == 0) {
+                return null;
+            }
+            if (aCardinality > CompressedIntSet.MAXIMUM_ARRAY_CARDINALITY) {
+                return new Container(null, aBitmap, aCardinality);
+            }
+            char[] tmpValues = new char[aCardinality];
+            int tmpIndex = 0;
+            for (int i = 0; i < CompressedIntSet.BITMAP_LENGTH; i++) {
+                for (long tmpWord = aBitmap[i]; tmpWord != 0L; tmpWord &= tmpWord - 1) {
+                    tmpValues[tmpIndex++] = (char) ((i << 6) | Long.numberOfTrailingZeros(tmpWord));
+                }
+            }
+            return new Container(tmpValues, null, aCardinality);
+        }
+        //
+        /**
+         * Returns a deep copy.
+         *
+         * @return Container
+         */
+        private Container copy() {
+            return new Container(this.values == null ? null : Arrays.copyOf(this.values, this.cardinality),
+                    this.bitmap == null ? null : this.bitmap.clone(), this.cardinality);
+        }
+        //
+        /**
+         * Adds a value, converting the chunk to a bitmap if the array becomes too large.
+         *
+         * @param aValue lower 16 bits of the value.
+         * @return true if the value was added
+         */
+        private boolean add(char aValue) {
+            if (this.bitmap != null) {
+                long tmpOldWord = this.bitmap[aValue >>> 6];
+                long tmpNewWord = tmpOldWord | (1L << aValue);
+                this.bitmap[aValue >>> 6] = tmpNewWord;
+                if (tmpNewWord == tmpOldWord) {
+                    return false;
+                }
+                this.cardinality++;
+                return true;
+            }
+            int tmpIndex;
+            if (this.cardinality == 0 || this.values[this.cardinality - 1] < aValue) {
+                tmpIndex = this.cardinality;
+            } else {
+                tmpIndex = Arrays.binarySearch(this.values, 0, this.cardinality, aValue);
+                if (tmpIndex >= 0) {
+                    return false;
+                }
+                tmpIndex = -tmpIndex - 1;
+            }
+            if (this.cardinality == CompressedIntSet.MAXIMUM_ARRAY_CARDINALITY) {
+                this.bitmap = this.toBitmap();
+                this.values = null;
+                return this.add(aValue);
+            }
+            if (this.cardinality == this.values.length) {
+                this.values = Arrays.copyOf(this.values, Math.min(this.values.length << 1, CompressedIntSet.MAXIMUM_ARRAY_CARDINALITY));
+            }
+            System.arraycopy(this.values, tmpIndex, this.values, tmpIndex + 1, this.cardinality - tmpIndex);
+            this.values[tmpIndex] = aValue;
+            this.cardinality++;
+            return true;
+        }
+        //
+        /**
+         * Returns whether the chunk contains a value.
+         *
+         * @param aValue lower 16 bits of the value.
+         * @return true if the value is contained
+         */
+        private boolean contains(char aValue) {
+            if (this.bitmap != null) {
+                return (this.bitmap[aValue >>> 6] & (1L << aValue)) != 0L;
+            }
+            return Arrays.binarySearch(this.values, 0, this.cardinality, aValue) >= 0;
+        }
+        //
+        /**
+         * Returns the intersection with another chunk.
+         *
+         * @param aContainer other chunk.
+         * @return new chunk or null if the intersection is empty
+         */
+        private Container and(Container aContainer) {
+            if (this.values != null && aContainer.values != null) {
+                char[] tmpValues = new char[Math.min(this.cardinality, aContainer.cardinality)];
+                int tmpLength = 0;
+                int i = 0;
+                int j = 0;
+                while (i < this.cardinality && j < aContainer.cardinality) {
+                    if (this.values[i] < aContainer.values[j]) {
+                        i++;
+                    } else if (this.values[i] > aContainer.values[j]) {
+                        j++;
+                    } else {
+                        tmpValues[tmpLength++] = this.values[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return tmpLength == 0 ? null : new Container(tmpValues, null, tmpLength);
+            }
+            if (this.values != null || aContainer.values != null) {
+                Container tmpArrayContainer = this.values != null ? this : aContainer;
+                Container tmpBitmapContainer = this.values != null ? aContainer : this;
+                char[] tmpValues = new char[tmpArrayContainer.cardinality];
+                int tmpLength = 0;
+                for (int i = 0; i < tmpArrayContainer.cardinality; i++) {
+                    if (tmpBitmapContainer.contains(tmpArrayContainer.values[i])) {
+                        tmpValues[tmpLength++] = tmpArrayContainer.values[i];
+                    }
+                }
+                return tmpLength == 0 ? null : new Container(tmpValues, null, tmpLength);
+            }
+            long[] tmpBitmap = new long[CompressedIntSet.BITMAP_LENGTH];
+            int tmpCardinality = 0;
+            for (int i = 0; i < CompressedIntSet.BITMAP_LENGTH; i++) {
+                tmpBitmap[i] = this.bitmap[i] & aContainer.bitmap[i];
+                tmpCardinality += Long.bitCount(tmpBitmap[i]);
+            }
+            return Container.ofBitmap(tmpBitmap, tmpCardinality);
+        }
+        //
+        /**
+         * Returns the union with another chunk.
+         *
+         * @param aContainer other chunk.
+         * @return new chunk
+         */
+        private Container or(Container aContainer) {
+            if (this.values != null && aContainer.values != null
+                    && this.cardinality + aContainer.cardinality <= CompressedIntSet.MAXIMUM_ARRAY_CARDINALITY) {
+                char[] tmpValues = new char[this.cardinality + aContainer.cardinality];
+                int tmpLength = 0;
+                int i = 0;
+                int j = 0;
+                while (i < this.cardinality || j < aContainer.cardinality) {
+                    if (j == aContainer.cardinality || (i < this.cardinality && this.values[i] < aContainer.values[j])) {
+                        tmpValues[tmpLength++] = this.values[i++];
+                    } else if (i == this.cardinality || this.values[i] > aContainer.values[j]) {
+                        tmpValues[tmpLength++] = aContainer.values[j++];
+                    } else {
+                        tmpValues[tmpLength++] = this.values[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return new Container(tmpValues, null, tmpLength);
+            }
+            long[] tmpBitmap = this.toBitmap();
+            if (aContainer.values != null) {
+                for (int i = 0; i < aContainer.cardinality; i++) {
+                    tmpBitmap[aContainer.values[i] >>> 6] |= 1L << aContainer.values[i];
+                }
+            } else {
+                for (int i = 0; i < CompressedIntSet.BITMAP_LENGTH; i++) {
+                    tmpBitmap[i] |= aContainer.bitmap[i];
+                }
+            }
+            return Container.ofBitmap(tmpBitmap, Container.countBits(tmpBitmap));
+        }
+        //
+        /**
+         * Returns the difference to another chunk.
+         *
+         * @param aContainer chunk of the values to remove.
+         * @return new chunk or null if the difference is empty
+         */
+        private Container andNot(Container aContainer) {
+            if (this.values != null) {
+                char[] tmpValues = new char[this.cardinality];
+                int tmpLength = 0;
+                for (int i = 0; i < this.cardinality; i++) {
+                    if (!aContainer.contains(this.values[i])) {
+                        tmpValues[tmpLength++] = this.values[i];
+                    }
+                }
+                return tmpLength == 0 ? null : new Container(tmpValues, null, tmpLength);
+            }
+            long[] tmpBitmap = this.bitmap.clone();
+            if (aContainer.values != null) {
+                for (int i = 0; i < aContainer.cardinality; i++) {
+                    tmpBitmap[aContainer.values[i] >>> 6] &= ~(1L << aContainer.values[i]);
+                }
+            } else {
+                for (int i = 0; i < CompressedIntSet.BITMAP_LENGTH; i++) {
+                    tmpBitmap[i] &= ~aContainer.bitmap[i];
+                }
+            }
+            return Container.ofBitmap(tmpBitmap, Container.countBits(tmpBitmap));
+        }
+        //
+        /**
+         * Passes the values of the chunk in ascending order to the given consumer.
+         *
+         * @param aHigh upper 16 bits of the values, already shifted.
+         * @param aConsumer consumer of the values.
+         */
+        private void forEach(int aHigh, IntConsumer aConsumer) {
+            if (this.values != null) {
+                for (int i = 0; i < this.cardinality; i++) {
+                    aConsumer.accept(aHigh | this.values[i]);
+                }
+            } else {
+                for (int i = 0; i < CompressedIntSet.BITMAP_LENGTH; i++) {
+                    for (long tmpWord = this.bitmap[i]; tmpWord != 0L; tmpWord &= tmpWord - 1) {
+                        aConsumer.accept(aHigh | (i << 6) | Long.numberOfTrailingZeros(tmpWord));
+                    }
+                }
+            }
+        }
+        //
+        /**
+         * Returns the chunk as new bitmap.
+         *
+         * @return bitmap
+         */
+        private long[] toBitmap() {
+            if (this.bitmap != null) {
+                return this.bitmap.clone();
+            }
+            long[] tmpBitmap = new long[CompressedIntSet.BITMAP_LENGTH];
+            for (int i = 0; i < this.cardinality; i++) {
+                tmpBitmap[this.values[i] >>> 6] |= 1L << this.values[i];
+            }
+            return tmpBitmap;
+        }
+        //
+        /**
+         * Returns the number of set bits of a bitmap.
+         *
+         * @param aBitmap bitmap.
+         * @return int
+         */
+        private static int countBits(long[] aBitmap) {
+            int tmpCardinality = 0;
+            for (long tmpWord : aBitmap) {
+                tmpCardinality += Long.bitCount(tmpWord);
+            }
+            return tmpCardinality;
+        }
+    }
+    //</editor-fold>
+}
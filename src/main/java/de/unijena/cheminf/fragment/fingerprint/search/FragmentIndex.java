@@ -0,0 +1,483 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.search;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Inverted index over fragment fingerprints for fragment-presence queries. Molecules are added as bit or count
+ * fingerprints based on the positions of a {@link FragmentDictionary}, e.g. as created by the fingerprinters, and
+ * are numbered consecutively from 0 in the order they are added. For every key fragment, the index keeps the IDs
+ * of the molecules containing it as {@link CompressedIntSet} (posting list), so queries like "contains fragment X
+ * and fragment Y but not Z" are answered by set operations on the compressed posting lists and do not scan the
+ * fingerprints. The results are sets of molecule IDs that can be further combined with
+ * {@link CompressedIntSet#and(CompressedIntSet)}, {@link CompressedIntSet#or(CompressedIntSet)} and
+ * {@link CompressedIntSet#andNot(CompressedIntSet)}.
+ * <br>For count queries ("contains fragment X at least n times"), the frequencies are kept parallel to the posting
+ * lists as 16-bit values, larger frequencies are capped at {@value #MAXIMUM_COUNT}. As long as all frequencies of a
+ * fragment are 1, e.g. for indices built from bit fingerprints, no frequencies are stored for it.
+ * <br>The index is not thread-safe while molecules are added. Once it is complete, queries can run concurrently.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class FragmentIndex {
+    //<editor-fold desc="Public static final class variables" defaultstate="collapsed">
+    /**
+     * Maximum frequency stored by the index, larger frequencies are capped
+     */
+    public static final int MAXIMUM_COUNT = Character.MAX_VALUE;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Dictionary of the key fragments
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Posting lists per position, null as long as no molecule contains the fragment
+     */
+    private final CompressedIntSet[] postingLists;
+    /**
+     * Frequencies parallel to the posting lists, null as long as all frequencies of the fragment are 1
+     */
+    private final char[][] countLists;
+    /**
+     * Number of molecules per posting list
+     */
+    private final int[] postingListSizes;
+    /**
+     * ID of the last molecule added to each posting list, to merge duplicate bins of a fingerprint
+     */
+    private final int[] lastMoleculeIds;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Number of molecules added so far, also the ID of the next molecule
+     */
+    private int numberOfMolecules;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor of an empty index.
+     *
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    public FragmentIndex(FragmentDictionary aFragmentDictionary) throws NullPointerException {
+        this.fragmentDictionary = Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        this.postingLists = new CompressedIntSet[aFragmentDictionary.size()];
+        this.countLists = new char[aFragmentDictionary.size()][];
+        this.postingListSizes = new int[aFragmentDictionary.size()];
+        this.lastMoleculeIds = new int[aFragmentDictionary.size()];
+        Arrays.fill(this.lastMoleculeIds, -1);
+        this.numberOfMolecules = 0;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Adds a molecule given as bit fingerprint, all its fragments get the frequency 1.
+     *
+     * @param aBitFingerprint fingerprint of the molecule.
+     * @return ID of the molecule
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has bits set beyond the size of the dictionary.
+     */
+    public int addBitFingerprint(IBitFingerprint aBitFingerprint) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aBitFingerprint, "aBitFingerprint is null.");
+        BitSet tmpBitSet = aBitFingerprint.asBitSet();
+        if (tmpBitSet.length() > this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("aBitFingerprint has bits set beyond the size of the dictionary.");
+        }
+        int tmpMoleculeId = this.nextMoleculeId();
+        for (int i = tmpBitSet.nextSetBit(0); i >= 0; i = tmpBitSet.nextSetBit(i + 1)) {
+            this.addToPostingList(i, tmpMoleculeId, 1);
+        }
+        return tmpMoleculeId;
+    }
+    //
+    /**
+     * Adds a molecule given as count fingerprint. Bins with frequency 0 are ignored, frequencies of duplicate bins
+     * are summed up.
+     *
+     * @param aCountFingerprint fingerprint of the molecule, its hashes must be positions in the dictionary.
+     * @return ID of the molecule
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has positions outside the dictionary or
+     * negative frequencies.
+     */
+    public int addCountFingerprint(ICountFingerprint aCountFingerprint) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aCountFingerprint, "aCountFingerprint is null.");
+        // validate first, so that an invalid fingerprint leaves the index unchanged
+        for (int i = 0; i < aCountFingerprint.numOfPopulatedbins(); i++) {
+            int tmpPosition = aCountFingerprint.getHash(i);
+            if (tmpPosition < 0 || tmpPosition >= this.postingLists.length) {
+                throw new IllegalArgumentException("aCountFingerprint has a position outside the dictionary: " + tmpPosition);
+            }
+            if (aCountFingerprint.getCount(i) < 0) {
+                throw new IllegalArgumentException("aCountFingerprint has a negative frequency.");
+            }
+        }
+        int tmpMoleculeId = this.nextMoleculeId();
+        if (aCountFingerprint instanceof CountFingerprint) {
+            ((CountFingerprint) aCountFingerprint).forEachPopulatedBin((int aPosition, int aCount) -> this.addToPostingList(aPosition, tmpMoleculeId, aCount));
+        } else {
+            for (int i = 0; i < aCountFingerprint.numOfPopulatedbins(); i++) {
+                this.addToPostingList(aCountFingerprint.getHash(i), tmpMoleculeId, aCountFingerprint.getCount(i));
+            }
+        }
+        return tmpMoleculeId;
+    }
+    //
+    /**
+     * Returns the IDs of the molecules containing the given fragment.
+     *
+     * @param aFragment unique SMILES of a key fragment.
+     * @return new set of molecule IDs
+     * @throws NullPointerException is thrown if the fragment is null.
+     * @throws IllegalArgumentException is thrown if the fragment is not part of the dictionary.
+     */
+    public CompressedIntSet getMoleculesContaining(String aFragment) throws NullPointerException, IllegalArgumentException {
+        return this.getMoleculesContaining(this.getPosition(aFragment), 1);
+    }
+    //
+    /**
+     * Returns the IDs of the molecules containing the given fragment at least aMinimumCount times.
+     *
+     * @param aFragment unique SMILES of a key fragment.
+     * @param aMinimumCount minimum frequency.
+     * @return new set of molecule IDs
+     * @throws NullPointerException is thrown if the fragment is null.
+     * @throws IllegalArgumentException is thrown if the fragment is not part of the dictionary or the minimum
+     * frequency is greater than {@value #MAXIMUM_COUNT}.
+     */
+    public CompressedIntSet getMoleculesContaining(String aFragment, int aMinimumCount) throws NullPointerException, IllegalArgumentException {
+        return this.getMoleculesContaining(this.getPosition(aFragment), aMinimumCount);
+    }
+    //
+    /**
+     * Returns the IDs of the molecules containing the fragment at the given position at least aMinimumCount times.
+     * For a minimum frequency up to 1, this is a copy of the posting list; higher thresholds filter the posting list
+     * by the stored frequencies.
+     *
+     * @param aPosition position of the fragment in the dictionary.
+     * @param aMinimumCount minimum frequency.
+     * @return new set of molecule IDs
+     * @throws IllegalArgumentException is thrown if the position is outside the dictionary or the minimum frequency
+     * is greater than {@value #MAXIMUM_COUNT}.
+     */
+    public CompressedIntSet getMoleculesContaining(int aPosition, int aMinimumCount) throws IllegalArgumentException {
+        this.checkPosition(aPosition);
+        if (aMinimumCount > FragmentIndex.MAXIMUM_COUNT) {
+            throw new IllegalArgumentException("The minimum frequency must not be greater than " + FragmentIndex.MAXIMUM_COUNT + ".");
+        }
+        CompressedIntSet tmpPostingList = this.postingLists[aPosition];
+        if (tmpPostingList == null) {
+            return new CompressedIntSet();
+        }
+        if (aMinimumCount <= 1) {
+            return new CompressedIntSet(tmpPostingList);
+        }
+        CompressedIntSet tmpResult = new CompressedIntSet();
+        char[] tmpCounts = this.countLists[aPosition];
+        if (tmpCounts == null) {
+            return tmpResult;
+        }
+        int[] tmpIndex = new int[1];
+        tmpPostingList.forEach((int aMoleculeId) -> {
+            if (tmpCounts[tmpIndex[0]++] >= aMinimumCount) {
+                tmpResult.add(aMoleculeId);
+            }
+        });
+        return tmpResult;
+    }
+    //
+    /**
+     * Returns the IDs of the molecules containing all given fragments. The posting lists are intersected starting
+     * with the shortest one.
+     *
+     * @param aFragments unique SMILES of key fragments, for no fragments all molecules are returned.
+     * @return new set of molecule IDs
+     * @throws NullPointerException is thrown if the array or a fragment is null.
+     * @throws IllegalArgumentException is thrown if a fragment is not part of the dictionary.
+     */
+    public CompressedIntSet getMoleculesContainingAll(String... aFragments) throws NullPointerException, IllegalArgumentException {
+        int[] tmpPositions = this.getPositions(aFragments);
+        if (tmpPositions.length == 0) {
+            return this.getAllMolecules();
+        }
+        // sort by posting list size, the size is in the upper half so it dominates the order
+        long[] tmpOrder = new long[tmpPositions.length];
+        for (int i = 0; i < tmpPositions.length; i++) {
+            tmpOrder[i] = ((long) this.postingListSizes[tmpPositions[i]] << 32) | tmpPositions[i];
+        }
+        Arrays.sort(tmpOrder);
+        CompressedIntSet tmpResult = this.getMoleculesContaining((int) tmpOrder[0], 1);
+        for (int i = 1; i < tmpOrder.length && !tmpResult.isEmpty(); i++) {
+            CompressedIntSet tmpPostingList = this.postingLists[(int) tmpOrder[i]];
+            tmpResult = tmpPostingList == null ? new CompressedIntSet() : tmpResult.and(tmpPostingList);
+        }
+        return tmpResult;
+    }
+    //
+    /**
+     * Returns the IDs of the molecules containing at least one of the given fragments.
+     *
+     * @param aFragments unique SMILES of key fragments.
+     * @return new set of molecule IDs
+     * @throws NullPointerException is thrown if the array or a fragment is null.
+     * @throws IllegalArgumentException is thrown if a fragment is not part of the dictionary.
+     */
+    public CompressedIntSet getMoleculesContainingAny(String... aFragments) throws NullPointerException, IllegalArgumentException {
+        CompressedIntSet tmpResult = new CompressedIntSet();
+        for (int tmpPosition : this.getPositions(aFragments)) {
+            if (this.postingLists[tmpPosition] != null) {
+                tmpResult = tmpResult.or(this.postingLists[tmpPosition]);
+            }
+        }
+        return tmpResult;
+    }
+    //
+    /**
+     * Returns the IDs of the molecules not containing the given fragment.
+     *
+     * @param aFragment unique SMILES of a key fragment.
+     * @return new set of molecule IDs
+     * @throws NullPointerException is thrown if the fragment is null.
+     * @throws IllegalArgumentException is thrown if the fragment is not part of the dictionary.
+     */
+    public CompressedIntSet getMoleculesNotContaining(String aFragment) throws NullPointerException, IllegalArgumentException {
+        CompressedIntSet tmpPostingList = this.postingLists[this.getPosition(aFragment)];
+        return tmpPostingList == null ? this.getAllMolecules() : this.getAllMolecules().andNot(tmpPostingList);
+    }
+    //
+    /**
+     * Returns the IDs of all molecules in the index, e.g. as base of negated queries.
+     *
+     * @return new set of molecule IDs
+     */
+    public CompressedIntSet getAllMolecules() {
+        return CompressedIntSet.range(0, this.numberOfMolecules);
+    }
+    //
+    /**
+     * Returns the number of molecules containing the fragment at the given position.
+     *
+     * @param aPosition position of the fragment in the dictionary.
+     * @return int
+     * @throws IllegalArgumentException is thrown if the position is outside the dictionary.
+     */
+    public int getNumberOfMoleculesContaining(int aPosition) throws IllegalArgumentException {
+        this.checkPosition(aPosition);
+        return this.postingListSizes[aPosition];
+    }
+    //
+    /**
+     * Returns the number of molecules added.
+     *
+     * @return int
+     */
+    public int getNumberOfMolecules() {
+        return this.numberOfMolecules;
+    }
+    //
+    /**
+     * Returns the dictionary of the key fragments.
+     *
+     * @return FragmentDictionary
+     */
+    public FragmentDictionary getFragmentDictionary() {
+        return this.fragmentDictionary;
+    }
+    //
+    /**
+     * Returns the approximate number of bytes used by the posting lists and frequencies.
+     *
+     * @return long
+     */
+    public long getSizeInBytes() {
+        long tmpSize = 0L;
+        for (int i = 0; i < this.postingLists.length; i++) {
+            if (this.postingLists[i] != null) {
+                tmpSize += this.postingLists[i].getSizeInBytes();
+            }
+            if (this.countLists[i] != null) {
+                tmpSize += 16L + this.countLists[i].length * 2L;
+            }
+        }
+        return tmpSize;
+    }
+    //
+    /**
+     * Releases the unused capacity of the posting lists and frequencies after all molecules were added.
+     */
+    public void trimToSize() {
+        for (int i = 0; i < this.postingLists.length; i++) {
+            if (this.postingLists[i] != null) {
+                this.postingLists[i].trimToSize();
+            }
+            if (this.countLists[i] != null && this.countLists[i].length > this.postingListSizes[i]) {
+                this.countLists[i] = Arrays.copyOf(this.countLists[i], this.postingListSizes[i]);
+            }
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Returns the ID of the next molecule and increments the number of molecules.
+     *
+     * @return int
+     * @throws IllegalStateException is thrown if the index is full.
+     */
+    private int nextMoleculeId() throws IllegalStateException {
+        if (this.numberOfMolecules == Integer.MAX_VALUE) {
+            throw new IllegalStateException("The index can not take more molecules.");
+        }
+        return this.numberOfMolecules++;
+    }
+    //
+    /**
+     * Adds a molecule to the posting list of a position, or adds the frequency if the molecule was just added to it.
+     *
+     * @param aPosition position of the fragment.
+     * @param aMoleculeId ID of the molecule, not smaller than the IDs already in the posting list.
+     * @param aCount frequency of the fragment, 0 is ignored.
+     */
+    private void addToPostingList(int aPosition, int aMoleculeId, int aCount) {
+        if (aCount == 0) {
+            return;
+        }
+        int tmpSize = this.postingListSizes[aPosition];
+        if (this.lastMoleculeIds[aPosition] == aMoleculeId) {
+            // duplicate bin of the same fingerprint
+            this.setCount(aPosition, tmpSize - 1, (long) this.getCount(aPosition, tmpSize - 1) + aCount);
+            return;
+        }
+        if (this.postingLists[aPosition] == null) {
+            this.postingLists[aPosition] = new CompressedIntSet();
+        }
+        this.postingLists[aPosition].add(aMoleculeId);
+        this.lastMoleculeIds[aPosition] = aMoleculeId;
+        this.postingListSizes[aPosition] = tmpSize + 1;
+        char[] tmpCounts = this.countLists[aPosition];
+        if (tmpCounts != null && tmpCounts.length == tmpSize) {
+            this.countLists[aPosition] = Arrays.copyOf(tmpCounts, tmpSize + (tmpSize >> 1) + 1);
+        }
+        if (tmpCounts != null || aCount != 1) {
+            this.setCount(aPosition, tmpSize, aCount);
+        }
+    }
+    //
+    /**
+     * Returns the stored frequency of the molecule at the given index of a posting list.
+     *
+     * @param aPosition position of the fragment.
+     * @param anIndex index in the posting list.
+     * @return int
+     */
+    private int getCount(int aPosition, int anIndex) {
+        char[] tmpCounts = this.countLists[aPosition];
+        return tmpCounts == null ? 1 : tmpCounts[anIndex];
+    }
+    //
+    /**
+     * Stores the frequency of the molecule at the given index of a posting list, creating the frequencies of the
+     * position if they were all 1 so far.
+     *
+     * @param aPosition position of the fragment.
+     * @param anIndex index in the posting list.
+     * @param aCount frequency, capped at {@link #MAXIMUM_COUNT}.
+     */
+    private void setCount(int aPosition, int anIndex, long aCount) {
+        if (this.countLists[aPosition] == null) {
+            if (aCount == 1L) {
+                return;
+            }
+            char[] tmpCounts = new char[Math.max(this.postingListSizes[aPosition], 4)];
+            Arrays.fill(tmpCounts, 0, this.postingListSizes[aPosition], (char) 1);
+            this.countLists[aPosition] = tmpCounts;
+        }
+        this.countLists[aPosition][anIndex] = (char) Math.min(aCount, FragmentIndex.MAXIMUM_COUNT);
+    }
+    //
+    /**
+     * Returns the position of a fragment in the dictionary.
+     *
+     * @param aFragment unique SMILES of the fragment.
+     * @return int
+     * @throws NullPointerException is thrown if the fragment is null.
+     * @throws IllegalArgumentException is thrown if the fragment is not part of the dictionary.
+     */
+    private int getPosition(String aFragment) throws NullPointerException, IllegalArgumentException {
+        int tmpPosition = this.fragmentDictionary.getPosition(Objects.requireNonNull(aFragment, "aFragment is null."));
+        if (tmpPosition == FragmentDictionary.NOT_FOUND) {
+            throw new IllegalArgumentException("The fragment " + aFragment + " is not part of the dictionary.");
+        }
+        return tmpPosition;
+    }
+    //
+    /**
+     * Returns the positions of the given fragments in the dictionary.
+     *
+     * @param aFragments unique SMILES of the fragments.
+     * @return int array
+     * @throws NullPointerException is thrown if the array or a fragment is null.
+     * @throws IllegalArgumentException is thrown if a fragment is not part of the dictionary.
+     */
+    private int[] getPositions(String[] aFragments) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aFragments, "aFragments is null.");
+        int[] tmpPositions = new int[aFragments.length];
+        for (int i = 0; i < aFragments.length; i++) {
+            tmpPositions[i] = this.getPosition(aFragments[i]);
+        }
+        return tmpPositions;
+    }
+    //
+    /**
+     * Checks a position.
+     *
+     * @param aPosition position in the dictionary.
+     * @throws IllegalArgumentException is thrown if the position is outside the dictionary.
+     */
+    private void checkPosition(int aPosition) throws IllegalArgumentException {
+        if (aPosition < 0 || aPosition >= this.postingLists.length) {
+            throw new IllegalArgumentException("The position " + aPosition + " is outside the dictionary.");
+        }
+    }
+    //</editor-fold>
+}
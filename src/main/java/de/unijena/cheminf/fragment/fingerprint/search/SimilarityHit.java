@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.search;
+
+/**
+ * Result of {@link SimilaritySearch}, the ID of a molecule and its similarity to the query.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class SimilarityHit {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * ID of the molecule, i.e. the order in which it was added to the search
+     */
+    private final int moleculeId;
+    /**
+     * Similarity to the query
+     */
+    private final double similarity;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor.
+     *
+     * @param aMoleculeId ID of the molecule.
+     * @param aSimilarity similarity to the query.
+     */
+    SimilarityHit(int aMoleculeId, double aSimilarity) {
+        this.moleculeId = aMoleculeId;
+        this.similarity = aSimilarity;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the ID of the molecule.
+     *
+     * @return int
+     */
+    public int getMoleculeId() {
+        return this.moleculeId;
+    }
+    //
+    /**
+     * Returns the similarity to the query.
+     *
+     * @return double
+     */
+    public double getSimilarity() {
+        return this.similarity;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return this.moleculeId + ":" + this.similarity;
+    }
+    //</editor-fold>
+}
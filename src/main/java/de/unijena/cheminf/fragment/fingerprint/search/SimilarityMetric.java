@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.search;
+
+/**
+ * Similarity coefficients of {@link SimilaritySearch}. All coefficients are defined on the dot product of the
+ * fingerprints and their squared norms, i.e. for count fingerprints a and b on &Sigma;a<sub>i</sub>b<sub>i</sub>,
+ * &Sigma;a<sub>i</sub><sup>2</sup> and &Sigma;b<sub>i</sub><sup>2</sup> as in CDK's Tanimoto.method1(). For bit
+ * fingerprints, the dot product is the number of common bits and the squared norms are the bit counts, so the
+ * coefficients reduce to their usual set-based definitions. If a denominator is 0, the similarity is 0.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public enum SimilarityMetric {
+    /**
+     * Tanimoto (Jaccard) coefficient, ab / (aa + bb - ab)
+     */
+    TANIMOTO {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double calculate(double aDotProduct, double aQueryNorm, double aTargetNorm) {
+            double tmpDenominator = aQueryNorm + aTargetNorm - aDotProduct;
+            return tmpDenominator > 0.0 ? aDotProduct / tmpDenominator : 0.0;
+        }
+    },
+    /**
+     * Dice coefficient, 2ab / (aa + bb)
+     */
+    DICE {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double calculate(double aDotProduct, double aQueryNorm, double aTargetNorm) {
+            double tmpDenominator = aQueryNorm + aTargetNorm;
+            return tmpDenominator > 0.0 ? 2.0 * aDotProduct / tmpDenominator : 0.0;
+        }
+    },
+    /**
+     * Cosine coefficient, ab / sqrt(aa * bb)
+     */
+    COSINE {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double calculate(double aDotProduct, double aQueryNorm, double aTargetNorm) {
+            double tmpDenominator = Math.sqrt(aQueryNorm * aTargetNorm);
+            return tmpDenominator > 0.0 ? aDotProduct / tmpDenominator : 0.0;
+        }
+    };
+    //
+    /**
+     * Calculates the similarity from the dot product and the squared norms of two fingerprints. The result does
+     * not decrease with the dot product, which {@link SimilaritySearch} relies on for its upper bounds.
+     *
+     * @param aDotProduct dot product of the fingerprints, the number of common bits for bit fingerprints.
+     * @param aQueryNorm squared norm of the first fingerprint, the bit count for bit fingerprints.
+     * @param aTargetNorm squared norm of the second fingerprint, the bit count for bit fingerprints.
+     * @return similarity
+     */
+    public abstract double calculate(double aDotProduct, double aQueryNorm, double aTargetNorm);
+}
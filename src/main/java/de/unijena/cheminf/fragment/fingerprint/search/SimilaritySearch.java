@@ -0,0 +1,936 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.search;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+import de.unijena.cheminf.fragment.fingerprint.SharedForkJoinPools;
+import de.unijena.cheminf.fragment.fingerprint.io.FingerprintType;
+
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory similarity search over a corpus of fragment fingerprints, supporting top-k and threshold queries with
+ * the coefficients of {@link SimilarityMetric}.
+ * <br>The corpus stores the populated positions (and, for count fingerprints, the frequencies) of all molecules in
+ * shared primitive arrays, so a molecule with a few dozen fragments takes a few hundred bytes regardless of the
+ * dictionary size, and the dot product with the query costs one lookup per populated position. Before the first
+ * query, the molecules are sorted by their squared norm, i.e. the bit count for bit fingerprints, and grouped into
+ * buckets of equal norm. Since a dot product can not exceed min(q, t) for bit fingerprints and sqrt(q * t) for
+ * count fingerprints with query norm q and target norm t, every bucket has an upper bound of the similarity
+ * (for the Tanimoto coefficient on bits, the Swamidass-Baldi bound min(q, t) / max(q, t)). Buckets whose bound is
+ * below the threshold, or below the k-th best similarity found so far, are skipped without calculating a single
+ * dot product. The scan is split into chunks of neighbouring norms that are processed best bound first, optionally
+ * by several threads sharing the current k-th best similarity.
+ * <br>Molecules are numbered consecutively from 0 in the order they are added. Adding is not thread-safe; once all
+ * molecules are added, queries can run concurrently.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class SimilaritySearch {
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Number of chunks created per thread so that the work can be balanced between the threads
+     */
+    private static final int SUB_RANGES_PER_THREAD = 8;
+    /**
+     * Minimum number of molecules of a chunk
+     */
+    private static final int MINIMUM_CHUNK_SIZE = 4096;
+    /**
+     * Tolerance added to the upper bounds so that rounding never prunes a molecule reaching the threshold
+     */
+    private static final double BOUND_TOLERANCE = 1.0E-9;
+    /**
+     * Order of the results, descending similarity, ascending molecule ID for equal similarities
+     */
+    private static final Comparator<SimilarityHit> RESULT_ORDER = Comparator.comparingDouble(SimilarityHit::getSimilarity).reversed()
+            .thenComparingInt(SimilarityHit::getMoleculeId);
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Dictionary of the key fragments
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Kind of fingerprints in the corpus
+     */
+    private final FingerprintType fingerprintType;
+    /**
+     * Dense frequencies of the fingerprint being added, reused
+     */
+    private final int[] scratchCounts;
+    /**
+     * Populated positions of the fingerprint being added, reused
+     */
+    private final int[] scratchPositions;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Start of the entries of each molecule in the entry arrays, one more than the number of molecules
+     */
+    private int[] offsets;
+    /**
+     * Populated positions of all molecules
+     */
+    private int[] positions;
+    /**
+     * Frequencies parallel to the positions, null for a corpus of bit fingerprints
+     */
+    private int[] counts;
+    /**
+     * Squared norm of each molecule
+     */
+    private long[] norms;
+    /**
+     * ID of the molecule at each index, the indices change when the corpus is sorted
+     */
+    private int[] moleculeIds;
+    /**
+     * Number of molecules
+     */
+    private int numberOfMolecules;
+    /**
+     * True if the molecules are sorted by norm and the buckets are up to date
+     */
+    private boolean isSorted;
+    /**
+     * Norm of each bucket
+     */
+    private long[] bucketNorms;
+    /**
+     * First index of each bucket, one more than the number of buckets
+     */
+    private int[] bucketStarts;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor of an empty corpus.
+     *
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @param aFingerprintType kind of fingerprints of the corpus. In a corpus of bit fingerprints, count
+     *                         fingerprints are stored as their populated positions; in a corpus of count fingerprints,
+     *                         bit fingerprints are stored with frequency 1.
+     * @throws NullPointerException is thrown if one of the arguments is null.
+     */
+    public SimilaritySearch(FragmentDictionary aFragmentDictionary, FingerprintType aFingerprintType) throws NullPointerException {
+        this.fragmentDictionary = Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        this.fingerprintType = Objects.requireNonNull(aFingerprintType, "aFingerprintType is null.");
+        this.scratchCounts = new int[aFragmentDictionary.size()];
+        this.scratchPositions = new int[aFragmentDictionary.size()];
+        this.offsets = new int[1025];
+        this.positions = new int[16384];
+        this.counts = aFingerprintType == FingerprintType.COUNT ? new int[16384] : null;
+        this.norms = new long[1024];
+        this.moleculeIds = new int[1024];
+        this.numberOfMolecules = 0;
+        this.isSorted = false;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Adds a molecule given as bit fingerprint.
+     *
+     * @param aBitFingerprint fingerprint of the molecule.
+     * @return ID of the molecule
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has bits set beyond the size of the dictionary.
+     */
+    public int addBitFingerprint(IBitFingerprint aBitFingerprint) throws NullPointerException, IllegalArgumentException {
+        BitSet tmpBitSet = this.toBitSet(aBitFingerprint);
+        int tmpLength = 0;
+        for (int i = tmpBitSet.nextSetBit(0); i >= 0; i = tmpBitSet.nextSetBit(i + 1)) {
+            this.scratchPositions[tmpLength++] = i;
+            this.scratchCounts[i] = 1;
+        }
+        return this.addScratchFingerprint(tmpLength);
+    }
+    //
+    /**
+     * Adds a molecule given as count fingerprint. Bins with frequency 0 are ignored, frequencies of duplicate bins
+     * are summed up.
+     *
+     * @param aCountFingerprint fingerprint of the molecule, its hashes must be positions in the dictionary.
+     * @return ID of the molecule
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has positions outside the dictionary or
+     * negative frequencies.
+     */
+    public int addCountFingerprint(ICountFingerprint aCountFingerprint) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aCountFingerprint, "The count fingerprint is null.");
+        if (aCountFingerprint instanceof CountFingerprint) {
+            // the populated bins are sorted and unique, so they are copied without scanning the whole dictionary
+            int[] tmpLength = new int[1];
+            try {
+                ((CountFingerprint) aCountFingerprint).forEachPopulatedBin((int aHash, int aCount) -> {
+                    this.checkBin(aHash, aCount);
+                    if (aCount != 0) {
+                        this.scratchPositions[tmpLength[0]++] = aHash;
+                        this.scratchCounts[aHash] = aCount;
+                    }
+                });
+            } catch (IllegalArgumentException anException) {
+                for (int i = 0; i < tmpLength[0]; i++) {
+                    this.scratchCounts[this.scratchPositions[i]] = 0;
+                }
+                throw anException;
+            }
+            return this.addScratchFingerprint(tmpLength[0]);
+        }
+        int[] tmpQueryCounts = this.toCountArray(aCountFingerprint);
+        int tmpLength = 0;
+        for (int i = 0; i < tmpQueryCounts.length; i++) {
+            if (tmpQueryCounts[i] != 0) {
+                this.scratchPositions[tmpLength++] = i;
+                this.scratchCounts[i] = tmpQueryCounts[i];
+            }
+        }
+        return this.addScratchFingerprint(tmpLength);
+    }
+    //
+    /**
+     * Returns the aK molecules most similar to the given bit fingerprint, ordered by descending similarity and,
+     * for equal similarities, by ascending molecule ID.
+     *
+     * @param aQuery query fingerprint.
+     * @param aMetric similarity coefficient.
+     * @param aK maximum number of results.
+     * @param aParallelism number of threads to use, 1 for the calling thread only.
+     * @return list of at most aK hits
+     * @throws NullPointerException is thrown if the query or the metric is null.
+     * @throws IllegalArgumentException is thrown if the query has bits set beyond the size of the dictionary,
+     * aK or the parallelism is smaller than 1.
+     */
+    public List<SimilarityHit> searchTopK(IBitFingerprint aQuery, SimilarityMetric aMetric, int aK, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return this.searchTopK(this.toQuery(aQuery), aMetric, aK, aParallelism);
+    }
+    //
+    /**
+     * Returns the aK molecules most similar to the given count fingerprint, ordered by descending similarity and,
+     * for equal similarities, by ascending molecule ID.
+     *
+     * @param aQuery query fingerprint.
+     * @param aMetric similarity coefficient.
+     * @param aK maximum number of results.
+     * @param aParallelism number of threads to use, 1 for the calling thread only.
+     * @return list of at most aK hits
+     * @throws NullPointerException is thrown if the query or the metric is null.
+     * @throws IllegalArgumentException is thrown if the query has positions outside the dictionary or negative
+     * frequencies, aK or the parallelism is smaller than 1.
+     */
+    public List<SimilarityHit> searchTopK(ICountFingerprint aQuery, SimilarityMetric aMetric, int aK, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return this.searchTopK(this.toQuery(aQuery), aMetric, aK, aParallelism);
+    }
+    //
+    /**
+     * Returns all molecules whose similarity to the given bit fingerprint is at least aThreshold, ordered by
+     * descending similarity and, for equal similarities, by ascending molecule ID.
+     *
+     * @param aQuery query fingerprint.
+     * @param aMetric similarity coefficient.
+     * @param aThreshold minimum similarity.
+     * @param aParallelism number of threads to use, 1 for the calling thread only.
+     * @return list of hits
+     * @throws NullPointerException is thrown if the query or the metric is null.
+     * @throws IllegalArgumentException is thrown if the query has bits set beyond the size of the dictionary,
+     * the threshold is NaN or the parallelism is smaller than 1.
+     */
+    public List<SimilarityHit> searchThreshold(IBitFingerprint aQuery, SimilarityMetric aMetric, double aThreshold, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return this.searchThreshold(this.toQuery(aQuery), aMetric, aThreshold, aParallelism);
+    }
+    //
+    /**
+     * Returns all molecules whose similarity to the given count fingerprint is at least aThreshold, ordered by
+     * descending similarity and, for equal similarities, by ascending molecule ID.
+     *
+     * @param aQuery query fingerprint.
+     * @param aMetric similarity coefficient.
+     * @param aThreshold minimum similarity.
+     * @param aParallelism number of threads to use, 1 for the calling thread only.
+     * @return list of hits
+     * @throws NullPointerException is thrown if the query or the metric is null.
+     * @throws IllegalArgumentException is thrown if the query has positions outside the dictionary or negative
+     * frequencies, the threshold is NaN or the parallelism is smaller than 1.
+     */
+    public List<SimilarityHit> searchThreshold(ICountFingerprint aQuery, SimilarityMetric aMetric, double aThreshold, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        return this.searchThreshold(this.toQuery(aQuery), aMetric, aThreshold, aParallelism);
+    }
+    //
+    /**
+     * Returns the number of molecules in the corpus.
+     *
+     * @return int
+     */
+    public int getNumberOfMolecules() {
+        return this.numberOfMolecules;
+    }
+    //
+    /**
+     * Returns the kind of fingerprints of the corpus.
+     *
+     * @return FingerprintType
+     */
+    public FingerprintType getFingerprintType() {
+        return this.fingerprintType;
+    }
+    //
+    /**
+     * Returns the dictionary of the key fragments.
+     *
+     * @return FragmentDictionary
+     */
+    public FragmentDictionary getFragmentDictionary() {
+        return this.fragmentDictionary;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Appends the fingerprint in the scratch arrays to the corpus and clears the scratch arrays.
+     *
+     * @param aLength number of populated positions.
+     * @return ID of the molecule
+     * @throws IllegalStateException is thrown if the corpus is full.
+     */
+    private int addScratchFingerprint(int aLength) throws IllegalStateException {
+        int tmpStart = this.offsets[this.numberOfMolecules];
+        if (this.numberOfMolecules == Integer.MAX_VALUE - 1 || tmpStart > Integer.MAX_VALUE - aLength) {
+            throw new IllegalStateException("The corpus can not take more molecules.");
+        }
+        if (this.numberOfMolecules + 1 == this.offsets.length) {
+            int tmpNewLength = (int) Math.min(Integer.MAX_VALUE, this.offsets.length * 3L / 2L + 1L);
+            this.offsets = Arrays.copyOf(this.offsets, tmpNewLength);
+            this.norms = Arrays.copyOf(this.norms, tmpNewLength);
+            this.moleculeIds = Arrays.copyOf(this.moleculeIds, tmpNewLength);
+        }
+        if (tmpStart + aLength > this.positions.length) {
+            int tmpNewLength = (int) Math.min(Integer.MAX_VALUE, Math.max(this.positions.length * 3L / 2L, (long) tmpStart + aLength));
+            this.positions = Arrays.copyOf(this.positions, tmpNewLength);
+            if (this.counts != null) {
+                this.counts = Arrays.copyOf(this.counts, tmpNewLength);
+            }
+        }
+        long tmpNorm = 0L;
+        for (int i = 0; i < aLength; i++) {
+            int tmpPosition = this.scratchPositions[i];
+            int tmpCount = this.counts == null ? 1 : this.scratchCounts[tmpPosition];
+            this.positions[tmpStart + i] = tmpPosition;
+            if (this.counts != null) {
+                this.counts[tmpStart + i] = tmpCount;
+            }
+            tmpNorm += (long) tmpCount * tmpCount;
+            this.scratchCounts[tmpPosition] = 0;
+        }
+        int tmpMoleculeId = this.numberOfMolecules;
+        this.norms[tmpMoleculeId] = tmpNorm;
+        this.moleculeIds[tmpMoleculeId] = tmpMoleculeId;
+        this.offsets[tmpMoleculeId + 1] = tmpStart + aLength;
+        this.numberOfMolecules++;
+        this.isSorted = false;
+        return tmpMoleculeId;
+    }
+    //
+    /**
+     * Sorts the molecules by norm and groups them into buckets of equal norm, if molecules were added since the
+     * last call.
+     */
+    private synchronized void ensureSorted() {
+        if (this.isSorted) {
+            return;
+        }
+        int tmpNumberOfMolecules = this.numberOfMolecules;
+        int[] tmpOrder = new int[tmpNumberOfMolecules];
+        long tmpMaximumNorm = 0L;
+        for (int i = 0; i < tmpNumberOfMolecules; i++) {
+            tmpMaximumNorm = Math.max(tmpMaximumNorm, this.norms[i]);
+        }
+        if (tmpMaximumNorm <= Integer.MAX_VALUE) {
+            // norm in the upper half, index in the lower half, so sorting orders by norm and keeps the order of equal norms
+            long[] tmpKeys = new long[tmpNumberOfMolecules];
+            for (int i = 0; i < tmpNumberOfMolecules; i++) {
+                tmpKeys[i] = (this.norms[i] << 32) | i;
+            }
+            Arrays.sort(tmpKeys);
+            for (int i = 0; i < tmpNumberOfMolecules; i++) {
+                tmpOrder[i] = (int) tmpKeys[i];
+            }
+        } else {
+            Integer[] tmpBoxedOrder = new Integer[tmpNumberOfMolecules];
+            for (int i = 0; i < tmpNumberOfMolecules; i++) {
+                tmpBoxedOrder[i] = i;
+            }
+            long[] tmpNorms = this.norms;
+            Arrays.sort(tmpBoxedOrder, Comparator.comparingLong((Integer anIndex) -> tmpNorms[anIndex]));
+            for (int i = 0; i < tmpNumberOfMolecules; i++) {
+                tmpOrder[i] = tmpBoxedOrder[i];
+            }
+        }
+        int[] tmpOffsets = new int[tmpNumberOfMolecules + 1];
+        int[] tmpPositions = new int[this.offsets[tmpNumberOfMolecules]];
+        int[] tmpCounts = this.counts == null ? null : new int[tmpPositions.length];
+        long[] tmpSortedNorms = new long[tmpNumberOfMolecules];
+        int[] tmpMoleculeIds = new int[tmpNumberOfMolecules];
+        List<Integer> tmpBucketStartList = new ArrayList<>();
+        for (int i = 0; i < tmpNumberOfMolecules; i++) {
+            int tmpIndex = tmpOrder[i];
+            int tmpStart = this.offsets[tmpIndex];
+            int tmpLength = this.offsets[tmpIndex + 1] - tmpStart;
+            System.arraycopy(this.positions, tmpStart, tmpPositions, tmpOffsets[i], tmpLength);
+            if (tmpCounts != null) {
+                System.arraycopy(this.counts, tmpStart, tmpCounts, tmpOffsets[i], tmpLength);
+            }
+            tmpOffsets[i + 1] = tmpOffsets[i] + tmpLength;
+            tmpSortedNorms[i] = this.norms[tmpIndex];
+            tmpMoleculeIds[i] = this.moleculeIds[tmpIndex];
+            if (i == 0 || tmpSortedNorms[i] != tmpSortedNorms[i - 1]) {
+                tmpBucketStartList.add(i);
+            }
+        }
+        this.offsets = tmpOffsets;
+        this.positions = tmpPositions;
+        this.counts = tmpCounts;
+        this.norms = tmpSortedNorms;
+        this.moleculeIds = tmpMoleculeIds;
+        this.bucketNorms = new long[tmpBucketStartList.size()];
+        this.bucketStarts = new int[tmpBucketStartList.size() + 1];
+        for (int i = 0; i < tmpBucketStartList.size(); i++) {
+            this.bucketStarts[i] = tmpBucketStartList.get(i);
+            this.bucketNorms[i] = tmpSortedNorms[this.bucketStarts[i]];
+        }
+        this.bucketStarts[tmpBucketStartList.size()] = tmpNumberOfMolecules;
+        this.isSorted = true;
+    }
+    //
+    /**
+     * Runs a top-k search.
+     *
+     * @param aQuery prepared query.
+     * @param aMetric similarity coefficient.
+     * @param aK maximum number of results.
+     * @param aParallelism number of threads to use.
+     * @return list of at most aK hits
+     * @throws NullPointerException is thrown if the metric is null.
+     * @throws IllegalArgumentException is thrown if aK or the parallelism is smaller than 1.
+     */
+    private List<SimilarityHit> searchTopK(Query aQuery, SimilarityMetric aMetric, int aK, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aMetric, "aMetric is null.");
+        if (aK < 1) {
+            throw new IllegalArgumentException("aK must be at least 1.");
+        }
+        AtomicLong tmpSharedThreshold = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+        List<SimilarityHit> tmpHits = this.scan(aQuery, aMetric, Double.NEGATIVE_INFINITY, aParallelism, () -> new TopKCollector(aK, tmpSharedThreshold));
+        return tmpHits.size() > aK ? new ArrayList<>(tmpHits.subList(0, aK)) : tmpHits;
+    }
+    //
+    /**
+     * Runs a threshold search.
+     *
+     * @param aQuery prepared query.
+     * @param aMetric similarity coefficient.
+     * @param aThreshold minimum similarity.
+     * @param aParallelism number of threads to use.
+     * @return list of hits
+     * @throws NullPointerException is thrown if the metric is null.
+     * @throws IllegalArgumentException is thrown if the threshold is NaN or the parallelism is smaller than 1.
+     */
+    private List<SimilarityHit> searchThreshold(Query aQuery, SimilarityMetric aMetric, double aThreshold, int aParallelism) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aMetric, "aMetric is null.");
+        if (Double.isNaN(aThreshold)) {
+            throw new IllegalArgumentException("aThreshold is NaN.");
+        }
+        return this.scan(aQuery, aMetric, aThreshold, aParallelism, () -> new ThresholdCollector(aThreshold));
+    }
+    //
+    /**
+     * Splits the sorted corpus into chunks, skips the chunks whose bound is below the threshold and scans the others
+     * best bound first, on the calling thread or in the pool returned by {@link SharedForkJoinPools#getPool(int)}.
+     *
+     * @param aQuery prepared query.
+     * @param aMetric similarity coefficient.
+     * @param aThreshold fixed minimum similarity of the search.
+     * @param aParallelism number of threads to use.
+     * @param aCollectorFactory creates the collector of a chunk.
+     * @return the collected hits in result order
+     * @throws IllegalArgumentException is thrown if the parallelism is smaller than 1.
+     */
+    private List<SimilarityHit> scan(Query aQuery, SimilarityMetric aMetric, double aThreshold, int aParallelism,
+                                     Supplier<HitCollector> aCollectorFactory) throws IllegalArgumentException {
+        if (aParallelism < 1) {
+            throw new IllegalArgumentException("aParallelism must be at least 1.");
+        }
+        this.ensureSorted();
+        int tmpNumberOfMolecules = this.bucketStarts[this.bucketStarts.length - 1];
+        int tmpChunkSize = Math.max(SimilaritySearch.MINIMUM_CHUNK_SIZE, tmpNumberOfMolecules / (aParallelism * SimilaritySearch.SUB_RANGES_PER_THREAD));
+        List<long[]> tmpChunks = new ArrayList<>();
+        for (int tmpStart = 0; tmpStart < tmpNumberOfMolecules; tmpStart += tmpChunkSize) {
+            int tmpEnd = (int) Math.min(tmpNumberOfMolecules, (long) tmpStart + tmpChunkSize);
+            // the bound is largest for the norm closest to the query norm
+            long tmpClosestNorm = Math.max(this.norms[tmpStart], Math.min(this.norms[tmpEnd - 1], aQuery.norm));
+            double tmpBound = this.getUpperBound(aQuery, aMetric, tmpClosestNorm);
+            if (tmpBound + SimilaritySearch.BOUND_TOLERANCE >= aThreshold) {
+                tmpChunks.add(new long[] {Double.doubleToLongBits(tmpBound), tmpStart, tmpEnd});
+            }
+        }
+        tmpChunks.sort(Comparator.comparingDouble((long[] aChunk) -> Double.longBitsToDouble(aChunk[0])).reversed());
+        List<SimilarityHit> tmpHits = new ArrayList<>();
+        if (aParallelism == 1 || tmpChunks.size() < 2) {
+            HitCollector tmpCollector = aCollectorFactory.get();
+            for (long[] tmpChunk : tmpChunks) {
+                this.scanChunk(aQuery, aMetric, (int) tmpChunk[1], (int) tmpChunk[2], tmpCollector);
+            }
+            tmpCollector.addHitsTo(tmpHits);
+        } else {
+            List<Callable<HitCollector>> tmpTasks = new ArrayList<>(tmpChunks.size());
+            for (long[] tmpChunk : tmpChunks) {
+                tmpTasks.add(() -> {
+                    HitCollector tmpCollector = aCollectorFactory.get();
+                    this.scanChunk(aQuery, aMetric, (int) tmpChunk[1], (int) tmpChunk[2], tmpCollector);
+                    return tmpCollector;
+                });
+            }
+            ForkJoinPool tmpPool = SharedForkJoinPools.getPool(aParallelism);
+            try {
+                for (Future<HitCollector> tmpFuture : tmpPool.invokeAll(tmpTasks)) {
+                    tmpFuture.get().addHitsTo(tmpHits);
+                }
+            } catch (InterruptedException anException) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("The search was interrupted.", anException);
+            } catch (ExecutionException anException) {
+                if (anException.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) anException.getCause();
+                }
+                throw new IllegalStateException(anException.getCause());
+            }
+        }
+        tmpHits.sort(SimilaritySearch.RESULT_ORDER);
+        return tmpHits;
+    }
+    //
+    /**
+     * Scans the molecules of a chunk bucket by bucket, starting at the bucket closest to the query norm and moving
+     * outwards to the side with the higher bound. Since the bound decreases with the distance to the query norm,
+     * the scan ends as soon as the bounds on both sides are below the current threshold of the collector.
+     *
+     * @param aQuery prepared query.
+     * @param aMetric similarity coefficient.
+     * @param aStart first index of the chunk.
+     * @param anEnd index after the last one of the chunk.
+     * @param aCollector receives the similarities.
+     */
+    private void scanChunk(Query aQuery, SimilarityMetric aMetric, int aStart, int anEnd, HitCollector aCollector) {
+        int tmpFirstBucket = this.getBucketIndex(aStart);
+        int tmpLastBucket = this.getBucketIndex(anEnd - 1);
+        int tmpUpperBucket = Arrays.binarySearch(this.bucketNorms, tmpFirstBucket, tmpLastBucket + 1, aQuery.norm);
+        if (tmpUpperBucket < 0) {
+            tmpUpperBucket = -tmpUpperBucket - 1;
+        }
+        int tmpLowerBucket = tmpUpperBucket - 1;
+        double tmpUpperBound = tmpUpperBucket <= tmpLastBucket ? this.getUpperBound(aQuery, aMetric, this.bucketNorms[tmpUpperBucket]) : Double.NEGATIVE_INFINITY;
+        double tmpLowerBound = tmpLowerBucket >= tmpFirstBucket ? this.getUpperBound(aQuery, aMetric, this.bucketNorms[tmpLowerBucket]) : Double.NEGATIVE_INFINITY;
+        while (tmpUpperBucket <= tmpLastBucket || tmpLowerBucket >= tmpFirstBucket) {
+            boolean tmpIsUpper = tmpUpperBound >= tmpLowerBound;
+            if (Math.max(tmpUpperBound, tmpLowerBound) + SimilaritySearch.BOUND_TOLERANCE < aCollector.getThreshold()) {
+                return;
+            }
+            int tmpBucket = tmpIsUpper ? tmpUpperBucket : tmpLowerBucket;
+            long tmpTargetNorm = this.bucketNorms[tmpBucket];
+            int tmpEnd = Math.min(anEnd, this.bucketStarts[tmpBucket + 1]);
+            for (int i = Math.max(aStart, this.bucketStarts[tmpBucket]); i < tmpEnd; i++) {
+                aCollector.offer(this.moleculeIds[i], aMetric.calculate(this.getDotProduct(aQuery, i), aQuery.norm, tmpTargetNorm));
+            }
+            if (tmpIsUpper) {
+                tmpUpperBucket++;
+                tmpUpperBound = tmpUpperBucket <= tmpLastBucket ? this.getUpperBound(aQuery, aMetric, this.bucketNorms[tmpUpperBucket]) : Double.NEGATIVE_INFINITY;
+            } else {
+                tmpLowerBucket--;
+                tmpLowerBound = tmpLowerBucket >= tmpFirstBucket ? this.getUpperBound(aQuery, aMetric, this.bucketNorms[tmpLowerBucket]) : Double.NEGATIVE_INFINITY;
+            }
+        }
+    }
+    //
+    /**
+     * Returns the index of the bucket containing the molecule at the given index.
+     *
+     * @param anIndex index of the molecule in the sorted corpus.
+     * @return int
+     */
+    private int getBucketIndex(int anIndex) {
+        int tmpBucket = Arrays.binarySearch(this.bucketStarts, anIndex);
+        return tmpBucket >= 0 ? tmpBucket : -tmpBucket - 2;
+    }
+    //
+    /**
+     * Returns the dot product of the query and the molecule at the given index.
+     *
+     * @param aQuery prepared query.
+     * @param anIndex index of the molecule in the sorted corpus.
+     * @return long
+     */
+    private long getDotProduct(Query aQuery, int anIndex) {
+        long tmpDotProduct = 0L;
+        int tmpEnd = this.offsets[anIndex + 1];
+        if (this.counts == null) {
+            long[] tmpQueryWords = aQuery.words;
+            for (int i = this.offsets[anIndex]; i < tmpEnd; i++) {
+                int tmpPosition = this.positions[i];
+                tmpDotProduct += (tmpQueryWords[tmpPosition >>> 6] >>> tmpPosition) & 1L;
+            }
+        } else {
+            int[] tmpQueryCounts = aQuery.counts;
+            for (int i = this.offsets[anIndex]; i < tmpEnd; i++) {
+                tmpDotProduct += (long) tmpQueryCounts[this.positions[i]] * this.counts[i];
+            }
+        }
+        return tmpDotProduct;
+    }
+    //
+    /**
+     * Returns the largest possible similarity of the query to a molecule with the given norm.
+     *
+     * @param aQuery prepared query.
+     * @param aMetric similarity coefficient.
+     * @param aTargetNorm squared norm of the molecule.
+     * @return double
+     */
+    private double getUpperBound(Query aQuery, SimilarityMetric aMetric, long aTargetNorm) {
+        double tmpMaximumDotProduct = this.counts == null
+                ? Math.min(aQuery.norm, aTargetNorm)
+                : Math.sqrt((double) aQuery.norm * aTargetNorm);
+        return aMetric.calculate(tmpMaximumDotProduct, aQuery.norm, aTargetNorm);
+    }
+    //
+    /**
+     * Converts a bit fingerprint into a query for the corpus.
+     *
+     * @param aBitFingerprint fingerprint.
+     * @return Query
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has bits set beyond the size of the dictionary.
+     */
+    private Query toQuery(IBitFingerprint aBitFingerprint) throws NullPointerException, IllegalArgumentException {
+        BitSet tmpBitSet = this.toBitSet(aBitFingerprint);
+        if (this.fingerprintType == FingerprintType.BIT) {
+            return new Query(Arrays.copyOf(tmpBitSet.toLongArray(), (this.fragmentDictionary.size() + 63) >>> 6), null, tmpBitSet.cardinality());
+        }
+        int[] tmpCounts = new int[this.fragmentDictionary.size()];
+        for (int i = tmpBitSet.nextSetBit(0); i >= 0; i = tmpBitSet.nextSetBit(i + 1)) {
+            tmpCounts[i] = 1;
+        }
+        return new Query(null, tmpCounts, tmpBitSet.cardinality());
+    }
+    //
+    /**
+     * Converts a count fingerprint into a query for the corpus.
+     *
+     * @param aCountFingerprint fingerprint.
+     * @return Query
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has positions outside the dictionary or
+     * negative frequencies.
+     */
+    private Query toQuery(ICountFingerprint aCountFingerprint) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aCountFingerprint, "The count fingerprint is null.");
+        if (aCountFingerprint instanceof CountFingerprint) {
+            long[] tmpSparseNorm = new long[1];
+            if (this.fingerprintType == FingerprintType.BIT) {
+                long[] tmpWords = new long[(this.fragmentDictionary.size() + 63) >>> 6];
+                ((CountFingerprint) aCountFingerprint).forEachPopulatedBin((int aHash, int aCount) -> {
+                    this.checkBin(aHash, aCount);
+                    if (aCount != 0) {
+                        tmpWords[aHash >>> 6] |= 1L << aHash;
+                        tmpSparseNorm[0]++;
+                    }
+                });
+                return new Query(tmpWords, null, tmpSparseNorm[0]);
+            }
+            int[] tmpSparseCounts = new int[this.fragmentDictionary.size()];
+            ((CountFingerprint) aCountFingerprint).forEachPopulatedBin((int aHash, int aCount) -> {
+                this.checkBin(aHash, aCount);
+                tmpSparseCounts[aHash] = aCount;
+                tmpSparseNorm[0] += (long) aCount * aCount;
+            });
+            return new Query(null, tmpSparseCounts, tmpSparseNorm[0]);
+        }
+        int[] tmpCounts = this.toCountArray(aCountFingerprint);
+        long tmpNorm = 0L;
+        if (this.fingerprintType == FingerprintType.BIT) {
+            long[] tmpWords = new long[(this.fragmentDictionary.size() + 63) >>> 6];
+            for (int i = 0; i < tmpCounts.length; i++) {
+                if (tmpCounts[i] != 0) {
+                    tmpWords[i >>> 6] |= 1L << i;
+                    tmpNorm++;
+                }
+            }
+            return new Query(tmpWords, null, tmpNorm);
+        }
+        for (int tmpCount : tmpCounts) {
+            tmpNorm += (long) tmpCount * tmpCount;
+        }
+        return new Query(null, tmpCounts, tmpNorm);
+    }
+    //
+    /**
+     * Returns the bits of a bit fingerprint after checking them against the dictionary.
+     *
+     * @param aBitFingerprint fingerprint.
+     * @return BitSet
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has bits set beyond the size of the dictionary.
+     */
+    private BitSet toBitSet(IBitFingerprint aBitFingerprint) throws NullPointerException, IllegalArgumentException {
+        BitSet tmpBitSet = Objects.requireNonNull(aBitFingerprint, "The bit fingerprint is null.").asBitSet();
+        if (tmpBitSet.length() > this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("The bit fingerprint has bits set beyond the size of the dictionary.");
+        }
+        return tmpBitSet;
+    }
+    //
+    /**
+     * Returns the dense frequencies of a count fingerprint, summing up duplicate bins. This is the fallback for
+     * ICountFingerprint implementations other than {@link CountFingerprint}, whose bins can only be accessed by index.
+     *
+     * @param aCountFingerprint fingerprint, its hashes must be positions in the dictionary.
+     * @return new int array of the size of the dictionary
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has positions outside the dictionary or
+     * negative frequencies.
+     */
+    private int[] toCountArray(ICountFingerprint aCountFingerprint) throws NullPointerException, IllegalArgumentException {
+        int[] tmpCounts = new int[this.fragmentDictionary.size()];
+        for (int i = 0; i < aCountFingerprint.numOfPopulatedbins(); i++) {
+            int tmpPosition = aCountFingerprint.getHash(i);
+            int tmpCount = aCountFingerprint.getCount(i);
+            this.checkBin(tmpPosition, tmpCount);
+            tmpCounts[tmpPosition] += tmpCount;
+        }
+        return tmpCounts;
+    }
+    //
+    /**
+     * Checks a bin of a count fingerprint against the dictionary.
+     *
+     * @param aPosition hash of the bin, i.e. its position in the dictionary.
+     * @param aCount frequency of the bin.
+     * @throws IllegalArgumentException is thrown if the position is outside the dictionary or the frequency is
+     * negative.
+     */
+    private void checkBin(int aPosition, int aCount) throws IllegalArgumentException {
+        if (aPosition < 0 || aPosition >= this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("The count fingerprint has a position outside the dictionary: " + aPosition);
+        }
+        if (aCount < 0) {
+            throw new IllegalArgumentException("The count fingerprint has a negative frequency.");
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private classes" defaultstate="collapsed">
+    /**
+     * Query prepared for fast dot products with the corpus
+     */
+    private static final class Query {
+        /**
+         * Query bits, for a corpus of bit fingerprints
+         */
+        private final long[] words;
+        /**
+         * Dense query frequencies, for a corpus of count fingerprints
+         */
+        private final int[] counts;
+        /**
+         * Squared norm of the query
+         */
+        private final long norm;
+        /**
+         * Constructor.
+         *
+         * @param aWords query bits or null.
+         * @param aCounts query frequencies or null.
+         * @param aNorm squared norm.
+         */
+        private Query(long[] aWords, int[] aCounts, long aNorm) {
+            this.words = aWords;
+            this.counts = aCounts;
+            this.norm = aNorm;
+        }
+    }
+    //
+    /**
+     * Receives the similarities calculated during a scan
+     */
+    private interface HitCollector {
+        /**
+         * Returns the similarity a molecule must reach to be collected, molecules whose bound is below it are skipped.
+         *
+         * @return double
+         */
+        double getThreshold();
+        /**
+         * Offers the similarity of a molecule.
+         *
+         * @param aMoleculeId ID of the molecule.
+         * @param aSimilarity similarity to the query.
+         */
+        void offer(int aMoleculeId, double aSimilarity);
+        /**
+         * Adds the collected hits to the given list.
+         *
+         * @param aList list to add to.
+         */
+        void addHitsTo(List<SimilarityHit> aList);
+    }
+    //
+    /**
+     * Collects the molecules reaching a fixed threshold
+     */
+    private static final class ThresholdCollector implements HitCollector {
+        /**
+         * Minimum similarity
+         */
+        private final double threshold;
+        /**
+         * Collected hits
+         */
+        private final List<SimilarityHit> hits;
+        /**
+         * Constructor.
+         *
+         * @param aThreshold minimum similarity.
+         */
+        private ThresholdCollector(double aThreshold) {
+            this.threshold = aThreshold;
+            this.hits = new ArrayList<>();
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getThreshold() {
+            return this.threshold;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void offer(int aMoleculeId, double aSimilarity) {
+            if (aSimilarity >= this.threshold) {
+                this.hits.add(new SimilarityHit(aMoleculeId, aSimilarity));
+            }
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void addHitsTo(List<SimilarityHit> aList) {
+            aList.addAll(this.hits);
+        }
+    }
+    //
+    /**
+     * Collects the k best molecules of a chunk in a heap and publishes its k-th best similarity to the other chunks
+     * of the search, since no molecule below the k-th best similarity of any chunk can be part of the result
+     */
+    private static final class TopKCollector implements HitCollector {
+        /**
+         * Maximum number of hits
+         */
+        private final int k;
+        /**
+         * Heap of the hits, the worst hit on top
+         */
+        private final PriorityQueue<SimilarityHit> heap;
+        /**
+         * Largest k-th best similarity of all chunks, as double bits
+         */
+        private final AtomicLong sharedThreshold;
+        /**
+         * Constructor.
+         *
+         * @param aK maximum number of hits.
+         * @param aSharedThreshold largest k-th best similarity of all chunks, as double bits.
+         */
+        private TopKCollector(int aK, AtomicLong aSharedThreshold) {
+            this.k = aK;
+            this.heap = new PriorityQueue<>(Math.min(aK, 1024) + 1, SimilaritySearch.RESULT_ORDER.reversed());
+            this.sharedThreshold = aSharedThreshold;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getThreshold() {
+            return Double.longBitsToDouble(this.sharedThreshold.get());
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void offer(int aMoleculeId, double aSimilarity) {
+            if (this.heap.size() == this.k) {
+                SimilarityHit tmpWorst = this.heap.peek();
+                if (aSimilarity < tmpWorst.getSimilarity() || (aSimilarity == tmpWorst.getSimilarity() && aMoleculeId > tmpWorst.getMoleculeId())) {
+                    return;
+                }
+                this.heap.poll();
+            }
+            this.heap.add(new SimilarityHit(aMoleculeId, aSimilarity));
+            if (this.heap.size() == this.k) {
+                double tmpKthSimilarity = this.heap.peek().getSimilarity();
+                this.sharedThreshold.accumulateAndGet(Double.doubleToLongBits(tmpKthSimilarity), (long aFirst, long aSecond) ->
+                        Double.longBitsToDouble(aFirst) >= Double.longBitsToDouble(aSecond) ? aFirst : aSecond);
+            }
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void addHitsTo(List<SimilarityHit> aList) {
+            aList.addAll(this.heap);
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,320 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint.store;
+
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+import de.unijena.cheminf.fragment.fingerprint.io.FingerprintType;
+
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Off-heap store of bit fingerprints for libraries too large to keep as fingerprint objects on the heap. Every
+ * fingerprint is kept as ceil(size / 64) packed long words (bit i in bit (i mod 64) of word (i / 64)) in a column of
+ * direct buffers outside the Java heap, so millions of fingerprints cause neither per-object overhead nor garbage
+ * collection work. Fingerprints are numbered consecutively from 0 in the order they are added and are accessed
+ * through {@link BitFingerprintView}s, lightweight read-only views implementing {@link IBitFingerprint} that read
+ * the words directly from the store.
+ * <br>A store can be saved with {@link #save(Path)} and later mapped read-only into memory with
+ * {@link #open(Path, FragmentDictionary)}, the operating system then pages the fingerprints in on demand. The file
+ * does not contain the dictionary, it has to be supplied when opening.
+ * <br>The store is not thread-safe while fingerprints are added. Once it is complete, it can be read concurrently.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class BitFingerprintStore {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Dictionary of the key fragments
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Number of long words per fingerprint
+     */
+    private final int wordsPerFingerprint;
+    /**
+     * Packed words of all fingerprints
+     */
+    private final SegmentedBuffer words;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Number of fingerprints added so far, also the ID of the next fingerprint
+     */
+    private int numberOfFingerprints;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor of an empty store.
+     *
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    public BitFingerprintStore(FragmentDictionary aFragmentDictionary) throws NullPointerException {
+        this(aFragmentDictionary, SegmentedBuffer.DEFAULT_SEGMENT_SHIFT);
+    }
+    //
+    /**
+     * Constructor of an empty store with the given segment size, smaller segments are used by the tests.
+     *
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @param aSegmentShift binary logarithm of the segment size.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    BitFingerprintStore(FragmentDictionary aFragmentDictionary, int aSegmentShift) throws NullPointerException {
+        this(aFragmentDictionary, new SegmentedBuffer(aSegmentShift), 0);
+    }
+    //
+    /**
+     * Constructor of a store with the given column.
+     *
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @param aWords packed words of the fingerprints.
+     * @param aNumberOfFingerprints number of fingerprints in the column.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    private BitFingerprintStore(FragmentDictionary aFragmentDictionary, SegmentedBuffer aWords, int aNumberOfFingerprints)
+            throws NullPointerException {
+        this.fragmentDictionary = Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        this.wordsPerFingerprint = (aFragmentDictionary.size() + Long.SIZE - 1) / Long.SIZE;
+        this.words = aWords;
+        this.numberOfFingerprints = aNumberOfFingerprints;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static methods" defaultstate="collapsed">
+    /**
+     * Maps a store saved with {@link #save(Path)} read-only into memory. Fingerprints can not be added to the
+     * returned store.
+     *
+     * @param aPath file to map.
+     * @param aFragmentDictionary dictionary the saved fingerprints are based on.
+     * @return read-only store
+     * @throws NullPointerException is thrown if an argument is null.
+     * @throws IOException if the file can not be read or is not a bit fingerprint store based on a dictionary of
+     * the same size.
+     */
+    public static BitFingerprintStore open(Path aPath, FragmentDictionary aFragmentDictionary) throws NullPointerException, IOException {
+        return BitFingerprintStore.open(aPath, aFragmentDictionary, SegmentedBuffer.DEFAULT_SEGMENT_SHIFT);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private static methods" defaultstate="collapsed">
+    /**
+     * Maps a saved store read-only into memory with the given segment size.
+     *
+     * @param aPath file to map.
+     * @param aFragmentDictionary dictionary the saved fingerprints are based on.
+     * @param aSegmentShift binary logarithm of the segment size.
+     * @return read-only store
+     * @throws NullPointerException is thrown if an argument is null.
+     * @throws IOException if the file can not be read or does not match the dictionary.
+     */
+    static BitFingerprintStore open(Path aPath, FragmentDictionary aFragmentDictionary, int aSegmentShift) throws NullPointerException, IOException {
+        Objects.requireNonNull(aPath, "aPath is null.");
+        Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        FingerprintStoreFile.MappedStore tmpMappedStore = FingerprintStoreFile.map(aPath, FingerprintType.BIT,
+                aFragmentDictionary.size(), 1, aSegmentShift);
+        BitFingerprintStore tmpStore = new BitFingerprintStore(aFragmentDictionary, tmpMappedStore.columns[0],
+                tmpMappedStore.numberOfFingerprints);
+        if (tmpStore.words.size() != (long) tmpStore.numberOfFingerprints * tmpStore.wordsPerFingerprint * Long.BYTES) {
+            throw new IOException("The size of the words column of " + aPath + " does not match the number of fingerprints.");
+        }
+        return tmpStore;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Adds a fingerprint. Views of the same or another store with a dictionary of the same size are copied word by
+     * word.
+     *
+     * @param aBitFingerprint fingerprint to add.
+     * @return ID of the fingerprint
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has bits set beyond the size of the dictionary.
+     * @throws IllegalStateException is thrown if the store is read-only or full.
+     */
+    public int add(IBitFingerprint aBitFingerprint) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+        Objects.requireNonNull(aBitFingerprint, "aBitFingerprint is null.");
+        this.checkWritable();
+        if (aBitFingerprint instanceof BitFingerprintView tmpView
+                && tmpView.getStore().fragmentDictionary.size() == this.fragmentDictionary.size()) {
+            for (int i = 0; i < this.wordsPerFingerprint; i++) {
+                this.words.appendLong(tmpView.getStore().getWord(tmpView.getId(), i));
+            }
+            return this.numberOfFingerprints++;
+        }
+        BitSet tmpBitSet = aBitFingerprint.asBitSet();
+        if (tmpBitSet.length() > this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("aBitFingerprint has bits set beyond the size of the dictionary.");
+        }
+        long[] tmpWords = tmpBitSet.toLongArray();
+        for (int i = 0; i < this.wordsPerFingerprint; i++) {
+            this.words.appendLong(i < tmpWords.length ? tmpWords[i] : 0L);
+        }
+        return this.numberOfFingerprints++;
+    }
+    //
+    /**
+     * Adds a fingerprint given as bit array as returned by the fingerprinters, every entry different from 0 is a
+     * set bit.
+     *
+     * @param aBitArray bit array, not longer than the size of the dictionary.
+     * @return ID of the fingerprint
+     * @throws NullPointerException is thrown if the array is null.
+     * @throws IllegalArgumentException is thrown if the array is longer than the size of the dictionary.
+     * @throws IllegalStateException is thrown if the store is read-only or full.
+     */
+    public int addBitArray(int[] aBitArray) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+        Objects.requireNonNull(aBitArray, "aBitArray is null.");
+        if (aBitArray.length > this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("aBitArray is longer than the size of the dictionary.");
+        }
+        this.checkWritable();
+        for (int i = 0; i < this.wordsPerFingerprint; i++) {
+            long tmpWord = 0L;
+            int tmpEnd = Math.min(aBitArray.length, (i + 1) * Long.SIZE);
+            for (int j = i * Long.SIZE; j < tmpEnd; j++) {
+                if (aBitArray[j] != 0) {
+                    tmpWord |= 1L << j;
+                }
+            }
+            this.words.appendLong(tmpWord);
+        }
+        return this.numberOfFingerprints++;
+    }
+    //
+    /**
+     * Returns a view of the fingerprint with the given ID. Views are cheap to create and do not copy the
+     * fingerprint.
+     *
+     * @param anId ID of the fingerprint.
+     * @return read-only view of the fingerprint
+     * @throws IllegalArgumentException is thrown if no fingerprint with the given ID exists.
+     */
+    public BitFingerprintView get(int anId) throws IllegalArgumentException {
+        if (anId < 0 || anId >= this.numberOfFingerprints) {
+            throw new IllegalArgumentException("No fingerprint with ID " + anId + " in the store.");
+        }
+        return new BitFingerprintView(this, anId);
+    }
+    //
+    /**
+     * Saves the store to the given file, see {@link #open(Path, FragmentDictionary)}. An existing file is
+     * overwritten.
+     *
+     * @param aPath file to write.
+     * @throws NullPointerException is thrown if the path is null.
+     * @throws IOException if the file can not be written.
+     */
+    public void save(Path aPath) throws NullPointerException, IOException {
+        Objects.requireNonNull(aPath, "aPath is null.");
+        FingerprintStoreFile.write(aPath, FingerprintType.BIT, this.fragmentDictionary.size(), this.numberOfFingerprints,
+                this.words);
+    }
+    //
+    /**
+     * Returns the number of fingerprints in the store.
+     *
+     * @return number of fingerprints
+     */
+    public int getNumberOfFingerprints() {
+        return this.numberOfFingerprints;
+    }
+    //
+    /**
+     * Returns the dictionary of the key fragments the fingerprints are based on.
+     *
+     * @return fragment dictionary
+     */
+    public FragmentDictionary getFragmentDictionary() {
+        return this.fragmentDictionary;
+    }
+    //
+    /**
+     * Returns the number of off-heap bytes allocated or mapped by the store.
+     *
+     * @return size in bytes
+     */
+    public long getSizeInBytes() {
+        return this.words.getCapacity();
+    }
+    //
+    /**
+     * Returns whether the store is mapped read-only from a file.
+     *
+     * @return true if no fingerprints can be added.
+     */
+    public boolean isReadOnly() {
+        return this.words.isReadOnly();
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Returns a packed word of a fingerprint. The arguments are not checked.
+     *
+     * @param anId ID of the fingerprint.
+     * @param aWordIndex index of the word.
+     * @return word with the bits 64 * aWordIndex to 64 * aWordIndex + 63
+     */
+    long getWord(int anId, int aWordIndex) {
+        return this.words.getLong(((long) anId * this.wordsPerFingerprint + aWordIndex) * Long.BYTES);
+    }
+    //
+    /**
+     * Returns the number of long words per fingerprint.
+     *
+     * @return number of words
+     */
+    int getWordsPerFingerprint() {
+        return this.wordsPerFingerprint;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Checks that a fingerprint can be added.
+     *
+     * @throws IllegalStateException is thrown if the store is read-only or full.
+     */
+    private void checkWritable() throws IllegalStateException {
+        if (this.words.isReadOnly()) {
+            throw new IllegalStateException("The store is mapped read-only from a file.");
+        }
+        if (this.numberOfFingerprints == Integer.MAX_VALUE) {
+            throw new IllegalStateException("The store is full.");
+        }
+    }
+    //</editor-fold>
+}
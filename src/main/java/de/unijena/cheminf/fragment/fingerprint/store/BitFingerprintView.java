@@ -0,0 +1,208 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint.store;
+
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+
+import java.util.BitSet;
+
+/**
+ * Read-only view of a fingerprint in a {@link BitFingerprintStore}. The view only holds the store and the ID of the
+ * fingerprint, every access reads the packed words from the off-heap store. Methods changing the fingerprint are
+ * not supported. Views are not serializable since the store is not, use {@link #asBitSet()} to get a copy.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class BitFingerprintView implements IBitFingerprint {
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Version of the serialized form inherited from the CDK fingerprint interface
+     */
+    private static final long serialVersionUID = 1L;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Store holding the fingerprint
+     */
+    private final BitFingerprintStore store;
+    /**
+     * ID of the fingerprint in the store
+     */
+    private final int id;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor, the ID is checked by the store.
+     *
+     * @param aStore store holding the fingerprint.
+     * @param anId ID of the fingerprint in the store.
+     */
+    BitFingerprintView(BitFingerprintStore aStore, int anId) {
+        this.store = aStore;
+        this.id = anId;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Overridden public methods" defaultstate="collapsed">
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int cardinality() {
+        int tmpCardinality = 0;
+        for (int i = 0; i < this.store.getWordsPerFingerprint(); i++) {
+            tmpCardinality += Long.bitCount(this.store.getWord(this.id, i));
+        }
+        return tmpCardinality;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * The size is the size of the dictionary of the store.
+     */
+    @Override
+    public long size() {
+        return this.store.getFragmentDictionary().size();
+    }
+    //
+    /**
+     * UnsupportedOperationException. This method is not supported, views are read-only.
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException method is not supported
+     */
+    @Override
+    public void and(IBitFingerprint fingerprint) {
+        throw new UnsupportedOperationException();
+    }
+    //
+    /**
+     * UnsupportedOperationException. This method is not supported, views are read-only.
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException method is not supported
+     */
+    @Override
+    public void or(IBitFingerprint fingerprint) {
+        throw new UnsupportedOperationException();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * Bits beyond the size of the fingerprint are not set.
+     * @throws IndexOutOfBoundsException is thrown if the index is negative.
+     */
+    @Override
+    public boolean get(int index) throws IndexOutOfBoundsException {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("index < 0: " + index);
+        }
+        if (index >= this.size()) {
+            return false;
+        }
+        return (this.store.getWord(this.id, index >>> 6) & (1L << index)) != 0;
+    }
+    //
+    /**
+     * UnsupportedOperationException. This method is not supported, views are read-only.
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException method is not supported
+     */
+    @Override
+    public void set(int index, boolean value) {
+        throw new UnsupportedOperationException();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * The returned bit set is a copy of the fingerprint.
+     */
+    @Override
+    public BitSet asBitSet() {
+        return BitSet.valueOf(this.toLongArray());
+    }
+    //
+    /**
+     * UnsupportedOperationException. This method is not supported, views are read-only.
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException method is not supported
+     */
+    @Override
+    public void set(int i) {
+        throw new UnsupportedOperationException();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getSetbits() {
+        int[] tmpSetBits = new int[this.cardinality()];
+        int tmpIndex = 0;
+        for (int i = 0; i < this.store.getWordsPerFingerprint(); i++) {
+            long tmpWord = this.store.getWord(this.id, i);
+            while (tmpWord != 0) {
+                tmpSetBits[tmpIndex++] = i * Long.SIZE + Long.numberOfTrailingZeros(tmpWord);
+                tmpWord &= tmpWord - 1;
+            }
+        }
+        return tmpSetBits;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Returns the ID of the fingerprint in the store.
+     *
+     * @return fingerprint ID
+     */
+    public int getId() {
+        return this.id;
+    }
+    //
+    /**
+     * Returns the store holding the fingerprint.
+     *
+     * @return bit fingerprint store
+     */
+    public BitFingerprintStore getStore() {
+        return this.store;
+    }
+    //
+    /**
+     * Returns a copy of the packed words of the fingerprint, bit i is bit (i mod 64) of word (i / 64).
+     *
+     * @return long words
+     */
+    public long[] toLongArray() {
+        long[] tmpWords = new long[this.store.getWordsPerFingerprint()];
+        for (int i = 0; i < tmpWords.length; i++) {
+            tmpWords[i] = this.store.getWord(this.id, i);
+        }
+        return tmpWords;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,421 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint.store;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+import de.unijena.cheminf.fragment.fingerprint.io.FingerprintType;
+
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Off-heap store of count fingerprints for libraries too large to keep as fingerprint objects on the heap. The
+ * fingerprints are kept in compressed sparse row (CSR) layout in three columns of direct buffers outside the Java
+ * heap: the positions of the populated bins of all fingerprints in ascending order per fingerprint, their
+ * frequencies, and per fingerprint the offset of its first bin in the other two columns. Bins with frequency 0 are
+ * not stored. Fingerprints are numbered consecutively from 0 in the order they are added and are accessed through
+ * {@link CountFingerprintView}s, lightweight read-only views implementing {@link ICountFingerprint} that read the
+ * bins directly from the store.
+ * <br>A store can be saved with {@link #save(Path)} and later mapped read-only into memory with
+ * {@link #open(Path, FragmentDictionary)}, the operating system then pages the fingerprints in on demand. The file
+ * does not contain the dictionary, it has to be supplied when opening.
+ * <br>The store is not thread-safe while fingerprints are added. Once it is complete, it can be read concurrently.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class CountFingerprintStore {
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Dictionary of the key fragments
+     */
+    private final FragmentDictionary fragmentDictionary;
+    /**
+     * Offset of the first bin of every fingerprint, followed by the total number of bins
+     */
+    private final SegmentedBuffer offsets;
+    /**
+     * Positions of the populated bins
+     */
+    private final SegmentedBuffer positions;
+    /**
+     * Frequencies of the populated bins
+     */
+    private final SegmentedBuffer counts;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Number of fingerprints added so far, also the ID of the next fingerprint
+     */
+    private int numberOfFingerprints;
+    /**
+     * Total number of populated bins added so far
+     */
+    private long numberOfBins;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor of an empty store.
+     *
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    public CountFingerprintStore(FragmentDictionary aFragmentDictionary) throws NullPointerException {
+        this(aFragmentDictionary, SegmentedBuffer.DEFAULT_SEGMENT_SHIFT);
+    }
+    //
+    /**
+     * Constructor of an empty store with the given segment size, smaller segments are used by the tests.
+     *
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @param aSegmentShift binary logarithm of the segment size.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    CountFingerprintStore(FragmentDictionary aFragmentDictionary, int aSegmentShift) throws NullPointerException {
+        this(aFragmentDictionary, new SegmentedBuffer(aSegmentShift), new SegmentedBuffer(aSegmentShift),
+                new SegmentedBuffer(aSegmentShift), 0);
+        this.offsets.appendLong(0L);
+    }
+    //
+    /**
+     * Constructor of a store with the given columns.
+     *
+     * @param aFragmentDictionary dictionary of the key fragments the fingerprints are based on.
+     * @param anOffsets offsets column.
+     * @param aPositions positions column.
+     * @param aCounts counts column.
+     * @param aNumberOfFingerprints number of fingerprints in the columns.
+     * @throws NullPointerException is thrown if the dictionary is null.
+     */
+    private CountFingerprintStore(FragmentDictionary aFragmentDictionary, SegmentedBuffer anOffsets,
+                                  SegmentedBuffer aPositions, SegmentedBuffer aCounts, int aNumberOfFingerprints)
+            throws NullPointerException {
+        this.fragmentDictionary = Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        this.offsets = anOffsets;
+        this.positions = aPositions;
+        this.counts = aCounts;
+        this.numberOfFingerprints = aNumberOfFingerprints;
+        this.numberOfBins = aPositions.size() / Integer.BYTES;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public static methods" defaultstate="collapsed">
+    /**
+     * Maps a store saved with {@link #save(Path)} read-only into memory. Fingerprints can not be added to the
+     * returned store.
+     *
+     * @param aPath file to map.
+     * @param aFragmentDictionary dictionary the saved fingerprints are based on.
+     * @return read-only store
+     * @throws NullPointerException is thrown if an argument is null.
+     * @throws IOException if the file can not be read or is not a count fingerprint store based on a dictionary of
+     * the same size.
+     */
+    public static CountFingerprintStore open(Path aPath, FragmentDictionary aFragmentDictionary) throws NullPointerException, IOException {
+        return CountFingerprintStore.open(aPath, aFragmentDictionary, SegmentedBuffer.DEFAULT_SEGMENT_SHIFT);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private static methods" defaultstate="collapsed">
+    /**
+     * Maps a saved store read-only into memory with the given segment size.
+     *
+     * @param aPath file to map.
+     * @param aFragmentDictionary dictionary the saved fingerprints are based on.
+     * @param aSegmentShift binary logarithm of the segment size.
+     * @return read-only store
+     * @throws NullPointerException is thrown if an argument is null.
+     * @throws IOException if the file can not be read or does not match the dictionary.
+     */
+    static CountFingerprintStore open(Path aPath, FragmentDictionary aFragmentDictionary, int aSegmentShift) throws NullPointerException, IOException {
+        Objects.requireNonNull(aPath, "aPath is null.");
+        Objects.requireNonNull(aFragmentDictionary, "aFragmentDictionary is null.");
+        FingerprintStoreFile.MappedStore tmpMappedStore = FingerprintStoreFile.map(aPath, FingerprintType.COUNT,
+                aFragmentDictionary.size(), 3, aSegmentShift);
+        SegmentedBuffer[] tmpColumns = tmpMappedStore.columns;
+        if (tmpColumns[0].size() != ((long) tmpMappedStore.numberOfFingerprints + 1) * Long.BYTES
+                || tmpColumns[1].size() != tmpColumns[2].size() || tmpColumns[1].size() % Integer.BYTES != 0
+                || tmpColumns[0].getLong(tmpColumns[0].size() - Long.BYTES) != tmpColumns[1].size() / Integer.BYTES) {
+            throw new IOException("The sizes of the columns of " + aPath + " do not match the number of fingerprints.");
+        }
+        return new CountFingerprintStore(aFragmentDictionary, tmpColumns[0], tmpColumns[1], tmpColumns[2],
+                tmpMappedStore.numberOfFingerprints);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Adds a fingerprint. Bins with frequency 0 are not stored, frequencies of duplicate bins are summed up.
+     * {@link CountFingerprint}s and views of stores with a dictionary of at most the same size are copied without
+     * sorting.
+     *
+     * @param aCountFingerprint fingerprint to add, its hashes must be positions in the dictionary.
+     * @return ID of the fingerprint
+     * @throws NullPointerException is thrown if the fingerprint is null.
+     * @throws IllegalArgumentException is thrown if the fingerprint has positions outside the dictionary or
+     * negative frequencies, or if the sum of the frequencies of a bin exceeds the int range.
+     * @throws IllegalStateException is thrown if the store is read-only or full.
+     */
+    public int add(ICountFingerprint aCountFingerprint) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+        Objects.requireNonNull(aCountFingerprint, "aCountFingerprint is null.");
+        this.checkWritable();
+        if (aCountFingerprint.size() <= this.fragmentDictionary.size()) {
+            if (aCountFingerprint instanceof CountFingerprint tmpCountFingerprint) {
+                // checked before the first bin is appended, views only contain the checked frequencies of a store
+                tmpCountFingerprint.forEachPopulatedBin(CountFingerprintStore::checkCount);
+                tmpCountFingerprint.forEachPopulatedBin(this::appendBin);
+                return this.finishFingerprint();
+            }
+            if (aCountFingerprint instanceof CountFingerprintView tmpView) {
+                tmpView.forEachPopulatedBin(this::appendBin);
+                return this.finishFingerprint();
+            }
+        }
+        int tmpNumberOfBins = aCountFingerprint.numOfPopulatedbins();
+        long[] tmpBins = new long[tmpNumberOfBins];
+        for (int i = 0; i < tmpNumberOfBins; i++) {
+            int tmpHash = aCountFingerprint.getHash(i);
+            int tmpCount = aCountFingerprint.getCount(i);
+            if (tmpHash < 0 || tmpHash >= this.fragmentDictionary.size()) {
+                throw new IllegalArgumentException("aCountFingerprint contains a position that does not exist in the dictionary.");
+            }
+            if (tmpCount < 0) {
+                throw new IllegalArgumentException("aCountFingerprint contains a negative frequency.");
+            }
+            tmpBins[i] = ((long) tmpHash << 32) | tmpCount;
+        }
+        Arrays.sort(tmpBins);
+        int[] tmpPositions = new int[tmpNumberOfBins];
+        int[] tmpCounts = new int[tmpNumberOfBins];
+        int tmpLength = 0;
+        for (int i = 0; i < tmpNumberOfBins; i++) {
+            int tmpPosition = (int) (tmpBins[i] >>> 32);
+            int tmpCount = (int) tmpBins[i];
+            if (tmpLength > 0 && tmpPositions[tmpLength - 1] == tmpPosition) {
+                if (tmpCounts[tmpLength - 1] > Integer.MAX_VALUE - tmpCount) {
+                    throw new IllegalArgumentException("The summed frequency of position " + tmpPosition + " exceeds the int range.");
+                }
+                tmpCounts[tmpLength - 1] += tmpCount;
+            } else {
+                tmpPositions[tmpLength] = tmpPosition;
+                tmpCounts[tmpLength++] = tmpCount;
+            }
+        }
+        for (int i = 0; i < tmpLength; i++) {
+            this.appendBin(tmpPositions[i], tmpCounts[i]);
+        }
+        return this.finishFingerprint();
+    }
+    //
+    /**
+     * Adds a fingerprint given as dense count array as returned by the fingerprinters, the entry at index i is the
+     * frequency of the fragment at position i.
+     *
+     * @param aCountArray count array, not longer than the size of the dictionary.
+     * @return ID of the fingerprint
+     * @throws NullPointerException is thrown if the array is null.
+     * @throws IllegalArgumentException is thrown if the array is longer than the size of the dictionary or contains
+     * negative frequencies.
+     * @throws IllegalStateException is thrown if the store is read-only or full.
+     */
+    public int addCountArray(int[] aCountArray) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+        Objects.requireNonNull(aCountArray, "aCountArray is null.");
+        if (aCountArray.length > this.fragmentDictionary.size()) {
+            throw new IllegalArgumentException("aCountArray is longer than the size of the dictionary.");
+        }
+        for (int tmpCount : aCountArray) {
+            if (tmpCount < 0) {
+                throw new IllegalArgumentException("aCountArray contains a negative frequency.");
+            }
+        }
+        this.checkWritable();
+        for (int i = 0; i < aCountArray.length; i++) {
+            this.appendBin(i, aCountArray[i]);
+        }
+        return this.finishFingerprint();
+    }
+    //
+    /**
+     * Returns a view of the fingerprint with the given ID. Views are cheap to create and do not copy the
+     * fingerprint.
+     *
+     * @param anId ID of the fingerprint.
+     * @return read-only view of the fingerprint
+     * @throws IllegalArgumentException is thrown if no fingerprint with the given ID exists.
+     */
+    public CountFingerprintView get(int anId) throws IllegalArgumentException {
+        if (anId < 0 || anId >= this.numberOfFingerprints) {
+            throw new IllegalArgumentException("No fingerprint with ID " + anId + " in the store.");
+        }
+        long tmpStart = this.offsets.getLong((long) anId * Long.BYTES);
+        long tmpEnd = this.offsets.getLong((long) (anId + 1) * Long.BYTES);
+        return new CountFingerprintView(this, anId, tmpStart, (int) (tmpEnd - tmpStart));
+    }
+    //
+    /**
+     * Saves the store to the given file, see {@link #open(Path, FragmentDictionary)}. An existing file is
+     * overwritten.
+     *
+     * @param aPath file to write.
+     * @throws NullPointerException is thrown if the path is null.
+     * @throws IOException if the file can not be written.
+     */
+    public void save(Path aPath) throws NullPointerException, IOException {
+        Objects.requireNonNull(aPath, "aPath is null.");
+        FingerprintStoreFile.write(aPath, FingerprintType.COUNT, this.fragmentDictionary.size(), this.numberOfFingerprints,
+                this.offsets, this.positions, this.counts);
+    }
+    //
+    /**
+     * Returns the number of fingerprints in the store.
+     *
+     * @return number of fingerprints
+     */
+    public int getNumberOfFingerprints() {
+        return this.numberOfFingerprints;
+    }
+    //
+    /**
+     * Returns the total number of populated bins of all fingerprints in the store.
+     *
+     * @return number of populated bins
+     */
+    public long getNumberOfPopulatedBins() {
+        return this.numberOfBins;
+    }
+    //
+    /**
+     * Returns the dictionary of the key fragments the fingerprints are based on.
+     *
+     * @return fragment dictionary
+     */
+    public FragmentDictionary getFragmentDictionary() {
+        return this.fragmentDictionary;
+    }
+    //
+    /**
+     * Returns the number of off-heap bytes allocated or mapped by the store.
+     *
+     * @return size in bytes
+     */
+    public long getSizeInBytes() {
+        return this.offsets.getCapacity() + this.positions.getCapacity() + this.counts.getCapacity();
+    }
+    //
+    /**
+     * Returns whether the store is mapped read-only from a file.
+     *
+     * @return true if no fingerprints can be added.
+     */
+    public boolean isReadOnly() {
+        return this.offsets.isReadOnly();
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Returns the position of a populated bin. The index is not checked.
+     *
+     * @param aBinIndex index of the bin in the positions column.
+     * @return position of the bin
+     */
+    int getPosition(long aBinIndex) {
+        return this.positions.getInt(aBinIndex * Integer.BYTES);
+    }
+    //
+    /**
+     * Returns the frequency of a populated bin. The index is not checked.
+     *
+     * @param aBinIndex index of the bin in the counts column.
+     * @return frequency of the bin
+     */
+    int getCount(long aBinIndex) {
+        return this.counts.getInt(aBinIndex * Integer.BYTES);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Checks the frequency of a bin of a fingerprint to add.
+     *
+     * @param aPosition position of the bin.
+     * @param aCount frequency of the bin.
+     * @throws IllegalArgumentException is thrown if the frequency is negative.
+     */
+    private static void checkCount(int aPosition, int aCount) throws IllegalArgumentException {
+        if (aCount < 0) {
+            throw new IllegalArgumentException("aCountFingerprint contains a negative frequency.");
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Appends a bin of the fingerprint being added, bins with frequency 0 are skipped.
+     *
+     * @param aPosition position of the bin, greater than the position of the previous bin.
+     * @param aCount frequency of the bin.
+     */
+    private void appendBin(int aPosition, int aCount) {
+        if (aCount == 0) {
+            return;
+        }
+        this.positions.appendInt(aPosition);
+        this.counts.appendInt(aCount);
+        this.numberOfBins++;
+    }
+    //
+    /**
+     * Completes the fingerprint being added by appending the end offset of its bins.
+     *
+     * @return ID of the fingerprint
+     */
+    private int finishFingerprint() {
+        this.offsets.appendLong(this.numberOfBins);
+        return this.numberOfFingerprints++;
+    }
+    //
+    /**
+     * Checks that a fingerprint can be added.
+     *
+     * @throws IllegalStateException is thrown if the store is read-only or full.
+     */
+    private void checkWritable() throws IllegalStateException {
+        if (this.offsets.isReadOnly()) {
+            throw new IllegalStateException("The store is mapped read-only from a file.");
+        }
+        if (this.numberOfFingerprints == Integer.MAX_VALUE) {
+            throw new IllegalStateException("The store is full.");
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint.store;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+
+import java.util.Objects;
+
+/**
+ * Read-only view of a fingerprint in a {@link CountFingerprintStore}. The view only holds the store, the ID of the
+ * fingerprint and the range of its bins, every access reads the bins from the off-heap store. Like a
+ * {@link CountFingerprint} in sparse mode, only the populated bins are indexed, i.e. {@link #numOfPopulatedbins()}
+ * returns the number of bins with a frequency different from 0 and {@link #getHash(int)} the position of the bin
+ * with the given index. Merging is not supported. Views are not serializable since the store is not, use
+ * {@link #toCountFingerprint()} to get a copy.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public final class CountFingerprintView implements ICountFingerprint {
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Version of the serialized form inherited from the CDK fingerprint interface
+     */
+    private static final long serialVersionUID = 1L;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Store holding the fingerprint
+     */
+    private final CountFingerprintStore store;
+    /**
+     * ID of the fingerprint in the store
+     */
+    private final int id;
+    /**
+     * Index of the first bin of the fingerprint in the columns of the store
+     */
+    private final long start;
+    /**
+     * Number of populated bins of the fingerprint
+     */
+    private final int numberOfBins;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * If true, every populated bin has frequency 1
+     */
+    private boolean behaveAsBitFingerprint;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Constructor, the arguments are checked by the store.
+     *
+     * @param aStore store holding the fingerprint.
+     * @param anId ID of the fingerprint in the store.
+     * @param aStart index of the first bin of the fingerprint in the columns of the store.
+     * @param aNumberOfBins number of populated bins of the fingerprint.
+     */
+    CountFingerprintView(CountFingerprintStore aStore, int anId, long aStart, int aNumberOfBins) {
+        this.store = aStore;
+        this.id = anId;
+        this.start = aStart;
+        this.numberOfBins = aNumberOfBins;
+        this.behaveAsBitFingerprint = false;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Overridden public methods" defaultstate="collapsed">
+    /**
+     * {@inheritDoc}
+     * The size is the size of the dictionary of the store.
+     */
+    @Override
+    public long size() {
+        return this.store.getFragmentDictionary().size();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * Only bins with a frequency different from 0 are counted.
+     */
+    @Override
+    public int numOfPopulatedbins() {
+        return this.numberOfBins;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * The index refers to the populated bins in ascending order of their positions.
+     * @throws IllegalArgumentException is thrown if the given index does not exist in the fingerprint.
+     */
+    @Override
+    public int getCount(int index) throws IllegalArgumentException {
+        this.checkIndex(index);
+        return this.behaveAsBitFingerprint ? 1 : this.store.getCount(this.start + index);
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * The hash value is the position of the populated bin with the given index.
+     * @throws IllegalArgumentException is thrown if the given index does not exist in the fingerprint.
+     */
+    @Override
+    public int getHash(int index) throws IllegalArgumentException {
+        this.checkIndex(index);
+        return this.store.getPosition(this.start + index);
+    }
+    //
+    /**
+     * UnsupportedOperationException. This method is not supported, views are read-only.
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException method is not supported
+     */
+    @Override
+    public void merge(ICountFingerprint fp) {
+        throw new UnsupportedOperationException();
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * The setting only affects this view, not the store.
+     */
+    @Override
+    public void setBehaveAsBitFingerprint(boolean behaveAsBitFingerprint) {
+        this.behaveAsBitFingerprint = behaveAsBitFingerprint;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * Only the positions of populated bins are contained.
+     * @throws IllegalArgumentException is thrown if the given hash value is negative.
+     */
+    @Override
+    public boolean hasHash(int hash) throws IllegalArgumentException {
+        if (hash < 0) {
+            throw new IllegalArgumentException("Negative values are not allowed.");
+        }
+        return this.indexOf(hash) >= 0;
+    }
+    //
+    /**
+     * {@inheritDoc}
+     * The hash value is the position of the bin, 0 is returned for positions that are not populated.
+     * @throws IllegalArgumentException is thrown if the given hash value does not exist in the fingerprint.
+     */
+    @Override
+    public int getCountForHash(int hash) throws IllegalArgumentException {
+        if (hash >= this.size() || hash < 0) {
+            throw new IllegalArgumentException("This position does not exist in the fingerprint (undefined state).");
+        }
+        int tmpIndex = this.indexOf(hash);
+        if (tmpIndex < 0) {
+            return 0;
+        }
+        return this.behaveAsBitFingerprint ? 1 : this.store.getCount(this.start + tmpIndex);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Public methods" defaultstate="collapsed">
+    /**
+     * Passes the position and frequency of every populated bin to the given consumer, in ascending order of the
+     * positions.
+     *
+     * @param aConsumer receives the hash value and frequency of each populated bin.
+     * @throws NullPointerException is thrown if the given consumer is null.
+     */
+    public void forEachPopulatedBin(CountFingerprint.HashCountConsumer aConsumer) throws NullPointerException {
+        Objects.requireNonNull(aConsumer, "aConsumer is null.");
+        for (int i = 0; i < this.numberOfBins; i++) {
+            aConsumer.accept(this.store.getPosition(this.start + i),
+                    this.behaveAsBitFingerprint ? 1 : this.store.getCount(this.start + i));
+        }
+    }
+    //
+    /**
+     * Copies the fingerprint into a {@link CountFingerprint} on the heap.
+     *
+     * @return count fingerprint with the same populated bins
+     */
+    public CountFingerprint toCountFingerprint() {
+        int[] tmpPositions = new int[this.numberOfBins];
+        int[] tmpCounts = new int[this.numberOfBins];
+        for (int i = 0; i < this.numberOfBins; i++) {
+            tmpPositions[i] = this.store.getPosition(this.start + i);
+            tmpCounts[i] = this.behaveAsBitFingerprint ? 1 : this.store.getCount(this.start + i);
+        }
+        return CountFingerprint.fromPositions(this.store.getFragmentDictionary(), tmpPositions, tmpCounts, this.numberOfBins);
+    }
+    //
+    /**
+     * Returns the ID of the fingerprint in the store.
+     *
+     * @return fingerprint ID
+     */
+    public int getId() {
+        return this.id;
+    }
+    //
+    /**
+     * Returns the store holding the fingerprint.
+     *
+     * @return count fingerprint store
+     */
+    public CountFingerprintStore getStore() {
+        return this.store;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Checks an index of a populated bin.
+     *
+     * @param anIndex index to check.
+     * @throws IllegalArgumentException is thrown if the index does not exist in the fingerprint.
+     */
+    private void checkIndex(int anIndex) throws IllegalArgumentException {
+        if (anIndex >= this.numberOfBins || anIndex < 0) {
+            throw new IllegalArgumentException("This populated bin does not exist in the fingerprint (undefined state).");
+        }
+    }
+    //
+    /**
+     * Binary search for the populated bin with the given position.
+     *
+     * @param aPosition position to search for.
+     * @return index of the bin or a negative value if the position is not populated
+     */
+    private int indexOf(int aPosition) {
+        int tmpLow = 0;
+        int tmpHigh = this.numberOfBins - 1;
+        while (tmpLow <= tmpHigh) {
+            int tmpMiddle = (tmpLow + tmpHigh) >>> 1;
+            int tmpPosition = this.store.getPosition(this.start + tmpMiddle);
+            if (tmpPosition < aPosition) {
+                tmpLow = tmpMiddle + 1;
+            } else if (tmpPosition > aPosition) {
+                tmpHigh = tmpMiddle - 1;
+            } else {
+                return tmpMiddle;
+            }
+        }
+        return -(tmpLow + 1);
+    }
+    //</editor-fold>
+}
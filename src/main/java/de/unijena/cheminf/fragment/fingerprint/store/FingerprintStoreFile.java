@@ -0,0 +1,208 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint.store;
+
+import de.unijena.cheminf.fragment.fingerprint.io.FingerprintType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Layout of the files written by {@link BitFingerprintStore#save(Path)} and {@link CountFingerprintStore#save(Path)}.
+ * The columns of the store are written as they are held in memory, so the file can be mapped and used without
+ * decoding. All multibyte integers are little-endian.
+ * <pre>
+ * file   = magic (int "FFPS") version (byte) type (byte, 0 = bit, 1 = count) reserved (2 bytes)
+ *          dictionary size (int) number of fingerprints (int) column size in bytes (long)*k column*k
+ * column = bytes of the column, padded with zeros to a multiple of 8
+ * </pre>
+ * Bit stores have one column with the packed words of all fingerprints, count stores have three columns: the
+ * offsets (long, number of fingerprints + 1), the positions (int) and the counts (int).
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class FingerprintStoreFile {
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Magic number at the beginning of every file, the ASCII characters "FFPS"
+     */
+    private static final int MAGIC = 0x46465053;
+    /**
+     * Version of the format
+     */
+    private static final byte VERSION = 1;
+    /**
+     * Size of the fixed part of the header in bytes
+     */
+    private static final int FIXED_HEADER_SIZE = 16;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Private constructor, the class only has static members.
+     */
+    private FingerprintStoreFile() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private static methods" defaultstate="collapsed">
+    /**
+     * Writes the columns of a store to the given file, an existing file is overwritten.
+     *
+     * @param aPath file to write.
+     * @param aType type of the store.
+     * @param aDictionarySize size of the dictionary the fingerprints are based on.
+     * @param aNumberOfFingerprints number of fingerprints in the store.
+     * @param aColumns columns of the store.
+     * @throws IOException if the file can not be written.
+     */
+    static void write(Path aPath, FingerprintType aType, int aDictionarySize, int aNumberOfFingerprints,
+                      SegmentedBuffer... aColumns) throws IOException {
+        ByteBuffer tmpHeader = ByteBuffer.allocate(FingerprintStoreFile.FIXED_HEADER_SIZE + aColumns.length * Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        tmpHeader.putInt(FingerprintStoreFile.MAGIC).put(FingerprintStoreFile.VERSION).put((byte) aType.ordinal())
+                .putShort((short) 0).putInt(aDictionarySize).putInt(aNumberOfFingerprints);
+        for (SegmentedBuffer tmpColumn : aColumns) {
+            tmpHeader.putLong(tmpColumn.size());
+        }
+        tmpHeader.flip();
+        try (FileChannel tmpChannel = FileChannel.open(aPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            FingerprintStoreFile.writeFully(tmpChannel, tmpHeader);
+            for (SegmentedBuffer tmpColumn : aColumns) {
+                tmpColumn.writeTo(tmpChannel);
+                int tmpPadding = (int) (-tmpColumn.size() & (Long.BYTES - 1));
+                FingerprintStoreFile.writeFully(tmpChannel, ByteBuffer.allocate(tmpPadding));
+            }
+        }
+    }
+    //
+    /**
+     * Maps the columns of a file written by {@link #write(Path, FingerprintType, int, int, SegmentedBuffer...)}
+     * read-only into memory.
+     *
+     * @param aPath file to map.
+     * @param aType expected type of the store.
+     * @param aDictionarySize expected size of the dictionary.
+     * @param aNumberOfColumns expected number of columns.
+     * @param aSegmentShift binary logarithm of the segment size of the mapped columns.
+     * @return the number of fingerprints and the mapped columns
+     * @throws IOException if the file can not be read or is not a store file of the expected type and dictionary
+     * size.
+     */
+    static MappedStore map(Path aPath, FingerprintType aType, int aDictionarySize, int aNumberOfColumns,
+                                 int aSegmentShift) throws IOException {
+        try (FileChannel tmpChannel = FileChannel.open(aPath, StandardOpenOption.READ)) {
+            ByteBuffer tmpHeader = ByteBuffer.allocate(FingerprintStoreFile.FIXED_HEADER_SIZE + aNumberOfColumns * Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (tmpHeader.hasRemaining()) {
+                if (tmpChannel.read(tmpHeader) < 0) {
+                    throw new IOException("Unexpected end of file in the header of " + aPath + ".");
+                }
+            }
+            tmpHeader.flip();
+            if (tmpHeader.getInt() != FingerprintStoreFile.MAGIC) {
+                throw new IOException(aPath + " is not a fingerprint store file.");
+            }
+            byte tmpVersion = tmpHeader.get();
+            if (tmpVersion != FingerprintStoreFile.VERSION) {
+                throw new IOException("Unsupported fingerprint store file version " + tmpVersion + ".");
+            }
+            byte tmpType = tmpHeader.get();
+            if (tmpType != aType.ordinal()) {
+                throw new IOException(aPath + " does not contain a " + aType + " fingerprint store.");
+            }
+            tmpHeader.getShort();
+            int tmpDictionarySize = tmpHeader.getInt();
+            if (tmpDictionarySize != aDictionarySize) {
+                throw new IOException("The store is based on a dictionary of size " + tmpDictionarySize
+                        + ", the given dictionary has size " + aDictionarySize + ".");
+            }
+            int tmpNumberOfFingerprints = tmpHeader.getInt();
+            long tmpPosition = tmpHeader.capacity();
+            SegmentedBuffer[] tmpColumns = new SegmentedBuffer[aNumberOfColumns];
+            for (int i = 0; i < aNumberOfColumns; i++) {
+                long tmpSize = tmpHeader.getLong();
+                if (tmpSize < 0 || tmpPosition + tmpSize > tmpChannel.size()) {
+                    throw new IOException("Column " + i + " exceeds the end of " + aPath + ".");
+                }
+                tmpColumns[i] = SegmentedBuffer.map(tmpChannel, tmpPosition, tmpSize, aSegmentShift);
+                tmpPosition += (tmpSize + Long.BYTES - 1) & -Long.BYTES;
+            }
+            if (tmpNumberOfFingerprints < 0) {
+                throw new IOException("Negative number of fingerprints in " + aPath + ".");
+            }
+            return new MappedStore(tmpNumberOfFingerprints, tmpColumns);
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Writes all remaining bytes of the buffer to the channel.
+     *
+     * @param aChannel channel to write to.
+     * @param aBuffer bytes to write.
+     * @throws IOException if the bytes can not be written.
+     */
+    private static void writeFully(FileChannel aChannel, ByteBuffer aBuffer) throws IOException {
+        while (aBuffer.hasRemaining()) {
+            aChannel.write(aBuffer);
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private classes" defaultstate="collapsed">
+    /**
+     * Content of a mapped store file.
+     */
+    static final class MappedStore {
+        /**
+         * Number of fingerprints given in the header
+         */
+        final int numberOfFingerprints;
+        /**
+         * Mapped columns
+         */
+        final SegmentedBuffer[] columns;
+        //
+        /**
+         * Constructor.
+         *
+         * @param aNumberOfFingerprints number of fingerprints given in the header.
+         * @param aColumns mapped columns.
+         */
+        MappedStore(int aNumberOfFingerprints, SegmentedBuffer[] aColumns) {
+            this.numberOfFingerprints = aNumberOfFingerprints;
+            this.columns = aColumns;
+        }
+    }
+    //</editor-fold>
+}
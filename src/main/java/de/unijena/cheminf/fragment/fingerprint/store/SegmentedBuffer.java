@@ -0,0 +1,289 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Growable column of ints or longs in off-heap memory. Since a single {@link ByteBuffer} is limited to 2 GiB, the
+ * column is split into segments of equal power-of-two size, the values are addressed by their byte offset in the
+ * column. A column holds values of a single type only, so values never cross a segment border. The segments are
+ * either direct buffers filled by appending or read-only buffers mapped from a file. All values are little-endian.
+ * <br>Appending is not thread-safe. Reading uses absolute accesses only and can run concurrently as long as no
+ * values are appended.
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+final class SegmentedBuffer {
+    //<editor-fold desc="Package-private static final class variables" defaultstate="collapsed">
+    /**
+     * Default binary logarithm of the segment size, 1 GiB
+     */
+    static final int DEFAULT_SEGMENT_SHIFT = 30;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Capacity of the first direct segment, doubled until the segment size is reached
+     */
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private final class variables" defaultstate="collapsed">
+    /**
+     * Binary logarithm of the segment size
+     */
+    private final int segmentShift;
+    /**
+     * Mask of the offset within a segment
+     */
+    private final long segmentMask;
+    /**
+     * Whether the segments are mapped from a file and must not be changed
+     */
+    private final boolean isReadOnly;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private class variables" defaultstate="collapsed">
+    /**
+     * Segments, all but the last one are full
+     */
+    private ByteBuffer[] segments;
+    /**
+     * Number of segments in use
+     */
+    private int numberOfSegments;
+    /**
+     * Number of bytes written
+     */
+    private long size;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructors" defaultstate="collapsed">
+    /**
+     * Constructor of an empty writable column.
+     *
+     * @param aSegmentShift binary logarithm of the segment size, between 3 and 30.
+     * @throws IllegalArgumentException is thrown if the segment shift is out of range.
+     */
+    SegmentedBuffer(int aSegmentShift) throws IllegalArgumentException {
+        if (aSegmentShift < 3 || aSegmentShift > SegmentedBuffer.DEFAULT_SEGMENT_SHIFT) {
+            throw new IllegalArgumentException("aSegmentShift must be between 3 and 30.");
+        }
+        this.segmentShift = aSegmentShift;
+        this.segmentMask = (1L << aSegmentShift) - 1;
+        this.isReadOnly = false;
+        this.segments = new ByteBuffer[1];
+        this.numberOfSegments = 0;
+        this.size = 0L;
+    }
+    //
+    /**
+     * Constructor of a read-only column of the given segments.
+     *
+     * @param aSegments segments, all but the last one of the full segment size.
+     * @param aSize number of bytes in the column.
+     * @param aSegmentShift binary logarithm of the segment size.
+     */
+    private SegmentedBuffer(ByteBuffer[] aSegments, long aSize, int aSegmentShift) {
+        this.segmentShift = aSegmentShift;
+        this.segmentMask = (1L << aSegmentShift) - 1;
+        this.isReadOnly = true;
+        this.segments = aSegments;
+        this.numberOfSegments = aSegments.length;
+        this.size = aSize;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private static methods" defaultstate="collapsed">
+    /**
+     * Maps a column of a file read-only into memory. The mapping stays valid after the channel is closed.
+     *
+     * @param aChannel channel of the file.
+     * @param aPosition position of the column in the file.
+     * @param aSize number of bytes in the column.
+     * @param aSegmentShift binary logarithm of the segment size.
+     * @return read-only column
+     * @throws IOException if the file can not be mapped.
+     */
+    static SegmentedBuffer map(FileChannel aChannel, long aPosition, long aSize, int aSegmentShift) throws IOException {
+        long tmpSegmentSize = 1L << aSegmentShift;
+        int tmpNumberOfSegments = (int) ((aSize + tmpSegmentSize - 1) >>> aSegmentShift);
+        ByteBuffer[] tmpSegments = new ByteBuffer[tmpNumberOfSegments];
+        for (int i = 0; i < tmpNumberOfSegments; i++) {
+            long tmpOffset = (long) i << aSegmentShift;
+            tmpSegments[i] = aChannel.map(FileChannel.MapMode.READ_ONLY, aPosition + tmpOffset,
+                    Math.min(tmpSegmentSize, aSize - tmpOffset)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new SegmentedBuffer(tmpSegments, aSize, aSegmentShift);
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Package-private methods" defaultstate="collapsed">
+    /**
+     * Appends an int.
+     *
+     * @param aValue value to append.
+     * @throws IllegalStateException is thrown if the column is read-only.
+     */
+    void appendInt(int aValue) throws IllegalStateException {
+        this.ensureWritable(Integer.BYTES).putInt(aValue);
+        this.size += Integer.BYTES;
+    }
+    //
+    /**
+     * Appends a long.
+     *
+     * @param aValue value to append.
+     * @throws IllegalStateException is thrown if the column is read-only.
+     */
+    void appendLong(long aValue) throws IllegalStateException {
+        this.ensureWritable(Long.BYTES).putLong(aValue);
+        this.size += Long.BYTES;
+    }
+    //
+    /**
+     * Returns the int at the given byte offset. The offset is not checked against the size of the column.
+     *
+     * @param anOffset byte offset, a multiple of 4.
+     * @return int value
+     */
+    int getInt(long anOffset) {
+        return this.segments[(int) (anOffset >>> this.segmentShift)].getInt((int) (anOffset & this.segmentMask));
+    }
+    //
+    /**
+     * Returns the long at the given byte offset. The offset is not checked against the size of the column.
+     *
+     * @param anOffset byte offset, a multiple of 8.
+     * @return long value
+     */
+    long getLong(long anOffset) {
+        return this.segments[(int) (anOffset >>> this.segmentShift)].getLong((int) (anOffset & this.segmentMask));
+    }
+    //
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return size in bytes
+     */
+    long size() {
+        return this.size;
+    }
+    //
+    /**
+     * Returns the number of bytes allocated or mapped.
+     *
+     * @return capacity in bytes
+     */
+    long getCapacity() {
+        long tmpCapacity = 0L;
+        for (int i = 0; i < this.numberOfSegments; i++) {
+            tmpCapacity += this.segments[i].capacity();
+        }
+        return tmpCapacity;
+    }
+    //
+    /**
+     * Returns whether the column is mapped read-only from a file.
+     *
+     * @return true if no values can be appended.
+     */
+    boolean isReadOnly() {
+        return this.isReadOnly;
+    }
+    //
+    /**
+     * Writes all bytes of the column to the given channel at its current position.
+     *
+     * @param aChannel channel to write to.
+     * @throws IOException if the bytes can not be written.
+     */
+    void writeTo(FileChannel aChannel) throws IOException {
+        long tmpRemaining = this.size;
+        for (int i = 0; i < this.numberOfSegments && tmpRemaining > 0; i++) {
+            ByteBuffer tmpSegment = this.segments[i].duplicate();
+            tmpSegment.clear().limit((int) Math.min(tmpSegment.capacity(), tmpRemaining));
+            tmpRemaining -= tmpSegment.remaining();
+            while (tmpSegment.hasRemaining()) {
+                aChannel.write(tmpSegment);
+            }
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private methods" defaultstate="collapsed">
+    /**
+     * Returns the segment the next value is appended to, positioned at the end of the column. Allocates a new
+     * segment if the last one is full, the last segment grows by doubling until it reaches the segment size.
+     *
+     * @param aNumberOfBytes size of the value to append.
+     * @return segment to put the value into
+     * @throws IllegalStateException is thrown if the column is read-only.
+     */
+    private ByteBuffer ensureWritable(int aNumberOfBytes) throws IllegalStateException {
+        if (this.isReadOnly) {
+            throw new IllegalStateException("The store is mapped read-only from a file.");
+        }
+        if (this.numberOfSegments > 0) {
+            ByteBuffer tmpLast = this.segments[this.numberOfSegments - 1];
+            if (tmpLast.remaining() >= aNumberOfBytes) {
+                return tmpLast;
+            }
+            if (tmpLast.capacity() < (1 << this.segmentShift)) {
+                ByteBuffer tmpGrown = SegmentedBuffer.allocate(Math.min(tmpLast.capacity() << 1, 1 << this.segmentShift));
+                tmpLast.flip();
+                tmpGrown.put(tmpLast);
+                this.segments[this.numberOfSegments - 1] = tmpGrown;
+                return tmpGrown;
+            }
+        }
+        if (this.numberOfSegments == this.segments.length) {
+            this.segments = Arrays.copyOf(this.segments, this.segments.length << 1);
+        }
+        ByteBuffer tmpSegment = SegmentedBuffer.allocate(this.numberOfSegments == 0 ?
+                Math.min(SegmentedBuffer.INITIAL_CAPACITY, 1 << this.segmentShift) : 1 << this.segmentShift);
+        this.segments[this.numberOfSegments++] = tmpSegment;
+        return tmpSegment;
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Allocates a little-endian direct buffer.
+     *
+     * @param aCapacity capacity in bytes.
+     * @return new buffer
+     */
+    private static ByteBuffer allocate(int aCapacity) {
+        return ByteBuffer.allocateDirect(aCapacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    //</editor-fold>
+}
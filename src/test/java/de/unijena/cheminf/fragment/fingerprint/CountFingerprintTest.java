@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+
+/**
+ * Class to test the correct working of CountFingerprint
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class CountFingerprintTest {
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public CountFingerprintTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests that count fingerprints survive a serialization round-trip, both with a dictionary built from fragments
+     * and with a dictionary loaded from a memory-mapped snapshot, and that fingerprints sharing a dictionary still
+     * share it after deserialization.
+     *
+     * @param aTempDirectory temporary directory for the dictionary snapshot
+     * @throws IOException if the snapshot or the serialized form can not be written or read
+     * @throws ClassNotFoundException if a serialized class can not be found
+     */
+    @Test
+    public void serializationTest(@TempDir Path aTempDirectory) throws IOException, ClassNotFoundException {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"C=O", "CC", "c1ccccc1", "N"});
+        CountFingerprint tmpFingerprint = CountFingerprint.fromPositions(tmpDictionary, new int[] {2, 0, 2}, new int[] {1, 3, 2}, 3);
+        CountFingerprint tmpOtherFingerprint = CountFingerprint.fromPositions(tmpDictionary, new int[] {1}, new int[] {4}, 1);
+        Object[] tmpCopies = CountFingerprintTest.roundTrip(new Object[] {tmpFingerprint, tmpOtherFingerprint});
+        CountFingerprint tmpCopy = (CountFingerprint) tmpCopies[0];
+        CountFingerprintTest.assertSameCounts(tmpFingerprint, tmpCopy);
+        CountFingerprintTest.assertSameCounts(tmpOtherFingerprint, (CountFingerprint) tmpCopies[1]);
+        Assertions.assertEquals(3, tmpCopy.count("C=O"));
+        Assertions.assertEquals(3, tmpCopy.count("c1ccccc1"));
+        Assertions.assertEquals(0, tmpCopy.count("N"));
+        Assertions.assertSame(tmpCopy.getFragmentDictionary(), ((CountFingerprint) tmpCopies[1]).getFragmentDictionary());
+        Path tmpSnapshotPath = aTempDirectory.resolve("dictionary.ffpd");
+        tmpDictionary.saveSnapshot(tmpSnapshotPath);
+        FragmentDictionary tmpLoadedDictionary = FragmentDictionary.loadSnapshot(tmpSnapshotPath);
+        CountFingerprint tmpSnapshotFingerprint = CountFingerprint.fromPositions(tmpLoadedDictionary, new int[] {3}, new int[] {5}, 1);
+        CountFingerprint tmpSnapshotCopy = (CountFingerprint) CountFingerprintTest.roundTrip(new Object[] {tmpSnapshotFingerprint})[0];
+        CountFingerprintTest.assertSameCounts(tmpSnapshotFingerprint, tmpSnapshotCopy);
+        Assertions.assertArrayEquals(tmpDictionary.toArray(), tmpSnapshotCopy.getFragmentDictionary().toArray());
+        Assertions.assertEquals(5, tmpSnapshotCopy.count("N"));
+        Assertions.assertEquals(3, tmpSnapshotCopy.getFragmentDictionary().getPosition("N"));
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Serializes the given objects into one stream and deserializes them again.
+     *
+     * @param anArrayOfObjects objects to serialize
+     * @return deserialized copies in the same order
+     * @throws IOException if the serialized form can not be written or read
+     * @throws ClassNotFoundException if a serialized class can not be found
+     */
+    private static Object[] roundTrip(Object[] anArrayOfObjects) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream tmpByteStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream tmpOutputStream = new ObjectOutputStream(tmpByteStream)) {
+            tmpOutputStream.writeObject(anArrayOfObjects);
+        }
+        try (ObjectInputStream tmpInputStream = new ObjectInputStream(new ByteArrayInputStream(tmpByteStream.toByteArray()))) {
+            return (Object[]) tmpInputStream.readObject();
+        }
+    }
+    //
+    /**
+     * Asserts that both count fingerprints have the same size and the same frequency in every bin.
+     *
+     * @param anExpectedFingerprint original fingerprint
+     * @param anActualFingerprint deserialized fingerprint
+     */
+    private static void assertSameCounts(CountFingerprint anExpectedFingerprint, CountFingerprint anActualFingerprint) {
+        Assertions.assertEquals(anExpectedFingerprint.size(), anActualFingerprint.size());
+        Assertions.assertEquals(anExpectedFingerprint.numOfPopulatedbins(), anActualFingerprint.numOfPopulatedbins());
+        for (int i = 0; i < anExpectedFingerprint.size(); i++) {
+            Assertions.assertEquals(anExpectedFingerprint.getCountForHash(i), anActualFingerprint.getCountForHash(i));
+        }
+    }
+    //</editor-fold>
+}
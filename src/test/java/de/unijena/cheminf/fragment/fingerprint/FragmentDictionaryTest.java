@@ -0,0 +1,194 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Class to test the correct working of FragmentDictionary
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class FragmentDictionaryTest {
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public FragmentDictionaryTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests that fragments are numbered in the order of their first occurrence and that duplicates are ignored.
+     */
+    @Test
+    public void positionsAndDuplicatesTest() {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"C=O", "CC", "C=O", "c1ccccc1", "CC"});
+        Assertions.assertEquals(3, tmpDictionary.size());
+        Assertions.assertEquals(0, tmpDictionary.getPosition("C=O"));
+        Assertions.assertEquals(1, tmpDictionary.getPosition("CC"));
+        Assertions.assertEquals(2, tmpDictionary.getPosition("c1ccccc1"));
+        Assertions.assertEquals(FragmentDictionary.NOT_FOUND, tmpDictionary.getPosition("CCC"));
+        Assertions.assertFalse(tmpDictionary.contains("N"));
+        Assertions.assertEquals("c1ccccc1", tmpDictionary.getFragment(2));
+        Assertions.assertArrayEquals(new String[] {"C=O", "CC", "c1ccccc1"}, tmpDictionary.toArray());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpDictionary.getFragment(3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpDictionary.getFragment(-1));
+        Assertions.assertEquals(0, new FragmentDictionary(new String[0]).size());
+        Assertions.assertEquals(FragmentDictionary.NOT_FOUND, new FragmentDictionary(new String[0]).getPosition("C"));
+    }
+    //
+    /**
+     * Tests the lookup of a large random dictionary against a HashMap, including strings with colliding hash codes.
+     */
+    @Test
+    public void largeDictionaryTest() {
+        Random tmpRandom = new Random(42);
+        List<String> tmpFragmentList = new ArrayList<>(5002);
+        HashMap<String, Integer> tmpExpectedPositionMap = new HashMap<>(7500);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder tmpBuilder = new StringBuilder();
+            for (int j = 0, tmpLength = 1 + tmpRandom.nextInt(12); j < tmpLength; j++) {
+                tmpBuilder.append("CNOcn()=#[]1234".charAt(tmpRandom.nextInt(15)));
+            }
+            tmpFragmentList.add(tmpBuilder.toString());
+        }
+        // "Aa" and "BB" have the same hash code
+        tmpFragmentList.add("Aa");
+        tmpFragmentList.add("BB");
+        for (String tmpFragment : tmpFragmentList) {
+            tmpExpectedPositionMap.putIfAbsent(tmpFragment, tmpExpectedPositionMap.size());
+        }
+        FragmentDictionary tmpDictionary = new FragmentDictionary(tmpFragmentList.toArray(new String[0]));
+        Assertions.assertEquals(tmpExpectedPositionMap.size(), tmpDictionary.size());
+        for (String tmpFragment : tmpFragmentList) {
+            int tmpPosition = tmpDictionary.getPosition(new String(tmpFragment.toCharArray()));
+            Assertions.assertEquals(tmpExpectedPositionMap.get(tmpFragment), tmpPosition);
+            Assertions.assertEquals(tmpFragment, tmpDictionary.getFragment(tmpPosition));
+        }
+        Assertions.assertEquals(FragmentDictionary.NOT_FOUND, tmpDictionary.getPosition("ThisIsNoFragment"));
+    }
+    //
+    /**
+     * Tests the lookup of fragments given as UTF-8 bytes in a buffer, for ASCII and non-ASCII SMILES.
+     */
+    @Test
+    public void byteLookupTest() {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"C=O", "CC", "[13CH3]\u00C4", "c1ccccc1"});
+        ByteBuffer tmpBuffer = ByteBuffer.wrap("xx;CC;c1ccccc1;[13CH3]\u00C4;CCC;C".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(1, tmpDictionary.getPosition(tmpBuffer, 3, 2));
+        Assertions.assertEquals(3, tmpDictionary.getPosition(tmpBuffer, 6, 8));
+        Assertions.assertEquals(2, tmpDictionary.getPosition(tmpBuffer, 15, 9));
+        Assertions.assertEquals(FragmentDictionary.NOT_FOUND, tmpDictionary.getPosition(tmpBuffer, 25, 3));
+        Assertions.assertEquals(FragmentDictionary.NOT_FOUND, tmpDictionary.getPosition(tmpBuffer, 29, 1));
+        Assertions.assertEquals(FragmentDictionary.NOT_FOUND, tmpDictionary.getPosition(tmpBuffer, 0, 0));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> tmpDictionary.getPosition(tmpBuffer, 29, 2));
+        Assertions.assertEquals(0, tmpBuffer.position());
+    }
+    //
+    /**
+     * Tests that a dictionary loaded from a snapshot has the same fragments and positions as the saved one, also for
+     * non-ASCII fragments and an empty dictionary, that fingerprinters built from it produce the same fingerprints,
+     * and that corrupted snapshots are rejected.
+     *
+     * @param aTempDir directory for the snapshot files.
+     * @throws IOException if a snapshot can not be written or read.
+     */
+    @Test
+    public void snapshotTest(@TempDir Path aTempDir) throws IOException {
+        Random tmpRandom = new Random(11);
+        List<String> tmpFragmentList = new ArrayList<>(3002);
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder tmpBuilder = new StringBuilder();
+            for (int j = 0, tmpLength = 1 + tmpRandom.nextInt(12); j < tmpLength; j++) {
+                tmpBuilder.append("CNOcn()=#[]1234".charAt(tmpRandom.nextInt(15)));
+            }
+            tmpFragmentList.add(tmpBuilder.toString());
+        }
+        tmpFragmentList.add("[13CH3]\u00C4");
+        tmpFragmentList.add("Aa");
+        tmpFragmentList.add("BB");
+        FragmentDictionary tmpDictionary = new FragmentDictionary(tmpFragmentList.toArray(new String[0]));
+        Path tmpPath = aTempDir.resolve("dictionary.ffd");
+        tmpDictionary.saveSnapshot(tmpPath);
+        FragmentDictionary tmpLoadedDictionary = FragmentDictionary.loadSnapshot(tmpPath);
+        Assertions.assertArrayEquals(tmpDictionary.toArray(), tmpLoadedDictionary.toArray());
+        for (String tmpFragment : tmpFragmentList) {
+            Assertions.assertEquals(tmpDictionary.getPosition(tmpFragment), tmpLoadedDictionary.getPosition(tmpFragment));
+        }
+        Assertions.assertEquals(FragmentDictionary.NOT_FOUND, tmpLoadedDictionary.getPosition("ThisIsNoFragment"));
+        ByteBuffer tmpBuffer = ByteBuffer.wrap("[13CH3]\u00C4".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(tmpDictionary.getPosition("[13CH3]\u00C4"), tmpLoadedDictionary.getPosition(tmpBuffer, 0, tmpBuffer.limit()));
+        Map<String, Integer> tmpFrequencyMap = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            tmpFrequencyMap.merge(tmpFragmentList.get(tmpRandom.nextInt(tmpFragmentList.size())), 1, Integer::sum);
+        }
+        Assertions.assertArrayEquals(new FragmentFingerprinter(tmpFragmentList).getCountArray(tmpFrequencyMap),
+                new FragmentFingerprinter(tmpLoadedDictionary).getCountArray(tmpFrequencyMap));
+        Assertions.assertArrayEquals(new StatelessFragmentFingerprinter(tmpFragmentList).getCountArray(tmpFrequencyMap),
+                new StatelessFragmentFingerprinter(tmpLoadedDictionary).getCountArray(tmpFrequencyMap));
+        Path tmpEmptyPath = aTempDir.resolve("empty.ffd");
+        new FragmentDictionary(new String[0]).saveSnapshot(tmpEmptyPath);
+        Assertions.assertEquals(0, FragmentDictionary.loadSnapshot(tmpEmptyPath).size());
+        // a flipped bit in the strings is detected by the checksum
+        byte[] tmpBytes = Files.readAllBytes(tmpPath);
+        tmpBytes[tmpBytes.length - 1] ^= 1;
+        Path tmpCorruptedPath = aTempDir.resolve("corrupted.ffd");
+        Files.write(tmpCorruptedPath, tmpBytes);
+        Assertions.assertThrows(IOException.class, () -> FragmentDictionary.loadSnapshot(tmpCorruptedPath));
+        Files.write(tmpCorruptedPath, Arrays.copyOf(Files.readAllBytes(tmpPath), 100));
+        Assertions.assertThrows(IOException.class, () -> FragmentDictionary.loadSnapshot(tmpCorruptedPath));
+        Files.write(tmpCorruptedPath, "SMILES\nCC\n".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertThrows(IOException.class, () -> FragmentDictionary.loadSnapshot(tmpCorruptedPath));
+        Assertions.assertThrows(NullPointerException.class, () -> new FragmentFingerprinter((FragmentDictionary) null));
+    }
+    //
+    /**
+     * Tests that invalid arguments are rejected.
+     */
+    @Test
+    public void invalidArgumentsTest() {
+        Assertions.assertThrows(NullPointerException.class, () -> new FragmentDictionary(null));
+        Assertions.assertThrows(NullPointerException.class, () -> new FragmentDictionary(new String[] {"C", null}));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new FragmentDictionary(new String[] {"C", " "}));
+        Assertions.assertThrows(NullPointerException.class, () -> new FragmentDictionary(new String[] {"C"}).getPosition(null));
+    }
+    //</editor-fold>
+}
@@ -29,10 +29,14 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.openscience.cdk.fingerprint.IBitFingerprint;
 import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.fingerprint.SubstructureFingerprinter;
 import org.openscience.cdk.fragment.ExhaustiveFragmenter;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.similarity.Tanimoto;
 import org.openscience.cdk.io.iterator.IteratingSDFReader;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smarts.SmartsPattern;
 import org.openscience.cdk.smiles.SmiFlavor;
 import org.openscience.cdk.smiles.SmilesGenerator;
 import org.openscience.cdk.smiles.SmilesParser;
@@ -47,6 +51,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 /**
@@ -614,6 +619,147 @@ public class FragmentFingerprinterTest {
         String tmpBitDefinitionForGivenBitInVariamycinFingerprint = FragmentFingerprinterTest.fragmentFingerprinter.getBitDefinition(27);
         Assertions.assertEquals(tmpBitDefinitionForGivenBitTest, tmpBitDefinitionForGivenBitInVariamycinFingerprint);
     }
+    //
+    /**
+     * Tests that all count fingerprints of a fingerprinter reference the same fragment dictionary and that a merged
+     * count fingerprint keeps it.
+     */
+    @Test
+    public void sharedFragmentDictionaryTest() {
+        CountFingerprint tmpFirstCountFingerprint = FragmentFingerprinterTest.fragmentFingerprinter.getCountFingerprint(FragmentFingerprinterTest.moleculeFragmentList.get(0));
+        CountFingerprint tmpSecondCountFingerprint = FragmentFingerprinterTest.fragmentFingerprinter.getCountFingerprint(FragmentFingerprinterTest.moleculeFragmentList.get(1));
+        Assertions.assertSame(tmpFirstCountFingerprint.getFragmentDictionary(), tmpSecondCountFingerprint.getFragmentDictionary());
+        CountFingerprint tmpMergedCountFingerprint = tmpFirstCountFingerprint.mergedCountFingerprint(tmpSecondCountFingerprint);
+        Assertions.assertSame(tmpFirstCountFingerprint.getFragmentDictionary(), tmpMergedCountFingerprint.getFragmentDictionary());
+        for (int i = 0; i < tmpMergedCountFingerprint.size(); i++) {
+            Assertions.assertEquals(tmpFirstCountFingerprint.getCount(i) + tmpSecondCountFingerprint.getCount(i), tmpMergedCountFingerprint.getCount(i));
+        }
+    }
+    //
+    /**
+     * Tests a count fingerprint created with the public constructor from an unsorted raw map, including a
+     * frequency of 0 that must not populate its bin.
+     */
+    @Test
+    public void countFingerprintFromRawMapTest() {
+        HashMap<Integer, Integer> tmpRawMap = new HashMap<>(8);
+        tmpRawMap.put(3, 7);
+        tmpRawMap.put(0, 2);
+        tmpRawMap.put(2, 0);
+        CountFingerprint tmpCountFingerprint = new CountFingerprint(new String[] {"C=O", "CC", "CCC", "c1ccccc1"}, tmpRawMap);
+        Assertions.assertEquals(4, tmpCountFingerprint.size());
+        Assertions.assertArrayEquals(new int[] {2, 0, 0, 7}, new int[] {tmpCountFingerprint.getCount(0),
+                tmpCountFingerprint.getCount(1), tmpCountFingerprint.getCount(2), tmpCountFingerprint.getCount(3)});
+        Assertions.assertEquals(7, tmpCountFingerprint.count("c1ccccc1"));
+        Assertions.assertEquals(0, tmpCountFingerprint.count("CC"));
+        Assertions.assertEquals(2, tmpCountFingerprint.getCountForHash(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCountFingerprint.count("N"));
+        tmpCountFingerprint.setBehaveAsBitFingerprint(true);
+        Assertions.assertEquals(1, tmpCountFingerprint.getCount(3));
+        Assertions.assertEquals(0, tmpCountFingerprint.getCount(2));
+    }
+    //
+    /**
+     * Tests that forEachPopulatedBin() visits exactly the bins with a frequency different from 0, in ascending
+     * order, and that getHash() returns the index.
+     */
+    @Test
+    public void forEachPopulatedBinTest() {
+        CountFingerprint tmpCountFingerprint = FragmentFingerprinterTest.fragmentFingerprinter.getCountFingerprint(FragmentFingerprinterTest.moleculeFragmentList.get(FragmentFingerprinterTest.moleculeFragmentList.size() - 1));
+        int[] tmpCountArray = new int[(int) tmpCountFingerprint.size()];
+        List<Integer> tmpVisitedHashList = new ArrayList<>(tmpCountArray.length);
+        tmpCountFingerprint.forEachPopulatedBin((int aHash, int aCount) -> {
+            Assertions.assertNotEquals(0, aCount);
+            tmpCountArray[aHash] = aCount;
+            tmpVisitedHashList.add(aHash);
+        });
+        for (int i = 0; i < tmpCountArray.length; i++) {
+            Assertions.assertEquals(tmpCountFingerprint.getCount(i), tmpCountArray[i]);
+            Assertions.assertEquals(i, tmpCountFingerprint.getHash(i));
+        }
+        for (int i = 1; i < tmpVisitedHashList.size(); i++) {
+            Assertions.assertTrue(tmpVisitedHashList.get(i - 1) < tmpVisitedHashList.get(i));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCountFingerprint.getHash(tmpCountArray.length));
+    }
+    //
+    /**
+     * Tests that in sparse mode only the populated bins are indexed and that the continuous CDK Tanimoto similarity
+     * is the same in dense and sparse mode.
+     */
+    @Test
+    public void sparseModeTest() {
+        CountFingerprint tmpFirstCountFingerprint = FragmentFingerprinterTest.fragmentFingerprinter.getCountFingerprint(FragmentFingerprinterTest.moleculeFragmentList.get(0));
+        CountFingerprint tmpSecondCountFingerprint = FragmentFingerprinterTest.fragmentFingerprinter.getCountFingerprint(FragmentFingerprinterTest.moleculeFragmentList.get(FragmentFingerprinterTest.moleculeFragmentList.size() - 1));
+        double tmpDenseTanimoto = Tanimoto.method1(tmpFirstCountFingerprint, tmpSecondCountFingerprint);
+        tmpFirstCountFingerprint.setSparseMode(true);
+        tmpSecondCountFingerprint.setSparseMode(true);
+        Assertions.assertTrue(tmpFirstCountFingerprint.isSparseMode());
+        Assertions.assertEquals(tmpDenseTanimoto, Tanimoto.method1(tmpFirstCountFingerprint, tmpSecondCountFingerprint), 1.0e-10);
+        int tmpExpectedNumberOfPopulatedBins = 0;
+        for (int i = 0; i < tmpSecondCountFingerprint.size(); i++) {
+            if (tmpSecondCountFingerprint.getCountForHash(i) != 0) {
+                Assertions.assertTrue(tmpSecondCountFingerprint.hasHash(i));
+                Assertions.assertEquals(i, tmpSecondCountFingerprint.getHash(tmpExpectedNumberOfPopulatedBins));
+                Assertions.assertEquals(tmpSecondCountFingerprint.getCountForHash(i), tmpSecondCountFingerprint.getCount(tmpExpectedNumberOfPopulatedBins));
+                tmpExpectedNumberOfPopulatedBins++;
+            } else {
+                Assertions.assertFalse(tmpSecondCountFingerprint.hasHash(i));
+            }
+        }
+        Assertions.assertEquals(tmpExpectedNumberOfPopulatedBins, tmpSecondCountFingerprint.numOfPopulatedbins());
+        Assertions.assertEquals(28, tmpSecondCountFingerprint.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSecondCountFingerprint.getCount(tmpSecondCountFingerprint.numOfPopulatedbins()));
+        Assertions.assertTrue(tmpFirstCountFingerprint.mergedCountFingerprint(tmpSecondCountFingerprint).isSparseMode());
+        tmpSecondCountFingerprint.setSparseMode(false);
+        Assertions.assertEquals(28, tmpSecondCountFingerprint.numOfPopulatedbins());
+    }
+    //
+    /**
+     * Tests that the array methods neither reorder the given lists nor return the cached result for a different
+     * list of the same size or for a list or map that was modified after the fingerprint was calculated.
+     */
+    @Test
+    public void arrayCacheTest() {
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(FragmentFingerprinterTest.fragmentList);
+        List<String> tmpFirstList = new ArrayList<>(List.of("[H]Oc", "C=O", "[H]Oc", "c1ccccc1"));
+        List<String> tmpSecondList = new ArrayList<>(List.of("C=O", "CC", "NC", "[H]Oc"));
+        List<String> tmpFirstListCopy = new ArrayList<>(tmpFirstList);
+        int[] tmpExpectedFirstBitArray = new StatelessFragmentFingerprinter(FragmentFingerprinterTest.fragmentList).getBitArray(tmpFirstList);
+        int[] tmpExpectedSecondBitArray = new StatelessFragmentFingerprinter(FragmentFingerprinterTest.fragmentList).getBitArray(tmpSecondList);
+        int[] tmpExpectedFirstCountArray = new StatelessFragmentFingerprinter(FragmentFingerprinterTest.fragmentList).getCountArray(tmpFirstList);
+        tmpFingerprinter.getBitFingerprint(tmpFirstList);
+        tmpFingerprinter.getCountFingerprint(tmpFirstList);
+        Assertions.assertArrayEquals(tmpExpectedFirstBitArray, tmpFingerprinter.getBitArray(tmpFirstList));
+        Assertions.assertArrayEquals(tmpExpectedFirstCountArray, tmpFingerprinter.getCountArray(tmpFirstList));
+        Assertions.assertArrayEquals(tmpExpectedSecondBitArray, tmpFingerprinter.getBitArray(tmpSecondList));
+        Assertions.assertEquals(tmpFirstListCopy, tmpFirstList);
+        tmpFirstList.clear();
+        tmpFirstList.addAll(tmpSecondList);
+        Assertions.assertArrayEquals(tmpExpectedSecondBitArray, tmpFingerprinter.getBitArray(tmpFirstList));
+        // negative frequencies result in a count of 0, also for the cached count fingerprint
+        FragmentFingerprinter tmpSmallFingerprinter = new FragmentFingerprinter(List.of("C", "CC", "CCC"));
+        HashMap<String, Integer> tmpNegativeFrequencyMap = new HashMap<>();
+        tmpNegativeFrequencyMap.put("C", -3);
+        tmpNegativeFrequencyMap.put("CC", 2);
+        Assertions.assertArrayEquals(new int[] {0, 2, 0}, tmpSmallFingerprinter.getCountArray(tmpNegativeFrequencyMap));
+        tmpSmallFingerprinter.getCountFingerprint(tmpNegativeFrequencyMap);
+        Assertions.assertArrayEquals(new int[] {0, 2, 0}, tmpSmallFingerprinter.getCountArray(tmpNegativeFrequencyMap));
+        // swapping two values keeps the hash code of the map, the modification must still be detected
+        HashMap<String, Integer> tmpSwappedFrequencyMap = new HashMap<>();
+        tmpSwappedFrequencyMap.put("C", 1);
+        tmpSwappedFrequencyMap.put("CCC", 2);
+        tmpSmallFingerprinter.getCountFingerprint(tmpSwappedFrequencyMap);
+        int tmpHashCodeBeforeSwap = tmpSwappedFrequencyMap.hashCode();
+        tmpSwappedFrequencyMap.put("C", 2);
+        tmpSwappedFrequencyMap.put("CCC", 1);
+        Assertions.assertEquals(tmpHashCodeBeforeSwap, tmpSwappedFrequencyMap.hashCode());
+        Assertions.assertArrayEquals(new int[] {2, 0, 1}, tmpSmallFingerprinter.getCountArray(tmpSwappedFrequencyMap));
+        // an equal list that is a different instance can use the cached count fingerprint
+        tmpFingerprinter.getCountFingerprint(tmpSecondList);
+        Assertions.assertArrayEquals(tmpFingerprinter.getCountArray(new ArrayList<>(tmpSecondList)),
+                new StatelessFragmentFingerprinter(FragmentFingerprinterTest.fragmentList).getCountArray(tmpSecondList));
+    }
     //</editor-fold>
     //
     //<editor-fold desc="Test count arrays of all molecules" defaultstate="collapsed">
@@ -806,4 +952,376 @@ public class FragmentFingerprinterTest {
         Assertions.assertArrayEquals(tmpBitFingerprintTest, tmpBitFingerprint);
     }
     //</editor-fold>
+    //
+    //<editor-fold desc="Test substructure-based fingerprints" defaultstate="collapsed">
+    /**
+     * Tests that the substructure-based bit and count fingerprints created with the cached SMARTS patterns are
+     * identical to the ones of a newly created CDK SubstructureFingerprinter for repeated calls.
+     *
+     * @throws Exception is thrown if anything goes wrong.
+     */
+    @Test
+    public void substructureFingerprintCacheTest() throws Exception {
+        List<String> tmpFragments = List.of("c1ccccc1", "C=O", "[OX2H]", "O", "c1ccccc1", "N");
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(tmpFragments);
+        tmpFingerprinter.initializeSubstructureFingerprinter();
+        SubstructureFingerprinter tmpReferenceFingerprinter = new SubstructureFingerprinter(new String[] {"c1ccccc1", "C=O", "[OX2H]", "O", "N"});
+        SmilesParser tmpSmiPar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        for (String tmpSmiles : new String[] {"O=C(O)C1=CC=2C=CC=CC2C=C1O", "CCN", "OCC=O"}) {
+            for (int i = 0; i < 2; i++) {
+                IAtomContainer tmpMolecule = tmpSmiPar.parseSmiles(tmpSmiles);
+                IAtomContainer tmpReferenceMolecule = tmpSmiPar.parseSmiles(tmpSmiles);
+                Assertions.assertEquals(tmpReferenceFingerprinter.getBitFingerprint(tmpReferenceMolecule).asBitSet(),
+                        tmpFingerprinter.getBitFingerprint(tmpMolecule).asBitSet());
+                ICountFingerprint tmpCountFingerprint = tmpFingerprinter.getCountFingerprint(tmpMolecule);
+                ICountFingerprint tmpReferenceCountFingerprint = tmpReferenceFingerprinter.getCountFingerprint(tmpReferenceMolecule);
+                for (int j = 0; j < tmpReferenceCountFingerprint.numOfPopulatedbins(); j++) {
+                    Assertions.assertEquals(tmpReferenceCountFingerprint.getCountForHash(j), tmpCountFingerprint.getCountForHash(j));
+                }
+            }
+        }
+    }
+    //
+    /**
+     * Tests that the substructure-based fingerprints calculated with several threads are identical to the ones of
+     * the CDK SubstructureFingerprinter for the molecules of the COCONUT naphthalene test set and all their exhaustive
+     * fragments, as well as for SMARTS patterns that are matched sequentially (ring size and recursive SMARTS).
+     *
+     * @throws Exception is thrown if anything goes wrong.
+     */
+    @Test
+    public void parallelSubstructureFingerprintTest() throws Exception {
+        LinkedHashSet<String> tmpFragmentSet = new LinkedHashSet<>();
+        List<IAtomContainer> tmpMolecules = FragmentFingerprinterTest.readTestMoleculesAndFragments(tmpFragmentSet);
+        List<String> tmpFragments = new ArrayList<>(tmpFragmentSet);
+        tmpFragments.addAll(List.of("[r6]", "[R2]", "[$(C=O)]", "*@*", "[x3]"));
+        String[] tmpFragmentArray = tmpFragments.toArray(new String[0]);
+        SubstructureFingerprinter tmpReferenceFingerprinter = new SubstructureFingerprinter(tmpFragmentArray);
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(tmpFragments);
+        StatelessFragmentFingerprinter tmpStatelessFingerprinter = new StatelessFragmentFingerprinter(tmpFragments);
+        for (IAtomContainer tmpMolecule : tmpMolecules) {
+            IAtomContainer tmpReferenceMolecule = tmpMolecule.clone();
+            BitSet tmpReferenceBitSet = tmpReferenceFingerprinter.getBitFingerprint(tmpReferenceMolecule).asBitSet();
+            ICountFingerprint tmpReferenceCountFingerprint = tmpReferenceFingerprinter.getCountFingerprint(tmpReferenceMolecule);
+            for (int tmpParallelism : new int[] {1, 4}) {
+                Assertions.assertEquals(tmpReferenceBitSet, tmpFingerprinter.getBitFingerprint(tmpMolecule.clone(), tmpParallelism).asBitSet());
+                Assertions.assertEquals(tmpReferenceBitSet, tmpStatelessFingerprinter.getBitFingerprint(tmpMolecule.clone(), tmpParallelism).asBitSet());
+                CountFingerprint tmpCountFingerprint = tmpFingerprinter.getCountFingerprint(tmpMolecule.clone(), tmpParallelism);
+                CountFingerprint tmpStatelessCountFingerprint = tmpStatelessFingerprinter.getCountFingerprint(tmpMolecule.clone(), tmpParallelism);
+                Assertions.assertEquals(tmpReferenceCountFingerprint.numOfPopulatedbins(), tmpCountFingerprint.numOfPopulatedbins());
+                for (int j = 0; j < tmpReferenceCountFingerprint.numOfPopulatedbins(); j++) {
+                    Assertions.assertEquals(tmpReferenceCountFingerprint.getCountForHash(j), tmpCountFingerprint.getCountForHash(j));
+                    Assertions.assertEquals(tmpReferenceCountFingerprint.getCountForHash(j), tmpStatelessCountFingerprint.getCountForHash(j));
+                }
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpFingerprinter.getBitFingerprint(tmpMolecules.get(0), 0));
+        Assertions.assertThrows(NullPointerException.class, () -> tmpStatelessFingerprinter.getCountFingerprint((IAtomContainer) null, 2));
+    }
+    //
+    /**
+     * Tests that the screening signatures of the fragment patterns never reject a molecule that contains the fragment
+     * and that they reject fragments with elements, bonds or sizes the molecule does not have.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void substructureSignatureTest() throws Exception {
+        LinkedHashSet<String> tmpFragmentSet = new LinkedHashSet<>();
+        List<IAtomContainer> tmpMolecules = FragmentFingerprinterTest.readTestMoleculesAndFragments(tmpFragmentSet);
+        tmpFragmentSet.addAll(List.of("Cl", "c1ccncc1", "C#N", "CS(=O)(=O)O", "C1CCCCCCCCCCCCCCCCCCCCCCCC1",
+                "[C,N]=O", "[!#6]", "*:*", "C@C", "[$(C=O)]", "[r6]"));
+        SubstructureKeyMatcher tmpMatcher = new SubstructureKeyMatcher(tmpFragmentSet.toArray(new String[0]));
+        int tmpNumberOfMatches = 0;
+        int tmpNumberOfRejections = 0;
+        for (IAtomContainer tmpMolecule : tmpMolecules) {
+            SmartsPattern.prepare(tmpMolecule);
+            int[] tmpMoleculeFeatureCounts = SubstructureSignature.countFeatures(tmpMolecule);
+            for (int i = 0; i < tmpMatcher.size(); i++) {
+                boolean tmpIsSatisfied = tmpMatcher.getSignature(i).isSatisfiedBy(tmpMoleculeFeatureCounts);
+                if (Pattern.findSubstructure(tmpMatcher.getQuery(i)).matches(tmpMolecule)) {
+                    tmpNumberOfMatches++;
+                    Assertions.assertTrue(tmpIsSatisfied, "Rejected matching fragment at position " + i);
+                } else if (!tmpIsSatisfied) {
+                    tmpNumberOfRejections++;
+                }
+            }
+        }
+        Assertions.assertTrue(tmpNumberOfMatches > 0);
+        Assertions.assertTrue(tmpNumberOfRejections > 0);
+        SmilesParser tmpSmilesParser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        IAtomContainer tmpNaphthalene = tmpSmilesParser.parseSmiles("c1ccc2ccccc2c1");
+        SmartsPattern.prepare(tmpNaphthalene);
+        int[] tmpNaphthaleneFeatureCounts = SubstructureSignature.countFeatures(tmpNaphthalene);
+        String[] tmpScreenedFragments = new String[] {"c1ccncc1", "C=C", "c1ccccc1", "C1CCCCCCCCCCCC1", "[C,N]",
+                "[c,n]", "[!#7]", "c@c"};
+        boolean[] tmpExpectedResults = new boolean[] {false, false, true, false, false, true, true, true};
+        SubstructureKeyMatcher tmpScreeningMatcher = new SubstructureKeyMatcher(tmpScreenedFragments);
+        for (int i = 0; i < tmpScreenedFragments.length; i++) {
+            Assertions.assertEquals(tmpExpectedResults[i], tmpScreeningMatcher.getSignature(i).isSatisfiedBy(tmpNaphthaleneFeatureCounts),
+                    tmpScreenedFragments[i]);
+        }
+        // a negation does not require anything but the atom itself
+        Assertions.assertEquals(1, tmpScreeningMatcher.getSignature(6).getNumberOfRequiredFeatures());
+    }
+    //
+    /**
+     * Tests the containment hierarchy of fragments and that fingerprints calculated along the hierarchy are identical
+     * to the ones of the CDK SubstructureFingerprinter.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void fragmentHierarchyTest() throws Exception {
+        SubstructureKeyMatcher tmpNestedMatcher = new SubstructureKeyMatcher(new String[] {"CCCC", "CC", "C",
+                "Cc1ccccc1", "c1ccccc1", "c1ccc2ccccc2c1", "CCO", "O", "[C@H](O)(N)C"});
+        FragmentHierarchy tmpHierarchy = new FragmentHierarchy(tmpNestedMatcher);
+        Assertions.assertArrayEquals(new int[] {1}, tmpHierarchy.getParents(0));
+        Assertions.assertArrayEquals(new int[] {2}, tmpHierarchy.getParents(1));
+        Assertions.assertArrayEquals(new int[] {}, tmpHierarchy.getParents(2));
+        int[] tmpMethylbenzeneParents = tmpHierarchy.getParents(3).clone();
+        Arrays.sort(tmpMethylbenzeneParents);
+        Assertions.assertArrayEquals(new int[] {2, 4}, tmpMethylbenzeneParents);
+        // aromatic carbon atoms do not contain the aliphatic carbon atom
+        Assertions.assertArrayEquals(new int[] {}, tmpHierarchy.getParents(4));
+        Assertions.assertArrayEquals(new int[] {4}, tmpHierarchy.getParents(5));
+        int[] tmpEthanolParents = tmpHierarchy.getParents(6).clone();
+        Arrays.sort(tmpEthanolParents);
+        Assertions.assertArrayEquals(new int[] {1, 7}, tmpEthanolParents);
+        // fragments with stereo elements contain other fragments but are never parents themselves
+        int[] tmpStereoFragmentParents = tmpHierarchy.getParents(8).clone();
+        Arrays.sort(tmpStereoFragmentParents);
+        Assertions.assertArrayEquals(new int[] {2, 7}, tmpStereoFragmentParents);
+        int[] tmpTopologicalOrder = tmpHierarchy.getTopologicalOrder();
+        Assertions.assertEquals(tmpNestedMatcher.size(), tmpTopologicalOrder.length);
+        int[] tmpRanks = new int[tmpTopologicalOrder.length];
+        for (int i = 0; i < tmpTopologicalOrder.length; i++) {
+            tmpRanks[tmpTopologicalOrder[i]] = i;
+        }
+        for (int i = 0; i < tmpNestedMatcher.size(); i++) {
+            for (int tmpParent : tmpHierarchy.getParents(i)) {
+                Assertions.assertTrue(tmpRanks[tmpParent] < tmpRanks[i]);
+            }
+        }
+        Assertions.assertEquals(9, tmpHierarchy.getNumberOfEdges());
+        SmilesParser tmpSmilesParser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        ExhaustiveFragmenter tmpFragmenter = new ExhaustiveFragmenter();
+        tmpFragmenter.setMinimumFragmentSize(1);
+        LinkedHashSet<String> tmpFragmentSet = new LinkedHashSet<>();
+        List<IAtomContainer> tmpMolecules = FragmentFingerprinterTest.readTestMoleculesAndFragments(tmpFragmentSet);
+        // aromatic SMILES of nested fragments
+        for (String tmpSmiles : new String[] {"c1ccc2ccccc2c1", "Cc1ccc2ccccc2c1", "Oc1ccc2ccccc2c1", "Brc1cccc2ccccc12"}) {
+            IAtomContainer tmpMolecule = tmpSmilesParser.parseSmiles(tmpSmiles);
+            tmpFragmenter.generateFragments(tmpMolecule);
+            for (IAtomContainer tmpFragment : tmpFragmenter.getFragmentsAsContainers()) {
+                tmpFragmentSet.add(new SmilesGenerator(SmiFlavor.Unique | SmiFlavor.UseAromaticSymbols).create(tmpFragment));
+            }
+        }
+        tmpFragmentSet.addAll(List.of("c1ccccc1", "cc", "c", "C", "O", "CO", "Br", "[r6]", "[$(C=O)]"));
+        List<String> tmpFragments = new ArrayList<>(tmpFragmentSet);
+        SubstructureFingerprinter tmpReferenceFingerprinter = new SubstructureFingerprinter(tmpFragments.toArray(new String[0]));
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(tmpFragments);
+        tmpFingerprinter.initializeFragmentHierarchy();
+        StatelessFragmentFingerprinter tmpStatelessFingerprinter = new StatelessFragmentFingerprinter(tmpFragments);
+        tmpStatelessFingerprinter.initializeFragmentHierarchy();
+        Assertions.assertTrue(new FragmentHierarchy(new SubstructureKeyMatcher(tmpFragments.toArray(new String[0]))).getNumberOfEdges() > 0);
+        for (IAtomContainer tmpMolecule : tmpMolecules) {
+            IAtomContainer tmpReferenceMolecule = tmpMolecule.clone();
+            BitSet tmpReferenceBitSet = tmpReferenceFingerprinter.getBitFingerprint(tmpReferenceMolecule).asBitSet();
+            ICountFingerprint tmpReferenceCountFingerprint = tmpReferenceFingerprinter.getCountFingerprint(tmpReferenceMolecule);
+            Assertions.assertEquals(tmpReferenceBitSet, tmpFingerprinter.getBitFingerprint(tmpMolecule.clone()).asBitSet());
+            Assertions.assertEquals(tmpReferenceBitSet, tmpStatelessFingerprinter.getBitFingerprint(tmpMolecule.clone()).asBitSet());
+            ICountFingerprint tmpCountFingerprint = tmpFingerprinter.getCountFingerprint(tmpMolecule.clone());
+            ICountFingerprint tmpStatelessCountFingerprint = tmpStatelessFingerprinter.getCountFingerprint(tmpMolecule.clone());
+            Assertions.assertEquals(tmpReferenceCountFingerprint.numOfPopulatedbins(), tmpCountFingerprint.numOfPopulatedbins());
+            for (int j = 0; j < tmpReferenceCountFingerprint.numOfPopulatedbins(); j++) {
+                Assertions.assertEquals(tmpReferenceCountFingerprint.getCountForHash(j), tmpCountFingerprint.getCountForHash(j));
+                Assertions.assertEquals(tmpReferenceCountFingerprint.getCountForHash(j), tmpStatelessCountFingerprint.getCountForHash(j));
+            }
+        }
+    }
+    //
+    /**
+     * Tests that the combined fingerprint of one matching pass yields the same bit and count fingerprints as the CDK
+     * SubstructureFingerprinter and a raw fingerprint of the matching fragments, and that getRawFingerprint() returns
+     * the same raw fingerprint.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void combinedFingerprintTest() throws Exception {
+        List<String> tmpFragments = List.of("c1ccc2ccccc2c1", "c1ccccc1", "cc", "c", "C", "O", "CO", "Oc", "Br", "N",
+                "[r6]", "[$(C=O)]", "C=O");
+        SubstructureFingerprinter tmpReferenceFingerprinter = new SubstructureFingerprinter(tmpFragments.toArray(new String[0]));
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(tmpFragments);
+        StatelessFragmentFingerprinter tmpStatelessFingerprinter = new StatelessFragmentFingerprinter(tmpFragments);
+        FragmentFingerprinter tmpHierarchyFingerprinter = new FragmentFingerprinter(tmpFragments);
+        tmpHierarchyFingerprinter.initializeFragmentHierarchy();
+        int tmpNumberOfMolecules = 0;
+        try (IteratingSDFReader tmpSDFReader = new IteratingSDFReader(
+                ExampleUsageTest.class.getResourceAsStream("coconut_naphthalene_substructure_search_result.sdf"),
+                SilentChemObjectBuilder.getInstance())) {
+            while (tmpSDFReader.hasNext()) {
+                IAtomContainer tmpMolecule = tmpSDFReader.next();
+                tmpNumberOfMolecules++;
+                IAtomContainer tmpReferenceMolecule = tmpMolecule.clone();
+                BitSet tmpReferenceBitSet = tmpReferenceFingerprinter.getBitFingerprint(tmpReferenceMolecule).asBitSet();
+                ICountFingerprint tmpReferenceCountFingerprint = tmpReferenceFingerprinter.getCountFingerprint(tmpReferenceMolecule);
+                HashMap<String, Integer> tmpExpectedRawFingerprint = new HashMap<>();
+                for (int i = 0; i < tmpReferenceCountFingerprint.numOfPopulatedbins(); i++) {
+                    if (tmpReferenceCountFingerprint.getCount(i) > 0) {
+                        tmpExpectedRawFingerprint.put(tmpFragments.get(tmpReferenceCountFingerprint.getHash(i)), tmpReferenceCountFingerprint.getCount(i));
+                    }
+                }
+                for (IFragmentFingerprinter tmpFragmentFingerprinter : new IFragmentFingerprinter[] {tmpFingerprinter, tmpStatelessFingerprinter, tmpHierarchyFingerprinter}) {
+                    CombinedFragmentFingerprint tmpCombinedFingerprint = tmpFragmentFingerprinter.getCombinedFingerprint(tmpMolecule.clone());
+                    Assertions.assertEquals(tmpFragments.size(), tmpCombinedFingerprint.getSize());
+                    Assertions.assertEquals(tmpReferenceBitSet, tmpCombinedFingerprint.getBitFingerprint().asBitSet());
+                    Assertions.assertEquals(tmpReferenceBitSet.cardinality(), tmpCombinedFingerprint.getNumberOfMatchingFragments());
+                    CountFingerprint tmpCountFingerprint = tmpCombinedFingerprint.getCountFingerprint();
+                    Assertions.assertEquals(tmpReferenceCountFingerprint.numOfPopulatedbins(), tmpCountFingerprint.numOfPopulatedbins());
+                    for (int i = 0; i < tmpFragments.size(); i++) {
+                        Assertions.assertEquals(tmpReferenceCountFingerprint.getCountForHash(i), tmpCountFingerprint.getCountForHash(i));
+                        Assertions.assertEquals(tmpReferenceCountFingerprint.getCountForHash(i), tmpCombinedFingerprint.getCount(i));
+                    }
+                    Assertions.assertEquals(tmpExpectedRawFingerprint, tmpCombinedFingerprint.getRawFingerprint());
+                    Assertions.assertEquals(tmpExpectedRawFingerprint, tmpFragmentFingerprinter.getRawFingerprint(tmpMolecule.clone()));
+                }
+            }
+        }
+        Assertions.assertTrue(tmpNumberOfMolecules > 0);
+        CombinedFragmentFingerprint tmpCombinedFingerprint = tmpFingerprinter.getCombinedFingerprint(
+                new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles("c1ccccc1O"));
+        Assertions.assertEquals(1, tmpCombinedFingerprint.getRawFingerprint().get("Oc"));
+        Assertions.assertEquals(6, tmpCombinedFingerprint.getRawFingerprint().get("c"));
+        Assertions.assertFalse(tmpCombinedFingerprint.getRawFingerprint().containsKey("Br"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCombinedFingerprint.getCount(tmpFragments.size()));
+        Assertions.assertThrows(NullPointerException.class, () -> tmpStatelessFingerprinter.getCombinedFingerprint(null));
+    }
+    //
+    /**
+     * Tests that the canonicalizing fingerprinter converts arbitrary SMILES and fragment atom containers into unique
+     * SMILES via the cache, canonicalizing every distinct string only once, and yields the same fingerprints as the
+     * decorated fingerprinter given the unique SMILES.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void canonicalizingFingerprinterTest() throws Exception {
+        SmilesParser tmpSmilesParser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        SmilesGenerator tmpUniqueSmilesGenerator = new SmilesGenerator(SmiFlavor.Unique);
+        List<String> tmpUniqueFragments = new ArrayList<>();
+        for (String tmpSmiles : new String[] {"OCC", "Oc1ccccc1", "O=C", "NCC", "c1ccc2ccccc2c1"}) {
+            tmpUniqueFragments.add(tmpUniqueSmilesGenerator.create(tmpSmilesParser.parseSmiles(tmpSmiles)));
+        }
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(tmpUniqueFragments);
+        CanonicalizingFragmentFingerprinter tmpCanonicalizingFingerprinter = new CanonicalizingFragmentFingerprinter(
+                new StatelessFragmentFingerprinter(tmpUniqueFragments));
+        UniqueSmilesCache tmpCache = tmpCanonicalizingFingerprinter.getUniqueSmilesCache();
+        // non-canonical SMILES of the fragments
+        List<String> tmpSmilesList = List.of("C(O)C", "c1ccccc1O", "C=O", "CCO");
+        IBitFingerprint tmpBitFingerprint = tmpCanonicalizingFingerprinter.getBitFingerprint(tmpSmilesList);
+        Assertions.assertArrayEquals(new int[] {0, 1, 2}, tmpBitFingerprint.getSetbits());
+        Assertions.assertEquals(4, tmpCache.getMissCount());
+        Assertions.assertEquals(0, tmpCache.getHitCount());
+        Assertions.assertEquals(tmpFingerprinter.getBitFingerprint(List.of(tmpUniqueFragments.get(0), tmpUniqueFragments.get(1),
+                tmpUniqueFragments.get(2))).asBitSet(), tmpCanonicalizingFingerprinter.getBitFingerprint(tmpSmilesList).asBitSet());
+        // the repeated SMILES are not canonicalized again
+        Assertions.assertEquals(4, tmpCache.getMissCount());
+        Assertions.assertEquals(4, tmpCache.getHitCount());
+        Assertions.assertEquals(4, tmpCache.size());
+        // frequencies of different SMILES of the same fragment are summed up
+        HashMap<String, Integer> tmpSmilesToFrequencyMap = new HashMap<>();
+        tmpSmilesToFrequencyMap.put("C(O)C", 2);
+        tmpSmilesToFrequencyMap.put("CCO", 3);
+        tmpSmilesToFrequencyMap.put("C(N)C", 1);
+        ICountFingerprint tmpCountFingerprint = tmpCanonicalizingFingerprinter.getCountFingerprint(tmpSmilesToFrequencyMap);
+        Assertions.assertEquals(5, tmpCountFingerprint.getCountForHash(0));
+        Assertions.assertEquals(1, tmpCountFingerprint.getCountForHash(3));
+        Assertions.assertEquals(0, tmpCountFingerprint.getCountForHash(4));
+        ICountFingerprint tmpListCountFingerprint = tmpCanonicalizingFingerprinter.getCountFingerprint(List.of("OCC", "C(O)C", "CCO", "NCC"));
+        Assertions.assertEquals(3, tmpListCountFingerprint.getCountForHash(0));
+        Assertions.assertEquals(1, tmpListCountFingerprint.getCountForHash(3));
+        List<IBitFingerprint> tmpBitFingerprints = tmpCanonicalizingFingerprinter.getBitFingerprints(
+                List.of(tmpSmilesList, List.of("N(C)C", "C1=CC=C2C=CC=CC2=C1"), List.of("NCC")), 2);
+        Assertions.assertEquals(tmpBitFingerprint.asBitSet(), tmpBitFingerprints.get(0).asBitSet());
+        Assertions.assertArrayEquals(new int[] {4}, tmpBitFingerprints.get(1).getSetbits());
+        Assertions.assertArrayEquals(new int[] {3}, tmpBitFingerprints.get(2).getSetbits());
+        List<ICountFingerprint> tmpCountFingerprints = tmpCanonicalizingFingerprinter.getCountFingerprints(
+                List.of(tmpSmilesToFrequencyMap, tmpSmilesToFrequencyMap), 2);
+        Assertions.assertEquals(5, tmpCountFingerprints.get(1).getCountForHash(0));
+        // a decorated FragmentFingerprinter, which caches its last result, yields the same batch results
+        CanonicalizingFragmentFingerprinter tmpCachingCanonicalizingFingerprinter = new CanonicalizingFragmentFingerprinter(tmpFingerprinter, tmpCache);
+        List<List<String>> tmpSmilesLists = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            tmpSmilesLists.add(i % 2 == 0 ? tmpSmilesList : List.of("NCC", "C(N)C", "O=C"));
+        }
+        List<IBitFingerprint> tmpBatchBitFingerprints = tmpCachingCanonicalizingFingerprinter.getBitFingerprints(tmpSmilesLists, 4);
+        for (int i = 0; i < tmpSmilesLists.size(); i++) {
+            Assertions.assertEquals(tmpCanonicalizingFingerprinter.getBitFingerprint(tmpSmilesLists.get(i)).asBitSet(), tmpBatchBitFingerprints.get(i).asBitSet());
+        }
+        Assertions.assertEquals(tmpFingerprinter.getSize(), tmpCanonicalizingFingerprinter.getSize());
+        Assertions.assertTrue(tmpCanonicalizingFingerprinter.getVersionDescription().startsWith("CanonicalizingFragmentFingerprinter/"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCanonicalizingFingerprinter.getBitFingerprint(List.of("C1CC")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCanonicalizingFingerprinter.getBitFingerprint(List.of(" ")));
+        Assertions.assertThrows(NullPointerException.class, () -> tmpCanonicalizingFingerprinter.getBitFingerprint((List<String>) null));
+        // fragments given as atom containers yield the same unique SMILES as the SMILES generator
+        ExhaustiveFragmenter tmpFragmenter = new ExhaustiveFragmenter();
+        tmpFragmenter.setMinimumFragmentSize(1);
+        UniqueSmilesCache tmpSharedCache = new UniqueSmilesCache(64);
+        int tmpNumberOfFragments = 0;
+        try (IteratingSDFReader tmpSDFReader = new IteratingSDFReader(
+                ExampleUsageTest.class.getResourceAsStream("coconut_naphthalene_substructure_search_result.sdf"),
+                SilentChemObjectBuilder.getInstance())) {
+            while (tmpSDFReader.hasNext()) {
+                tmpFragmenter.generateFragments(tmpSDFReader.next().clone());
+                for (IAtomContainer tmpFragment : tmpFragmenter.getFragmentsAsContainers()) {
+                    tmpNumberOfFragments++;
+                    Assertions.assertEquals(tmpUniqueSmilesGenerator.create(tmpFragment), tmpSharedCache.getUniqueSmiles(tmpFragment));
+                    Assertions.assertTrue(tmpSharedCache.size() <= tmpSharedCache.getMaximumSize());
+                }
+            }
+        }
+        Assertions.assertTrue(tmpNumberOfFragments > tmpSharedCache.getMaximumSize());
+        Assertions.assertEquals(tmpNumberOfFragments, tmpSharedCache.getHitCount() + tmpSharedCache.getMissCount());
+        Assertions.assertTrue(tmpSharedCache.getHitCount() > 0);
+        IAtomContainer tmpPhenol = tmpSmilesParser.parseSmiles("C1=CC=C(C=C1)O");
+        Assertions.assertEquals(tmpFingerprinter.getCountFingerprint(List.of(tmpUniqueFragments.get(1), tmpUniqueFragments.get(1))).getCountForHash(1),
+                new CanonicalizingFragmentFingerprinter(tmpFingerprinter, tmpSharedCache)
+                        .getCountFingerprintOfFragments(List.of(tmpPhenol, tmpPhenol)).getCountForHash(1));
+        tmpSharedCache.clear();
+        Assertions.assertEquals(0, tmpSharedCache.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new UniqueSmilesCache(0));
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Reads the molecules of the COCONUT naphthalene test set and adds the unique SMILES of all their exhaustive
+     * fragments, with a minimum fragment size of 1, to the given set.
+     *
+     * @param aFragmentSet set the unique SMILES of the fragments are added to.
+     * @return copies of the molecules of the test set, as read before the fragmentation
+     * @throws Exception if the test set can not be read or a SMILES can not be generated.
+     */
+    private static List<IAtomContainer> readTestMoleculesAndFragments(LinkedHashSet<String> aFragmentSet) throws Exception {
+        SmilesGenerator tmpSmiGen = new SmilesGenerator(SmiFlavor.Unique);
+        ExhaustiveFragmenter tmpFragmenter = new ExhaustiveFragmenter();
+        tmpFragmenter.setMinimumFragmentSize(1);
+        List<IAtomContainer> tmpMolecules = new ArrayList<>(100);
+        try (IteratingSDFReader tmpSDFReader = new IteratingSDFReader(
+                ExampleUsageTest.class.getResourceAsStream("coconut_naphthalene_substructure_search_result.sdf"),
+                SilentChemObjectBuilder.getInstance())) {
+            while (tmpSDFReader.hasNext()) {
+                IAtomContainer tmpMolecule = tmpSDFReader.next();
+                tmpMolecules.add(tmpMolecule.clone());
+                tmpFragmenter.generateFragments(tmpMolecule);
+                for (IAtomContainer tmpFragment : tmpFragmenter.getFragmentsAsContainers()) {
+                    aFragmentSet.add(tmpSmiGen.create(tmpFragment));
+                }
+            }
+        }
+        return tmpMolecules;
+    }
+    //</editor-fold>
 }
@@ -0,0 +1,288 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Class to test the correct working of StatelessFragmentFingerprinter
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class StatelessFragmentFingerprinterTest {
+    //<editor-fold desc="private static class variables" defaultstate="collapsed">
+    /**
+     * The list includes all key fragments that are set during the initialization of the fingerprinters.
+     */
+    private static List<String> fragmentList;
+    /**
+     * The list contains the fragments and their frequencies of the test molecules.
+     */
+    private static List<HashMap<String, Integer>> moleculeFragmentMapList;
+    /**
+     * The list contains the fragments of the test molecules, fragments occur as often as their frequency.
+     */
+    private static List<List<String>> moleculeFragmentListList;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public StatelessFragmentFingerprinterTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="BeforeAll method" defaultstate="collapsed">
+    /**
+     * Reads the key fragments and the fragments of the test molecules from the test resources.
+     *
+     * @throws Exception is thrown if anything goes wrong.
+     */
+    @BeforeAll
+    public static void setUp() throws Exception {
+        StatelessFragmentFingerprinterTest.fragmentList = new ArrayList<>(28);
+        try (BufferedReader tmpFragmentSetReader = new BufferedReader(new FileReader("src/test/resources/de/unijena/cheminf/fragment/fingerprint/FragmentList.txt"))) {
+            // skip header line
+            String tmpLine = tmpFragmentSetReader.readLine();
+            while ((tmpLine = tmpFragmentSetReader.readLine()) != null) {
+                StatelessFragmentFingerprinterTest.fragmentList.add(tmpLine.split(",")[0]);
+            }
+        }
+        StatelessFragmentFingerprinterTest.moleculeFragmentMapList = new ArrayList<>(10);
+        StatelessFragmentFingerprinterTest.moleculeFragmentListList = new ArrayList<>(10);
+        try (BufferedReader tmpMoleculeFragmentsReader = new BufferedReader(new FileReader("src/test/resources/de/unijena/cheminf/fragment/fingerprint/MoleculeFragments.txt"))) {
+            // skip header line
+            String tmpLine = tmpMoleculeFragmentsReader.readLine();
+            while ((tmpLine = tmpMoleculeFragmentsReader.readLine()) != null) {
+                String[] tmpTokens = tmpLine.split(";");
+                HashMap<String, Integer> tmpFragmentMap = new HashMap<>(tmpTokens.length);
+                List<String> tmpFragmentList = new ArrayList<>(tmpTokens.length);
+                for (int i = 2; i + 1 < tmpTokens.length; i += 2) {
+                    int tmpFrequency = Integer.parseInt(tmpTokens[i + 1]);
+                    tmpFragmentMap.put(tmpTokens[i], tmpFrequency);
+                    for (int j = 0; j < tmpFrequency; j++) {
+                        tmpFragmentList.add(tmpTokens[i]);
+                    }
+                }
+                StatelessFragmentFingerprinterTest.moleculeFragmentMapList.add(tmpFragmentMap);
+                StatelessFragmentFingerprinterTest.moleculeFragmentListList.add(tmpFragmentList);
+            }
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Test methods" defaultstate="collapsed">
+    /**
+     * Tests that the stateless fingerprinter produces the same fingerprints and arrays as the FragmentFingerprinter.
+     */
+    @Test
+    public void sameResultsAsFragmentFingerprinterTest() {
+        FragmentFingerprinter tmpFragmentFingerprinter = new FragmentFingerprinter(StatelessFragmentFingerprinterTest.fragmentList);
+        StatelessFragmentFingerprinter tmpStatelessFingerprinter = new StatelessFragmentFingerprinter(StatelessFragmentFingerprinterTest.fragmentList);
+        Assertions.assertEquals(tmpFragmentFingerprinter.getSize(), tmpStatelessFingerprinter.getSize());
+        for (int i = 0; i < tmpFragmentFingerprinter.getSize(); i++) {
+            Assertions.assertEquals(tmpFragmentFingerprinter.getBitDefinition(i), tmpStatelessFingerprinter.getBitDefinition(i));
+        }
+        for (int i = 0; i < StatelessFragmentFingerprinterTest.moleculeFragmentMapList.size(); i++) {
+            HashMap<String, Integer> tmpFragmentMap = StatelessFragmentFingerprinterTest.moleculeFragmentMapList.get(i);
+            List<String> tmpFragmentList = StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i);
+            Assertions.assertEquals(tmpFragmentFingerprinter.getBitFingerprint(tmpFragmentList).asBitSet(),
+                    tmpStatelessFingerprinter.getBitFingerprint(tmpFragmentList).asBitSet());
+            CountFingerprint tmpExpectedCountFingerprint = tmpFragmentFingerprinter.getCountFingerprint(tmpFragmentMap);
+            int[] tmpCountArrayFromMap = tmpStatelessFingerprinter.getCountArray(tmpFragmentMap);
+            int[] tmpCountArrayFromList = tmpStatelessFingerprinter.getCountArray(tmpFragmentList);
+            CountFingerprint tmpCountFingerprint = tmpStatelessFingerprinter.getCountFingerprint(tmpFragmentList);
+            IBitFingerprint tmpExpectedBitFingerprint = tmpFragmentFingerprinter.getBitFingerprint(tmpFragmentList);
+            int[] tmpBitArray = tmpStatelessFingerprinter.getBitArray(tmpFragmentMap);
+            for (int j = 0; j < tmpFragmentFingerprinter.getSize(); j++) {
+                Assertions.assertEquals(tmpExpectedCountFingerprint.getCount(j), tmpCountArrayFromMap[j]);
+                Assertions.assertEquals(tmpExpectedCountFingerprint.getCount(j), tmpCountArrayFromList[j]);
+                Assertions.assertEquals(tmpExpectedCountFingerprint.getCount(j), tmpCountFingerprint.getCount(j));
+                Assertions.assertEquals(tmpExpectedBitFingerprint.get(j), tmpBitArray[j] == 1);
+            }
+        }
+    }
+    //
+    /**
+     * Tests that one instance shared by multiple threads produces the same count arrays as a sequential run.
+     *
+     * @throws Exception is thrown if anything goes wrong.
+     */
+    @Test
+    public void concurrentUsageTest() throws Exception {
+        StatelessFragmentFingerprinter tmpStatelessFingerprinter = new StatelessFragmentFingerprinter(StatelessFragmentFingerprinterTest.fragmentList);
+        List<int[]> tmpExpectedCountArrays = new ArrayList<>(StatelessFragmentFingerprinterTest.moleculeFragmentMapList.size());
+        for (HashMap<String, Integer> tmpFragmentMap : StatelessFragmentFingerprinterTest.moleculeFragmentMapList) {
+            tmpExpectedCountArrays.add(tmpStatelessFingerprinter.getCountArray(tmpFragmentMap));
+        }
+        ExecutorService tmpExecutor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> tmpFutures = new ArrayList<>(64);
+            for (int i = 0; i < 64; i++) {
+                tmpFutures.add(tmpExecutor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        int tmpIndex = j % StatelessFragmentFingerprinterTest.moleculeFragmentMapList.size();
+                        HashMap<String, Integer> tmpFragmentMap = StatelessFragmentFingerprinterTest.moleculeFragmentMapList.get(tmpIndex);
+                        CountFingerprint tmpCountFingerprint = tmpStatelessFingerprinter.getCountFingerprint(tmpFragmentMap);
+                        int[] tmpCountArray = tmpStatelessFingerprinter.getCountArray(tmpFragmentMap);
+                        for (int k = 0; k < tmpCountArray.length; k++) {
+                            if (tmpCountFingerprint.getCount(k) != tmpCountArray[k]) {
+                                return false;
+                            }
+                        }
+                        if (!Arrays.equals(tmpExpectedCountArrays.get(tmpIndex), tmpCountArray)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> tmpFuture : tmpFutures) {
+                Assertions.assertTrue(tmpFuture.get());
+            }
+        } finally {
+            tmpExecutor.shutdown();
+        }
+    }
+    //
+    /**
+     * Tests that the batch methods of both fingerprinters return the fingerprints in input order and equal to the
+     * ones of the single molecule methods, independent of the parallelism.
+     */
+    @Test
+    public void batchFingerprintsTest() {
+        FragmentFingerprinter tmpFragmentFingerprinter = new FragmentFingerprinter(StatelessFragmentFingerprinterTest.fragmentList);
+        StatelessFragmentFingerprinter tmpStatelessFingerprinter = new StatelessFragmentFingerprinter(StatelessFragmentFingerprinterTest.fragmentList);
+        List<List<String>> tmpInputLists = new ArrayList<>(1000);
+        List<HashMap<String, Integer>> tmpInputMaps = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            tmpInputLists.add(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i % StatelessFragmentFingerprinterTest.moleculeFragmentListList.size()));
+            tmpInputMaps.add(StatelessFragmentFingerprinterTest.moleculeFragmentMapList.get(i % StatelessFragmentFingerprinterTest.moleculeFragmentMapList.size()));
+        }
+        for (IFragmentFingerprinter tmpFingerprinter : new IFragmentFingerprinter[] {tmpFragmentFingerprinter, tmpStatelessFingerprinter}) {
+            for (int tmpParallelism : new int[] {1, 3, 8}) {
+                List<IBitFingerprint> tmpBitFingerprints = tmpFingerprinter.getBitFingerprints(tmpInputLists, tmpParallelism);
+                List<ICountFingerprint> tmpCountFingerprints = tmpFingerprinter.getCountFingerprints(tmpInputMaps.stream(), tmpParallelism);
+                Assertions.assertEquals(tmpInputLists.size(), tmpBitFingerprints.size());
+                Assertions.assertEquals(tmpInputMaps.size(), tmpCountFingerprints.size());
+                for (int i = 0; i < tmpInputLists.size(); i++) {
+                    Assertions.assertEquals(tmpStatelessFingerprinter.getBitFingerprint(tmpInputLists.get(i)).asBitSet(), tmpBitFingerprints.get(i).asBitSet());
+                    int[] tmpExpectedCountArray = tmpStatelessFingerprinter.getCountArray(tmpInputMaps.get(i));
+                    for (int j = 0; j < tmpExpectedCountArray.length; j++) {
+                        Assertions.assertEquals(tmpExpectedCountArray[j], tmpCountFingerprints.get(i).getCount(j));
+                    }
+                }
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpStatelessFingerprinter.getBitFingerprints(tmpInputLists, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpFragmentFingerprinter.getBitFingerprints(List.of(List.of("C", " ")), 2));
+        // batches with the same parallelism share one pool instead of creating a new one each time
+        Assertions.assertSame(SharedForkJoinPools.getPool(3), SharedForkJoinPools.getPool(3));
+        Assertions.assertSame(ForkJoinPool.commonPool(), SharedForkJoinPools.getPool(ForkJoinPool.getCommonPoolParallelism()));
+    }
+    //
+    /**
+     * Tests that the fill methods of both fingerprinters write the rows of a fingerprint matrix that equal the
+     * fingerprints, reusing the same arrays for all molecules, and that invalid ranges are rejected.
+     */
+    @Test
+    public void fillArraysTest() {
+        FragmentFingerprinter tmpFragmentFingerprinter = new FragmentFingerprinter(StatelessFragmentFingerprinterTest.fragmentList);
+        StatelessFragmentFingerprinter tmpStatelessFingerprinter = new StatelessFragmentFingerprinter(StatelessFragmentFingerprinterTest.fragmentList);
+        int tmpSize = tmpStatelessFingerprinter.getSize();
+        int tmpNumberOfMolecules = StatelessFragmentFingerprinterTest.moleculeFragmentMapList.size();
+        int[] tmpBitMatrix = new int[tmpSize * tmpNumberOfMolecules + 3];
+        byte[] tmpByteBitMatrix = new byte[tmpSize * tmpNumberOfMolecules + 3];
+        int[] tmpBitFromMapMatrix = new int[tmpSize * tmpNumberOfMolecules + 3];
+        int[] tmpCountMatrix = new int[tmpSize * tmpNumberOfMolecules + 3];
+        int[] tmpCountFromListMatrix = new int[tmpSize * tmpNumberOfMolecules + 3];
+        for (int tmpRound = 0; tmpRound < 2; tmpRound++) {
+            // fill with garbage in the second round to check that every row is overwritten completely
+            if (tmpRound == 1) {
+                Arrays.fill(tmpBitMatrix, 7);
+                Arrays.fill(tmpByteBitMatrix, (byte) 7);
+                Arrays.fill(tmpBitFromMapMatrix, 7);
+                Arrays.fill(tmpCountMatrix, 7);
+                Arrays.fill(tmpCountFromListMatrix, 7);
+            }
+            for (int i = 0; i < tmpNumberOfMolecules; i++) {
+                int tmpOffset = 3 + i * tmpSize;
+                IFragmentFingerprinter tmpFingerprinter = i % 2 == 0 ? tmpStatelessFingerprinter : tmpFragmentFingerprinter;
+                if (tmpFingerprinter instanceof FragmentFingerprinter) {
+                    FragmentFingerprinter tmpCastFingerprinter = (FragmentFingerprinter) tmpFingerprinter;
+                    tmpCastFingerprinter.fillBitArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i), tmpBitMatrix, tmpOffset);
+                    tmpCastFingerprinter.fillBitArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i), tmpByteBitMatrix, tmpOffset);
+                    tmpCastFingerprinter.fillBitArray(StatelessFragmentFingerprinterTest.moleculeFragmentMapList.get(i), tmpBitFromMapMatrix, tmpOffset);
+                    tmpCastFingerprinter.fillCountArray(StatelessFragmentFingerprinterTest.moleculeFragmentMapList.get(i), tmpCountMatrix, tmpOffset);
+                    tmpCastFingerprinter.fillCountArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i), tmpCountFromListMatrix, tmpOffset);
+                } else {
+                    tmpStatelessFingerprinter.fillBitArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i), tmpBitMatrix, tmpOffset);
+                    tmpStatelessFingerprinter.fillBitArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i), tmpByteBitMatrix, tmpOffset);
+                    tmpStatelessFingerprinter.fillBitArray(StatelessFragmentFingerprinterTest.moleculeFragmentMapList.get(i), tmpBitFromMapMatrix, tmpOffset);
+                    tmpStatelessFingerprinter.fillCountArray(StatelessFragmentFingerprinterTest.moleculeFragmentMapList.get(i), tmpCountMatrix, tmpOffset);
+                    tmpStatelessFingerprinter.fillCountArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i), tmpCountFromListMatrix, tmpOffset);
+                }
+                IBitFingerprint tmpBitFingerprint = tmpStatelessFingerprinter.getBitFingerprint(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(i));
+                ICountFingerprint tmpCountFingerprint = tmpStatelessFingerprinter.getCountFingerprint(StatelessFragmentFingerprinterTest.moleculeFragmentMapList.get(i));
+                for (int j = 0; j < tmpSize; j++) {
+                    int tmpExpectedBit = tmpBitFingerprint.get(j) ? 1 : 0;
+                    Assertions.assertEquals(tmpExpectedBit, tmpBitMatrix[tmpOffset + j]);
+                    Assertions.assertEquals(tmpExpectedBit, tmpByteBitMatrix[tmpOffset + j]);
+                    Assertions.assertEquals(tmpExpectedBit, tmpBitFromMapMatrix[tmpOffset + j]);
+                    Assertions.assertEquals(tmpCountFingerprint.getCount(j), tmpCountMatrix[tmpOffset + j]);
+                    Assertions.assertEquals(tmpCountFingerprint.getCount(j), tmpCountFromListMatrix[tmpOffset + j]);
+                }
+            }
+        }
+        // the elements before the first row are never written
+        Assertions.assertArrayEquals(new int[] {7, 7, 7}, Arrays.copyOf(tmpCountMatrix, 3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpStatelessFingerprinter.fillBitArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(0), new int[tmpSize], 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpFragmentFingerprinter.fillCountArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(0), new int[tmpSize], -1));
+        Assertions.assertThrows(NullPointerException.class, () -> tmpFragmentFingerprinter.fillBitArray(StatelessFragmentFingerprinterTest.moleculeFragmentListList.get(0), (byte[]) null, 0));
+        Map<String, Integer> tmpNegativeFrequencyMap = Map.of(tmpStatelessFingerprinter.getBitDefinition(0), -3);
+        Assertions.assertEquals(0, tmpStatelessFingerprinter.getCountArray(tmpNegativeFrequencyMap)[0]);
+        Assertions.assertEquals(0, tmpFragmentFingerprinter.getCountArray(tmpNegativeFrequencyMap)[0]);
+    }
+    //</editor-fold>
+}
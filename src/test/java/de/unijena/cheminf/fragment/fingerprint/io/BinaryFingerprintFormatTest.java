@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+import de.unijena.cheminf.fragment.fingerprint.FragmentFingerprinter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Class to test the correct working of BinaryFingerprintWriter and BinaryFingerprintReader
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class BinaryFingerprintFormatTest {
+    //<editor-fold desc="Private static final constants" defaultstate="collapsed">
+    /**
+     * Key fragments of the tests, including a non-ASCII one
+     */
+    private static final String[] FRAGMENTS = {"C=O", "c1ccccc1", "CCN", "[Na+]", "\u00C4ther", "O", "N", "S", "P", "Cl"};
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public BinaryFingerprintFormatTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests that bit and count fingerprints, including empty ones, are read back unchanged together with
+     * the dictionary and the molecule names.
+     *
+     * @throws IOException if the streams fail
+     */
+    @Test
+    public void roundTripTest() throws IOException {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(BinaryFingerprintFormatTest.FRAGMENTS);
+        int[][] tmpCountArrays = {
+                {0, 3, 0, 0, 1, 0, 0, 0, 0, 200},
+                {0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+        ByteArrayOutputStream tmpBitOutputStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream tmpCountOutputStream = new ByteArrayOutputStream();
+        try (BinaryFingerprintWriter tmpBitWriter = new BinaryFingerprintWriter(tmpBitOutputStream, tmpDictionary, FingerprintType.BIT);
+             BinaryFingerprintWriter tmpCountWriter = new BinaryFingerprintWriter(tmpCountOutputStream, tmpDictionary, FingerprintType.COUNT)) {
+            for (int i = 0; i < tmpCountArrays.length; i++) {
+                tmpBitWriter.writeBitArray("mol" + i, BinaryFingerprintFormatTest.toBitArray(tmpCountArrays[i]), 0);
+                tmpCountWriter.writeCountArray("mol" + i, tmpCountArrays[i], 0);
+            }
+            Assertions.assertEquals(3, tmpCountWriter.getNumberOfRecords());
+        }
+        try (BinaryFingerprintReader tmpBitReader = new BinaryFingerprintReader(new ByteArrayInputStream(tmpBitOutputStream.toByteArray()));
+             BinaryFingerprintReader tmpCountReader = new BinaryFingerprintReader(new ByteArrayInputStream(tmpCountOutputStream.toByteArray()))) {
+            Assertions.assertEquals(FingerprintType.BIT, tmpBitReader.getFingerprintType());
+            Assertions.assertEquals(FingerprintType.COUNT, tmpCountReader.getFingerprintType());
+            Assertions.assertArrayEquals(BinaryFingerprintFormatTest.FRAGMENTS, tmpCountReader.getFragmentDictionary().toArray());
+            for (int i = 0; i < tmpCountArrays.length; i++) {
+                FingerprintRecord tmpBitRecord = tmpBitReader.next();
+                FingerprintRecord tmpCountRecord = tmpCountReader.next();
+                Assertions.assertEquals("mol" + i, tmpBitRecord.getName());
+                Assertions.assertEquals("mol" + i, tmpCountRecord.getName());
+                int[] tmpArray = new int[BinaryFingerprintFormatTest.FRAGMENTS.length];
+                tmpBitRecord.fillArray(tmpArray, 0);
+                Assertions.assertArrayEquals(BinaryFingerprintFormatTest.toBitArray(tmpCountArrays[i]), tmpArray);
+                Arrays.fill(tmpArray, 0);
+                tmpCountRecord.fillArray(tmpArray, 0);
+                Assertions.assertArrayEquals(tmpCountArrays[i], tmpArray);
+                CountFingerprint tmpCountFingerprint = tmpCountRecord.toCountFingerprint();
+                for (int j = 0; j < tmpArray.length; j++) {
+                    Assertions.assertEquals(tmpCountArrays[i][j], tmpCountFingerprint.getCountForHash(j));
+                }
+                Assertions.assertEquals(tmpBitRecord.getNumberOfPopulatedBins(), tmpBitRecord.toBitFingerprint().cardinality());
+            }
+            Assertions.assertFalse(tmpBitReader.hasNext());
+            Assertions.assertFalse(tmpCountReader.hasNext());
+        }
+    }
+    //
+    /**
+     * Tests that foreign or damaged data and records of the wrong type are rejected.
+     *
+     * @throws IOException if the streams fail
+     */
+    @Test
+    public void malformedInputTest() throws IOException {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(BinaryFingerprintFormatTest.FRAGMENTS);
+        Assertions.assertThrows(IOException.class, () -> new BinaryFingerprintReader(new ByteArrayInputStream("Molecule name/ID, bit fingerprint".getBytes())));
+        ByteArrayOutputStream tmpOutputStream = new ByteArrayOutputStream();
+        try (BinaryFingerprintWriter tmpWriter = new BinaryFingerprintWriter(tmpOutputStream, tmpDictionary, FingerprintType.COUNT)) {
+            Assertions.assertThrows(IllegalStateException.class, () -> tmpWriter.writeBitArray("mol", new int[BinaryFingerprintFormatTest.FRAGMENTS.length], 0));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpWriter.writeCountArray("mol", new int[BinaryFingerprintFormatTest.FRAGMENTS.length - 1], 0));
+            int[] tmpNegativeArray = new int[BinaryFingerprintFormatTest.FRAGMENTS.length];
+            tmpNegativeArray[2] = -1;
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpWriter.writeCountArray("mol", tmpNegativeArray, 0));
+            // a count fingerprint of a larger dictionary with a position outside the dictionary of the writer
+            String[] tmpLargerFragments = Arrays.copyOf(BinaryFingerprintFormatTest.FRAGMENTS, BinaryFingerprintFormatTest.FRAGMENTS.length + 1);
+            tmpLargerFragments[tmpLargerFragments.length - 1] = "Br";
+            CountFingerprint tmpLargerFingerprint = new FragmentFingerprinter(new FragmentDictionary(tmpLargerFragments)).getCountFingerprint(Map.of("Br", 1, "O", 2));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpWriter.writeCountFingerprint("mol", tmpLargerFingerprint));
+            tmpWriter.writeCountArray("mol", new int[] {5, 0, 0, 7, 0, 0, 0, 0, 0, 9}, 0);
+        }
+        byte[] tmpBytes = tmpOutputStream.toByteArray();
+        try (BinaryFingerprintReader tmpReader = new BinaryFingerprintReader(new ByteArrayInputStream(Arrays.copyOf(tmpBytes, tmpBytes.length - 1)))) {
+            Assertions.assertThrows(UncheckedIOException.class, tmpReader::next);
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Returns the bit array of the given count array.
+     *
+     * @param aCountArray count array
+     * @return bit array
+     */
+    private static int[] toBitArray(int[] aCountArray) {
+        int[] tmpBitArray = new int[aCountArray.length];
+        for (int i = 0; i < aCountArray.length; i++) {
+            tmpBitArray[i] = aCountArray[i] > 0 ? 1 : 0;
+        }
+        return tmpBitArray;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Class to test the correct working of FingerprintPipeline
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class FingerprintPipelineTest {
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public FingerprintPipelineTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests that the results are passed to the sink in input order although the workers need different times,
+     * and that the number of items in process never exceeds the queue capacity + 1.
+     *
+     * @throws Exception if the pipeline fails
+     */
+    @Test
+    public void orderAndBackpressureTest() throws Exception {
+        AtomicInteger tmpItemsInProcess = new AtomicInteger();
+        AtomicInteger tmpMaximumItemsInProcess = new AtomicInteger();
+        Iterator<Integer> tmpSource = IntStream.range(0, 2000).peek((int anItem) -> tmpMaximumItemsInProcess.accumulateAndGet(tmpItemsInProcess.incrementAndGet(), Math::max)).boxed().iterator();
+        List<String> tmpResultList = new ArrayList<>(2000);
+        long tmpNumberOfItems = new FingerprintPipeline(4, 16).run(tmpSource,
+                (Integer anItem) -> {
+                    if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException anException) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return "item " + anItem;
+                },
+                (String aResult) -> {
+                    tmpResultList.add(aResult);
+                    tmpItemsInProcess.decrementAndGet();
+                });
+        Assertions.assertEquals(2000L, tmpNumberOfItems);
+        for (int i = 0; i < 2000; i++) {
+            Assertions.assertEquals("item " + i, tmpResultList.get(i));
+        }
+        Assertions.assertTrue(tmpMaximumItemsInProcess.get() <= 16 + 2, "items in process: " + tmpMaximumItemsInProcess.get());
+    }
+    //
+    /**
+     * Tests that exceptions of the iterator, a worker or the sink stop the pipeline and are rethrown.
+     */
+    @Test
+    public void exceptionsTest() {
+        FingerprintPipeline tmpPipeline = new FingerprintPipeline(2, 4);
+        IllegalArgumentException tmpWorkerException = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> tmpPipeline.run(IntStream.range(0, 100).boxed().iterator(),
+                        (Integer anItem) -> {
+                            if (anItem == 50) {
+                                throw new IllegalArgumentException("worker " + anItem);
+                            }
+                            return anItem;
+                        },
+                        (Integer aResult) -> {}));
+        Assertions.assertEquals("worker 50", tmpWorkerException.getMessage());
+        Iterator<Integer> tmpFailingSource = new Iterator<>() {
+            private int next = 0;
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+            @Override
+            public Integer next() {
+                if (this.next == 10) {
+                    throw new IllegalStateException("source");
+                }
+                return this.next++;
+            }
+        };
+        List<Integer> tmpResultList = new ArrayList<>();
+        Assertions.assertThrows(IllegalStateException.class, () -> tmpPipeline.run(tmpFailingSource, (Integer anItem) -> anItem, tmpResultList::add));
+        Assertions.assertEquals(10, tmpResultList.size());
+        Assertions.assertThrows(IOException.class, () -> tmpPipeline.run(IntStream.range(0, 100).boxed().iterator(), (Integer anItem) -> anItem,
+                (Integer aResult) -> {
+                    throw new IOException("sink");
+                }));
+        // the reader must have left the iterator when run returns, e.g. before the underlying reader is closed
+        AtomicInteger tmpReadersInSource = new AtomicInteger();
+        Iterator<Integer> tmpSlowSource = new Iterator<>() {
+            private int next = 0;
+            @Override
+            public boolean hasNext() {
+                tmpReadersInSource.incrementAndGet();
+                long tmpEnd = System.nanoTime() + 20_000_000L;
+                // blocking IO does not react to interrupts either
+                while (System.nanoTime() < tmpEnd) {
+                    Thread.onSpinWait();
+                }
+                tmpReadersInSource.decrementAndGet();
+                return true;
+            }
+            @Override
+            public Integer next() {
+                return this.next++;
+            }
+        };
+        Assertions.assertThrows(IOException.class, () -> tmpPipeline.run(tmpSlowSource, (Integer anItem) -> anItem,
+                (Integer aResult) -> {
+                    throw new IOException("sink");
+                }));
+        Assertions.assertEquals(0, tmpReadersInSource.get());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new FingerprintPipeline(0, 4));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new FingerprintPipeline(1, 0));
+    }
+    //</editor-fold>
+}
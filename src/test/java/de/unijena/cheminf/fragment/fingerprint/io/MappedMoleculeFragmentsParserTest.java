@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+import de.unijena.cheminf.fragment.fingerprint.FragmentFingerprinter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to test the correct working of MappedMoleculeFragmentsParser
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class MappedMoleculeFragmentsParserTest {
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public MappedMoleculeFragmentsParserTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests that parsing the 13,000 molecules of the performance test application yields the same names and
+     * count arrays as the line-based MoleculeFragmentsReader combined with the FragmentFingerprinter.
+     *
+     * @throws IOException if the files can not be read
+     */
+    @Test
+    public void performanceTestFilesTest() throws IOException {
+        String[] tmpFragmentArray = MappedMoleculeFragmentsParser.readFragments(Paths.get("PerformanceTestCMDApplication/Fragments_File_PerformanceTest_13000.csv"), true);
+        Assertions.assertEquals(3988, tmpFragmentArray.length);
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(Arrays.asList(tmpFragmentArray));
+        FragmentDictionary tmpDictionary = new FragmentDictionary(tmpFragmentArray);
+        Path tmpMoleculeFile = Paths.get("PerformanceTestCMDApplication/MoleculeFragments_File_PerformanceTest_13000.csv");
+        List<String> tmpNameList = new ArrayList<>(13000);
+        List<int[]> tmpCountArrayList = new ArrayList<>(13000);
+        long tmpNumberOfMolecules = new MappedMoleculeFragmentsParser(tmpDictionary).parse(tmpMoleculeFile, true, (ParsedMoleculeFragments aMolecule) -> {
+            tmpNameList.add(aMolecule.getName());
+            int[] tmpCountArray = new int[tmpDictionary.size()];
+            aMolecule.fillCountArray(tmpCountArray, 0);
+            tmpCountArrayList.add(tmpCountArray);
+            int[] tmpFingerprintCountArray = new int[tmpDictionary.size()];
+            aMolecule.getCountFingerprint().forEachPopulatedBin((int aHash, int aCount) -> tmpFingerprintCountArray[aHash] = aCount);
+            Assertions.assertArrayEquals(tmpCountArray, tmpFingerprintCountArray);
+        });
+        Assertions.assertEquals(13000L, tmpNumberOfMolecules);
+        int tmpIndex = 0;
+        try (MoleculeFragmentsReader tmpReader = new MoleculeFragmentsReader(tmpMoleculeFile)) {
+            while (tmpReader.hasNext()) {
+                MoleculeFragments tmpMolecule = tmpReader.next();
+                Assertions.assertEquals(tmpMolecule.getName(), tmpNameList.get(tmpIndex));
+                Assertions.assertArrayEquals(tmpFingerprinter.getCountArray(tmpMolecule.getFragmentFrequencyMap()), tmpCountArrayList.get(tmpIndex));
+                tmpIndex++;
+            }
+        }
+        Assertions.assertEquals(13000, tmpIndex);
+    }
+    //
+    /**
+     * Tests lines crossing window boundaries, CRLF line breaks, empty lines, non-ASCII SMILES, unknown fragments and
+     * malformed lines.
+     *
+     * @param aTempDirectory temporary directory for the test file
+     * @throws IOException if the test file can not be written or read
+     */
+    @Test
+    public void windowsAndLineFormatsTest(@TempDir Path aTempDirectory) throws IOException {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"CC", "C=O", "[13CH3]\u00C4", "c1ccccc1"});
+        StringBuilder tmpBuilder = new StringBuilder("Molecule Name;SmilesOfStructure;SmilesOfFragments and frequency\r\n");
+        for (int i = 0; i < 50; i++) {
+            tmpBuilder.append("M\u00F6lecule").append(i).append(";CCC=O;CC;").append(i + 1).append(";C=O;1;[13CH3]\u00C4;2;CCN;3;\r\n");
+            if (i % 10 == 0) {
+                tmpBuilder.append("\r\n");
+            }
+        }
+        tmpBuilder.append("Last;c1ccccc1;c1ccccc1;+4");
+        Path tmpFile = aTempDirectory.resolve("molecules.csv");
+        Files.write(tmpFile, tmpBuilder.toString().getBytes(StandardCharsets.UTF_8));
+        for (int tmpWindowSize : new int[] {70, 97, MappedMoleculeFragmentsParser.DEFAULT_WINDOW_SIZE}) {
+            List<String> tmpNameList = new ArrayList<>();
+            long tmpNumberOfMolecules = new MappedMoleculeFragmentsParser(tmpDictionary, tmpWindowSize).parse(tmpFile, true, (ParsedMoleculeFragments aMolecule) -> {
+                tmpNameList.add(aMolecule.getName());
+                int[] tmpCountArray = new int[4];
+                aMolecule.fillCountArray(tmpCountArray, 0);
+                if (aMolecule.getName().equals("Last")) {
+                    Assertions.assertArrayEquals(new int[] {0, 0, 0, 4}, tmpCountArray);
+                    Assertions.assertEquals("c1ccccc1", aMolecule.getSmiles());
+                    Assertions.assertEquals(0, aMolecule.getNumberOfUnknownFragments());
+                } else {
+                    int tmpNumber = Integer.parseInt(aMolecule.getName().substring("M\u00F6lecule".length()));
+                    Assertions.assertArrayEquals(new int[] {tmpNumber + 1, 1, 2, 0}, tmpCountArray);
+                    Assertions.assertEquals("CCC=O", aMolecule.getSmiles());
+                    Assertions.assertEquals(3, aMolecule.getNumberOfKeyFragments());
+                    Assertions.assertEquals(1, aMolecule.getNumberOfUnknownFragments());
+                }
+            });
+            Assertions.assertEquals(51L, tmpNumberOfMolecules);
+            Assertions.assertEquals("M\u00F6lecule0", tmpNameList.get(0));
+            Assertions.assertEquals("Last", tmpNameList.get(50));
+        }
+        Assertions.assertThrows(IOException.class, () -> new MappedMoleculeFragmentsParser(tmpDictionary, 20).parse(tmpFile, true, (ParsedMoleculeFragments aMolecule) -> {}));
+        Path tmpMalformedFile = aTempDirectory.resolve("malformed.csv");
+        Files.write(tmpMalformedFile, "A;CC;CC;1\nB;CC;CC;x1\n".getBytes(StandardCharsets.UTF_8));
+        IllegalArgumentException tmpException = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new MappedMoleculeFragmentsParser(tmpDictionary).parse(tmpMalformedFile, false, (ParsedMoleculeFragments aMolecule) -> {}));
+        Assertions.assertTrue(tmpException.getMessage().startsWith("Line 2"));
+        // negative frequencies result in a count of 0, like in the fingerprinters
+        Path tmpNegativeFile = aTempDirectory.resolve("negative.csv");
+        Files.write(tmpNegativeFile, "A;CC;CC;-2;C=O;3\n".getBytes(StandardCharsets.UTF_8));
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(Arrays.asList(tmpDictionary.toArray()));
+        new MappedMoleculeFragmentsParser(tmpDictionary).parse(tmpNegativeFile, false, (ParsedMoleculeFragments aMolecule) -> {
+            int[] tmpCountArray = new int[] {7, 7, 7, 7};
+            aMolecule.fillCountArray(tmpCountArray, 0);
+            Assertions.assertArrayEquals(new int[] {0, 3, 0, 0}, tmpCountArray);
+            Assertions.assertArrayEquals(tmpFingerprinter.getCountArray(Map.of("CC", -2, "C=O", 3)), tmpCountArray);
+        });
+    }
+    //
+    /**
+     * Tests that a fragment occurring more than once in a line yields the frequency of its last occurrence, like in
+     * the MoleculeFragmentsReader, and that the entries of the previous line do not affect the next one.
+     *
+     * @param aTempDirectory temporary directory for the test file
+     * @throws IOException if the test file can not be written or read
+     */
+    @Test
+    public void duplicateFragmentTest(@TempDir Path aTempDirectory) throws IOException {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"CC", "C=O", "c1ccccc1"});
+        Path tmpFile = aTempDirectory.resolve("duplicates.csv");
+        Files.write(tmpFile, "A;CCC=O;CC;2;C=O;1;CC;5;CCN;1;CCN;2\nB;CCC=O;C=O;3;CC;1\n".getBytes(StandardCharsets.UTF_8));
+        List<int[]> tmpCountArrayList = new ArrayList<>();
+        new MappedMoleculeFragmentsParser(tmpDictionary).parse(tmpFile, false, (ParsedMoleculeFragments aMolecule) -> {
+            int[] tmpCountArray = new int[tmpDictionary.size()];
+            aMolecule.fillCountArray(tmpCountArray, 0);
+            tmpCountArrayList.add(tmpCountArray);
+            int[] tmpFingerprintCountArray = new int[tmpDictionary.size()];
+            aMolecule.getCountFingerprint().forEachPopulatedBin((int aHash, int aCount) -> tmpFingerprintCountArray[aHash] = aCount);
+            Assertions.assertArrayEquals(tmpCountArray, tmpFingerprintCountArray);
+            Assertions.assertEquals(2, aMolecule.getNumberOfKeyFragments());
+        });
+        Assertions.assertArrayEquals(new int[] {5, 1, 0}, tmpCountArrayList.get(0));
+        Assertions.assertArrayEquals(new int[] {1, 3, 0}, tmpCountArrayList.get(1));
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(Arrays.asList(tmpDictionary.toArray()));
+        try (MoleculeFragmentsReader tmpReader = new MoleculeFragmentsReader(Files.newBufferedReader(tmpFile, StandardCharsets.UTF_8), false)) {
+            Assertions.assertArrayEquals(tmpCountArrayList.get(0), tmpFingerprinter.getCountArray(tmpReader.next().getFragmentFrequencyMap()));
+            Assertions.assertArrayEquals(tmpCountArrayList.get(1), tmpFingerprinter.getCountArray(tmpReader.next().getFragmentFrequencyMap()));
+        }
+    }
+    //</editor-fold>
+}
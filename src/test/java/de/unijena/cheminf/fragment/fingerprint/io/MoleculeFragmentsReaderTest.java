@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+/**
+ * Class to test the correct working of MoleculeFragmentsReader
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class MoleculeFragmentsReaderTest {
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public MoleculeFragmentsReaderTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests reading of names, SMILES and fragment frequencies, including empty lines, a trailing separator and
+     * a molecule without fragments.
+     *
+     * @throws IOException if the input can not be read
+     */
+    @Test
+    public void readMoleculesTest() throws IOException {
+        String tmpInput = "Molecule Name;SmilesOfStructure;SmilesOfFragments and frequency\n"
+                + "Nona-2,6-dienal;O=CC=CCCC=CCC;O=CC=C;1;C=C;1;CC;2\n"
+                + "\n"
+                + "Methane;C;\n"
+                + "Ethanol;CCO;[H]OC;1;CC;1;\n";
+        try (MoleculeFragmentsReader tmpReader = new MoleculeFragmentsReader(new StringReader(tmpInput), true)) {
+            MoleculeFragments tmpMolecule = tmpReader.next();
+            Assertions.assertEquals("Nona-2,6-dienal", tmpMolecule.getName());
+            Assertions.assertEquals("O=CC=CCCC=CCC", tmpMolecule.getSmiles());
+            HashMap<String, Integer> tmpExpectedMap = new HashMap<>();
+            tmpExpectedMap.put("O=CC=C", 1);
+            tmpExpectedMap.put("C=C", 1);
+            tmpExpectedMap.put("CC", 2);
+            Assertions.assertEquals(tmpExpectedMap, tmpMolecule.getFragmentFrequencyMap());
+            Assertions.assertEquals(3, tmpMolecule.getFragmentList().size());
+            Assertions.assertEquals(2, tmpReader.getLineNumber());
+            tmpMolecule = tmpReader.next();
+            Assertions.assertEquals("Methane", tmpMolecule.getName());
+            Assertions.assertTrue(tmpMolecule.getFragmentFrequencyMap().isEmpty());
+            Assertions.assertEquals(4, tmpReader.getLineNumber());
+            tmpMolecule = tmpReader.next();
+            Assertions.assertEquals("Ethanol", tmpMolecule.getName());
+            Assertions.assertEquals(2, tmpMolecule.getFragmentFrequencyMap().size());
+            Assertions.assertFalse(tmpReader.hasNext());
+            Assertions.assertThrows(NoSuchElementException.class, tmpReader::next);
+        }
+    }
+    //
+    /**
+     * Tests that malformed lines are reported with their line number.
+     *
+     * @throws IOException if the input can not be read
+     */
+    @Test
+    public void malformedLinesTest() throws IOException {
+        try (MoleculeFragmentsReader tmpReader = new MoleculeFragmentsReader(new StringReader("Molecule;CC;CC;1;C\n"), false)) {
+            IllegalArgumentException tmpException = Assertions.assertThrows(IllegalArgumentException.class, tmpReader::hasNext);
+            Assertions.assertTrue(tmpException.getMessage().startsWith("Line 1"));
+        }
+        try (MoleculeFragmentsReader tmpReader = new MoleculeFragmentsReader(new StringReader("Molecule;CC;CC;one\n"), false)) {
+            Assertions.assertThrows(IllegalArgumentException.class, tmpReader::next);
+        }
+        try (MoleculeFragmentsReader tmpReader = new MoleculeFragmentsReader(new StringReader("header\nMolecule\n"), true)) {
+            IllegalArgumentException tmpException = Assertions.assertThrows(IllegalArgumentException.class, tmpReader::next);
+            Assertions.assertTrue(tmpException.getMessage().startsWith("Line 2"));
+        }
+        Assertions.assertThrows(NullPointerException.class, () -> new MoleculeFragmentsReader(null, true));
+    }
+    //
+    /**
+     * Tests streaming of the molecule-fragments test file.
+     *
+     * @throws IOException if the file can not be read
+     */
+    @Test
+    public void streamFileTest() throws IOException {
+        List<MoleculeFragments> tmpMoleculeList;
+        try (MoleculeFragmentsReader tmpReader = new MoleculeFragmentsReader(Paths.get("src/test/resources/de/unijena/cheminf/fragment/fingerprint/MoleculeFragments.txt"))) {
+            tmpMoleculeList = tmpReader.stream().collect(Collectors.toList());
+        }
+        Assertions.assertEquals(10, tmpMoleculeList.size());
+        Assertions.assertEquals("Valdiazen", tmpMoleculeList.get(0).getName());
+        Assertions.assertEquals(3, tmpMoleculeList.get(1).getFragmentFrequencyMap().get("[H]OC"));
+    }
+    //</editor-fold>
+}
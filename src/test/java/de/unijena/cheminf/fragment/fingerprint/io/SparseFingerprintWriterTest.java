@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.io;
+
+import de.unijena.cheminf.fragment.fingerprint.FragmentFingerprinter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.fingerprint.IntArrayCountFingerprint;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Class to test the correct working of SparseFingerprintWriter
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class SparseFingerprintWriterTest {
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public SparseFingerprintWriterTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests the lines of both formats for dense arrays, CountFingerprint and another ICountFingerprint
+     * implementation with unsorted and duplicate bins, and for an empty fingerprint.
+     *
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void formatTest() throws IOException {
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(List.of("C", "CC", "O", "N", "c1ccccc1"));
+        HashMap<String, Integer> tmpFrequencyMap = new HashMap<>();
+        tmpFrequencyMap.put("c1ccccc1", 12);
+        tmpFrequencyMap.put("CC", 3);
+        tmpFrequencyMap.put("S", 1);
+        int[] tmpCountArray = tmpFingerprinter.getCountArray(tmpFrequencyMap);
+        int[] tmpUnsortedHashes = {4, 1, 4};
+        int[] tmpUnsortedCounts = {5, 3, 7};
+        IntArrayCountFingerprint tmpUnsortedFingerprint = new IntArrayCountFingerprint() {
+            @Override
+            public int numOfPopulatedbins() {
+                return tmpUnsortedHashes.length;
+            }
+            @Override
+            public int getHash(int anIndex) {
+                return tmpUnsortedHashes[anIndex];
+            }
+            @Override
+            public int getCount(int anIndex) {
+                return tmpUnsortedCounts[anIndex];
+            }
+        };
+        StringWriter tmpSparseOutput = new StringWriter();
+        StringWriter tmpSvmLightOutput = new StringWriter();
+        try (SparseFingerprintWriter tmpSparseWriter = new SparseFingerprintWriter(tmpSparseOutput, SparseTextFormat.SPARSE);
+             SparseFingerprintWriter tmpSvmLightWriter = new SparseFingerprintWriter(tmpSvmLightOutput, SparseTextFormat.SVMLIGHT)) {
+            for (SparseFingerprintWriter tmpWriter : Arrays.asList(tmpSparseWriter, tmpSvmLightWriter)) {
+                tmpWriter.writeCountArray("mol1", tmpCountArray, 0, tmpCountArray.length);
+                tmpWriter.writeCountFingerprint("mol1", tmpFingerprinter.getCountFingerprint(tmpFrequencyMap));
+                tmpWriter.writeCountFingerprint("mol2", tmpUnsortedFingerprint);
+                tmpWriter.writeCountArray("empty", new int[5], 0, 5);
+            }
+            Assertions.assertEquals(4, tmpSparseWriter.getNumberOfRecords());
+        }
+        Assertions.assertEquals("mol1;1:3;4:12\nmol1;1:3;4:12\nmol2;1:3;4:12\nempty\n", tmpSparseOutput.toString());
+        Assertions.assertEquals("0 2:3 5:12 # mol1\n0 2:3 5:12 # mol1\n0 2:3 5:12 # mol2\n0 # empty\n", tmpSvmLightOutput.toString());
+    }
+    //
+    /**
+     * Tests that names and fingerprints that would produce unreadable lines are rejected.
+     *
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void invalidInputTest() throws IOException {
+        try (SparseFingerprintWriter tmpWriter = new SparseFingerprintWriter(new StringWriter(), SparseTextFormat.SPARSE)) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpWriter.writeCountArray("a;b", new int[3], 0, 3));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpWriter.writeCountArray("a\nb", new int[3], 0, 3));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpWriter.writeCountArray("a", new int[] {0, -1, 0}, 0, 3));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpWriter.writeCountArray("a", new int[3], 1, 3));
+        }
+        try (SparseFingerprintWriter tmpWriter = new SparseFingerprintWriter(new StringWriter(), SparseTextFormat.SVMLIGHT)) {
+            tmpWriter.writeCountArray("a;b", new int[3], 0, 3);
+            Assertions.assertEquals(1, tmpWriter.getNumberOfRecords());
+        }
+    }
+    //</editor-fold>
+}
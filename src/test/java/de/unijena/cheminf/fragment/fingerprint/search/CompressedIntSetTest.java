@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.search;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Class to test the correct working of CompressedIntSet
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class CompressedIntSetTest {
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public CompressedIntSetTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests add, contains and the set operations against java.util.BitSet for random sets whose chunks are sparse
+     * (arrays), dense (bitmaps) or change between both, including values added out of order.
+     */
+    @Test
+    public void setOperationsTest() {
+        Random tmpRandom = new Random(42L);
+        double[] tmpDensities = {0.0005, 0.01, 0.06, 0.3, 0.9};
+        for (double tmpFirstDensity : tmpDensities) {
+            for (double tmpSecondDensity : tmpDensities) {
+                BitSet tmpFirstBitSet = new BitSet();
+                BitSet tmpSecondBitSet = new BitSet();
+                CompressedIntSet tmpFirstSet = CompressedIntSetTest.randomSet(tmpRandom, tmpFirstDensity, tmpFirstBitSet);
+                CompressedIntSet tmpSecondSet = CompressedIntSetTest.randomSet(tmpRandom, tmpSecondDensity, tmpSecondBitSet);
+                Assertions.assertEquals(tmpFirstBitSet.cardinality(), tmpFirstSet.getCardinality());
+                Assertions.assertArrayEquals(tmpFirstBitSet.stream().toArray(), tmpFirstSet.toArray());
+                BitSet tmpExpected = (BitSet) tmpFirstBitSet.clone();
+                tmpExpected.and(tmpSecondBitSet);
+                Assertions.assertArrayEquals(tmpExpected.stream().toArray(), tmpFirstSet.and(tmpSecondSet).toArray());
+                tmpExpected = (BitSet) tmpFirstBitSet.clone();
+                tmpExpected.or(tmpSecondBitSet);
+                Assertions.assertArrayEquals(tmpExpected.stream().toArray(), tmpFirstSet.or(tmpSecondSet).toArray());
+                tmpExpected = (BitSet) tmpFirstBitSet.clone();
+                tmpExpected.andNot(tmpSecondBitSet);
+                Assertions.assertArrayEquals(tmpExpected.stream().toArray(), tmpFirstSet.andNot(tmpSecondSet).toArray());
+                for (int i = 0; i < 1000; i++) {
+                    int tmpValue = tmpRandom.nextInt(200000);
+                    Assertions.assertEquals(tmpFirstBitSet.get(tmpValue), tmpFirstSet.contains(tmpValue));
+                }
+                // the operands are unchanged
+                Assertions.assertArrayEquals(tmpFirstBitSet.stream().toArray(), tmpFirstSet.toArray());
+            }
+        }
+    }
+    //
+    /**
+     * Tests range(), the copy constructor and that negative values are rejected.
+     */
+    @Test
+    public void rangeAndCopyTest() {
+        int[][] tmpRanges = {{0, 0}, {0, 1}, {5, 4000}, {3, 70000}, {65536, 131072}, {100, 300000}, {65535, 65537}};
+        for (int[] tmpRange : tmpRanges) {
+            CompressedIntSet tmpSet = CompressedIntSet.range(tmpRange[0], tmpRange[1]);
+            BitSet tmpExpected = new BitSet();
+            tmpExpected.set(tmpRange[0], tmpRange[1]);
+            Assertions.assertArrayEquals(tmpExpected.stream().toArray(), tmpSet.toArray());
+            CompressedIntSet tmpCopy = new CompressedIntSet(tmpSet);
+            tmpCopy.add(tmpRange[1] + 10);
+            Assertions.assertEquals(tmpExpected.cardinality(), tmpSet.getCardinality());
+            Assertions.assertEquals(tmpExpected.cardinality() + 1, tmpCopy.getCardinality());
+        }
+        CompressedIntSet tmpSet = CompressedIntSet.of(7, 3, 7, 1 << 20);
+        Assertions.assertArrayEquals(new int[] {3, 7, 1 << 20}, tmpSet.toArray());
+        Assertions.assertFalse(tmpSet.add(3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSet.add(-1));
+        Assertions.assertFalse(tmpSet.contains(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CompressedIntSet.range(5, 4));
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Returns a random set of values below 200000 with the given density, mostly added in ascending order.
+     *
+     * @param aRandom random number generator
+     * @param aDensity probability of a value to be contained
+     * @param aBitSet receives the same values
+     * @return CompressedIntSet
+     */
+    private static CompressedIntSet randomSet(Random aRandom, double aDensity, BitSet aBitSet) {
+        CompressedIntSet tmpSet = new CompressedIntSet();
+        for (int i = 0; i < 200000; i++) {
+            if (aRandom.nextDouble() < aDensity) {
+                tmpSet.add(i);
+                aBitSet.set(i);
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            int tmpValue = aRandom.nextInt(200000);
+            Assertions.assertEquals(!aBitSet.get(tmpValue), tmpSet.add(tmpValue));
+            aBitSet.set(tmpValue);
+        }
+        return tmpSet;
+    }
+    //</editor-fold>
+}
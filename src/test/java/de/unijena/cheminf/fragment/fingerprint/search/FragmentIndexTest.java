@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.search;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+import de.unijena.cheminf.fragment.fingerprint.FragmentFingerprinter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class to test the correct working of FragmentIndex
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class FragmentIndexTest {
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public FragmentIndexTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests the AND, OR, NOT and count-threshold queries against a scan over the count arrays for 100000 random
+     * molecules, indexed once as count and once as bit fingerprints.
+     */
+    @Test
+    public void queryTest() {
+        List<String> tmpFragments = new ArrayList<>(50);
+        for (int i = 0; i < 50; i++) {
+            tmpFragments.add("C" + "C".repeat(i));
+        }
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(tmpFragments);
+        FragmentDictionary tmpDictionary = new FragmentDictionary(tmpFragments.toArray(new String[0]));
+        FragmentIndex tmpCountIndex = new FragmentIndex(tmpDictionary);
+        FragmentIndex tmpBitIndex = new FragmentIndex(tmpDictionary);
+        Random tmpRandom = new Random(7L);
+        int tmpNumberOfMolecules = 100000;
+        int[][] tmpCountArrays = new int[tmpNumberOfMolecules][];
+        for (int i = 0; i < tmpNumberOfMolecules; i++) {
+            HashMap<String, Integer> tmpFrequencyMap = new HashMap<>();
+            for (int j = 0; j < 50; j++) {
+                // fragment j is contained in about one of j + 2 molecules, the first fragments are frequent
+                if (tmpRandom.nextInt(j + 2) == 0) {
+                    tmpFrequencyMap.put(tmpFragments.get(j), 1 + tmpRandom.nextInt(4));
+                }
+            }
+            tmpCountArrays[i] = tmpFingerprinter.getCountArray(tmpFrequencyMap);
+            Assertions.assertEquals(i, tmpCountIndex.addCountFingerprint(tmpFingerprinter.getCountFingerprint(tmpFrequencyMap)));
+            Assertions.assertEquals(i, tmpBitIndex.addBitFingerprint(tmpFingerprinter.getBitFingerprint(new ArrayList<>(tmpFrequencyMap.keySet()))));
+        }
+        tmpCountIndex.trimToSize();
+        for (FragmentIndex tmpIndex : List.of(tmpCountIndex, tmpBitIndex)) {
+            Assertions.assertEquals(tmpNumberOfMolecules, tmpIndex.getNumberOfMolecules());
+            Assertions.assertEquals(tmpNumberOfMolecules, tmpIndex.getAllMolecules().getCardinality());
+            for (int tmpFirst = 0; tmpFirst < 50; tmpFirst += 7) {
+                for (int tmpSecond = 1; tmpSecond < 50; tmpSecond += 11) {
+                    BitSet tmpAll = new BitSet();
+                    BitSet tmpAny = new BitSet();
+                    BitSet tmpNot = new BitSet();
+                    for (int i = 0; i < tmpNumberOfMolecules; i++) {
+                        boolean tmpHasFirst = tmpCountArrays[i][tmpFirst] > 0;
+                        boolean tmpHasSecond = tmpCountArrays[i][tmpSecond] > 0;
+                        tmpAll.set(i, tmpHasFirst && tmpHasSecond);
+                        tmpAny.set(i, tmpHasFirst || tmpHasSecond);
+                        tmpNot.set(i, !tmpHasFirst);
+                    }
+                    String tmpFirstFragment = tmpFragments.get(tmpFirst);
+                    String tmpSecondFragment = tmpFragments.get(tmpSecond);
+                    Assertions.assertArrayEquals(tmpAll.stream().toArray(), tmpIndex.getMoleculesContainingAll(tmpFirstFragment, tmpSecondFragment).toArray());
+                    Assertions.assertArrayEquals(tmpAny.stream().toArray(), tmpIndex.getMoleculesContainingAny(tmpFirstFragment, tmpSecondFragment).toArray());
+                    Assertions.assertArrayEquals(tmpNot.stream().toArray(), tmpIndex.getMoleculesNotContaining(tmpFirstFragment).toArray());
+                }
+            }
+        }
+        for (int tmpPosition = 0; tmpPosition < 50; tmpPosition += 3) {
+            for (int tmpMinimumCount = 1; tmpMinimumCount <= 5; tmpMinimumCount++) {
+                BitSet tmpExpected = new BitSet();
+                for (int i = 0; i < tmpNumberOfMolecules; i++) {
+                    tmpExpected.set(i, tmpCountArrays[i][tmpPosition] >= tmpMinimumCount);
+                }
+                Assertions.assertArrayEquals(tmpExpected.stream().toArray(), tmpCountIndex.getMoleculesContaining(tmpFragments.get(tmpPosition), tmpMinimumCount).toArray());
+                if (tmpMinimumCount > 1) {
+                    Assertions.assertTrue(tmpBitIndex.getMoleculesContaining(tmpPosition, tmpMinimumCount).isEmpty());
+                }
+            }
+        }
+        // the posting lists of the bit index do not need frequencies
+        Assertions.assertTrue(tmpBitIndex.getSizeInBytes() < tmpCountIndex.getSizeInBytes());
+    }
+    //
+    /**
+     * Tests duplicate bins, frequencies above the maximum and the rejection of invalid input.
+     */
+    @Test
+    public void countAndValidationTest() {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"C", "O", "N"});
+        FragmentIndex tmpIndex = new FragmentIndex(tmpDictionary);
+        tmpIndex.addCountFingerprint(CountFingerprint.fromPositions(tmpDictionary, new int[] {1, 1, 2}, new int[] {2, 3, 100000}, 3));
+        tmpIndex.addCountFingerprint(CountFingerprint.fromPositions(tmpDictionary, new int[] {1}, new int[] {4}, 1));
+        Assertions.assertArrayEquals(new int[] {0}, tmpIndex.getMoleculesContaining("O", 5).toArray());
+        Assertions.assertArrayEquals(new int[] {0, 1}, tmpIndex.getMoleculesContaining("O", 4).toArray());
+        Assertions.assertArrayEquals(new int[] {0}, tmpIndex.getMoleculesContaining("N", FragmentIndex.MAXIMUM_COUNT).toArray());
+        Assertions.assertArrayEquals(new int[] {0, 1}, tmpIndex.getMoleculesNotContaining("C").toArray());
+        Assertions.assertArrayEquals(new int[] {0, 1}, tmpIndex.getMoleculesContainingAll().toArray());
+        Assertions.assertTrue(tmpIndex.getMoleculesContainingAny().isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpIndex.getMoleculesContaining("S"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpIndex.getMoleculesContaining("O", FragmentIndex.MAXIMUM_COUNT + 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpIndex.getMoleculesContaining(3, 1));
+        Assertions.assertEquals(2, tmpIndex.getNumberOfMolecules());
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,305 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package de.unijena.cheminf.fragment.fingerprint.search;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+import de.unijena.cheminf.fragment.fingerprint.io.FingerprintType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.fingerprint.IntArrayCountFingerprint;
+import org.openscience.cdk.similarity.Tanimoto;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class to test the correct working of SimilaritySearch
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class SimilaritySearchTest {
+    //<editor-fold desc="Private static final constants" defaultstate="collapsed">
+    /**
+     * Size of the dictionary of the tests
+     */
+    private static final int DICTIONARY_SIZE = 300;
+    /**
+     * Number of molecules of the tests
+     */
+    private static final int NUMBER_OF_MOLECULES = 30000;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public SimilaritySearchTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests the top-k and threshold searches on bit and count corpora, sequential and with 4 threads, against
+     * an exhaustive calculation; the Tanimoto coefficients are compared to CDK's Tanimoto class.
+     */
+    @Test
+    public void searchTest() {
+        FragmentDictionary tmpDictionary = SimilaritySearchTest.createDictionary();
+        Random tmpRandom = new Random(3L);
+        List<CountFingerprint> tmpFingerprints = new ArrayList<>(SimilaritySearchTest.NUMBER_OF_MOLECULES);
+        SimilaritySearch tmpBitSearch = new SimilaritySearch(tmpDictionary, FingerprintType.BIT);
+        SimilaritySearch tmpCountSearch = new SimilaritySearch(tmpDictionary, FingerprintType.COUNT);
+        for (int i = 0; i < SimilaritySearchTest.NUMBER_OF_MOLECULES; i++) {
+            CountFingerprint tmpFingerprint = SimilaritySearchTest.randomFingerprint(tmpDictionary, tmpRandom);
+            tmpFingerprints.add(tmpFingerprint);
+            Assertions.assertEquals(i, tmpBitSearch.addBitFingerprint(SimilaritySearchTest.toBitFingerprint(tmpFingerprint)));
+            Assertions.assertEquals(i, tmpCountSearch.addCountFingerprint(tmpFingerprint));
+        }
+        for (int tmpQueryIndex = 0; tmpQueryIndex < 5; tmpQueryIndex++) {
+            // the first query is part of the corpus, the others are new
+            CountFingerprint tmpQuery = tmpQueryIndex == 0 ? tmpFingerprints.get(123) : SimilaritySearchTest.randomFingerprint(tmpDictionary, tmpRandom);
+            IBitFingerprint tmpBitQuery = SimilaritySearchTest.toBitFingerprint(tmpQuery);
+            for (SimilarityMetric tmpMetric : SimilarityMetric.values()) {
+                List<SimilarityHit> tmpExpectedBitHits = new ArrayList<>();
+                List<SimilarityHit> tmpExpectedCountHits = new ArrayList<>();
+                for (int i = 0; i < SimilaritySearchTest.NUMBER_OF_MOLECULES; i++) {
+                    double tmpBitSimilarity = SimilaritySearchTest.similarity(tmpMetric, tmpBitQuery.asBitSet(), SimilaritySearchTest.toBitFingerprint(tmpFingerprints.get(i)).asBitSet());
+                    double tmpCountSimilarity = SimilaritySearchTest.similarity(tmpMetric, tmpQuery, tmpFingerprints.get(i));
+                    if (tmpMetric == SimilarityMetric.TANIMOTO) {
+                        Assertions.assertEquals(Tanimoto.calculate(tmpBitQuery, SimilaritySearchTest.toBitFingerprint(tmpFingerprints.get(i))), tmpBitSimilarity, 1.0E-6);
+                        Assertions.assertEquals(Tanimoto.method1(tmpQuery, tmpFingerprints.get(i)), tmpCountSimilarity, 1.0E-9);
+                    }
+                    tmpExpectedBitHits.add(new SimilarityHit(i, tmpBitSimilarity));
+                    tmpExpectedCountHits.add(new SimilarityHit(i, tmpCountSimilarity));
+                }
+                Comparator<SimilarityHit> tmpOrder = Comparator.comparingDouble(SimilarityHit::getSimilarity).reversed().thenComparingInt(SimilarityHit::getMoleculeId);
+                tmpExpectedBitHits.sort(tmpOrder);
+                tmpExpectedCountHits.sort(tmpOrder);
+                for (int tmpParallelism : new int[] {1, 4}) {
+                    for (int tmpK : new int[] {1, 10, 250}) {
+                        SimilaritySearchTest.assertHits(tmpExpectedBitHits.subList(0, tmpK), tmpBitSearch.searchTopK(tmpBitQuery, tmpMetric, tmpK, tmpParallelism));
+                        SimilaritySearchTest.assertHits(tmpExpectedCountHits.subList(0, tmpK), tmpCountSearch.searchTopK(tmpQuery, tmpMetric, tmpK, tmpParallelism));
+                    }
+                    for (double tmpThreshold : new double[] {0.9, 0.6, 0.4}) {
+                        SimilaritySearchTest.assertHits(tmpExpectedBitHits.stream().filter((SimilarityHit aHit) -> aHit.getSimilarity() >= tmpThreshold).toList(),
+                                tmpBitSearch.searchThreshold(tmpBitQuery, tmpMetric, tmpThreshold, tmpParallelism));
+                        SimilaritySearchTest.assertHits(tmpExpectedCountHits.stream().filter((SimilarityHit aHit) -> aHit.getSimilarity() >= tmpThreshold).toList(),
+                                tmpCountSearch.searchThreshold(tmpQuery, tmpMetric, tmpThreshold, tmpParallelism));
+                    }
+                }
+            }
+        }
+        List<SimilarityHit> tmpSelfHits = tmpCountSearch.searchTopK(tmpFingerprints.get(123), SimilarityMetric.TANIMOTO, 1, 1);
+        Assertions.assertEquals(1.0, tmpSelfHits.get(0).getSimilarity(), 1.0E-12);
+    }
+    //
+    /**
+     * Tests that molecules added after a search are found, and the handling of empty corpora, empty fingerprints
+     * and invalid arguments.
+     */
+    @Test
+    public void corpusTest() {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"C", "O", "N"});
+        SimilaritySearch tmpSearch = new SimilaritySearch(tmpDictionary, FingerprintType.COUNT);
+        CountFingerprint tmpQuery = CountFingerprint.fromPositions(tmpDictionary, new int[] {0, 2}, new int[] {2, 1}, 2);
+        Assertions.assertTrue(tmpSearch.searchTopK(tmpQuery, SimilarityMetric.TANIMOTO, 5, 1).isEmpty());
+        tmpSearch.addCountFingerprint(CountFingerprint.fromPositions(tmpDictionary, new int[0], new int[0], 0));
+        tmpSearch.addCountFingerprint(CountFingerprint.fromPositions(tmpDictionary, new int[] {1}, new int[] {1}, 1));
+        Assertions.assertEquals(2, tmpSearch.searchTopK(tmpQuery, SimilarityMetric.DICE, 5, 1).size());
+        tmpSearch.addCountFingerprint(tmpQuery);
+        List<SimilarityHit> tmpHits = tmpSearch.searchTopK(tmpQuery, SimilarityMetric.COSINE, 1, 1);
+        Assertions.assertEquals(2, tmpHits.get(0).getMoleculeId());
+        Assertions.assertEquals(1.0, tmpHits.get(0).getSimilarity(), 1.0E-12);
+        Assertions.assertEquals(0.0, tmpSearch.searchThreshold(tmpQuery, SimilarityMetric.TANIMOTO, 0.0, 1).get(2).getSimilarity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSearch.searchTopK(tmpQuery, SimilarityMetric.TANIMOTO, 0, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSearch.searchTopK(tmpQuery, SimilarityMetric.TANIMOTO, 1, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSearch.searchThreshold(tmpQuery, SimilarityMetric.TANIMOTO, Double.NaN, 1));
+        BitSet tmpTooLong = new BitSet();
+        tmpTooLong.set(3);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSearch.addBitFingerprint(new BitSetFingerprint(tmpTooLong)));
+    }
+    //
+    /**
+     * Tests that count fingerprints of other ICountFingerprint implementations, which are read bin by bin, yield the
+     * same corpus and queries as CountFingerprint instances, whose populated bins are read directly, and that a
+     * rejected fingerprint does not affect the next one.
+     */
+    @Test
+    public void countFingerprintImplementationsTest() {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"C", "O", "N", "S"});
+        for (FingerprintType tmpType : FingerprintType.values()) {
+            SimilaritySearch tmpSearch = new SimilaritySearch(tmpDictionary, tmpType);
+            CountFingerprint tmpLargerDictionaryFingerprint = CountFingerprint.fromPositions(new FragmentDictionary(new String[] {"C", "O", "N", "S", "P"}),
+                    new int[] {1, 4}, new int[] {3, 1}, 2);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSearch.addCountFingerprint(tmpLargerDictionaryFingerprint));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSearch.searchTopK(tmpLargerDictionaryFingerprint, SimilarityMetric.TANIMOTO, 1, 1));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSearch.addCountFingerprint(SimilaritySearchTest.countFingerprint(new int[] {0}, new int[] {-1})));
+            tmpSearch.addCountFingerprint(CountFingerprint.fromPositions(tmpDictionary, new int[] {0, 2}, new int[] {2, 1}, 2));
+            tmpSearch.addCountFingerprint(SimilaritySearchTest.countFingerprint(new int[] {2, 0, 0, 3}, new int[] {1, 1, 1, 0}));
+            tmpSearch.addCountFingerprint(CountFingerprint.fromPositions(tmpDictionary, new int[] {0}, new int[] {1}, 1));
+            for (SimilarityMetric tmpMetric : SimilarityMetric.values()) {
+                List<SimilarityHit> tmpHits = tmpSearch.searchThreshold(CountFingerprint.fromPositions(tmpDictionary, new int[] {0, 2}, new int[] {2, 1}, 2), tmpMetric, 0.0, 1);
+                List<SimilarityHit> tmpForeignHits = tmpSearch.searchThreshold(SimilaritySearchTest.countFingerprint(new int[] {2, 0, 0}, new int[] {1, 1, 1}), tmpMetric, 0.0, 1);
+                SimilaritySearchTest.assertHits(tmpHits, tmpForeignHits);
+                Assertions.assertEquals(3, tmpHits.size());
+                // molecules 0 and 1 are the same molecule given by the two implementations
+                Assertions.assertEquals(1.0, tmpHits.get(0).getSimilarity(), 1.0E-12);
+                Assertions.assertEquals(1.0, tmpHits.get(1).getSimilarity(), 1.0E-12);
+                Assertions.assertEquals(2, tmpHits.get(2).getMoleculeId());
+                Assertions.assertTrue(tmpHits.get(2).getSimilarity() < 1.0);
+            }
+        }
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Creates a generic count fingerprint with the given bins.
+     *
+     * @param aHashes hashes of the bins.
+     * @param aCounts frequencies of the bins.
+     * @return count fingerprint that is no CountFingerprint
+     */
+    private static ICountFingerprint countFingerprint(int[] aHashes, int[] aCounts) {
+        return new IntArrayCountFingerprint() {
+            @Override
+            public int numOfPopulatedbins() {
+                return aHashes.length;
+            }
+            @Override
+            public int getHash(int index) {
+                return aHashes[index];
+            }
+            @Override
+            public int getCount(int index) {
+                return aCounts[index];
+            }
+        };
+    }
+    //
+    /**
+     * Asserts that the hits have the expected molecule IDs and similarities.
+     *
+     * @param anExpectedList expected hits
+     * @param anActualList actual hits
+     */
+    private static void assertHits(List<SimilarityHit> anExpectedList, List<SimilarityHit> anActualList) {
+        Assertions.assertEquals(anExpectedList.size(), anActualList.size());
+        for (int i = 0; i < anExpectedList.size(); i++) {
+            Assertions.assertEquals(anExpectedList.get(i).getMoleculeId(), anActualList.get(i).getMoleculeId());
+            Assertions.assertEquals(anExpectedList.get(i).getSimilarity(), anActualList.get(i).getSimilarity(), 1.0E-12);
+        }
+    }
+    //
+    /**
+     * Returns the similarity of two bit sets, calculated from their intersection and bit counts.
+     *
+     * @param aMetric similarity coefficient
+     * @param aFirstBitSet first bit set
+     * @param aSecondBitSet second bit set
+     * @return double
+     */
+    private static double similarity(SimilarityMetric aMetric, BitSet aFirstBitSet, BitSet aSecondBitSet) {
+        BitSet tmpIntersection = (BitSet) aFirstBitSet.clone();
+        tmpIntersection.and(aSecondBitSet);
+        return aMetric.calculate(tmpIntersection.cardinality(), aFirstBitSet.cardinality(), aSecondBitSet.cardinality());
+    }
+    //
+    /**
+     * Returns the similarity of two count fingerprints, calculated from their dense arrays.
+     *
+     * @param aMetric similarity coefficient
+     * @param aFirstFingerprint first fingerprint
+     * @param aSecondFingerprint second fingerprint
+     * @return double
+     */
+    private static double similarity(SimilarityMetric aMetric, CountFingerprint aFirstFingerprint, CountFingerprint aSecondFingerprint) {
+        long tmpDotProduct = 0L;
+        long tmpFirstNorm = 0L;
+        long tmpSecondNorm = 0L;
+        for (int i = 0; i < SimilaritySearchTest.DICTIONARY_SIZE; i++) {
+            long tmpFirstCount = aFirstFingerprint.getCountForHash(i);
+            long tmpSecondCount = aSecondFingerprint.getCountForHash(i);
+            tmpDotProduct += tmpFirstCount * tmpSecondCount;
+            tmpFirstNorm += tmpFirstCount * tmpFirstCount;
+            tmpSecondNorm += tmpSecondCount * tmpSecondCount;
+        }
+        return aMetric.calculate(tmpDotProduct, tmpFirstNorm, tmpSecondNorm);
+    }
+    //
+    /**
+     * Returns a random count fingerprint of 1 to 30 fragments, most of them from a small set of frequent fragments
+     * so that similar molecules occur.
+     *
+     * @param aDictionary dictionary
+     * @param aRandom random number generator
+     * @return CountFingerprint
+     */
+    private static CountFingerprint randomFingerprint(FragmentDictionary aDictionary, Random aRandom) {
+        int tmpLength = 1 + aRandom.nextInt(30);
+        int[] tmpPositions = new int[tmpLength];
+        int[] tmpCounts = new int[tmpLength];
+        for (int i = 0; i < tmpLength; i++) {
+            tmpPositions[i] = aRandom.nextInt(4) == 0 ? aRandom.nextInt(SimilaritySearchTest.DICTIONARY_SIZE) : aRandom.nextInt(40);
+            tmpCounts[i] = 1 + aRandom.nextInt(3);
+        }
+        return CountFingerprint.fromPositions(aDictionary, tmpPositions, tmpCounts, tmpLength);
+    }
+    //
+    /**
+     * Returns the bit fingerprint of a count fingerprint.
+     *
+     * @param aCountFingerprint count fingerprint
+     * @return IBitFingerprint
+     */
+    private static IBitFingerprint toBitFingerprint(CountFingerprint aCountFingerprint) {
+        BitSet tmpBitSet = new BitSet(SimilaritySearchTest.DICTIONARY_SIZE);
+        aCountFingerprint.forEachPopulatedBin((int aPosition, int aCount) -> tmpBitSet.set(aPosition));
+        return new BitSetFingerprint(tmpBitSet);
+    }
+    //
+    /**
+     * Returns a dictionary of DICTIONARY_SIZE fragments.
+     *
+     * @return FragmentDictionary
+     */
+    private static FragmentDictionary createDictionary() {
+        String[] tmpFragments = new String[SimilaritySearchTest.DICTIONARY_SIZE];
+        for (int i = 0; i < tmpFragments.length; i++) {
+            tmpFragments[i] = "C".repeat(i + 1);
+        }
+        return new FragmentDictionary(tmpFragments);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Betuel Sevindik, Felix Baensch, Jonas Schaub, Christoph Steinbeck, and Achim Zielesny
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unijena.cheminf.fragment.fingerprint.store;
+
+import de.unijena.cheminf.fragment.fingerprint.CountFingerprint;
+import de.unijena.cheminf.fragment.fingerprint.FragmentDictionary;
+import de.unijena.cheminf.fragment.fingerprint.FragmentFingerprinter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.fingerprint.IntArrayCountFingerprint;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class to test the correct working of BitFingerprintStore and CountFingerprintStore
+ *
+ * @author Jonas Schaub
+ * @version 1.0.0.0
+ */
+public class FingerprintStoreTest {
+    //<editor-fold desc="Private static final class variables" defaultstate="collapsed">
+    /**
+     * Segment shift of the tested stores, 64 byte segments so that the fingerprints span many segments
+     */
+    private static final int SEGMENT_SHIFT = 6;
+    //</editor-fold>
+    //
+    //<editor-fold desc="Constructor" defaultstate="collapsed">
+    /**
+     * Empty Constructor
+     */
+    public FingerprintStoreTest() {
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Tests" defaultstate="collapsed">
+    /**
+     * Tests that the views of in-memory and mapped stores return the fingerprints of the fingerprinter for 2000
+     * random molecules over 150 fragments, and that views can be copied into another store.
+     *
+     * @param aTempDir directory for the store files.
+     * @throws IOException if the store files can not be written or mapped.
+     */
+    @Test
+    public void roundTripTest(@TempDir Path aTempDir) throws IOException {
+        List<String> tmpFragments = new ArrayList<>(150);
+        for (int i = 0; i < 150; i++) {
+            tmpFragments.add("C" + "C".repeat(i));
+        }
+        FragmentFingerprinter tmpFingerprinter = new FragmentFingerprinter(tmpFragments);
+        FragmentDictionary tmpDictionary = new FragmentDictionary(tmpFragments.toArray(new String[0]));
+        BitFingerprintStore tmpBitStore = new BitFingerprintStore(tmpDictionary, FingerprintStoreTest.SEGMENT_SHIFT);
+        CountFingerprintStore tmpCountStore = new CountFingerprintStore(tmpDictionary, FingerprintStoreTest.SEGMENT_SHIFT);
+        Random tmpRandom = new Random(19L);
+        int tmpNumberOfMolecules = 2000;
+        List<IBitFingerprint> tmpBitFingerprints = new ArrayList<>(tmpNumberOfMolecules);
+        List<int[]> tmpCountArrays = new ArrayList<>(tmpNumberOfMolecules);
+        for (int i = 0; i < tmpNumberOfMolecules; i++) {
+            HashMap<String, Integer> tmpFrequencyMap = new HashMap<>();
+            int tmpNumberOfFragments = i % 10 == 0 ? 0 : tmpRandom.nextInt(30);
+            for (int j = 0; j < tmpNumberOfFragments; j++) {
+                tmpFrequencyMap.put(tmpFragments.get(tmpRandom.nextInt(150)), 1 + tmpRandom.nextInt(100));
+            }
+            IBitFingerprint tmpBitFingerprint = tmpFingerprinter.getBitFingerprint(new ArrayList<>(tmpFrequencyMap.keySet()));
+            CountFingerprint tmpCountFingerprint = tmpFingerprinter.getCountFingerprint(tmpFrequencyMap);
+            tmpBitFingerprints.add(tmpBitFingerprint);
+            tmpCountArrays.add(tmpFingerprinter.getCountArray(tmpFrequencyMap));
+            // alternate between the input types
+            Assertions.assertEquals(i, i % 2 == 0 ? tmpBitStore.add(tmpBitFingerprint)
+                    : tmpBitStore.addBitArray(tmpFingerprinter.getBitArray(tmpFrequencyMap)));
+            Assertions.assertEquals(i, i % 2 == 0 ? tmpCountStore.add(tmpCountFingerprint)
+                    : tmpCountStore.addCountArray(tmpFingerprinter.getCountArray(tmpFrequencyMap)));
+        }
+        // a generic count fingerprint with unsorted, duplicate and zero bins
+        int[] tmpHashes = {120, 3, 120, 7, 3};
+        int[] tmpCounts = {5, 1, 2, 0, 4};
+        Assertions.assertEquals(tmpNumberOfMolecules, tmpCountStore.add(FingerprintStoreTest.countFingerprint(tmpHashes, tmpCounts)));
+        int[] tmpExpectedCounts = new int[150];
+        tmpExpectedCounts[3] = 5;
+        tmpExpectedCounts[120] = 7;
+        tmpCountArrays.add(tmpExpectedCounts);
+        Path tmpBitPath = aTempDir.resolve("bit.ffs");
+        Path tmpCountPath = aTempDir.resolve("count.ffs");
+        tmpBitStore.save(tmpBitPath);
+        tmpCountStore.save(tmpCountPath);
+        BitFingerprintStore tmpMappedBitStore = BitFingerprintStore.open(tmpBitPath, tmpDictionary, FingerprintStoreTest.SEGMENT_SHIFT);
+        CountFingerprintStore tmpMappedCountStore = CountFingerprintStore.open(tmpCountPath, tmpDictionary, FingerprintStoreTest.SEGMENT_SHIFT);
+        Assertions.assertTrue(tmpMappedBitStore.isReadOnly());
+        Assertions.assertTrue(tmpMappedCountStore.isReadOnly());
+        Assertions.assertEquals(tmpCountStore.getNumberOfPopulatedBins(), tmpMappedCountStore.getNumberOfPopulatedBins());
+        for (BitFingerprintStore tmpStore : new BitFingerprintStore[] {tmpBitStore, tmpMappedBitStore}) {
+            Assertions.assertEquals(tmpNumberOfMolecules, tmpStore.getNumberOfFingerprints());
+            for (int i = 0; i < tmpNumberOfMolecules; i++) {
+                BitFingerprintView tmpView = tmpStore.get(i);
+                BitSet tmpExpected = tmpBitFingerprints.get(i).asBitSet();
+                Assertions.assertEquals(tmpExpected, tmpView.asBitSet());
+                Assertions.assertEquals(tmpExpected.cardinality(), tmpView.cardinality());
+                Assertions.assertArrayEquals(tmpExpected.stream().toArray(), tmpView.getSetbits());
+                Assertions.assertEquals(150, tmpView.size());
+                for (int j = 0; j < 160; j++) {
+                    Assertions.assertEquals(tmpExpected.get(j), tmpView.get(j));
+                }
+            }
+        }
+        for (CountFingerprintStore tmpStore : new CountFingerprintStore[] {tmpCountStore, tmpMappedCountStore}) {
+            Assertions.assertEquals(tmpNumberOfMolecules + 1, tmpStore.getNumberOfFingerprints());
+            for (int i = 0; i <= tmpNumberOfMolecules; i++) {
+                CountFingerprintView tmpView = tmpStore.get(i);
+                int[] tmpExpected = tmpCountArrays.get(i);
+                int tmpPopulated = 0;
+                for (int j = 0; j < 150; j++) {
+                    Assertions.assertEquals(tmpExpected[j], tmpView.getCountForHash(j));
+                    Assertions.assertEquals(tmpExpected[j] != 0, tmpView.hasHash(j));
+                    if (tmpExpected[j] != 0) {
+                        Assertions.assertEquals(j, tmpView.getHash(tmpPopulated));
+                        Assertions.assertEquals(tmpExpected[j], tmpView.getCount(tmpPopulated));
+                        tmpPopulated++;
+                    }
+                }
+                Assertions.assertEquals(tmpPopulated, tmpView.numOfPopulatedbins());
+                CountFingerprint tmpCopy = tmpView.toCountFingerprint();
+                for (int j = 0; j < 150; j++) {
+                    Assertions.assertEquals(tmpExpected[j], tmpCopy.getCountForHash(j));
+                }
+            }
+        }
+        // copying views, including views of mapped stores
+        BitFingerprintStore tmpBitCopy = new BitFingerprintStore(tmpDictionary, FingerprintStoreTest.SEGMENT_SHIFT);
+        CountFingerprintStore tmpCountCopy = new CountFingerprintStore(tmpDictionary, FingerprintStoreTest.SEGMENT_SHIFT);
+        for (int i = 0; i < tmpNumberOfMolecules; i++) {
+            tmpBitCopy.add(tmpMappedBitStore.get(i));
+            tmpCountCopy.add(tmpMappedCountStore.get(i));
+            Assertions.assertEquals(tmpBitFingerprints.get(i).asBitSet(), tmpBitCopy.get(i).asBitSet());
+            for (int j = 0; j < 150; j++) {
+                Assertions.assertEquals(tmpCountArrays.get(i)[j], tmpCountCopy.get(i).getCountForHash(j));
+            }
+        }
+        CountFingerprintView tmpBitView = tmpCountStore.get(tmpNumberOfMolecules);
+        tmpBitView.setBehaveAsBitFingerprint(true);
+        Assertions.assertEquals(1, tmpBitView.getCountForHash(120));
+        Assertions.assertEquals(7, tmpCountStore.get(tmpNumberOfMolecules).getCountForHash(120));
+    }
+    //
+    /**
+     * Tests that invalid fingerprints, IDs, files and modifications are rejected.
+     *
+     * @param aTempDir directory for the store files.
+     * @throws IOException if the store files can not be written.
+     */
+    @Test
+    public void invalidInputTest(@TempDir Path aTempDir) throws IOException {
+        FragmentDictionary tmpDictionary = new FragmentDictionary(new String[] {"C", "CC", "CCC"});
+        BitFingerprintStore tmpBitStore = new BitFingerprintStore(tmpDictionary);
+        CountFingerprintStore tmpCountStore = new CountFingerprintStore(tmpDictionary);
+        BitSet tmpTooLong = new BitSet();
+        tmpTooLong.set(3);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> tmpBitStore.add(new BitSetFingerprint(tmpTooLong)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpBitStore.addBitArray(new int[4]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCountStore.addCountArray(new int[] {1, -1}));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> tmpCountStore.add(FingerprintStoreTest.countFingerprint(new int[] {3}, new int[] {1})));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> tmpCountStore.add(FingerprintStoreTest.countFingerprint(new int[] {1, 1}, new int[] {Integer.MAX_VALUE, 1})));
+        HashMap<String, Integer> tmpNegativeFrequencyMap = new HashMap<>();
+        tmpNegativeFrequencyMap.put("C", 2);
+        tmpNegativeFrequencyMap.put("CC", -1);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> tmpCountStore.add(new FragmentFingerprinter(tmpDictionary).getCountFingerprint(tmpNegativeFrequencyMap)));
+        Assertions.assertEquals(0, tmpBitStore.getNumberOfFingerprints());
+        Assertions.assertEquals(0, tmpCountStore.getNumberOfFingerprints());
+        Assertions.assertEquals(0, tmpCountStore.getNumberOfPopulatedBins());
+        tmpBitStore.addBitArray(new int[] {1, 0, 1});
+        tmpCountStore.addCountArray(new int[] {0, 2});
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpBitStore.get(1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCountStore.get(-1));
+        BitFingerprintView tmpBitView = tmpBitStore.get(0);
+        CountFingerprintView tmpCountView = tmpCountStore.get(0);
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> tmpBitView.set(1));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> tmpBitView.and(tmpBitView));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> tmpCountView.merge(tmpCountView));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> tmpBitView.get(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCountView.getHash(1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCountView.getCountForHash(3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpCountView.hasHash(-1));
+        Path tmpBitPath = aTempDir.resolve("bit.ffs");
+        tmpBitStore.save(tmpBitPath);
+        BitFingerprintStore tmpMappedStore = BitFingerprintStore.open(tmpBitPath, tmpDictionary);
+        Assertions.assertArrayEquals(new int[] {0, 2}, tmpMappedStore.get(0).getSetbits());
+        Assertions.assertThrows(IllegalStateException.class, () -> tmpMappedStore.addBitArray(new int[3]));
+        Assertions.assertThrows(IOException.class, () -> CountFingerprintStore.open(tmpBitPath, tmpDictionary));
+        Assertions.assertThrows(IOException.class,
+                () -> BitFingerprintStore.open(tmpBitPath, new FragmentDictionary(new String[] {"C", "CC"})));
+        // views of a store with a larger dictionary of the same number of words are not copied word by word
+        String[] tmpLargeFragmentArray = new String[120];
+        for (int i = 0; i < tmpLargeFragmentArray.length; i++) {
+            tmpLargeFragmentArray[i] = "C".repeat(i + 1);
+        }
+        BitFingerprintStore tmpLargeStore = new BitFingerprintStore(new FragmentDictionary(tmpLargeFragmentArray));
+        BitFingerprintStore tmpSmallStore = new BitFingerprintStore(new FragmentDictionary(Arrays.copyOf(tmpLargeFragmentArray, 100)));
+        Assertions.assertEquals(tmpLargeStore.getWordsPerFingerprint(), tmpSmallStore.getWordsPerFingerprint());
+        int[] tmpLargeBitArray = new int[120];
+        tmpLargeBitArray[5] = 1;
+        tmpLargeBitArray[110] = 1;
+        tmpLargeStore.addBitArray(tmpLargeBitArray);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tmpSmallStore.add(tmpLargeStore.get(0)));
+        Assertions.assertEquals(0, tmpSmallStore.getNumberOfFingerprints());
+        tmpLargeBitArray[110] = 0;
+        tmpLargeStore.addBitArray(tmpLargeBitArray);
+        Assertions.assertEquals(0, tmpSmallStore.add(tmpLargeStore.get(1)));
+        Assertions.assertArrayEquals(new int[] {5}, tmpSmallStore.get(0).getSetbits());
+    }
+    //</editor-fold>
+    //
+    //<editor-fold desc="Private static methods" defaultstate="collapsed">
+    /**
+     * Creates a generic count fingerprint with the given bins.
+     *
+     * @param aHashes hashes of the bins.
+     * @param aCounts frequencies of the bins.
+     * @return count fingerprint that is no CountFingerprint
+     */
+    private static ICountFingerprint countFingerprint(int[] aHashes, int[] aCounts) {
+        return new IntArrayCountFingerprint() {
+            @Override
+            public int numOfPopulatedbins() {
+                return aHashes.length;
+            }
+            @Override
+            public int getHash(int index) {
+                return aHashes[index];
+            }
+            @Override
+            public int getCount(int index) {
+                return aCounts[index];
+            }
+        };
+    }
+    //</editor-fold>
+}